@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.benchmarks;
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.usergrid.corepersistence.pipeline.cursor.CursorSerializerUtil;
+import org.apache.usergrid.corepersistence.pipeline.read.collect.IdCursorSerializer;
+import org.apache.usergrid.corepersistence.pipeline.read.search.ElasticsearchCursorSerializer;
+import org.apache.usergrid.corepersistence.pipeline.read.traverse.EdgeCursorSerializer;
+import org.apache.usergrid.persistence.graph.MarkedEdge;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/**
+ * Measures the cursor round trip performed on every paged query request and response.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 1 )
+public class CursorSerializerBenchmark {
+
+    private ObjectMapper mapper;
+
+    private MarkedEdge edge;
+    private Id id;
+
+    private String edgeCursor;
+    private String idCursor;
+    private String elasticsearchCursor;
+
+
+    @Setup
+    public void setup() {
+        mapper = CursorSerializerUtil.getMapper();
+
+        edge = Fixtures.edges( 1 ).get( 0 );
+        id = new SimpleId( "user" );
+
+        edgeCursor = CursorSerializerUtil.asString( EdgeCursorSerializer.INSTANCE.toNode( mapper, edge ) );
+        idCursor = CursorSerializerUtil.asString( IdCursorSerializer.INSTANCE.toNode( mapper, id ) );
+        elasticsearchCursor =
+            CursorSerializerUtil.asString( ElasticsearchCursorSerializer.INSTANCE.toNode( mapper, 1000 ) );
+    }
+
+
+    @Benchmark
+    public String writeEdgeCursor() {
+        return CursorSerializerUtil.asString( EdgeCursorSerializer.INSTANCE.toNode( mapper, edge ) );
+    }
+
+
+    @Benchmark
+    public MarkedEdge readEdgeCursor() {
+        final JsonNode node = CursorSerializerUtil.fromString( edgeCursor );
+        return EdgeCursorSerializer.INSTANCE.fromJsonNode( node, mapper );
+    }
+
+
+    @Benchmark
+    public String writeIdCursor() {
+        return CursorSerializerUtil.asString( IdCursorSerializer.INSTANCE.toNode( mapper, id ) );
+    }
+
+
+    @Benchmark
+    public Id readIdCursor() {
+        final JsonNode node = CursorSerializerUtil.fromString( idCursor );
+        return IdCursorSerializer.INSTANCE.fromJsonNode( node, mapper );
+    }
+
+
+    @Benchmark
+    public Integer readElasticsearchCursor() {
+        final JsonNode node = CursorSerializerUtil.fromString( elasticsearchCursor );
+        return ElasticsearchCursorSerializer.INSTANCE.fromJsonNode( node, mapper );
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.benchmarks;
+
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.usergrid.persistence.core.astyanax.IdRowCompositeSerializer;
+import org.apache.usergrid.persistence.core.astyanax.ScopedRowKey;
+import org.apache.usergrid.persistence.core.astyanax.ScopedRowKeySerializer;
+import org.apache.usergrid.persistence.graph.MarkedEdge;
+import org.apache.usergrid.persistence.graph.serialization.impl.shard.DirectedEdge;
+import org.apache.usergrid.persistence.graph.serialization.impl.shard.impl.serialize.EdgeSerializer;
+import org.apache.usergrid.persistence.model.entity.Id;
+
+
+/**
+ * Measures the column and row key serializers used when reading and writing graph edges.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 1 )
+public class EdgeSerializationBenchmark {
+
+    private static final ScopedRowKeySerializer<Id> ROW_KEY_SERIALIZER =
+        new ScopedRowKeySerializer<>( IdRowCompositeSerializer.get() );
+
+    private DirectedEdge directedEdge;
+    private ByteBuffer serializedEdge;
+
+    private ScopedRowKey<Id> rowKey;
+    private ByteBuffer serializedRowKey;
+
+
+    @Setup
+    public void setup() {
+        final MarkedEdge edge = Fixtures.edges( 1 ).get( 0 );
+
+        directedEdge = new DirectedEdge( edge.getTargetNode(), edge.getTimestamp() );
+        serializedEdge = EdgeSerializer.INSTANCE.toByteBuffer( directedEdge );
+
+        rowKey = new ScopedRowKey<>( Fixtures.applicationScope().getApplication(), edge.getSourceNode() );
+        serializedRowKey = ROW_KEY_SERIALIZER.toByteBuffer( rowKey );
+    }
+
+
+    @Benchmark
+    public ByteBuffer serializeEdge() {
+        return EdgeSerializer.INSTANCE.toByteBuffer( directedEdge );
+    }
+
+
+    @Benchmark
+    public DirectedEdge deserializeEdge() {
+        return EdgeSerializer.INSTANCE.fromByteBuffer( serializedEdge.duplicate() );
+    }
+
+
+    @Benchmark
+    public ByteBuffer serializeRowKey() {
+        return ROW_KEY_SERIALIZER.toByteBuffer( rowKey );
+    }
+
+
+    @Benchmark
+    public ScopedRowKey<Id> deserializeRowKey() {
+        return ROW_KEY_SERIALIZER.fromByteBuffer( serializedRowKey.duplicate() );
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.benchmarks;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
+import org.apache.usergrid.persistence.graph.MarkedEdge;
+import org.apache.usergrid.persistence.graph.impl.SimpleMarkedEdge;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.field.ArrayField;
+import org.apache.usergrid.persistence.model.field.BooleanField;
+import org.apache.usergrid.persistence.model.field.DoubleField;
+import org.apache.usergrid.persistence.model.field.EntityObjectField;
+import org.apache.usergrid.persistence.model.field.IntegerField;
+import org.apache.usergrid.persistence.model.field.LongField;
+import org.apache.usergrid.persistence.model.field.StringField;
+import org.apache.usergrid.persistence.model.field.value.EntityObject;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+
+
+/**
+ * Representative entities and edges shared by the benchmarks.
+ */
+public class Fixtures {
+
+    /**
+     * The size of the entities to benchmark against
+     */
+    public enum EntitySize {
+
+        /**
+         * A handful of fields, like a role or an application
+         */
+        SMALL( 5, 0 ),
+
+        /**
+         * A typical user record with a nested profile
+         */
+        MEDIUM( 25, 1 ),
+
+        /**
+         * A wide document with several nested objects
+         */
+        LARGE( 200, 5 );
+
+        private final int fields;
+        private final int nested;
+
+
+        EntitySize( final int fields, final int nested ) {
+            this.fields = fields;
+            this.nested = nested;
+        }
+    }
+
+
+    public static ApplicationScope applicationScope() {
+        return new ApplicationScopeImpl( new SimpleId( "application" ) );
+    }
+
+
+    /**
+     * Create an entity with a version and a mix of field types
+     */
+    public static Entity entity( final EntitySize size ) {
+        final Entity entity = new Entity( new SimpleId( "user" ), UUIDGenerator.newTimeUUID() );
+
+        entity.setField( new StringField( "username", "benchmark-user" ) );
+        entity.setField( new StringField( "email", "benchmark-user@example.com" ) );
+
+        for ( int i = 0; i < size.fields; i++ ) {
+            switch ( i % 5 ) {
+                case 0:
+                    entity.setField( new StringField( "string" + i, "value of a string field " + i ) );
+                    break;
+                case 1:
+                    entity.setField( new IntegerField( "int" + i, i ) );
+                    break;
+                case 2:
+                    entity.setField( new LongField( "long" + i, System.currentTimeMillis() ) );
+                    break;
+                case 3:
+                    entity.setField( new DoubleField( "double" + i, i * 1.5d ) );
+                    break;
+                default:
+                    entity.setField( new BooleanField( "boolean" + i, i % 2 == 0 ) );
+            }
+        }
+
+        for ( int i = 0; i < size.nested; i++ ) {
+            final EntityObject nested = new EntityObject();
+            nested.setField( new StringField( "city", "San Francisco" ) );
+            nested.setField( new StringField( "street", i + " Market St" ) );
+            nested.setField( new IntegerField( "zip", 94100 + i ) );
+
+            entity.setField( new EntityObjectField( "address" + i, nested ) );
+        }
+
+        final List<String> tags = new ArrayList<>();
+        for ( int i = 0; i < Math.max( 1, size.fields / 10 ); i++ ) {
+            tags.add( "tag" + i );
+        }
+
+        entity.setField( new ArrayField<>( "tags", tags ) );
+
+        return entity;
+    }
+
+
+    /**
+     * Create edges from a single source, as written when a collection or a user's followers grow
+     */
+    public static List<MarkedEdge> edges( final int count ) {
+        final Id source = new SimpleId( "user" );
+        final long now = System.currentTimeMillis();
+
+        final List<MarkedEdge> edges = new ArrayList<>( count );
+
+        for ( int i = 0; i < count; i++ ) {
+            edges.add( new SimpleMarkedEdge( source, "followers", new SimpleId( "user" ), now + i, false ) );
+        }
+
+        return edges;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.benchmarks;
+
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.usergrid.persistence.core.shard.ExpandingShardLocator;
+import org.apache.usergrid.persistence.core.shard.StringHashUtils;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+
+import com.google.common.hash.Funnel;
+import com.google.common.hash.PrimitiveSink;
+
+
+/**
+ * Measures bucket lookups, which happen for every edge metadata read and write.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 1 )
+public class ShardLocatorBenchmark {
+
+    /**
+     * Same hashing as the edge metadata serialization
+     */
+    private static final Funnel<Id> ID_FUNNEL = new Funnel<Id>() {
+
+        @Override
+        public void funnel( final Id from, final PrimitiveSink into ) {
+            final UUID id = from.getUuid();
+            final String type = from.getType();
+
+            into.putLong( id.getMostSignificantBits() );
+            into.putLong( id.getLeastSignificantBits() );
+            into.putString( type, StringHashUtils.UTF8 );
+        }
+    };
+
+    private static final int IDS = 1024;
+
+    /**
+     * Comma separated bucket sizes, in the same format as the shard settings in cassandra fig
+     */
+    @Param( { "20", "20,10,1" } )
+    public String buckets;
+
+    private ExpandingShardLocator<Id> locator;
+    private Id[] ids;
+    private int index;
+
+
+    @Setup
+    public void setup() {
+        final String[] parts = buckets.split( "," );
+        final int[] sizes = new int[parts.length];
+
+        for ( int i = 0; i < parts.length; i++ ) {
+            sizes[i] = Integer.parseInt( parts[i].trim() );
+        }
+
+        locator = new ExpandingShardLocator<>( ID_FUNNEL, sizes );
+
+        ids = new Id[IDS];
+        for ( int i = 0; i < IDS; i++ ) {
+            ids[i] = new SimpleId( "user" );
+        }
+    }
+
+
+    @Benchmark
+    public int currentBucket() {
+        return locator.getCurrentBucket( nextId() );
+    }
+
+
+    @Benchmark
+    public int[] allBuckets() {
+        return locator.getAllBuckets( nextId() );
+    }
+
+
+    private Id nextId() {
+        index = ( index + 1 ) & ( IDS - 1 );
+        return ids[index];
+    }
+}
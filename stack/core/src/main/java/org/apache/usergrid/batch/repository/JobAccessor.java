@@ -32,4 +32,10 @@ public interface JobAccessor {
 
     /** Don't remove the execution, but rather schedule it to be fired after the given delay */
     void delayRetry( JobExecution execution, long delay );
+
+    /** Get the fire times of jobs that aren't due yet but are before until, oldest first, with a max of size */
+    List<Long> getUpcoming( long until, int size );
+
+    /** Set the listener notified of every job scheduled through this accessor */
+    void setScheduleListener( JobScheduleListener listener );
 }
@@ -23,6 +23,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.inject.Injector;
@@ -38,6 +39,7 @@ import org.apache.usergrid.batch.JobFactory;
 import org.apache.usergrid.batch.JobNotFoundException;
 import org.apache.usergrid.batch.repository.JobAccessor;
 import org.apache.usergrid.batch.repository.JobDescriptor;
+import org.apache.usergrid.batch.repository.JobScheduleListener;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Timer;
@@ -50,14 +52,24 @@ import com.google.common.util.concurrent.MoreExecutors;
 
 
 /**
- * Service that schedules itself, then schedules jobs in the same pool
+ * Service that schedules itself, then schedules jobs in the same pool.
+ *
+ * Every tick it turns a {@link TimeWheel} of the fire times it knows about and only reads jobs from the queue when one
+ * has come due, when a job was scheduled for now on this node, or once every interval.  On that last read it also
+ * loads the fire times of the jobs due within the next interval into the wheel, so jobs scheduled by other nodes start
+ * on time as well.
  */
-public class JobSchedulerService extends AbstractScheduledService {
+public class JobSchedulerService extends AbstractScheduledService implements JobScheduleListener {
     protected static final long DEFAULT_DELAY = 1000;
+    protected static final long DEFAULT_TICK = 10;
+
+    private static final int WHEEL_SLOTS = 64;
+    private static final int UPCOMING_LIMIT = 1000;
 
     private static final Logger logger = LoggerFactory.getLogger( JobSchedulerService.class );
 
     private long interval = DEFAULT_DELAY;
+    private long tick = DEFAULT_TICK;
     private int workerSize = 1;
     private int maxFailCount = 10;
 
@@ -67,6 +79,9 @@ public class JobSchedulerService extends AbstractScheduledService {
     private Semaphore capacitySemaphore;
 
     private ListeningScheduledExecutorService service;
+    private volatile TimeWheel wheel;
+    private long nextLookahead;
+    private final AtomicBoolean woken = new AtomicBoolean();
     private JobListener jobListener;
 
     private Timer jobTimer;
@@ -85,13 +100,49 @@ public class JobSchedulerService extends AbstractScheduledService {
     @Override
     protected void runOneIteration() throws Exception {
 
-        MetricsFactory metricsFactory = injector.getInstance( MetricsFactory.class );
+        final long now = System.currentTimeMillis();
+
+        final boolean due = wheel.advance( now );
+        final boolean lookahead = now >= nextLookahead;
+        final boolean wake = woken.getAndSet( false );
+
+        if ( !due && !lookahead && !wake ) {
+            return;
+        }
+
+        // load before reading, so nothing comes due between the read and the load unnoticed
+        if ( lookahead ) {
+            nextLookahead = now + interval;
+            loadUpcoming( now );
+        }
+
+        runJobs();
+    }
 
-        jobTimer = metricsFactory.getTimer( JobSchedulerService.class, "scheduler.job_execution_timer" );
-        runCounter = metricsFactory.getCounter( JobSchedulerService.class, "scheduler.running_workers" );
-        successCounter = metricsFactory.getCounter( JobSchedulerService.class, "scheduler.successful_jobs" );
-        failCounter = metricsFactory.getCounter( JobSchedulerService.class, "scheduler.failed_jobs" );
 
+    @Override
+    public void onSchedule( final long fireTime ) {
+        final TimeWheel current = this.wheel;
+
+        // not started yet, the first iteration reads the queue anyway
+        if ( current == null ) {
+            return;
+        }
+
+        if ( fireTime <= System.currentTimeMillis() ) {
+            woken.set( true );
+            return;
+        }
+
+        // past the wheel, the lookahead before it's due will load it
+        current.schedule( fireTime );
+    }
+
+
+    /**
+     * Read and submit jobs until there are none due
+     */
+    private void runJobs() {
         try {
             logger.info( "Running one check iteration ..." );
             List<JobDescriptor> activeJobs;
@@ -141,6 +192,28 @@ public class JobSchedulerService extends AbstractScheduledService {
     }
 
 
+    /**
+     * Put the fire times of the jobs due before the next lookahead in the wheel
+     */
+    private void loadUpcoming( final long now ) {
+        try {
+            final List<Long> upcoming = jobAccessor.getUpcoming( now + interval, UPCOMING_LIMIT );
+
+            for ( Long fireTime : upcoming ) {
+                wheel.schedule( fireTime );
+            }
+
+            if ( logger.isDebugEnabled() ) {
+                logger.debug( "Loaded {} upcoming jobs, {} ticks are waiting", upcoming.size(), wheel.size() );
+            }
+        }
+        catch ( Throwable t ) {
+            // we'll still read the queue at the next lookahead
+            logger.error( "Unable to load upcoming jobs", t );
+        }
+    }
+
+
     /*
      * (non-Javadoc)
      *
@@ -148,7 +221,7 @@ public class JobSchedulerService extends AbstractScheduledService {
      */
     @Override
     protected Scheduler scheduler() {
-        return Scheduler.newFixedDelaySchedule( 0, interval, TimeUnit.MILLISECONDS );
+        return Scheduler.newFixedDelaySchedule( 0, tick, TimeUnit.MILLISECONDS );
     }
 
 
@@ -313,6 +386,19 @@ public class JobSchedulerService extends AbstractScheduledService {
     }
 
 
+    /**
+     * @param milliseconds the milliseconds between turns of the time wheel, the precision jobs are started with
+     */
+    public void setTick( long milliseconds ) {
+        this.tick = milliseconds;
+    }
+
+
+    public long getTick() {
+        return tick;
+    }
+
+
     /**
      * @param listeners the listeners to set
      */
@@ -373,6 +459,17 @@ public class JobSchedulerService extends AbstractScheduledService {
                 .listeningDecorator( Executors.newScheduledThreadPool( workerSize, JobThreadFactory.INSTANCE ) );
         capacitySemaphore = new Semaphore( workerSize );
 
+        MetricsFactory metricsFactory = injector.getInstance( MetricsFactory.class );
+
+        jobTimer = metricsFactory.getTimer( JobSchedulerService.class, "scheduler.job_execution_timer" );
+        runCounter = metricsFactory.getCounter( JobSchedulerService.class, "scheduler.running_workers" );
+        successCounter = metricsFactory.getCounter( JobSchedulerService.class, "scheduler.successful_jobs" );
+        failCounter = metricsFactory.getCounter( JobSchedulerService.class, "scheduler.failed_jobs" );
+
+        wheel = new TimeWheel( tick, WHEEL_SLOTS, interval, System.currentTimeMillis() );
+        nextLookahead = 0;
+        jobAccessor.setScheduleListener( this );
+
         logger.info( "Starting executor pool.  Capacity is {}", workerSize );
 
         super.startUp();
@@ -390,6 +487,7 @@ public class JobSchedulerService extends AbstractScheduledService {
     protected void shutDown() throws Exception {
         logger.info( "Shutting down job scheduler" );
 
+        jobAccessor.setScheduleListener( null );
         service.shutdown();
 
         logger.info( "Job scheduler shut down" );
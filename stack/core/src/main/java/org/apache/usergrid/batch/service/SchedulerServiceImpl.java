@@ -29,6 +29,7 @@ import org.apache.usergrid.batch.JobRuntime;
 import org.apache.usergrid.batch.JobRuntimeException;
 import org.apache.usergrid.batch.repository.JobAccessor;
 import org.apache.usergrid.batch.repository.JobDescriptor;
+import org.apache.usergrid.batch.repository.JobScheduleListener;
 import org.apache.usergrid.mq.Message;
 import org.apache.usergrid.mq.QueueManager;
 import org.apache.usergrid.mq.QueueManagerFactory;
@@ -50,6 +51,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.Assert;
 
+import static org.apache.usergrid.utils.UUIDUtils.getTimestampInMillis;
+
 /**
  * Should be referenced by services as a SchedulerService instance. Only the internal job
  * runtime should refer to this as a JobAccessor
@@ -78,6 +81,7 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
     private long jobTimeout = 30000;
     private Injector injector;
     private EntityIndex entityIndex;
+    private volatile JobScheduleListener scheduleListener;
 
 
     /**
@@ -128,6 +132,12 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
         message.setProperty( STATS_ID, jobStatId.toString() );
 
         getQm().postToQueue( jobQueueName, message );
+
+        final JobScheduleListener listener = scheduleListener;
+
+        if ( listener != null ) {
+            listener.onSchedule( fireTime );
+        }
     }
 
 
@@ -220,6 +230,32 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
     }
 
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.usergrid.batch.repository.JobAccessor#getUpcoming(long, int)
+     */
+    @Override
+    public List<Long> getUpcoming( long until, int size ) {
+        List<UUID> jobIds = getQm().getScheduledIds( jobQueueName, until, size );
+
+        List<Long> results = new ArrayList<Long>( jobIds.size() );
+
+        // a job's message id is a time uuid of its fire time
+        for ( UUID jobId : jobIds ) {
+            results.add( getTimestampInMillis( jobId ) );
+        }
+
+        return results;
+    }
+
+
+    @Override
+    public void setScheduleListener( JobScheduleListener listener ) {
+        this.scheduleListener = listener;
+    }
+
+
     @Override
     public void heartbeat( JobRuntime execution, long delay ) {
         if (logger.isDebugEnabled()) {
@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.batch.service;
+
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+
+
+/**
+ * Hierarchical timing wheel of job fire times.
+ *
+ * The lowest level has a slot for every tick, every level above has slots as wide as a full turn of the level below.
+ * A fire time is held in the lowest level that reaches it, and is moved down a level each time the wheel turns into
+ * its slot, so scheduling and advancing are constant time per fire time no matter how far ahead it is.  Fire times
+ * are rounded up to the tick, so they never come due early, and the same tick is only held once however many jobs
+ * share it.  Fire times past the top level aren't held; they're left for a later look at the queue.
+ */
+public class TimeWheel {
+
+    private final long tick;
+    private final int slotCount;
+
+    /** The width of a slot on every level */
+    private final long[] spans;
+
+    /** The rounded fire times in every slot of every level */
+    private final Set<Long>[][] slots;
+
+    /** Every tick up to and including this one has been expired */
+    private long current;
+
+    private int size;
+
+    /** A fire time was scheduled that was due already */
+    private boolean overdue;
+
+
+    /**
+     * @param tick the width of the lowest slots in milliseconds
+     * @param slotCount the number of slots on every level
+     * @param horizon how far ahead of now in milliseconds fire times must be held
+     * @param now the time to start the wheel at
+     */
+    @SuppressWarnings( "unchecked" )
+    public TimeWheel( final long tick, final int slotCount, final long horizon, final long now ) {
+        Preconditions.checkArgument( tick > 0, "tick must be greater than 0" );
+        Preconditions.checkArgument( slotCount > 1, "slotCount must be greater than 1" );
+
+        this.tick = tick;
+        this.slotCount = slotCount;
+
+        int levels = 1;
+
+        //the top can't hold fire times in the slot it's turning through, so it only reaches ahead slotCount - 1 slots,
+        //and fire times are up to a tick past the horizon once rounded
+        for ( long span = tick; span * ( slotCount - 1 ) < horizon + tick; span *= slotCount ) {
+            levels++;
+        }
+
+        this.spans = new long[levels];
+        this.slots = new Set[levels][slotCount];
+
+        for ( int level = 0; level < levels; level++ ) {
+            spans[level] = level == 0 ? tick : spans[level - 1] * slotCount;
+
+            for ( int slot = 0; slot < slotCount; slot++ ) {
+                slots[level][slot] = new HashSet<>();
+            }
+        }
+
+        this.current = now - now % tick;
+    }
+
+
+    /**
+     * Hold a fire time until it's due
+     *
+     * @return true if the fire time is due already or is held, false if it's past the top level
+     */
+    public synchronized boolean schedule( final long fireTime ) {
+        final long rounded = fireTime % tick == 0 ? fireTime : fireTime - fireTime % tick + tick;
+
+        if ( rounded <= current ) {
+            overdue = true;
+            return true;
+        }
+
+        return place( rounded );
+    }
+
+
+    /**
+     * Turn the wheel to now
+     *
+     * @return true if any fire time came due since the last advance
+     */
+    public synchronized boolean advance( final long now ) {
+        boolean due = overdue;
+
+        overdue = false;
+
+        //we've been away longer than a full turn of the top level, everything held is due
+        if ( now - current >= spans[spans.length - 1] * slotCount ) {
+            due |= size > 0;
+
+            for ( Set<Long>[] level : slots ) {
+                for ( Set<Long> slot : level ) {
+                    slot.clear();
+                }
+            }
+
+            size = 0;
+            current = now - now % tick;
+
+            return due;
+        }
+
+        while ( current + tick <= now ) {
+            current += tick;
+
+            //cascade from the top, so fire times moved down this tick can still come due on the lowest level
+            for ( int level = spans.length - 1; level >= 0; level-- ) {
+                if ( current % spans[level] != 0 ) {
+                    continue;
+                }
+
+                final Set<Long> slot = slots[level][slotIndex( level, current )];
+
+                for ( Iterator<Long> itr = slot.iterator(); itr.hasNext(); ) {
+                    final long fireTime = itr.next();
+                    itr.remove();
+                    size--;
+
+                    if ( fireTime <= current ) {
+                        due = true;
+                    }
+                    else {
+                        place( fireTime );
+                    }
+                }
+            }
+        }
+
+        return due;
+    }
+
+
+    /**
+     * @return the number of distinct ticks held
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+
+    private boolean place( final long fireTime ) {
+        for ( int level = 0; level < spans.length; level++ ) {
+            final long span = spans[level];
+            final long start = current - current % span;
+
+            if ( fireTime < start + span * slotCount ) {
+                if ( slots[level][slotIndex( level, fireTime )].add( fireTime ) ) {
+                    size++;
+                }
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    private int slotIndex( final int level, final long time ) {
+        return ( int ) ( ( time / spans[level] ) % slotCount );
+    }
+}
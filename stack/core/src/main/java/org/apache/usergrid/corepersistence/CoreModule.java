@@ -53,6 +53,8 @@ import org.apache.usergrid.corepersistence.rx.impl.ResponseImportTasks;
 import org.apache.usergrid.corepersistence.service.AggregationService;
 import org.apache.usergrid.corepersistence.service.AggregationServiceFactory;
 import org.apache.usergrid.corepersistence.service.AggregationServiceImpl;
+import org.apache.usergrid.corepersistence.service.CollectionSizeService;
+import org.apache.usergrid.corepersistence.service.CollectionSizeServiceImpl;
 import org.apache.usergrid.corepersistence.service.ApplicationService;
 import org.apache.usergrid.corepersistence.service.ApplicationServiceImpl;
 import org.apache.usergrid.corepersistence.service.CollectionService;
@@ -167,6 +169,8 @@ public class CoreModule extends AbstractModule {
 
         bind( ReIndexService.class ).to( ReIndexServiceImpl.class );
 
+        bind( CollectionSizeService.class ).to( CollectionSizeServiceImpl.class );
+
         install( new FactoryModuleBuilder().implement( AggregationService.class, AggregationServiceImpl.class )
                                            .build( AggregationServiceFactory.class ) );
 
@@ -73,8 +73,12 @@ import org.apache.usergrid.persistence.cassandra.CassandraService;
 import org.apache.usergrid.persistence.cassandra.ConnectionRefImpl;
 import org.apache.usergrid.persistence.cassandra.CounterUtils;
 import org.apache.usergrid.persistence.cassandra.util.TraceParticipant;
+import org.apache.usergrid.persistence.collection.BatchWriteResult;
 import org.apache.usergrid.persistence.collection.EntityCollectionManager;
 import org.apache.usergrid.persistence.collection.FieldSet;
+import org.apache.usergrid.persistence.collection.MvccLogEntry;
+import org.apache.usergrid.persistence.collection.VersionSet;
+import org.apache.usergrid.persistence.collection.exception.CollectionRuntimeException;
 import org.apache.usergrid.persistence.collection.exception.WriteUniqueVerifyException;
 import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
@@ -388,6 +392,132 @@ public class CpEntityManager implements EntityManager {
     }
 
 
+    @Override
+    public Map<UUID, Exception> createBatch( String entityType, Map<UUID, Map<String, Object>> entities )
+            throws Exception {
+
+        Preconditions.checkNotNull( entities, "entities must not be null" );
+
+        final String eType = Schema.normalizeEntityType( entityType );
+
+        final Map<UUID, Exception> failures = new HashMap<>();
+
+        // events and applications aren't collection members, so they keep the single entity path
+        if ( Event.ENTITY_TYPE.equals( eType ) || TYPE_APPLICATION.equals( eType ) ) {
+            for ( Map.Entry<UUID, Map<String, Object>> entry : entities.entrySet() ) {
+                try {
+                    create( entry.getKey(), entityType, entry.getValue() );
+                }
+                catch ( Exception e ) {
+                    failures.put( entry.getKey(), e );
+                }
+            }
+            return failures;
+        }
+
+        if ( ( applicationId == null ) || applicationId.equals( UUIDUtils.ZERO_UUID ) ) {
+            return failures;
+        }
+
+        Timer.Context timeCassCreation = entCreateBatchTimer.time();
+
+        final Map<Id, Entity> prepared = new LinkedHashMap<>( entities.size() );
+        final Map<Id, Long> timestamps = new HashMap<>( entities.size() );
+        final List<org.apache.usergrid.persistence.model.entity.Entity> cpEntities = new ArrayList<>( entities.size() );
+
+        for ( Map.Entry<UUID, Map<String, Object>> entry : entities.entrySet() ) {
+
+            final UUID importId = entry.getKey();
+
+            Map<String, Object> properties = entry.getValue();
+            if ( properties == null ) {
+                properties = new TreeMap<String, Object>( CASE_INSENSITIVE_ORDER );
+            }
+
+            final long timestamp = getCreateTimestamp( properties, importId, importId );
+
+            final Entity entity;
+            try {
+                entity = newEntity( entityType, null, properties, importId, importId, timestamp );
+            }
+            catch ( RequiredPropertyNotFoundException e ) {
+                failures.put( importId, e );
+                continue;
+            }
+
+            if ( entity == null ) {
+                continue;
+            }
+
+            final org.apache.usergrid.persistence.model.entity.Entity cpEntity = entityToCpEntity( entity, importId );
+
+            prepared.put( cpEntity.getId(), entity );
+            timestamps.put( cpEntity.getId(), timestamp );
+            cpEntities.add( cpEntity );
+        }
+
+        if ( cpEntities.isEmpty() ) {
+            timeCassCreation.stop();
+            return failures;
+        }
+
+        // entities that are imported again already have a collection edge, which must be de-duplicated
+        final VersionSet versions = ecm.getLatestVersion( prepared.keySet() ).toBlocking().last();
+
+        final BatchWriteResult result = ecm.writeBatch( cpEntities ).toBlocking().last();
+
+        for ( Map.Entry<Id, CollectionRuntimeException> failure : result.getFailures().entrySet() ) {
+            final Entity entity = prepared.get( failure.getKey() );
+
+            if ( failure.getValue() instanceof WriteUniqueVerifyException ) {
+                try {
+                    handleWriteUniqueVerifyException( entity, ( WriteUniqueVerifyException ) failure.getValue() );
+                }
+                catch ( DuplicateUniquePropertyExistsException e ) {
+                    failures.put( entity.getUuid(), e );
+                }
+            }
+            else {
+                failures.put( entity.getUuid(), failure.getValue() );
+            }
+        }
+
+        final List<Id> existing = new ArrayList<>();
+        final MapManager mm = getMapManagerForTypes();
+
+        for ( org.apache.usergrid.persistence.model.entity.Entity cpEntity : result.getWritten() ) {
+
+            // reflect changes in the legacy Entity
+            final Entity entity = prepared.get( cpEntity.getId() );
+            entity.setSize( cpEntity.getSize() );
+            entity.setUuid( cpEntity.getId().getUuid() );
+            entity.setProperties( cpEntity );
+
+            if ( versions.getMaxVersion( cpEntity.getId() ) != null ) {
+                existing.add( cpEntity.getId() );
+            }
+        }
+
+        // add to and index in collection of the application
+        final String collectionName = Schema.defaultCollectionName( eType );
+        final CpRelationManager cpr = ( CpRelationManager ) getRelationManager( getApplication() );
+        cpr.addToCollection( collectionName, result.getWritten(), existing );
+
+        for ( org.apache.usergrid.persistence.model.entity.Entity cpEntity : result.getWritten() ) {
+
+            // Invoke counters
+            incrementEntityCollection( collectionName, timestamps.get( cpEntity.getId() ) );
+
+            //write to our types map
+            mm.putString( cpEntity.getId().getUuid().toString(), prepared.get( cpEntity.getId() ).getType() );
+        }
+
+        timeCassCreation.stop();
+
+        return failures;
+    }
+
+
     /**
      * Creates a new entity.
      *
@@ -458,6 +588,32 @@ public class CpEntityManager implements EntityManager {
     }
 
 
+    @Override
+    public UUID getEntityVersion( EntityRef entityRef ) throws Exception {
+
+        if ( entityRef == null ) {
+            return null;
+        }
+
+        Id id = new SimpleId( entityRef.getUuid(), entityRef.getType() );
+
+        //only reads the log entry, the entity itself isn't loaded
+        VersionSet versions = ecm.getLatestVersion( Collections.singletonList( id ) ).toBlocking().lastOrDefault( null );
+
+        if ( versions == null ) {
+            return null;
+        }
+
+        MvccLogEntry logEntry = versions.getMaxVersion( id );
+
+        if ( logEntry == null || logEntry.getState() == MvccLogEntry.State.DELETED ) {
+            return null;
+        }
+
+        return logEntry.getVersion();
+    }
+
+
     @Override
     public <A extends Entity> A get( UUID entityId, Class<A> entityClass ) throws Exception {
         A e = null;
@@ -2486,16 +2642,12 @@ public class CpEntityManager implements EntityManager {
 
         String eType = Schema.normalizeEntityType( entityType );
 
-        Schema schema = Schema.getDefaultSchema();
-
         boolean is_application = TYPE_APPLICATION.equals( eType );
 
         if ( ( ( applicationId == null ) || applicationId.equals( UUIDUtils.ZERO_UUID ) ) && !is_application ) {
             return null;
         }
 
-        long timestamp = UUIDUtils.getUUIDLong( timestampUuid );
-
         UUID itemId = UUIDGenerator.newTimeUUID();
 
         if ( is_application ) {
@@ -2508,83 +2660,14 @@ public class CpEntityManager implements EntityManager {
             properties = new TreeMap<String, Object>( CASE_INSENSITIVE_ORDER );
         }
 
-        if ( importId != null ) {
-            if ( UUIDUtils.isTimeBased( importId ) ) {
-                timestamp = UUIDUtils.getTimestampInMicros( importId );
-            }
-            else if ( properties.get( PROPERTY_CREATED ) != null ) {
-                timestamp = getLong( properties.get( PROPERTY_CREATED ) ) * 1000;
-            }
-        }
+        long timestamp = getCreateTimestamp( properties, importId, timestampUuid );
 
-        if ( entityClass == null ) {
-            entityClass = ( Class<A> ) Schema.getDefaultSchema().getEntityClass( entityType );
-        }
+        A entity = newEntity( entityType, entityClass, properties, importId, itemId, timestamp );
 
-        Set<String> required = schema.getRequiredProperties( entityType );
-
-        if ( required != null ) {
-            for ( String p : required ) {
-                if ( !PROPERTY_UUID.equals( p ) && !PROPERTY_TYPE.equals( p ) && !PROPERTY_CREATED.equals( p )
-                        && !PROPERTY_MODIFIED.equals( p ) ) {
-                    Object v = properties.get( p );
-                    if ( schema.isPropertyTimestamp( entityType, p ) ) {
-                        if ( v == null ) {
-                            properties.put( p, timestamp / 1000 );
-                        }
-                        else {
-                            long ts = getLong( v );
-                            if ( ts <= 0 ) {
-                                properties.put( p, timestamp / 1000 );
-                            }
-                        }
-                        continue;
-                    }
-                    if ( v == null ) {
-                        throw new RequiredPropertyNotFoundException( entityType, p );
-                    }
-                    else if ( ( v instanceof String ) && isBlank( ( String ) v ) ) {
-                        throw new RequiredPropertyNotFoundException( entityType, p );
-                    }
-                }
-            }
-        }
-
-        if ( properties.isEmpty() ) {
+        if ( entity == null ) {
             return null;
         }
 
-        properties.put( PROPERTY_UUID, itemId );
-        properties.put( PROPERTY_TYPE, Schema.normalizeEntityType( entityType, false ) );
-
-        if ( importId != null ) {
-            if ( properties.get( PROPERTY_CREATED ) == null ) {
-                properties.put( PROPERTY_CREATED, ( long ) ( timestamp / 1000 ) );
-            }
-
-            if ( properties.get( PROPERTY_MODIFIED ) == null ) {
-                properties.put( PROPERTY_MODIFIED, ( long ) ( timestamp / 1000 ) );
-            }
-        }
-        else {
-            properties.put( PROPERTY_CREATED, ( long ) ( timestamp / 1000 ) );
-            properties.put( PROPERTY_MODIFIED, ( long ) ( timestamp / 1000 ) );
-        }
-
-        // special case timestamp and published properties
-        // and dictionary their timestamp values if not set
-        // this is sure to break something for someone someday
-
-        if ( properties.containsKey( PROPERTY_TIMESTAMP ) ) {
-            long ts = getLong( properties.get( PROPERTY_TIMESTAMP ) );
-            if ( ts <= 0 ) {
-                properties.put( PROPERTY_TIMESTAMP, ( long ) ( timestamp / 1000 ) );
-            }
-        }
-
-        A entity = EntityFactory.newEntity( itemId, eType, entityClass );
-        entity.addProperties( properties );
-
         //        logger.info( "Entity created of type {}", entity.getClass().getName() );
 
         if ( Event.ENTITY_TYPE.equals( eType ) ) {
@@ -2665,6 +2748,110 @@ public class CpEntityManager implements EntityManager {
     }
 
 
+    /**
+     * Get the cassandra timestamp of a new entity.  Imported entities keep the time they were originally created.
+     */
+    private long getCreateTimestamp( Map<String, Object> properties, UUID importId, UUID timestampUuid ) {
+
+        long timestamp = UUIDUtils.getUUIDLong( timestampUuid );
+
+        if ( importId != null ) {
+            if ( UUIDUtils.isTimeBased( importId ) ) {
+                timestamp = UUIDUtils.getTimestampInMicros( importId );
+            }
+            else if ( properties.get( PROPERTY_CREATED ) != null ) {
+                timestamp = getLong( properties.get( PROPERTY_CREATED ) ) * 1000;
+            }
+        }
+
+        return timestamp;
+    }
+
+
+    /**
+     * Validate the properties of a new entity, fill in its system properties and build the legacy entity.
+     *
+     * @return the entity, or null if it has no properties to write
+     */
+    private <A extends Entity> A newEntity( String entityType, Class<A> entityClass, Map<String, Object> properties,
+                                            UUID importId, UUID itemId, long timestamp ) throws Exception {
+
+        String eType = Schema.normalizeEntityType( entityType );
+
+        Schema schema = Schema.getDefaultSchema();
+
+        if ( entityClass == null ) {
+            entityClass = ( Class<A> ) Schema.getDefaultSchema().getEntityClass( entityType );
+        }
+
+        Set<String> required = schema.getRequiredProperties( entityType );
+
+        if ( required != null ) {
+            for ( String p : required ) {
+                if ( !PROPERTY_UUID.equals( p ) && !PROPERTY_TYPE.equals( p ) && !PROPERTY_CREATED.equals( p )
+                        && !PROPERTY_MODIFIED.equals( p ) ) {
+                    Object v = properties.get( p );
+                    if ( schema.isPropertyTimestamp( entityType, p ) ) {
+                        if ( v == null ) {
+                            properties.put( p, timestamp / 1000 );
+                        }
+                        else {
+                            long ts = getLong( v );
+                            if ( ts <= 0 ) {
+                                properties.put( p, timestamp / 1000 );
+                            }
+                        }
+                        continue;
+                    }
+                    if ( v == null ) {
+                        throw new RequiredPropertyNotFoundException( entityType, p );
+                    }
+                    else if ( ( v instanceof String ) && isBlank( ( String ) v ) ) {
+                        throw new RequiredPropertyNotFoundException( entityType, p );
+                    }
+                }
+            }
+        }
+
+        if ( properties.isEmpty() ) {
+            return null;
+        }
+
+        properties.put( PROPERTY_UUID, itemId );
+        properties.put( PROPERTY_TYPE, Schema.normalizeEntityType( entityType, false ) );
+
+        if ( importId != null ) {
+            if ( properties.get( PROPERTY_CREATED ) == null ) {
+                properties.put( PROPERTY_CREATED, ( long ) ( timestamp / 1000 ) );
+            }
+
+            if ( properties.get( PROPERTY_MODIFIED ) == null ) {
+                properties.put( PROPERTY_MODIFIED, ( long ) ( timestamp / 1000 ) );
+            }
+        }
+        else {
+            properties.put( PROPERTY_CREATED, ( long ) ( timestamp / 1000 ) );
+            properties.put( PROPERTY_MODIFIED, ( long ) ( timestamp / 1000 ) );
+        }
+
+        // special case timestamp and published properties
+        // and dictionary their timestamp values if not set
+        // this is sure to break something for someone someday
+
+        if ( properties.containsKey( PROPERTY_TIMESTAMP ) ) {
+            long ts = getLong( properties.get( PROPERTY_TIMESTAMP ) );
+            if ( ts <= 0 ) {
+                properties.put( PROPERTY_TIMESTAMP, ( long ) ( timestamp / 1000 ) );
+            }
+        }
+
+        A entity = EntityFactory.newEntity( itemId, eType, entityClass );
+        entity.addProperties( properties );
+
+        return entity;
+    }
+
+
     private void incrementEntityCollection( String collection_name, long cassandraTimestamp ) {
         try {
             incrementAggregateCounters( null, null, null,
@@ -18,6 +18,8 @@ package org.apache.usergrid.corepersistence;
 
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -433,6 +435,68 @@ public class CpRelationManager implements RelationManager {
     }
 
 
+    /**
+     * Add a group of entities that were just written to a collection.  The collection edges are written with a single
+     * mutation and queued for indexing as a single index batch.
+     *
+     * @param collectionName The collection to add the entities to
+     * @param memberEntities The written entities
+     * @param existingMembers The ids of the entities that existed before they were written, and may already have an
+     * older edge in the collection
+     */
+    public void addToCollection( final String collectionName,
+                                 final Collection<org.apache.usergrid.persistence.model.entity.Entity> memberEntities,
+                                 final Collection<Id> existingMembers ) {
+
+        Preconditions.checkNotNull( memberEntities, "memberEntities is null" );
+
+        if ( memberEntities.isEmpty() ) {
+            return;
+        }
+
+        CollectionInfo collection = getDefaultSchema().getCollection( headEntity.getType(), collectionName );
+        final String linkedCollection = collection == null ? null : collection.getLinkedCollection();
+
+        final List<Edge> edges = new ArrayList<>( memberEntities.size() );
+        final List<Edge> reverseEdges = new ArrayList<>();
+
+        for ( org.apache.usergrid.persistence.model.entity.Entity memberEntity : memberEntities ) {
+
+            // create graph edge connection from head entity to member entity
+            edges.add( createCollectionEdge( cpHeadEntity.getId(), collectionName, memberEntity.getId() ) );
+
+            if ( linkedCollection != null ) {
+                final String pluralType = InflectionUtils.pluralize( cpHeadEntity.getId().getType() );
+                reverseEdges.add( createCollectionEdge( memberEntity.getId(), pluralType, cpHeadEntity.getId() ) );
+            }
+        }
+
+        GraphManager gm = managerCache.getGraphManager( applicationScope );
+
+        gm.writeEdges( edges ).toBlocking().lastOrDefault( null );
+
+        if ( !reverseEdges.isEmpty() ) {
+            gm.writeEdges( reverseEdges ).toBlocking().lastOrDefault( null );
+            indexService.queueNewEdges( applicationScope, Collections.singletonList( cpHeadEntity ), reverseEdges );
+        }
+
+        indexService.queueNewEdges( applicationScope, memberEntities, edges );
+
+        // remove any duplicate edges (keeps the duplicate edge with same timestamp)
+        if ( !existingMembers.isEmpty() ) {
+            for ( Edge edge : edges ) {
+                if ( existingMembers.contains( edge.getTargetNode() ) ) {
+                    removeDuplicateEdgesAsync( gm, edge );
+                }
+            }
+        }
+
+        if ( logger.isDebugEnabled() ) {
+            logger.debug( "Added {} entities to collection {}", memberEntities.size(), collectionName );
+        }
+    }
+
+
     @Override
     public Entity createItemInCollection( String collectionName, String itemType, Map<String, Object> properties )
         throws Exception {
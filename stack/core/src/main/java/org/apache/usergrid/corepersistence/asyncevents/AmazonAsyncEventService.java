@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -134,10 +135,13 @@ public class AmazonAsyncEventService implements AsyncEventService {
     private final AtomicLong counter = new AtomicLong();
     private final AtomicLong inFlight = new AtomicLong();
     private final Histogram messageCycle;
+    private final AsyncEventMetrics eventMetrics;
     private final MapManager esMapPersistence;
 
-    //the actively running subscription
-    private List<Subscription> subscriptions = new ArrayList<>();
+    //the actively running workers, newest last
+    private final Deque<Worker> workers = new ArrayDeque<>();
+
+    private final AsyncEventWorkerScaler workerScaler;
 
 
     @Inject
@@ -177,6 +181,8 @@ public class AmazonAsyncEventService implements AsyncEventService {
         this.ackTimer = metricsFactory.getTimer(AmazonAsyncEventService.class, "async_event.ack");
         this.indexErrorCounter = metricsFactory.getCounter(AmazonAsyncEventService.class, "async_event.error");
         this.messageCycle = metricsFactory.getHistogram(AmazonAsyncEventService.class, "async_event.message_cycle");
+        this.eventMetrics = new AsyncEventMetrics( metricsFactory );
+        this.workerScaler = new AsyncEventWorkerScaler( this, indexProducer, indexProcessorFig );
 
 
         //wire up the gauge of inflight message
@@ -311,6 +317,9 @@ public class AmazonAsyncEventService implements AsyncEventService {
                 logger.debug("Processing {} event", event);
             }
 
+            final AsyncEventMetrics.EventTypeMetrics eventTypeMetrics = eventMetrics.getEventTypeMetrics( event );
+            final Timer.Context handlerTimer = eventTypeMetrics == null ? null : eventTypeMetrics.startHandling( event );
+
             try {
                 //check for empty sets if this is true
                 boolean validateEmptySets = true;
@@ -359,8 +368,15 @@ public class AmazonAsyncEventService implements AsyncEventService {
                     Optional.fromNullable(indexOperationMessage), thisEvent.getCreationTime());
             } catch (Exception e) {
                 logger.error("Failed to index message: " + message.getMessageId(), message.getStringBody(), e);
+                if ( eventTypeMetrics != null ) {
+                    eventTypeMetrics.markError();
+                }
                 return new IndexEventResult(Optional.absent(), Optional.<IndexOperationMessage>absent(),
                     event.getCreationTime());
+            } finally {
+                if ( handlerTimer != null ) {
+                    handlerTimer.stop();
+                }
             }
         });
 
@@ -421,6 +437,31 @@ public class AmazonAsyncEventService implements AsyncEventService {
         offer( operation );
     }
 
+    @Override
+    public void queueNewEdges(final ApplicationScope applicationScope,
+                              final Collection<Entity> entities,
+                              final Collection<Edge> newEdges) {
+
+        final Map<Id, Entity> targets = new HashMap<>( entities.size() );
+
+        for ( final Entity entity : entities ) {
+            targets.put( entity.getId(), entity );
+        }
+
+        final IndexOperationMessage indexOperationMessage = new IndexOperationMessage();
+
+        for ( final Edge newEdge : newEdges ) {
+            final Entity entity = targets.get( newEdge.getTargetNode() );
+
+            Preconditions.checkArgument( entity != null, "No entity was given for the target of edge %s", newEdge );
+
+            eventBuilder.buildNewEdge( applicationScope, entity, newEdge ).toBlocking()
+                        .forEach( indexOperationMessage::ingest );
+        }
+
+        queueIndexOperationMessage( indexOperationMessage );
+    }
+
     public Observable<IndexOperationMessage> handleEdgeIndex(final QueueMessage message) {
 
         Preconditions.checkNotNull( message, "Queue Message cannot be null for handleEdgeIndex" );
@@ -486,6 +527,17 @@ public class AmazonAsyncEventService implements AsyncEventService {
      * @param indexOperationMessage
      */
     public void queueIndexOperationMessage( final IndexOperationMessage indexOperationMessage ) {
+        queueIndexOperationMessage( indexOperationMessage, System.currentTimeMillis() );
+    }
+
+
+    /**
+     * Queue up an indexOperationMessage for multi region execution
+     * @param indexOperationMessage
+     * @param originTime The creation time of the oldest event the operations were built for
+     */
+    private void queueIndexOperationMessage( final IndexOperationMessage indexOperationMessage,
+                                             final long originTime ) {
 
         // don't try to produce something with nothing
         if(indexOperationMessage.isEmpty()){
@@ -507,7 +559,7 @@ public class AmazonAsyncEventService implements AsyncEventService {
         //now queue up the index message
 
         final ElasticsearchIndexEvent elasticsearchIndexEvent =
-            new ElasticsearchIndexEvent(queueFig.getPrimaryRegion(), newMessageId );
+            new ElasticsearchIndexEvent(queueFig.getPrimaryRegion(), newMessageId, originTime );
 
         //send to the topic so all regions index the batch
 
@@ -558,9 +610,14 @@ public class AmazonAsyncEventService implements AsyncEventService {
         Preconditions.checkArgument( !indexOperationMessage.isEmpty() , "queued indexOperationMessage messages should not be empty" );
 
 
+        eventMetrics.updateIndexBatchSize(
+            indexOperationMessage.getIndexRequests().size() + indexOperationMessage.getDeIndexRequests().size() );
+
         //now execute it
         indexProducer.put(indexOperationMessage).toBlocking().last();
 
+        eventMetrics.updateWriteToSearchable( elasticsearchIndexEvent.getOriginTime() );
+
     }
 
     /**
@@ -594,6 +651,12 @@ public class AmazonAsyncEventService implements AsyncEventService {
     }
 
 
+    @Override
+    public AsyncEventMetrics getMetrics() {
+        return eventMetrics;
+    }
+
+
     @Override
     public long getQueueDepth() {
         return queue.getQueueDepth();
@@ -645,11 +708,16 @@ public class AmazonAsyncEventService implements AsyncEventService {
      * Loop through and start the workers
      */
     public void start() {
-        final int count = indexProcessorFig.getWorkerCount();
+        final int workerCount = indexProcessorFig.getWorkerCount();
 
-        for (int i = 0; i < count; i++) {
-            startWorker();
-        }
+        //the min and max only apply while scaling, otherwise start exactly the workers we were configured with
+        final int count = indexProcessorFig.isWorkerScalingEnabled() ?
+            Math.max( indexProcessorFig.getMinWorkerCount(),
+                Math.min( indexProcessorFig.getMaxWorkerCount(), workerCount ) ) : workerCount;
+
+        setWorkerCount( count );
+
+        workerScaler.start();
     }
 
 
@@ -657,19 +725,58 @@ public class AmazonAsyncEventService implements AsyncEventService {
      * Stop the workers
      */
     public void stop() {
+        workerScaler.stop();
+
         synchronized (mutex) {
             //stop consuming
 
-            for (final Subscription subscription : subscriptions) {
-                subscription.unsubscribe();
+            for (final Worker worker : workers) {
+                worker.stop();
+                worker.subscription.unsubscribe();
+            }
+
+            workers.clear();
+        }
+    }
+
+
+    @Override
+    public int getWorkerCount() {
+        synchronized (mutex) {
+            return workers.size();
+        }
+    }
+
+
+    /**
+     * Start or stop workers until there are count of them.  Stopped workers finish the messages they've taken before
+     * they exit.
+     */
+    @Override
+    public void setWorkerCount( final int count ) {
+        synchronized (mutex) {
+            while ( workers.size() < count ) {
+                startWorker();
+            }
+
+            while ( workers.size() > count ) {
+                workers.removeLast().stop();
             }
         }
     }
 
 
+    @Override
+    public AsyncEventWorkerScaler getWorkerScaler() {
+        return workerScaler;
+    }
+
+
     private void startWorker() {
         synchronized (mutex) {
 
+            final Worker worker = new Worker();
+
             Observable<List<QueueMessage>> consumer =
                     Observable.create( new Observable.OnSubscribe<List<QueueMessage>>() {
                         @Override
@@ -709,7 +816,10 @@ public class AmazonAsyncEventService implements AsyncEventService {
                                     indexErrorCounter.inc();
                                 }
                             }
-                            while ( true );
+                            while ( worker.isRunning() );
+
+                            //let the messages we've taken finish, then we're done
+                            subscriber.onCompleted();
                         }
                     } )        //this won't block our read loop, just reads and proceeds
                         .flatMap( sqsMessages -> {
@@ -722,6 +832,8 @@ public class AmazonAsyncEventService implements AsyncEventService {
                                                      return null;
                                                  }
 
+                                                 final Timer.Context batchTimer = eventMetrics.startBatch();
+
                                                  try {
                                                      List<IndexEventResult> indexEventResults =
                                                          callEventHandlers( messages );
@@ -747,15 +859,37 @@ public class AmazonAsyncEventService implements AsyncEventService {
                                                      return null;
                                                      //do not rethrow so we can process all of them
                                                  }
+                                                 finally {
+                                                     batchTimer.stop();
+                                                 }
                                              } ).subscribeOn( rxTaskScheduler.getAsyncIOScheduler() );
                             //end flatMap
                         }, indexProcessorFig.getEventConcurrencyFactor() );
 
             //start in the background
 
-            final Subscription subscription = consumer.subscribeOn(Schedulers.newThread()).subscribe();
+            worker.subscription = consumer.subscribeOn(Schedulers.newThread()).subscribe();
+
+            workers.addLast( worker );
+        }
+    }
+
+
+    /**
+     * A loop taking messages from the queue, until it's stopped
+     */
+    private static class Worker {
+        private final AtomicBoolean running = new AtomicBoolean( true );
+        private Subscription subscription;
+
+
+        private boolean isRunning() {
+            return running.get();
+        }
+
 
-            subscriptions.add(subscription);
+        private void stop() {
+            running.set( false );
         }
     }
 
@@ -771,6 +905,7 @@ public class AmazonAsyncEventService implements AsyncEventService {
         }
 
         final IndexOperationMessage combined = new IndexOperationMessage();
+        final AtomicLong originTime = new AtomicLong( System.currentTimeMillis() );
 
         //stream and filer the messages
         List<QueueMessage> messagesToAck = indexEventResults.stream()
@@ -778,6 +913,7 @@ public class AmazonAsyncEventService implements AsyncEventService {
                 //collect into the index submission
                 if (indexEventResult.getIndexOperationMessage().isPresent()) {
                     combined.ingest(indexEventResult.getIndexOperationMessage().get());
+                    originTime.set( Math.min( originTime.get(), indexEventResult.getCreationTime() ) );
                 }
                 return indexEventResult;
             })
@@ -792,7 +928,7 @@ public class AmazonAsyncEventService implements AsyncEventService {
             .map(result -> result.getQueueMessage().get())
             .collect(Collectors.toList());
 
-            queueIndexOperationMessage( combined );
+            queueIndexOperationMessage( combined, originTime.get() );
 
         return messagesToAck;
     }
@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.corepersistence.asyncevents;
+
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.usergrid.corepersistence.asyncevents.model.AsyncEvent;
+import org.apache.usergrid.corepersistence.asyncevents.model.EdgeDeleteEvent;
+import org.apache.usergrid.corepersistence.asyncevents.model.EdgeIndexEvent;
+import org.apache.usergrid.corepersistence.asyncevents.model.ElasticsearchIndexEvent;
+import org.apache.usergrid.corepersistence.asyncevents.model.EntityDeleteEvent;
+import org.apache.usergrid.corepersistence.asyncevents.model.EntityIndexEvent;
+import org.apache.usergrid.corepersistence.asyncevents.model.InitializeApplicationIndexEvent;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+
+/**
+ * Metrics of the async event pipeline, broken down by event type.  For each type we track how long events wait in the
+ * queue before they're handled, how long their handler takes and how many of them fail.  Across all types we track the
+ * size of the batches sent to the index, and how long it takes from an event being queued until its index operations
+ * are accepted by Elasticsearch, which is as close as we can measure to the time until a write is searchable.
+ */
+public class AsyncEventMetrics {
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos( 1 );
+
+    private final Map<Class<? extends AsyncEvent>, EventTypeMetrics> eventTypes = new LinkedHashMap<>();
+
+    private final Histogram indexBatchSize;
+    private final Histogram writeToSearchable;
+    private final Timer batchTimer;
+
+
+    public AsyncEventMetrics( final MetricsFactory metricsFactory ) {
+
+        addEventType( metricsFactory, EntityIndexEvent.class, "entity_index" );
+        addEventType( metricsFactory, EdgeIndexEvent.class, "edge_index" );
+        addEventType( metricsFactory, EdgeDeleteEvent.class, "edge_delete" );
+        addEventType( metricsFactory, EntityDeleteEvent.class, "entity_delete" );
+        addEventType( metricsFactory, InitializeApplicationIndexEvent.class, "initialize_application" );
+        addEventType( metricsFactory, ElasticsearchIndexEvent.class, "elasticsearch_index" );
+
+        this.indexBatchSize = metricsFactory.getHistogram( AsyncEventService.class, "async_event.index_batch_size" );
+        this.writeToSearchable =
+            metricsFactory.getHistogram( AsyncEventService.class, "async_event.write_to_searchable" );
+        this.batchTimer = metricsFactory.getTimer( AsyncEventService.class, "async_event.batch" );
+    }
+
+
+    private void addEventType( final MetricsFactory metricsFactory, final Class<? extends AsyncEvent> eventClass,
+                               final String name ) {
+        eventTypes.put( eventClass, new EventTypeMetrics( metricsFactory, name ) );
+    }
+
+
+    /**
+     * Get the metrics of the event's type
+     * @return the metrics, or null if the event isn't of a known type
+     */
+    public EventTypeMetrics getEventTypeMetrics( final AsyncEvent event ) {
+        return event == null ? null : eventTypes.get( event.getClass() );
+    }
+
+
+    /**
+     * Record the size of a batch of index operations sent to the index
+     */
+    public void updateIndexBatchSize( final int size ) {
+        indexBatchSize.update( size );
+    }
+
+
+    /**
+     * Record that the index operations of an event queued at originTime were accepted by the index
+     */
+    public void updateWriteToSearchable( final long originTime ) {
+        writeToSearchable.update( System.currentTimeMillis() - originTime );
+    }
+
+
+    /**
+     * Start timing the handling of a batch of messages taken from the queue, from the first handler until the ack
+     */
+    public Timer.Context startBatch() {
+        return batchTimer.time();
+    }
+
+
+    /**
+     * The 95th percentile of the time taken to handle a batch of messages, in milliseconds
+     */
+    public double getBatchLatency() {
+        return batchTimer.getSnapshot().get95thPercentile() / NANOS_PER_MILLI;
+    }
+
+
+    /**
+     * A point in time view of the metrics, keyed for rendering as json.  Times are in milliseconds.
+     */
+    public Map<String, Object> getSnapshot() {
+
+        final Map<String, Object> types = new LinkedHashMap<>();
+        for ( EventTypeMetrics eventType : eventTypes.values() ) {
+            types.put( eventType.name, eventType.getSnapshot() );
+        }
+
+        final Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put( "eventTypes", types );
+        snapshot.put( "batch", toMap( batchTimer.getSnapshot(), NANOS_PER_MILLI ) );
+        snapshot.put( "indexBatchSize", toMap( indexBatchSize.getSnapshot(), 1 ) );
+        snapshot.put( "writeToSearchable", toMap( writeToSearchable.getSnapshot(), 1 ) );
+        return snapshot;
+    }
+
+
+    private static Map<String, Object> toMap( final Snapshot snapshot, final double divisor ) {
+        final Map<String, Object> values = new LinkedHashMap<>();
+        values.put( "mean", snapshot.getMean() / divisor );
+        values.put( "median", snapshot.getMedian() / divisor );
+        values.put( "p95", snapshot.get95thPercentile() / divisor );
+        values.put( "p99", snapshot.get99thPercentile() / divisor );
+        values.put( "max", snapshot.getMax() / divisor );
+        return values;
+    }
+
+
+    /**
+     * The metrics of a single event type
+     */
+    public static class EventTypeMetrics {
+
+        private final String name;
+        private final Histogram queueLag;
+        private final Timer handlerTimer;
+        private final Counter errors;
+
+
+        private EventTypeMetrics( final MetricsFactory metricsFactory, final String name ) {
+            this.name = name;
+            this.queueLag = metricsFactory.getHistogram( AsyncEventService.class, "async_event." + name + ".queue_lag" );
+            this.handlerTimer = metricsFactory.getTimer( AsyncEventService.class, "async_event." + name + ".handler" );
+            this.errors = metricsFactory.getCounter( AsyncEventService.class, "async_event." + name + ".error" );
+        }
+
+
+        /**
+         * Record that an event has been taken off the queue to be handled, and start timing its handler
+         */
+        public Timer.Context startHandling( final AsyncEvent event ) {
+            queueLag.update( System.currentTimeMillis() - event.getCreationTime() );
+            return handlerTimer.time();
+        }
+
+
+        public void markError() {
+            errors.inc();
+        }
+
+
+        private Map<String, Object> getSnapshot() {
+            final Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put( "handled", handlerTimer.getCount() );
+            snapshot.put( "errors", errors.getCount() );
+            snapshot.put( "ratePerSecond", handlerTimer.getOneMinuteRate() );
+            snapshot.put( "queueLag", toMap( queueLag.getSnapshot(), 1 ) );
+            snapshot.put( "handler", toMap( handlerTimer.getSnapshot(), NANOS_PER_MILLI ) );
+            return snapshot;
+        }
+    }
+}
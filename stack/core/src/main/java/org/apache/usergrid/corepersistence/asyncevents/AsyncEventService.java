@@ -20,6 +20,8 @@
 package org.apache.usergrid.corepersistence.asyncevents;
 
 
+import java.util.Collection;
+
 import org.apache.usergrid.corepersistence.index.ReIndexAction;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.entities.Application;
@@ -63,6 +65,18 @@ public interface AsyncEventService extends ReIndexAction {
      */
     void queueNewEdge(final ApplicationScope applicationScope, final Entity entity, final Edge newEdge);
 
+    /**
+     * Fired when new edges are added to a group of entities at once, such as a bulk import into a collection.  The
+     * index requests of every edge are built immediately and queued as a single index operation message instead of
+     * an event per edge.
+     *
+     * @param applicationScope
+     * @param entities The entities the edges point to
+     * @param newEdges The new edges, each targeting one of the entities
+     */
+    void queueNewEdges(final ApplicationScope applicationScope, final Collection<Entity> entities,
+                       final Collection<Edge> newEdges);
+
     /**
      * Queue the deletion of an edge
      * @param applicationScope
@@ -89,6 +103,30 @@ public interface AsyncEventService extends ReIndexAction {
      */
     long getQueueDepth();
 
+    /**
+     * Latency and throughput metrics of the events processed by this instance
+     * @return
+     */
+    AsyncEventMetrics getMetrics();
+
+    /**
+     * The number of workers consuming events on this instance
+     * @return
+     */
+    int getWorkerCount();
+
+    /**
+     * Start or stop workers until count of them are consuming events on this instance
+     * @param count
+     */
+    void setWorkerCount( final int count );
+
+    /**
+     * The scaler adjusting the number of workers on this instance to the load
+     * @return
+     */
+    AsyncEventWorkerScaler getWorkerScaler();
+
 
 
 }
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.corepersistence.asyncevents;
+
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.corepersistence.index.IndexProcessorFig;
+import org.apache.usergrid.persistence.index.impl.IndexProducer;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+
+/**
+ * Scales the number of workers consuming the async event queue on this node between a floor and a ceiling.  Workers
+ * are added while messages back up in the queue, unless batches are already slow to process, and removed when the
+ * queue drains or Elasticsearch starts rejecting requests.  Scaling can be turned off, and the limits changed, at
+ * runtime.
+ */
+public class AsyncEventWorkerScaler {
+
+    private static final Logger logger = LoggerFactory.getLogger( AsyncEventWorkerScaler.class );
+
+    private final AsyncEventService asyncEventService;
+    private final IndexProducer indexProducer;
+    private final IndexProcessorFig indexProcessorFig;
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile int minWorkers;
+    private volatile int maxWorkers;
+    private volatile boolean enabled;
+
+
+    public AsyncEventWorkerScaler( final AsyncEventService asyncEventService, final IndexProducer indexProducer,
+                                   final IndexProcessorFig indexProcessorFig ) {
+        this.asyncEventService = asyncEventService;
+        this.indexProducer = indexProducer;
+        this.indexProcessorFig = indexProcessorFig;
+
+        this.minWorkers = indexProcessorFig.getMinWorkerCount();
+        this.maxWorkers = Math.max( minWorkers, indexProcessorFig.getMaxWorkerCount() );
+        this.enabled = indexProcessorFig.isWorkerScalingEnabled();
+    }
+
+
+    /**
+     * Start reconsidering the number of workers periodically
+     */
+    public synchronized void start() {
+        if ( scheduler != null ) {
+            return;
+        }
+
+        final long interval = indexProcessorFig.getWorkerScalingInterval();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setDaemon( true ).setNameFormat( "AsyncEventWorkerScaler-%d" ).build() );
+
+        scheduler.scheduleWithFixedDelay( () -> {
+            try {
+                scale();
+            }
+            catch ( Throwable t ) {
+                // keep scaling on the next run
+                logger.error( "Unable to scale the async event workers", t );
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS );
+    }
+
+
+    public synchronized void stop() {
+        if ( scheduler != null ) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+
+    /**
+     * Resize the workers to what the current load calls for, if scaling is enabled
+     */
+    public void scale() {
+        if ( !enabled ) {
+            return;
+        }
+
+        final int current = asyncEventService.getWorkerCount();
+        final long queueDepth = asyncEventService.getQueueDepth();
+        final double batchLatency = asyncEventService.getMetrics().getBatchLatency();
+        final double rejectionRate = indexProducer.getRejectionRate();
+
+        final int target = getTargetWorkerCount( current, minWorkers, maxWorkers, queueDepth, batchLatency,
+            rejectionRate, indexProcessorFig.getWorkerScalingQueueDepth(),
+            indexProcessorFig.getWorkerScalingMaxLatency(), indexProcessorFig.getWorkerScalingMaxRejectionRate() );
+
+        if ( target != current ) {
+            logger.info( "Scaling async event workers from {} to {}, queue depth {}, batch latency {} ms, "
+                + "rejection rate {}/s", current, target, queueDepth, ( long ) batchLatency, rejectionRate );
+
+            asyncEventService.setWorkerCount( target );
+        }
+    }
+
+
+    /**
+     * The number of workers the load calls for.  Backing off Elasticsearch takes precedence over draining the queue,
+     * and workers are added a quarter at a time so a backlog is absorbed quickly, but only removed one at a time.
+     */
+    static int getTargetWorkerCount( final int current, final int min, final int max, final long queueDepth,
+                                     final double batchLatency, final double rejectionRate,
+                                     final int queueDepthPerWorker, final long maxLatency,
+                                     final double maxRejectionRate ) {
+        int target = current;
+
+        if ( rejectionRate > maxRejectionRate ) {
+            target = current - 1;
+        }
+        else if ( queueDepth > ( long ) current * queueDepthPerWorker && batchLatency <= maxLatency ) {
+            target = current + Math.max( 1, current / 4 );
+        }
+        else if ( queueDepth < ( long ) current * queueDepthPerWorker / 4 ) {
+            target = current - 1;
+        }
+
+        return Math.max( min, Math.min( max, target ) );
+    }
+
+
+    /**
+     * Change the limits the workers are scaled between, and bring the current workers within them
+     */
+    public void setLimits( final int min, final int max ) {
+        Preconditions.checkArgument( min > 0, "min must be greater than 0" );
+        Preconditions.checkArgument( max >= min, "max must be at least min" );
+
+        this.minWorkers = min;
+        this.maxWorkers = max;
+
+        final int current = asyncEventService.getWorkerCount();
+        final int target = Math.max( min, Math.min( max, current ) );
+
+        if ( target != current ) {
+            asyncEventService.setWorkerCount( target );
+        }
+    }
+
+
+    /**
+     * Set the number of workers, within the limits.  While scaling is enabled it will move them again as the load
+     * changes.
+     */
+    public void setWorkerCount( final int count ) {
+        asyncEventService.setWorkerCount( Math.max( minWorkers, Math.min( maxWorkers, count ) ) );
+    }
+
+
+    public void setEnabled( final boolean enabled ) {
+        this.enabled = enabled;
+    }
+
+
+    /**
+     * The current workers, limits and the load they're scaled on, keyed for rendering as json
+     */
+    public Map<String, Object> getStatus() {
+        final Map<String, Object> status = new LinkedHashMap<>();
+        status.put( "workers", asyncEventService.getWorkerCount() );
+        status.put( "min", minWorkers );
+        status.put( "max", maxWorkers );
+        status.put( "scalingEnabled", enabled );
+        status.put( "queueDepth", asyncEventService.getQueueDepth() );
+        status.put( "batchLatency", asyncEventService.getMetrics().getBatchLatency() );
+        status.put( "rejectionRate", indexProducer.getRejectionRate() );
+        return status;
+    }
+}
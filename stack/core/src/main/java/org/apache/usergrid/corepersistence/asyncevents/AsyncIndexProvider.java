@@ -28,6 +28,7 @@ import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.index.EntityIndexFactory;
 import org.apache.usergrid.persistence.index.impl.IndexProducer;
 import org.apache.usergrid.persistence.queue.LocalQueueManager;
+import org.apache.usergrid.persistence.queue.impl.LocalDiskQueueManagerImpl;
 import org.apache.usergrid.persistence.map.MapManagerFactory;
 import org.apache.usergrid.persistence.queue.QueueFig;
 import org.apache.usergrid.persistence.queue.QueueManagerFactory;
@@ -104,7 +105,10 @@ public class AsyncIndexProvider implements Provider<AsyncEventService> {
 
         switch (impl) {
             case LOCAL:
-                AmazonAsyncEventService eventService = new AmazonAsyncEventService(scope -> new LocalQueueManager(), indexProcessorFig, indexProducer, metricsFactory,
+                final QueueManagerFactory localQueueFactory = queueFig.isLocalQueuePersistent()
+                    ? scope -> new LocalDiskQueueManagerImpl( scope, queueFig )
+                    : scope -> new LocalQueueManager();
+                AmazonAsyncEventService eventService = new AmazonAsyncEventService(localQueueFactory, indexProcessorFig, indexProducer, metricsFactory,
                     entityCollectionManagerFactory, indexLocationStrategyFactory, entityIndexFactory, eventBuilder,mapManagerFactory, queueFig,rxTaskScheduler);
                 eventService.MAX_TAKE = 1000;
                 return eventService;
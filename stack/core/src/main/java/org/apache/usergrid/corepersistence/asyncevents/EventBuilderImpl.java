@@ -28,6 +28,8 @@ import org.slf4j.LoggerFactory;
 
 import org.apache.usergrid.corepersistence.index.EntityIndexOperation;
 import org.apache.usergrid.corepersistence.index.IndexService;
+import org.apache.usergrid.corepersistence.service.CollectionSizeService;
+import org.apache.usergrid.corepersistence.util.CpNamingUtils;
 import org.apache.usergrid.persistence.Schema;
 import org.apache.usergrid.persistence.collection.EntityCollectionManager;
 import org.apache.usergrid.persistence.collection.EntityCollectionManagerFactory;
@@ -60,16 +62,19 @@ public class EventBuilderImpl implements EventBuilder {
     private final EntityCollectionManagerFactory entityCollectionManagerFactory;
     private final GraphManagerFactory graphManagerFactory;
     private final SerializationFig serializationFig;
+    private final CollectionSizeService collectionSizeService;
 
 
     @Inject
     public EventBuilderImpl( final IndexService indexService,
                              final EntityCollectionManagerFactory entityCollectionManagerFactory,
-                             final GraphManagerFactory graphManagerFactory, final SerializationFig serializationFig ) {
+                             final GraphManagerFactory graphManagerFactory, final SerializationFig serializationFig,
+                             final CollectionSizeService collectionSizeService ) {
         this.indexService = indexService;
         this.entityCollectionManagerFactory = entityCollectionManagerFactory;
         this.graphManagerFactory = graphManagerFactory;
         this.serializationFig = serializationFig;
+        this.collectionSizeService = collectionSizeService;
     }
 
 
@@ -96,7 +101,15 @@ public class EventBuilderImpl implements EventBuilder {
                 new Object[]{entity, applicationScope, newEdge});
         }
 
-        return indexService.indexEdge( applicationScope, entity, newEdge );
+        final Observable<IndexOperationMessage> edgeIndex = indexService.indexEdge( applicationScope, entity, newEdge );
+
+        //batch creates are indexed through their collection edge only, so they're counted here
+        if ( CpNamingUtils.isCollectionEdgeType( newEdge.getType() ) && newEdge.getSourceNode()
+            .equals( applicationScope.getApplication() ) ) {
+            return edgeIndex.doOnCompleted( () -> collectionSizeService.entityIndexed( applicationScope, entity ) );
+        }
+
+        return edgeIndex;
     }
 
 
@@ -140,6 +153,8 @@ public class EventBuilderImpl implements EventBuilder {
         Observable<List<MvccLogEntry>> ecmDeleteObservable = Observable.empty();
 
         if(mostRecentlyMarked != null){
+            collectionSizeService.entityDeleted( applicationScope, entityId );
+
             deIndexObservable =
                 indexService.deleteEntityIndexes( applicationScope, entityId, mostRecentlyMarked.getVersion() );
 
@@ -181,6 +196,8 @@ public class EventBuilderImpl implements EventBuilder {
                 //only re-index if it has been updated and been updated after our timestamp
                 return modified.getValue() >= entityIndexOperation.getUpdatedSince();
             } )
+            //keep the collection counters in step with what gets indexed
+            .doOnNext( entity -> collectionSizeService.entityIndexed( applicationScope, entity ) )
             //perform indexing on the task scheduler and start it
             .flatMap( entity -> indexService.indexEntity( applicationScope, entity ) );
     }
@@ -32,12 +32,20 @@ public final class ElasticsearchIndexEvent extends AsyncEvent {
     @JsonProperty
     protected UUID indexBatchId;
 
+    @JsonProperty
+    protected long originTime;
+
     public ElasticsearchIndexEvent() {
     }
 
     public ElasticsearchIndexEvent(String sourceRegion, UUID indexBatchId) {
+        this( sourceRegion, indexBatchId, System.currentTimeMillis() );
+    }
+
+    public ElasticsearchIndexEvent(String sourceRegion, UUID indexBatchId, long originTime) {
         super(sourceRegion);
         this.indexBatchId = indexBatchId;
+        this.originTime = originTime;
     }
 
 
@@ -48,4 +56,14 @@ public final class ElasticsearchIndexEvent extends AsyncEvent {
     public UUID getIndexBatchId() {
         return indexBatchId;
     }
+
+
+    /**
+     * The creation time of the oldest event whose index operations are in the batch.  Events queued before this was
+     * recorded don't have it, so fall back to when the batch itself was queued.
+     * @return
+     */
+    public long getOriginTime() {
+        return originTime > 0 ? originTime : creationTime;
+    }
 }
@@ -67,4 +67,12 @@ public interface CoreIndexFig extends GuicyFig {
     @Default( "0" )
     @Key( "elasticsearch.index_bucket_offset" )
     int getBucketOffset();
+
+    /**
+     * How often, in milliseconds, the counted size of a collection is checked against the index.  0 to always read the
+     * size from the index.
+     */
+    @Default( "3600000" )
+    @Key( "elasticsearch.collection_size.reconcile_interval" )
+    long getCollectionSizeReconcileInterval();
 }
@@ -36,6 +36,20 @@ public interface IndexProcessorFig extends GuicyFig {
 
     String ELASTICSEARCH_WORKER_COUNT = "elasticsearch.worker_count";
 
+    String ELASTICSEARCH_WORKER_COUNT_MIN = "elasticsearch.worker_count.min";
+
+    String ELASTICSEARCH_WORKER_COUNT_MAX = "elasticsearch.worker_count.max";
+
+    String WORKER_SCALING_ENABLED = "elasticsearch.worker_scaling.enabled";
+
+    String WORKER_SCALING_INTERVAL = "elasticsearch.worker_scaling.interval";
+
+    String WORKER_SCALING_QUEUE_DEPTH = "elasticsearch.worker_scaling.queue_depth_per_worker";
+
+    String WORKER_SCALING_MAX_LATENCY = "elasticsearch.worker_scaling.max_latency";
+
+    String WORKER_SCALING_MAX_REJECTION_RATE = "elasticsearch.worker_scaling.max_rejection_rate";
+
     String EVENT_CONCURRENCY_FACTOR = "event.concurrency.factor";
 
     String ELASTICSEARCH_QUEUE_IMPL = "elasticsearch.queue_impl";
@@ -46,6 +60,10 @@ public interface IndexProcessorFig extends GuicyFig {
 
     String REINDEX_BUFFER_SIZE = "elasticsearch.reindex.buffer_size";
 
+    String REINDEX_CONCURRENCY = "elasticsearch.reindex.concurrency";
+
+    String REINDEX_MAX_RATE = "elasticsearch.reindex.max_rate";
+
 
     /**
      * Set the amount of time to wait when Elasticsearch rejects a requests before
@@ -87,6 +105,59 @@ public interface IndexProcessorFig extends GuicyFig {
     @Key(ELASTICSEARCH_WORKER_COUNT)
     int getWorkerCount();
 
+    /**
+     * The fewest workers reading from the queue when the worker count is scaled with the load.
+     */
+    @Default("4")
+    @Key(ELASTICSEARCH_WORKER_COUNT_MIN)
+    int getMinWorkerCount();
+
+    /**
+     * The most workers reading from the queue when the worker count is scaled with the load.
+     */
+    @Default("64")
+    @Key(ELASTICSEARCH_WORKER_COUNT_MAX)
+    int getMaxWorkerCount();
+
+    /**
+     * Scale the number of workers between the min and max worker count with the queue depth, the time taken to
+     * process a batch of messages, and how often Elasticsearch rejects requests.  Off by default, the worker count is
+     * then used as is.
+     */
+    @Default("false")
+    @Key(WORKER_SCALING_ENABLED)
+    boolean isWorkerScalingEnabled();
+
+    /**
+     * How often to reconsider the number of workers. (in milliseconds)
+     */
+    @Default("30000")
+    @Key(WORKER_SCALING_INTERVAL)
+    long getWorkerScalingInterval();
+
+    /**
+     * Add workers when there are more than this many messages waiting per worker, remove them when there are fewer
+     * than a quarter of this.
+     */
+    @Default("100")
+    @Key(WORKER_SCALING_QUEUE_DEPTH)
+    int getWorkerScalingQueueDepth();
+
+    /**
+     * Don't add workers when the 95th percentile of the time to process a batch of messages is above this, since
+     * whatever they wait on is already saturated. (in milliseconds)
+     */
+    @Default("10000")
+    @Key(WORKER_SCALING_MAX_LATENCY)
+    long getWorkerScalingMaxLatency();
+
+    /**
+     * Remove workers when Elasticsearch rejects more bulk requests per second than this.
+     */
+    @Default("1.0")
+    @Key(WORKER_SCALING_MAX_REJECTION_RATE)
+    double getWorkerScalingMaxRejectionRate();
+
     /**
      * Set the implementation to use for queuing.
      * Valid values: TEST, LOCAL, SQS, SNS
@@ -100,6 +171,20 @@ public interface IndexProcessorFig extends GuicyFig {
     @Key(REINDEX_BUFFER_SIZE)
     int getReindexBufferSize();
 
+    /**
+     * The number of partitions, an application collection each, a single re-index job processes at the same time.
+     */
+    @Default("4")
+    @Key(REINDEX_CONCURRENCY)
+    int getReindexConcurrency();
+
+    /**
+     * The most entities per second a single re-index job sends to be indexed. 0 to not throttle.
+     */
+    @Default("0")
+    @Key(REINDEX_MAX_RATE)
+    double getReindexMaxRate();
+
     /**
      * Flag to resolve the LOCAL queue implementation service synchronously.
      */
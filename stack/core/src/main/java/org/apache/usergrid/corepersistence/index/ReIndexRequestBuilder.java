@@ -45,7 +45,7 @@ public interface ReIndexRequestBuilder {
     ReIndexRequestBuilder withCollection( final String collectionName );
 
     /**
-     * Set our cursor to resume processing
+     * Set our cursor to resume processing.  This is the job id of the re-index to resume
      * @param cursor
      * @return
      */
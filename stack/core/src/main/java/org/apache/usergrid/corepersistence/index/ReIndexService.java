@@ -20,6 +20,10 @@
 package org.apache.usergrid.corepersistence.index;
 
 
+import java.util.Collections;
+import java.util.List;
+
+
 /**
  * An interface for re-indexing all entities in an application
  */
@@ -42,7 +46,7 @@ public interface ReIndexService {
 
     /**
      * Get the status of a job
-     * @param jobId The jobId returned during the rebuild index
+     * @param jobId The jobId returned during the rebuild index.  It's also the cursor to resume the job with
      * @return
      */
     ReIndexStatus getStatus( final String jobId );
@@ -56,14 +60,22 @@ public interface ReIndexService {
         final Status status;
         final long numberProcessed;
         final long lastUpdated;
+        final List<PartitionStatus> partitions;
 
 
         public ReIndexStatus( final String jobId, final Status status, final long numberProcessed,
                               final long lastUpdated ) {
+            this( jobId, status, numberProcessed, lastUpdated, Collections.<PartitionStatus>emptyList() );
+        }
+
+
+        public ReIndexStatus( final String jobId, final Status status, final long numberProcessed,
+                              final long lastUpdated, final List<PartitionStatus> partitions ) {
             this.jobId = jobId;
             this.status = status;
             this.numberProcessed = numberProcessed;
             this.lastUpdated = lastUpdated;
+            this.partitions = partitions;
         }
 
 
@@ -100,9 +112,82 @@ public interface ReIndexService {
         public Status getStatus() {
             return status;
         }
+
+
+        /**
+         * Get the status of every application collection the job re-indexes
+         * @return
+         */
+        public List<PartitionStatus> getPartitions() {
+            return partitions;
+        }
+    }
+
+
+    /**
+     * The progress of re-indexing a single collection of an application
+     */
+    public class PartitionStatus {
+        final String applicationId;
+        final String collectionName;
+        final Status status;
+        final long numberProcessed;
+        final long started;
+        final long lastUpdated;
+
+
+        public PartitionStatus( final String applicationId, final String collectionName, final Status status,
+                                final long numberProcessed, final long started, final long lastUpdated ) {
+            this.applicationId = applicationId;
+            this.collectionName = collectionName;
+            this.status = status;
+            this.numberProcessed = numberProcessed;
+            this.started = started;
+            this.lastUpdated = lastUpdated;
+        }
+
+
+        public String getApplicationId() {
+            return applicationId;
+        }
+
+
+        public String getCollectionName() {
+            return collectionName;
+        }
+
+
+        public Status getStatus() {
+            return status;
+        }
+
+
+        public long getNumberProcessed() {
+            return numberProcessed;
+        }
+
+
+        public long getLastUpdated() {
+            return lastUpdated;
+        }
+
+
+        /**
+         * Get the number of records processed per second since the partition started
+         * @return
+         */
+        public double getRate() {
+            final long elapsed = lastUpdated - started;
+
+            if ( elapsed <= 0 ) {
+                return 0;
+            }
+
+            return numberProcessed * 1000d / elapsed;
+        }
     }
 
     enum Status{
-        STARTED, INPROGRESS, COMPLETE, UNKNOWN;
+        STARTED, INPROGRESS, COMPLETE, FAILED, UNKNOWN;
     }
 }
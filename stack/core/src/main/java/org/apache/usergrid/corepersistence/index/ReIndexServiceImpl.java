@@ -20,7 +20,12 @@
 package org.apache.usergrid.corepersistence.index;
 
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 import org.apache.usergrid.persistence.index.EntityIndexFactory;
@@ -29,7 +34,6 @@ import org.slf4j.LoggerFactory;
 
 import org.apache.usergrid.corepersistence.asyncevents.AsyncEventService;
 import org.apache.usergrid.corepersistence.pipeline.cursor.CursorSerializerUtil;
-import org.apache.usergrid.corepersistence.pipeline.read.CursorSeek;
 import org.apache.usergrid.corepersistence.rx.impl.AllApplicationsObservable;
 import org.apache.usergrid.corepersistence.rx.impl.AllEntityIdsObservable;
 import org.apache.usergrid.corepersistence.rx.impl.EdgeScope;
@@ -37,6 +41,8 @@ import org.apache.usergrid.corepersistence.util.CpNamingUtils;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.core.util.StringUtils;
 import org.apache.usergrid.persistence.graph.Edge;
+import org.apache.usergrid.persistence.graph.GraphManagerFactory;
+import org.apache.usergrid.persistence.graph.impl.SimpleSearchEdgeType;
 import org.apache.usergrid.persistence.map.MapManager;
 import org.apache.usergrid.persistence.map.MapManagerFactory;
 import org.apache.usergrid.persistence.map.MapScope;
@@ -44,8 +50,12 @@ import org.apache.usergrid.persistence.map.impl.MapScopeImpl;
 import org.apache.usergrid.persistence.model.util.UUIDGenerator;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.RateLimiter;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
@@ -53,6 +63,11 @@ import rx.Observable;
 import rx.schedulers.Schedulers;
 
 
+/**
+ * Re-indexes applications one partition at a time, a partition being a single collection of an application.  Every
+ * partition keeps its own checkpoint so a job can be resumed with its job id as the cursor, skipping the partitions
+ * that already completed and restarting the others from their last flushed edge.
+ */
 @Singleton
 public class ReIndexServiceImpl implements ReIndexService {
 
@@ -64,15 +79,28 @@ public class ReIndexServiceImpl implements ReIndexService {
     //Keep cursors to resume re-index for 10 days.  This is far beyond it's useful real world implications anyway.
     private static final int INDEX_TTL = 60 * 60 * 24 * 10;
 
-    private static final String MAP_CURSOR_KEY = "cursor";
     private static final String MAP_COUNT_KEY = "count";
     private static final String MAP_STATUS_KEY = "status";
     private static final String MAP_UPDATED_KEY = "lastUpdated";
+    private static final String MAP_PARTITIONS_KEY = "partitions";
+    private static final String MAP_PARTITION_KEY = "partition:";
+
+    private static final String FIELD_APPLICATION = "application";
+    private static final String FIELD_EDGE_TYPE = "edgeType";
+    private static final String FIELD_STATUS = "status";
+    private static final String FIELD_COUNT = "count";
+    private static final String FIELD_STARTED = "started";
+    private static final String FIELD_UPDATED = "updated";
+    private static final String FIELD_CURSOR = "cursor";
+
+    //the partitions and their state can outgrow a cursor, so they're stored as plain json
+    private static final ObjectMapper MAPPER = new ObjectMapper();
 
 
     private final AllApplicationsObservable allApplicationsObservable;
     private final IndexLocationStrategyFactory indexLocationStrategyFactory;
     private final AllEntityIdsObservable allEntityIdsObservable;
+    private final GraphManagerFactory graphManagerFactory;
     private final IndexProcessorFig indexProcessorFig;
     private final MapManager mapManager;
     private final AsyncEventService indexService;
@@ -83,6 +111,7 @@ public class ReIndexServiceImpl implements ReIndexService {
     public ReIndexServiceImpl( final EntityIndexFactory entityIndexFactory,
                                final IndexLocationStrategyFactory indexLocationStrategyFactory,
                                final AllEntityIdsObservable allEntityIdsObservable,
+                               final GraphManagerFactory graphManagerFactory,
                                final MapManagerFactory mapManagerFactory,
                                final AllApplicationsObservable allApplicationsObservable,
                                final IndexProcessorFig indexProcessorFig,
@@ -90,6 +119,7 @@ public class ReIndexServiceImpl implements ReIndexService {
         this.entityIndexFactory = entityIndexFactory;
         this.indexLocationStrategyFactory = indexLocationStrategyFactory;
         this.allEntityIdsObservable = allEntityIdsObservable;
+        this.graphManagerFactory = graphManagerFactory;
         this.allApplicationsObservable = allApplicationsObservable;
         this.indexProcessorFig = indexProcessorFig;
         this.indexService = indexService;
@@ -101,47 +131,53 @@ public class ReIndexServiceImpl implements ReIndexService {
     @Override
     public ReIndexStatus rebuildIndex( final ReIndexRequestBuilder reIndexRequestBuilder ) {
 
-        //load our last emitted Scope if a cursor is present
-
-        final Optional<EdgeScope> cursor = parseCursor( reIndexRequestBuilder.getCursor() );
-
+        //the cursor is the id of the job to resume
 
-        final CursorSeek<Edge> cursorSeek = getResumeEdge( cursor );
+        final Optional<String> cursor = reIndexRequestBuilder.getCursor();
 
         final Optional<ApplicationScope> appId = reIndexRequestBuilder.getApplicationScope();
 
         Preconditions.checkArgument( !(cursor.isPresent() && appId.isPresent()),
             "You cannot specify an app id and a cursor.  When resuming with cursor you must omit the appid" );
 
-        final Observable<ApplicationScope> applicationScopes = getApplications( cursor, appId );
+        final String jobId;
 
+        final Observable<Partition> partitions;
 
-        final String jobId = StringUtils.sanitizeUUID( UUIDGenerator.newTimeUUID() );
+        if ( cursor.isPresent() ) {
+            jobId = cursor.get();
 
-        final long modifiedSince = reIndexRequestBuilder.getUpdateTimestamp().or( Long.MIN_VALUE );
+            final List<Partition> resumed = readPartitions( jobId );
 
-        // create an observable that loads a batch to be indexed
+            Preconditions.checkArgument( resumed != null, "No re-index job to resume exists with id " + jobId );
 
-        final Observable<List<EdgeScope>> runningReIndex = allEntityIdsObservable.getEdgesToEntities( applicationScopes,
-            reIndexRequestBuilder.getCollectionName(), cursorSeek.getSeekValue() )
-            .buffer( indexProcessorFig.getReindexBufferSize())
-            .doOnNext(edges -> {
+            partitions = Observable.from( resumed );
+        }
+        else {
+            jobId = StringUtils.sanitizeUUID( UUIDGenerator.newTimeUUID() );
 
-                if(logger.isInfoEnabled()) {
-                    logger.info("Sending batch of {} to be indexed.", edges.size());
-                }
-                indexService.indexBatch(edges, modifiedSince);
+            //persist every partition up front, a resumed job needs to know about the ones that never started
+            partitions = getPartitions( getApplications( appId ), reIndexRequestBuilder.getCollectionName() ).toList()
+                .doOnNext( list -> writePartitions( jobId, list ) ).flatMap( list -> Observable.from( list ) );
+        }
 
-            });
+        final long modifiedSince = reIndexRequestBuilder.getUpdateTimestamp().or( Long.MIN_VALUE );
+
+        final ReIndexJob job = new ReIndexJob( jobId, modifiedSince );
 
+        job.start();
 
-        //start our sampler and state persistence
-        //take a sample every sample interval to allow us to resume state with minimal loss
-        //create our flushing collector and flush the edge scopes to it
-        runningReIndex.collect(() -> new FlushingCollector(jobId),
-            ((flushingCollector, edgeScopes) -> flushingCollector.flushBuffer(edgeScopes))).doOnNext( flushingCollector-> flushingCollector.complete() )
-                //subscribe on our I/O scheduler and run the task
-            .subscribeOn( Schedulers.io() ).subscribe(); //want reindex to continually run so leave subscribe.
+        //run a bounded number of partitions at once, each one flushes its own checkpoint after every batch
+        partitions
+            .flatMap( partition -> reIndexPartition( job, partition ).subscribeOn( Schedulers.io() ),
+                indexProcessorFig.getReindexConcurrency() )
+            .doOnCompleted( () -> job.complete() )
+            //subscribe on our I/O scheduler and run the task
+            .subscribeOn( Schedulers.io() ).subscribe( batch -> { }, t -> {
+                logger.error( "Unable to re-index job {}", jobId, t );
+                job.fail();
+                job.complete();
+            } ); //want reindex to continually run so leave subscribe.
 
 
         return new ReIndexStatus( jobId, Status.STARTED, 0, 0 );
@@ -162,16 +198,131 @@ public class ReIndexServiceImpl implements ReIndexService {
 
 
     /**
-     * Simple collector that counts state, then flushed every time a buffer is provided.  Writes final state when complete
+     * Re-index a single partition from its checkpoint, if it has one
      */
-    private class FlushingCollector {
+    private Observable<List<EdgeScope>> reIndexPartition( final ReIndexJob job, final Partition partition ) {
+
+        final PartitionState state = readPartitionState( job.jobId, partition );
+
+        if ( state.status == Status.COMPLETE ) {
+            job.resumed( state.count );
+            return Observable.empty();
+        }
+
+        final PartitionProgress progress = new PartitionProgress( job, partition, state );
+
+        if ( logger.isInfoEnabled() ) {
+            logger.info( "Re-indexing {} of application {} from {} for job {}", partition.edgeType,
+                partition.applicationScope.getApplication().getUuid(), state.count, job.jobId );
+        }
+
+        return allEntityIdsObservable
+            .getEdgesToEntities( Observable.just( partition.applicationScope ), Optional.of( partition.edgeType ),
+                state.cursor ).buffer( indexProcessorFig.getReindexBufferSize() ).doOnNext( edges -> {
+
+                job.throttle( edges.size() );
+
+                if ( logger.isDebugEnabled() ) {
+                    logger.debug( "Sending batch of {} to be indexed.", edges.size() );
+                }
+
+                indexService.indexBatch( edges, job.modifiedSince );
+
+                progress.flushBuffer( edges );
+            } ).doOnCompleted( () -> progress.complete() ).onErrorResumeNext( t -> {
+
+                //leave the checkpoint in place so the partition restarts from it on resume
+                logger.error( "Unable to re-index {} of application {} for job {}", partition.edgeType,
+                    partition.applicationScope.getApplication().getUuid(), job.jobId, t );
+
+                progress.fail();
+
+                return Observable.empty();
+            } );
+    }
+
+
+    /**
+     * The state of a whole job. Counts are shared by all of its partitions, that are processed concurrently
+     */
+    private class ReIndexJob {
 
         private final String jobId;
-        private long count;
+        private final long modifiedSince;
+        private final AtomicLong count = new AtomicLong();
+        private final RateLimiter rateLimiter;
+        private volatile boolean failed;
 
 
-        private FlushingCollector( final String jobId ) {
+        private ReIndexJob( final String jobId, final long modifiedSince ) {
             this.jobId = jobId;
+            this.modifiedSince = modifiedSince;
+
+            final double maxRate = indexProcessorFig.getReindexMaxRate();
+            this.rateLimiter = maxRate > 0 ? RateLimiter.create( maxRate ) : null;
+        }
+
+
+        public void start() {
+            writeStateMeta( jobId, Status.STARTED, count.get(), System.currentTimeMillis() );
+        }
+
+
+        /**
+         * Wait until the batch fits in our configured rate
+         */
+        public void throttle( final int size ) {
+            if ( rateLimiter != null && size > 0 ) {
+                rateLimiter.acquire( size );
+            }
+        }
+
+
+        /**
+         * Count what a partition processed before this job was resumed
+         */
+        public void resumed( final long processed ) {
+            count.addAndGet( processed );
+        }
+
+
+        public void flushBuffer( final int size ) {
+            writeStateMeta( jobId, Status.INPROGRESS, count.addAndGet( size ), System.currentTimeMillis() );
+        }
+
+
+        public void fail() {
+            failed = true;
+        }
+
+
+        public void complete() {
+            writeStateMeta( jobId, failed ? Status.FAILED : Status.COMPLETE, count.get(),
+                System.currentTimeMillis() );
+        }
+    }
+
+
+    /**
+     * Counts the state of a single partition, and writes its checkpoint every time a buffer is flushed
+     */
+    private class PartitionProgress {
+
+        private final ReIndexJob job;
+        private final Partition partition;
+        private final long started;
+        private long count;
+        private EdgeScope last;
+
+
+        private PartitionProgress( final ReIndexJob job, final Partition partition, final PartitionState state ) {
+            this.job = job;
+            this.partition = partition;
+            //a resumed partition reports its throughput since it first started
+            this.started = state.started > 0 ? state.started : System.currentTimeMillis();
+            this.count = state.count;
+
+            job.resumed( state.count );
         }
 
 
@@ -180,49 +331,51 @@ public class ReIndexServiceImpl implements ReIndexService {
 
             //write our cursor state
             if ( buffer.size() > 0 ) {
-                writeCursorState( jobId, buffer.get( buffer.size() - 1 ) );
+                last = buffer.get( buffer.size() - 1 );
             }
 
-            writeStateMeta( jobId, Status.INPROGRESS, count, System.currentTimeMillis() );
+            writePartitionState( job.jobId, partition, Status.INPROGRESS, count, started, last );
+
+            job.flushBuffer( buffer.size() );
+        }
+
+
+        public void fail() {
+            writePartitionState( job.jobId, partition, Status.FAILED, count, started, last );
+            job.fail();
         }
 
-        public void complete(){
-            writeStateMeta( jobId, Status.COMPLETE, count, System.currentTimeMillis() );
+
+        public void complete() {
+            writePartitionState( job.jobId, partition, Status.COMPLETE, count, started, last );
         }
     }
 
 
     /**
-     * Get the resume edge scope
-     *
-     * @param edgeScope The optional edge scope from the cursor
+     * Get every partition of the applications, either every collection or only the one requested
      */
-    private CursorSeek<Edge> getResumeEdge( final Optional<EdgeScope> edgeScope ) {
+    private Observable<Partition> getPartitions( final Observable<ApplicationScope> applicationScopes,
+                                                 final Optional<String> edgeType ) {
 
+        return applicationScopes.flatMap( applicationScope -> {
 
-        if ( edgeScope.isPresent() ) {
-            return new CursorSeek<>( Optional.of( edgeScope.get().getEdge() ) );
-        }
+            final Observable<String> edgeTypes = edgeType.isPresent() ? Observable.just( edgeType.get() ) :
+                graphManagerFactory.createEdgeManager( applicationScope ).getEdgeTypesFromSource(
+                    new SimpleSearchEdgeType( applicationScope.getApplication(), null, null ) );
 
-        return new CursorSeek<>( Optional.absent() );
+            return edgeTypes.map( type -> new Partition( applicationScope, type ) );
+        } );
     }
 
 
     /**
      * Generate an observable for our appliation scope
      */
-    private Observable<ApplicationScope> getApplications( final Optional<EdgeScope> cursor,
-                                                          final Optional<ApplicationScope> appId ) {
-        //cursor is present use it and skip until we hit that app
-        if (cursor.isPresent()) {
+    private Observable<ApplicationScope> getApplications( final Optional<ApplicationScope> appId ) {
 
-            final EdgeScope cursorValue = cursor.get();
-            //we have a cursor and an application scope that was used.
-            return allApplicationsObservable.getData().skipWhile(
-                applicationScope -> !cursorValue.getApplicationScope().equals(applicationScope));
-        }
         //this is intentional.  If
-        else if (appId.isPresent()) {
+        if (appId.isPresent()) {
             return Observable.just(appId.get());
         }
 
@@ -237,39 +390,114 @@ public class ReIndexServiceImpl implements ReIndexService {
 
 
     /**
-     * Swap our cursor for an optional edgescope
+     * Write every partition of the job so it can be resumed
      */
-    private Optional<EdgeScope> parseCursor( final Optional<String> cursor ) {
+    private void writePartitions( final String jobId, final List<Partition> partitions ) {
+
+        final ArrayNode node = MAPPER.createArrayNode();
 
-        if ( !cursor.isPresent() ) {
-            return Optional.absent();
+        for ( final Partition partition : partitions ) {
+            node.addObject().put( FIELD_APPLICATION, partition.applicationScope.getApplication().getUuid().toString() )
+                .put( FIELD_EDGE_TYPE, partition.edgeType );
         }
 
-        //get our cursor
-        final String persistedCursor = mapManager.getString( cursor.get() );
+        if ( logger.isInfoEnabled() ) {
+            logger.info( "Re-indexing {} partitions for job {}", partitions.size(), jobId );
+        }
+
+        mapManager.putString( jobId + MAP_PARTITIONS_KEY, node.toString(), INDEX_TTL );
+    }
+
+
+    /**
+     * Read the partitions of a job, null if the job doesn't exist
+     */
+    private List<Partition> readPartitions( final String jobId ) {
+
+        final String persisted = mapManager.getString( jobId + MAP_PARTITIONS_KEY );
 
-        if ( persistedCursor == null ) {
-            return Optional.absent();
+        if ( persisted == null ) {
+            return null;
         }
 
-        final JsonNode node = CursorSerializerUtil.fromString( persistedCursor );
+        final List<Partition> partitions = new ArrayList<>();
 
-        final EdgeScope edgeScope = EdgeScopeSerializer.INSTANCE.fromJsonNode( node, CursorSerializerUtil.getMapper() );
+        for ( final JsonNode node : readTree( persisted ) ) {
+            partitions.add( new Partition(
+                CpNamingUtils.getApplicationScope( UUID.fromString( node.get( FIELD_APPLICATION ).asText() ) ),
+                node.get( FIELD_EDGE_TYPE ).asText() ) );
+        }
 
-        return Optional.of( edgeScope );
+        return partitions;
     }
 
 
     /**
-     * Write the cursor state to the map in cassandra
+     * Write the checkpoint of a partition to the map in cassandra
      */
-    private void writeCursorState( final String jobId, final EdgeScope edge ) {
+    private void writePartitionState( final String jobId, final Partition partition, final Status status,
+                                      final long count, final long started, final EdgeScope last ) {
 
-        final JsonNode node = EdgeScopeSerializer.INSTANCE.toNode( CursorSerializerUtil.getMapper(), edge );
+        final ObjectNode node = MAPPER.createObjectNode();
 
-        final String serializedState = CursorSerializerUtil.asString( node );
+        node.put( FIELD_STATUS, status.name() );
+        node.put( FIELD_COUNT, count );
+        node.put( FIELD_STARTED, started );
+        node.put( FIELD_UPDATED, System.currentTimeMillis() );
 
-        mapManager.putString( jobId + MAP_CURSOR_KEY, serializedState, INDEX_TTL );
+        if ( last != null ) {
+            node.put( FIELD_CURSOR, CursorSerializerUtil
+                .asString( EdgeScopeSerializer.INSTANCE.toNode( CursorSerializerUtil.getMapper(), last ) ) );
+        }
+
+        mapManager.putString( getPartitionKey( jobId, partition ), node.toString(), INDEX_TTL );
+    }
+
+
+    /**
+     * Read the checkpoint of a partition, a new state if it never started
+     */
+    private PartitionState readPartitionState( final String jobId, final Partition partition ) {
+        return parsePartitionState( mapManager.getString( getPartitionKey( jobId, partition ) ) );
+    }
+
+
+    private PartitionState parsePartitionState( final String persisted ) {
+
+        if ( persisted == null ) {
+            return new PartitionState( Status.STARTED, 0, 0, 0, Optional.absent() );
+        }
+
+        final JsonNode node = readTree( persisted );
+
+        Optional<Edge> cursor = Optional.absent();
+
+        if ( node.has( FIELD_CURSOR ) ) {
+            final EdgeScope edgeScope = EdgeScopeSerializer.INSTANCE
+                .fromJsonNode( CursorSerializerUtil.fromString( node.get( FIELD_CURSOR ).asText() ),
+                    CursorSerializerUtil.getMapper() );
+
+            cursor = Optional.of( edgeScope.getEdge() );
+        }
+
+        return new PartitionState( Status.valueOf( node.get( FIELD_STATUS ).asText() ), node.get( FIELD_COUNT ).asLong(),
+            node.get( FIELD_STARTED ).asLong(), node.get( FIELD_UPDATED ).asLong(), cursor );
+    }
+
+
+    private String getPartitionKey( final String jobId, final Partition partition ) {
+        return jobId + MAP_PARTITION_KEY + partition.applicationScope.getApplication().getUuid() + ":"
+            + partition.edgeType;
+    }
+
+
+    private JsonNode readTree( final String json ) {
+        try {
+            return MAPPER.readTree( json );
+        }
+        catch ( IOException e ) {
+            throw new RuntimeException( "Unable to parse re-index state " + json, e );
+        }
     }
 
 
@@ -288,9 +516,11 @@ public class ReIndexServiceImpl implements ReIndexService {
                 new Object[] { jobId, status, processedCount, lastUpdated } );
         }
 
-        mapManager.putString( jobId + MAP_STATUS_KEY, status.name() );
-        mapManager.putLong( jobId + MAP_COUNT_KEY, processedCount );
-        mapManager.putLong( jobId + MAP_UPDATED_KEY, lastUpdated );
+        mapManager.createBatch()
+            .putString( jobId + MAP_STATUS_KEY, status.name() )
+            .putLong( jobId + MAP_COUNT_KEY, processedCount )
+            .putLong( jobId + MAP_UPDATED_KEY, lastUpdated )
+            .execute();
     }
 
 
@@ -310,10 +540,81 @@ public class ReIndexServiceImpl implements ReIndexService {
         final Status status = Status.valueOf( stringStatus );
 
         final long processedCount = mapManager.getLong( jobId + MAP_COUNT_KEY );
-        final long lastUpdated = mapManager.getLong( jobId + MAP_COUNT_KEY );
+        final long lastUpdated = mapManager.getLong( jobId + MAP_UPDATED_KEY );
 
-        return new ReIndexStatus( jobId, status, processedCount, lastUpdated );
+        return new ReIndexStatus( jobId, status, processedCount, lastUpdated, getPartitionStatuses( jobId ) );
+    }
+
+
+    /**
+     * Get the progress of every partition of the job
+     */
+    private List<PartitionStatus> getPartitionStatuses( final String jobId ) {
+
+        final List<Partition> partitions = readPartitions( jobId );
+
+        final List<PartitionStatus> statuses = new ArrayList<>();
+
+        if ( partitions == null ) {
+            return statuses;
+        }
+
+        final List<String> keys = new ArrayList<>( partitions.size() );
+
+        for ( final Partition partition : partitions ) {
+            keys.add( getPartitionKey( jobId, partition ) );
+        }
+
+        final Map<String, String> states = mapManager.getStrings( keys );
+
+        for ( int i = 0; i < partitions.size(); i++ ) {
+            final Partition partition = partitions.get( i );
+            final PartitionState state = parsePartitionState( states.get( keys.get( i ) ) );
+
+            statuses.add( new PartitionStatus( partition.applicationScope.getApplication().getUuid().toString(),
+                CpNamingUtils.getNameFromEdgeType( partition.edgeType ), state.status, state.count, state.started,
+                state.updated ) );
+        }
+
+        return statuses;
     }
-}
 
 
+    /**
+     * A single collection of an application
+     */
+    private static final class Partition {
+
+        private final ApplicationScope applicationScope;
+        private final String edgeType;
+
+
+        private Partition( final ApplicationScope applicationScope, final String edgeType ) {
+            this.applicationScope = applicationScope;
+            this.edgeType = edgeType;
+        }
+    }
+
+
+    /**
+     * The persisted checkpoint of a partition
+     */
+    private static final class PartitionState {
+
+        private final Status status;
+        private final long count;
+        private final long started;
+        private final long updated;
+        private final Optional<Edge> cursor;
+
+
+        private PartitionState( final Status status, final long count, final long started, final long updated,
+                                final Optional<Edge> cursor ) {
+            this.status = status;
+            this.count = count;
+            this.started = started;
+            this.updated = updated;
+            this.cursor = cursor;
+        }
+    }
+}
@@ -22,9 +22,11 @@ package org.apache.usergrid.corepersistence.pipeline;
 
 import org.apache.usergrid.corepersistence.pipeline.builder.PipelineBuilderFactory;
 import org.apache.usergrid.corepersistence.pipeline.read.FilterFactory;
+import org.apache.usergrid.corepersistence.pipeline.read.search.CandidateVerificationFig;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.assistedinject.FactoryModuleBuilder;
+import org.safehaus.guicyfig.GuicyFigModule;
 
 
 /**
@@ -40,5 +42,7 @@ public class PipelineModule extends AbstractModule {
         install( new FactoryModuleBuilder().build( FilterFactory.class ) );
 
         install( new FactoryModuleBuilder().build( PipelineBuilderFactory.class ) );
+
+        install( new GuicyFigModule( CandidateVerificationFig.class ) );
     }
 }
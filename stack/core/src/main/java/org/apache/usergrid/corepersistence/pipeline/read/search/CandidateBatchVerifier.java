@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.corepersistence.pipeline.read.search;
+
+
+import java.util.List;
+
+import org.apache.usergrid.corepersistence.pipeline.read.FilterResult;
+
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import rx.Observable;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+
+
+/**
+ * Verifies a page of candidates in batches.  Each batch is loaded from cassandra with a single multi-get, up to
+ * {@link CandidateVerificationFig#getConcurrency()} batches are loaded at once, and the results are emitted in the
+ * order of the candidates so sorted queries and cursors are unaffected.
+ */
+@Singleton
+public class CandidateBatchVerifier {
+
+
+    private final int batchSize;
+    private final int concurrency;
+
+
+    @Inject
+    public CandidateBatchVerifier( final CandidateVerificationFig candidateVerificationFig ) {
+        this.batchSize = Math.max( 1, candidateVerificationFig.getBatchSize() );
+        this.concurrency = Math.max( 1, candidateVerificationFig.getConcurrency() );
+    }
+
+
+    /**
+     * Verify the page of candidates
+     *
+     * @param candidates The candidates of a single page, in order
+     * @param verifyBatch Loads a batch of candidates from cassandra and returns the results that are valid
+     * @param <T> The type of the verified results
+     */
+    public <T> Observable<FilterResult<T>> verify( final List<FilterResult<Candidate>> candidates,
+                                                   final Func1<List<FilterResult<Candidate>>, Observable<List<FilterResult<T>>>> verifyBatch ) {
+
+        //small pages don't need to leave the calling thread
+        if ( candidates.size() <= batchSize ) {
+            return verifyBatch.call( candidates ).flatMap( results -> Observable.from( results ) );
+        }
+
+        final List<List<FilterResult<Candidate>>> batches = Lists.partition( candidates, batchSize );
+
+        return Observable.range( 0, batches.size() )
+
+            //load our batches in parallel, remembering their position in the page
+            .flatMap( index -> verifyBatch.call( batches.get( index ) )
+                .map( results -> new VerifiedBatch<>( index, results ) )
+                .subscribeOn( Schedulers.io() ), concurrency )
+
+            //restore the candidate order
+            .toSortedList( ( first, second ) -> Integer.compare( first.index, second.index ) )
+            .flatMap( verifiedBatches -> Observable.from( verifiedBatches ) )
+            .concatMap( verifiedBatch -> Observable.from( verifiedBatch.results ) );
+    }
+
+
+    /**
+     * The verified results of a batch and its position in the page
+     */
+    private static final class VerifiedBatch<T> {
+
+        private final int index;
+        private final List<FilterResult<T>> results;
+
+
+        private VerifiedBatch( final int index, final List<FilterResult<T>> results ) {
+            this.index = index;
+            this.results = results;
+        }
+    }
+}
@@ -60,18 +60,21 @@ public class CandidateEntityFilter extends AbstractFilter<FilterResult<Candidate
     private final EntityIndexFactory entityIndexFactory;
     private final IndexLocationStrategyFactory indexLocationStrategyFactory;
     private final IndexProducer indexProducer;
+    private final CandidateBatchVerifier candidateBatchVerifier;
 
 
     @Inject
     public CandidateEntityFilter( final EntityCollectionManagerFactory entityCollectionManagerFactory,
                                   final EntityIndexFactory entityIndexFactory,
                                   final IndexLocationStrategyFactory indexLocationStrategyFactory,
-                                  final IndexProducer indexProducer
+                                  final IndexProducer indexProducer,
+                                  final CandidateBatchVerifier candidateBatchVerifier
                                   ) {
         this.entityCollectionManagerFactory = entityCollectionManagerFactory;
         this.entityIndexFactory = entityIndexFactory;
         this.indexLocationStrategyFactory = indexLocationStrategyFactory;
         this.indexProducer = indexProducer;
+        this.candidateBatchVerifier = candidateBatchVerifier;
     }
 
 
@@ -94,50 +97,42 @@ public class CandidateEntityFilter extends AbstractFilter<FilterResult<Candidate
         final EntityIndex applicationIndex =
             entityIndexFactory.createEntityIndex(indexLocationStrategyFactory.getIndexLocationStrategy(applicationScope) );
 
-        //buffer them to get a page size we can make 1 network hop
+        //buffer them to get a page size, then verify the page in batches of multi-gets.  Pages are concatenated so
+        //they are emitted in order even though their batches are loaded asynchronously
         final Observable<FilterResult<Entity>> searchIdSetObservable = candidateResultsObservable.buffer( pipelineContext.getLimit() )
 
             //load them
-            .flatMap( candidateResults -> {
-
-                //flatten toa list of ids to load
-                final Observable<List<Candidate>> candidates =
-                    Observable.from(candidateResults)
-                        .map(filterResultCandidate -> filterResultCandidate.getValue()).toList();
-                //load the ids
-                final Observable<FilterResult<Entity>> entitySetObservable =
-                    candidates.flatMap(candidatesList -> {
-                        Collection<SelectFieldMapping> mappings = candidatesList.get(0).getFields();
-                        Observable<EntitySet> entitySets = Observable.from(candidatesList)
-                            .map(candidateEntry -> candidateEntry.getCandidateResult().getId()).toList()
-                            .flatMap(idList -> entityCollectionManager.load(idList));
-                        //now we have a collection, validate our canidate set is correct.
-                        return entitySets.map(
-                            entitySet -> new EntityVerifier(
-                                applicationIndex.createBatch(), entitySet, candidateResults,indexProducer)
-                        )
-                            .doOnNext(entityCollector -> entityCollector.merge())
-                            .flatMap(entityCollector -> Observable.from(entityCollector.getResults()))
-                            .map(entityFilterResult -> {
-                                final Entity entity = entityFilterResult.getValue();
-                                if (mappings.size() > 0) {
-                                    Map<String,Field> fieldMap = new HashMap<String, Field>(mappings.size());
-                                    rx.Observable.from(mappings)
-                                        .filter(mapping -> entity.getFieldMap().containsKey(mapping.getSourceFieldName()))
-                                        .doOnNext(mapping -> {
-                                            Field field = entity.getField(mapping.getSourceFieldName());
-                                            field.setName(mapping.getTargetFieldName());
-                                            fieldMap.put(mapping.getTargetFieldName(),field);
-                                        }).toBlocking().last();
-                                    entity.setFieldMap(fieldMap);
-                                }
-                                return entityFilterResult;
-                            });
-                    });
-                return entitySetObservable;
-
-
-            } );
+            .concatMap( candidateResults -> candidateBatchVerifier.verify( candidateResults, batch -> {
+
+                Collection<SelectFieldMapping> mappings = batch.get( 0 ).getValue().getFields();
+
+                //flatten to a list of ids to load
+                final List<Id> idList = new ArrayList<>( batch.size() );
+                for ( final FilterResult<Candidate> candidate : batch ) {
+                    idList.add( candidate.getValue().getCandidateResult().getId() );
+                }
+
+                //load the ids, now we have a collection, validate our canidate set is correct.
+                return entityCollectionManager.load( idList ).map(
+                    entitySet -> new EntityVerifier( applicationIndex.createBatch(), entitySet, batch, indexProducer ) )
+                    .doOnNext( entityCollector -> entityCollector.merge() )
+                    .flatMap( entityCollector -> Observable.from( entityCollector.getResults() ) )
+                    .map( entityFilterResult -> {
+                        final Entity entity = entityFilterResult.getValue();
+                        if ( mappings.size() > 0 ) {
+                            Map<String, Field> fieldMap = new HashMap<String, Field>( mappings.size() );
+                            rx.Observable.from( mappings )
+                                .filter( mapping -> entity.getFieldMap().containsKey( mapping.getSourceFieldName() ) )
+                                .doOnNext( mapping -> {
+                                    Field field = entity.getField( mapping.getSourceFieldName() );
+                                    field.setName( mapping.getTargetFieldName() );
+                                    fieldMap.put( mapping.getTargetFieldName(), field );
+                                } ).toBlocking().last();
+                            entity.setFieldMap( fieldMap );
+                        }
+                        return entityFilterResult;
+                    } ).toList();
+            } ) );
 
         //if we filter all our results, we want to continue to try the next page
         return searchIdSetObservable;
@@ -55,17 +55,20 @@ public class CandidateIdFilter extends AbstractFilter<FilterResult<Candidate>, F
     private final EntityIndexFactory entityIndexFactory;
     private final IndexLocationStrategyFactory indexLocationStrategyFactory;
     private final IndexProducer indexProducer;
+    private final CandidateBatchVerifier candidateBatchVerifier;
 
 
     @Inject
     public CandidateIdFilter( final EntityCollectionManagerFactory entityCollectionManagerFactory,
                               final EntityIndexFactory entityIndexFactory,
                               final IndexLocationStrategyFactory indexLocationStrategyFactory,
-                              final IndexProducer indexProducer) {
+                              final IndexProducer indexProducer,
+                              final CandidateBatchVerifier candidateBatchVerifier ) {
         this.entityCollectionManagerFactory = entityCollectionManagerFactory;
         this.entityIndexFactory = entityIndexFactory;
         this.indexLocationStrategyFactory = indexLocationStrategyFactory;
         this.indexProducer = indexProducer;
+        this.candidateBatchVerifier = candidateBatchVerifier;
     }
 
 
@@ -87,23 +90,22 @@ public class CandidateIdFilter extends AbstractFilter<FilterResult<Candidate>, F
         final EntityIndex applicationIndex =
             entityIndexFactory.createEntityIndex(indexLocationStrategyFactory.getIndexLocationStrategy(applicationScope));
 
+        //verify each page in batches of multi-gets, pages are concatenated to keep their order
         final Observable<FilterResult<Id>> searchIdSetObservable =
-            filterResultObservable.buffer( pipelineContext.getLimit() ).flatMap( candidateResults -> {
-                    //flatten toa list of ids to load
-                    final Observable<List<Id>> candidateIds = Observable.from( candidateResults ).map(
-                        candidate -> candidate.getValue().getCandidateResult().getId() ).toList();
-
-                    //load the ids
-                    final Observable<VersionSet> versionSetObservable =
-                        candidateIds.flatMap( ids -> entityCollectionManager.getLatestVersion( ids ) );
-
-                    //now we have a collection, validate our canidate set is correct.
-
-                    return versionSetObservable.map(
-                        entitySet -> new EntityCollector( applicationIndex.createBatch(), entitySet,
-                            candidateResults, indexProducer ) ).doOnNext( entityCollector -> entityCollector.merge() ).flatMap(
-                        entityCollector -> Observable.from( entityCollector.collectResults() ) );
-                } );
+            filterResultObservable.buffer( pipelineContext.getLimit() ).concatMap(
+                candidateResults -> candidateBatchVerifier.verify( candidateResults, batch -> {
+                    //flatten to a list of ids to load
+                    final List<Id> candidateIds = new ArrayList<>( batch.size() );
+                    for ( final FilterResult<Candidate> candidate : batch ) {
+                        candidateIds.add( candidate.getValue().getCandidateResult().getId() );
+                    }
+
+                    //load the ids, now we have a collection, validate our canidate set is correct.
+                    return entityCollectionManager.getLatestVersion( candidateIds ).map(
+                        entitySet -> new EntityCollector( applicationIndex.createBatch(), entitySet, batch,
+                            indexProducer ) ).doOnNext( entityCollector -> entityCollector.merge() ).map(
+                        entityCollector -> entityCollector.collectResults() );
+                } ) );
 
         return searchIdSetObservable;
     }
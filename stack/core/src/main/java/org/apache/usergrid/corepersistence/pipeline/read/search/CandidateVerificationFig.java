@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.corepersistence.pipeline.read.search;
+
+
+import org.safehaus.guicyfig.Default;
+import org.safehaus.guicyfig.FigSingleton;
+import org.safehaus.guicyfig.GuicyFig;
+import org.safehaus.guicyfig.Key;
+
+
+/**
+ * Configuration for verifying search candidates against cassandra
+ */
+@FigSingleton
+public interface CandidateVerificationFig extends GuicyFig {
+
+
+    /**
+     * The number of candidates loaded from cassandra in a single call.  Must not exceed collection.max.load.size
+     */
+    @Default( "100" )
+    @Key( "usergrid.search.verify.batch_size" )
+    int getBatchSize();
+
+
+    /**
+     * The maximum number of batches of a single page that are loaded from cassandra at the same time
+     */
+    @Default( "4" )
+    @Key( "usergrid.search.verify.concurrency" )
+    int getConcurrency();
+}
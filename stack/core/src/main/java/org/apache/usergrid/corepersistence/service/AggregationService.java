@@ -61,4 +61,12 @@ public interface AggregationService {
      * @return
      */
     long getCollectionSize(final ApplicationScope applicationScope, final String collectionName);
+
+    /**
+     * get the number of entities by collection name
+     * @param applicationScope
+     * @param collectionName
+     * @return
+     */
+    long getCollectionCount(final ApplicationScope applicationScope, final String collectionName);
 }
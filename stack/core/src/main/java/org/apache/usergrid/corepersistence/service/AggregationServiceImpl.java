@@ -25,7 +25,6 @@ import com.google.inject.Inject;
 import org.apache.usergrid.corepersistence.index.IndexLocationStrategyFactory;
 import org.apache.usergrid.corepersistence.util.CpNamingUtils;
 import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
-import org.apache.usergrid.persistence.core.metrics.ObservableTimer;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.graph.GraphManager;
 import org.apache.usergrid.persistence.graph.GraphManagerFactory;
@@ -34,18 +33,19 @@ import org.apache.usergrid.persistence.index.EntityIndex;
 import org.apache.usergrid.persistence.index.EntityIndexFactory;
 import org.apache.usergrid.persistence.index.IndexLocationStrategy;
 import org.apache.usergrid.persistence.index.SearchEdge;
-import rx.observables.MathObservable;
 
 import java.util.*;
 
 /**
- * Aggregation Service get counts for an application
+ * Aggregation Service get counts for an application. Collections are read from their counters, see
+ * {@link CollectionSizeService}, other edges are summed by the index.
  */
 public class AggregationServiceImpl implements AggregationService {
 
     private final EntityIndexFactory entityIndexFactory;
     private final IndexLocationStrategyFactory indexLocationStrategyFactory;
     private final GraphManagerFactory graphManagerFactory;
+    private final CollectionSizeService collectionSizeService;
     private final MetricsFactory metricsFactory;
     private final Timer sumTimer;
 
@@ -54,11 +54,13 @@ public class AggregationServiceImpl implements AggregationService {
         final EntityIndexFactory entityIndexFactory,
         final IndexLocationStrategyFactory indexLocationStrategyFactory,
         final GraphManagerFactory graphManagerFactory,
+        final CollectionSizeService collectionSizeService,
         final MetricsFactory metricsFactory){
 
         this.entityIndexFactory = entityIndexFactory;
         this.indexLocationStrategyFactory = indexLocationStrategyFactory;
         this.graphManagerFactory = graphManagerFactory;
+        this.collectionSizeService = collectionSizeService;
         this.metricsFactory = metricsFactory;
         this.sumTimer = metricsFactory.getTimer(AggregationServiceImpl.class,"sum");
     }
@@ -66,37 +68,30 @@ public class AggregationServiceImpl implements AggregationService {
 
     @Override
     public long getApplicationSize(ApplicationScope applicationScope) {
-        final IndexLocationStrategy indexLocationStrategy = indexLocationStrategyFactory.getIndexLocationStrategy(applicationScope);
-        EntityIndex entityIndex = entityIndexFactory.createEntityIndex(indexLocationStrategy);
-        GraphManager graphManager = graphManagerFactory.createEdgeManager(applicationScope);
-        Long sum = ObservableTimer.time(
-            MathObservable.sumLong(
-                graphManager.getEdgeTypesFromSource(new SimpleSearchEdgeType(applicationScope.getApplication(), CpNamingUtils.EDGE_COLL_PREFIX, Optional.<String>absent()))
-                    .map(type -> CpNamingUtils.createCollectionSearchEdge(applicationScope.getApplication(), type))
-                    .map(edge -> entityIndex.getEntitySize(edge))
-            ), sumTimer).toBlocking().last();
-
-        return sum.longValue();
+        long sum = 0;
+        for(Long size : getEachCollectionSize(applicationScope).values()){
+            sum += size;
+        }
+        return sum;
     }
 
     @Override
     public Map<String, Long> getEachCollectionSize(ApplicationScope applicationScope) {
-        final IndexLocationStrategy indexLocationStrategy = indexLocationStrategyFactory.getIndexLocationStrategy(applicationScope);
-        EntityIndex entityIndex = entityIndexFactory.createEntityIndex(indexLocationStrategy);
         GraphManager graphManager = graphManagerFactory.createEdgeManager(applicationScope);
-        Map<String,Long> sumMap = ObservableTimer.time(
+        final Timer.Context timer = sumTimer.time();
+        try {
+            List<String> collectionNames =
                 graphManager.getEdgeTypesFromSource(new SimpleSearchEdgeType(applicationScope.getApplication(), CpNamingUtils.EDGE_COLL_PREFIX, Optional.<String>absent()))
-                    .collect(() -> new HashMap<String,Long>(), ((map, type) ->
-                        {
-                            SearchEdge edge = CpNamingUtils.createCollectionSearchEdge(applicationScope.getApplication(), type);
-                            final String collectionName = CpNamingUtils.getCollectionNameFromEdgeName(type);
-                            long sumType =  entityIndex.getEntitySize(edge);
-                            map.put(collectionName,sumType);
-                        })
-                    )
-            , sumTimer).toBlocking().last();
-        return sumMap;
+                    .map(type -> CpNamingUtils.getCollectionNameFromEdgeName(type))
+                    .toList().toBlocking().last();
 
+            Map<String,Long> sumMap = new HashMap<>(collectionNames.size());
+            collectionSizeService.getCollectionSizes(applicationScope, collectionNames)
+                .forEach((collectionName, size) -> sumMap.put(collectionName, size.getSize()));
+            return sumMap;
+        }finally {
+            timer.stop();
+        }
     }
 
     @Override
@@ -108,7 +103,14 @@ public class AggregationServiceImpl implements AggregationService {
 
     @Override
     public long getCollectionSize(final ApplicationScope applicationScope, final String collectionName) {
-        return getSize(applicationScope, CpNamingUtils.createCollectionSearchEdge(applicationScope.getApplication(), collectionName));
+        return collectionSizeService.getCollectionSizes(applicationScope, Collections.singleton(collectionName))
+            .get(collectionName).getSize();
+    }
+
+    @Override
+    public long getCollectionCount(final ApplicationScope applicationScope, final String collectionName) {
+        return collectionSizeService.getCollectionSizes(applicationScope, Collections.singleton(collectionName))
+            .get(collectionName).getCount();
     }
 
 }
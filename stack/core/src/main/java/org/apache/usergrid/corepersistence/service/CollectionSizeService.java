@@ -0,0 +1,87 @@
+/*
+ *
+ *  * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  *  contributor license agreements.  The ASF licenses this file to You
+ *  * under the Apache License, Version 2.0 (the "License"); you may not
+ *  * use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *     http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.  For additional information regarding
+ *  * copyright in this work, please see the NOTICE file in the top level
+ *  * directory of this distribution.
+ *
+ */
+package org.apache.usergrid.corepersistence.service;
+
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.Id;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Keeps the number of entities and their total size for every collection of an application in counters, updated as
+ * entities are indexed and deleted and corrected against the index from time to time.
+ */
+public interface CollectionSizeService {
+
+
+    /**
+     * Account for the latest version of an entity, called every time the entity or its application collection edge
+     * is indexed
+     *
+     * @param applicationScope
+     * @param entity
+     */
+    void entityIndexed(final ApplicationScope applicationScope, final Entity entity);
+
+    /**
+     * Account for the removal of an entity
+     *
+     * @param applicationScope
+     * @param entityId
+     */
+    void entityDeleted(final ApplicationScope applicationScope, final Id entityId);
+
+    /**
+     * Get the size of every collection
+     *
+     * @param applicationScope
+     * @param collectionNames
+     * @return the size by collection name
+     */
+    Map<String, CollectionSize> getCollectionSizes(final ApplicationScope applicationScope,
+                                                   final Collection<String> collectionNames);
+
+
+    /**
+     * The number of entities in a collection and their total size in bytes
+     */
+    class CollectionSize {
+        private final long count;
+        private final long size;
+
+
+        public CollectionSize( final long count, final long size ) {
+            this.count = count;
+            this.size = size;
+        }
+
+
+        public long getCount() {
+            return count;
+        }
+
+
+        public long getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ *
+ *  * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  *  contributor license agreements.  The ASF licenses this file to You
+ *  * under the Apache License, Version 2.0 (the "License"); you may not
+ *  * use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *     http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.  For additional information regarding
+ *  * copyright in this work, please see the NOTICE file in the top level
+ *  * directory of this distribution.
+ *
+ */
+package org.apache.usergrid.corepersistence.service;
+
+import com.codahale.metrics.Timer;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.usergrid.corepersistence.index.CoreIndexFig;
+import org.apache.usergrid.corepersistence.index.IndexLocationStrategyFactory;
+import org.apache.usergrid.corepersistence.util.CpNamingUtils;
+import org.apache.usergrid.persistence.Schema;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.index.EntityIndex;
+import org.apache.usergrid.persistence.index.EntityIndexFactory;
+import org.apache.usergrid.persistence.index.SearchEdge;
+import org.apache.usergrid.persistence.map.MapManager;
+import org.apache.usergrid.persistence.map.MapManagerFactory;
+import org.apache.usergrid.persistence.map.impl.MapScopeImpl;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts collections in sharded map counters.
+ *
+ * The size each entity was last counted with is kept beside the counters, so indexing the same version again, as
+ * retries and re-indexing do one after the other, doesn't count it twice and a delete takes off exactly what was added.
+ * The marker is read and written without a condition, so two workers indexing the same new entity at the same time can
+ * both count it. That drift, entities written before the counters existed, and writes that race a reconcile are left to
+ * the reconcile: every reconcile interval a collection is read from the index once more and the difference to its
+ * counters is stored as an offset, which is overwritten rather than added up so concurrent reconciles don't correct
+ * twice. Counts are only exact as of the last reconcile.
+ */
+@Singleton
+public class CollectionSizeServiceImpl implements CollectionSizeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CollectionSizeServiceImpl.class);
+
+    private static final String MAP_NAME = "collectionsizes";
+    private static final String COUNT_PREFIX = "count:";
+    private static final String SIZE_PREFIX = "size:";
+    private static final String ENTITY_PREFIX = "entity:";
+    private static final String RECONCILED_PREFIX = "reconciled:";
+
+    private final MapManagerFactory mapManagerFactory;
+    private final EntityIndexFactory entityIndexFactory;
+    private final IndexLocationStrategyFactory indexLocationStrategyFactory;
+    private final CoreIndexFig coreIndexFig;
+    private final Timer reconcileTimer;
+
+    @Inject
+    public CollectionSizeServiceImpl(
+        final MapManagerFactory mapManagerFactory,
+        final EntityIndexFactory entityIndexFactory,
+        final IndexLocationStrategyFactory indexLocationStrategyFactory,
+        final CoreIndexFig coreIndexFig,
+        final MetricsFactory metricsFactory){
+
+        this.mapManagerFactory = mapManagerFactory;
+        this.entityIndexFactory = entityIndexFactory;
+        this.indexLocationStrategyFactory = indexLocationStrategyFactory;
+        this.coreIndexFig = coreIndexFig;
+        this.reconcileTimer = metricsFactory.getTimer(CollectionSizeServiceImpl.class, "reconcile");
+    }
+
+
+    @Override
+    public void entityIndexed(final ApplicationScope applicationScope, final Entity entity) {
+        final String collectionName = getCollectionName(entity.getId());
+
+        if(collectionName == null){
+            return;
+        }
+
+        final MapManager mapManager = getMapManager(applicationScope);
+        final String entityKey = ENTITY_PREFIX + entity.getId().getUuid();
+        final long size = entity.getSize();
+
+        final Long previous = mapManager.getLong(entityKey);
+
+        if(previous == null){
+            mapManager.increment(COUNT_PREFIX + collectionName, 1);
+        }else if(previous == size){
+            return;
+        }
+
+        mapManager.increment(SIZE_PREFIX + collectionName, size - (previous == null ? 0 : previous));
+        mapManager.putLong(entityKey, size);
+    }
+
+
+    @Override
+    public void entityDeleted(final ApplicationScope applicationScope, final Id entityId) {
+        final String collectionName = getCollectionName(entityId);
+
+        if(collectionName == null){
+            return;
+        }
+
+        final MapManager mapManager = getMapManager(applicationScope);
+        final String entityKey = ENTITY_PREFIX + entityId.getUuid();
+
+        final Long previous = mapManager.getLong(entityKey);
+
+        //never counted, or already taken off
+        if(previous == null){
+            return;
+        }
+
+        mapManager.increment(COUNT_PREFIX + collectionName, -1);
+        mapManager.increment(SIZE_PREFIX + collectionName, -previous);
+        mapManager.delete(entityKey);
+    }
+
+
+    @Override
+    public Map<String, CollectionSize> getCollectionSizes(final ApplicationScope applicationScope,
+                                                          final Collection<String> collectionNames) {
+        final Map<String, CollectionSize> results = new HashMap<>(collectionNames.size());
+        final long interval = coreIndexFig.getCollectionSizeReconcileInterval();
+
+        if(collectionNames.isEmpty()){
+            return results;
+        }
+
+        final EntityIndex entityIndex =
+            entityIndexFactory.createEntityIndex(indexLocationStrategyFactory.getIndexLocationStrategy(applicationScope));
+
+        if(interval <= 0){
+            for(String collectionName : collectionNames){
+                results.put(collectionName, readIndex(applicationScope, entityIndex, collectionName));
+            }
+            return results;
+        }
+
+        final MapManager mapManager = getMapManager(applicationScope);
+
+        final List<String> counterKeys = new ArrayList<>(collectionNames.size() * 2);
+        final List<String> reconciledKeys = new ArrayList<>(collectionNames.size());
+
+        for(String collectionName : collectionNames){
+            counterKeys.add(COUNT_PREFIX + collectionName);
+            counterKeys.add(SIZE_PREFIX + collectionName);
+            reconciledKeys.add(RECONCILED_PREFIX + collectionName);
+        }
+
+        final Map<String, Long> counters = mapManager.getCounters(counterKeys);
+        final Map<String, String> reconciled = mapManager.getStrings(reconciledKeys);
+
+        final long now = System.currentTimeMillis();
+
+        for(String collectionName : collectionNames){
+            final long count = getOrZero(counters, COUNT_PREFIX + collectionName);
+            final long size = getOrZero(counters, SIZE_PREFIX + collectionName);
+
+            final String offsets = reconciled != null ? reconciled.get(RECONCILED_PREFIX + collectionName) : null;
+
+            //time:countOffset:sizeOffset
+            final String[] parts = offsets != null ? offsets.split(":") : null;
+
+            if(parts != null && now - Long.parseLong(parts[0]) < interval){
+                results.put(collectionName,
+                    new CollectionSize(count + Long.parseLong(parts[1]), size + Long.parseLong(parts[2])));
+                continue;
+            }
+
+            final CollectionSize indexed = readIndex(applicationScope, entityIndex, collectionName);
+
+            mapManager.putString(RECONCILED_PREFIX + collectionName,
+                now + ":" + (indexed.getCount() - count) + ":" + (indexed.getSize() - size));
+
+            if(logger.isDebugEnabled()){
+                logger.debug("Reconciled collection {} in app {}, counted {} entities of {} bytes, indexed {} of {} bytes",
+                    collectionName, applicationScope.getApplication().getUuid(), count, size, indexed.getCount(),
+                    indexed.getSize());
+            }
+
+            results.put(collectionName, indexed);
+        }
+
+        return results;
+    }
+
+
+    private CollectionSize readIndex(final ApplicationScope applicationScope, final EntityIndex entityIndex,
+                                     final String collectionName){
+        final SearchEdge edge =
+            CpNamingUtils.createCollectionSearchEdge(applicationScope.getApplication(), collectionName);
+
+        final Timer.Context timer = reconcileTimer.time();
+
+        try {
+            return new CollectionSize(entityIndex.getEntityCount(edge), entityIndex.getEntitySize(edge));
+        }finally {
+            timer.stop();
+        }
+    }
+
+
+    /**
+     * The collection an entity is counted in, null for entities outside of the application's collections
+     */
+    private String getCollectionName(final Id entityId){
+        if(Schema.TYPE_APPLICATION.equals(entityId.getType())){
+            return null;
+        }
+
+        return Schema.defaultCollectionName(entityId.getType());
+    }
+
+
+    private MapManager getMapManager(final ApplicationScope applicationScope){
+        return mapManagerFactory.createMapManager(new MapScopeImpl(applicationScope.getApplication(), MAP_NAME));
+    }
+
+
+    private static long getOrZero(final Map<String, Long> counters, final String key){
+        final Long value = counters.get(key);
+        return value != null ? value : 0;
+    }
+}
@@ -332,7 +332,7 @@ public class CpNamingUtils {
 
 
 
-    private static boolean isCollectionEdgeType( String type ) {
+    public static boolean isCollectionEdgeType( String type ) {
         return type.startsWith( EDGE_COLL_PREFIX );
     }
 
@@ -17,18 +17,19 @@
 package org.apache.usergrid.count;
 
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.Callable;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,6 +44,11 @@ import com.yammer.metrics.core.TimerContext;
 /**
  * Base batcher implementation, handles concurrency and locking throughput throttling.
  *
+ * Increments of the same counter are summed in memory, so a batch holds one {@link Count} per counter regardless of
+ * how many increments it received.  A batch is flushed every batchSize increments or every batchInterval seconds,
+ * whichever comes first.  When Cassandra can't keep up, flushing waits for older submissions to complete instead of
+ * dropping counts.
+ *
  * @author zznate
  */
 public abstract class AbstractBatcher implements Batcher {
@@ -55,11 +61,18 @@ public abstract class AbstractBatcher implements Batcher {
     private final Timer addTimer =
             Metrics.newTimer( AbstractBatcher.class, "add_invocation", TimeUnit.MICROSECONDS, TimeUnit.SECONDS );
     protected final Counter invocationCounter = Metrics.newCounter( AbstractBatcher.class, "batch_add_invocations" );
-    // TODO add batchCount, remove shouldSubmit, impl submit, change simpleBatcher to just be an extension
+    private final Counter submittedCounter = Metrics.newCounter( AbstractBatcher.class, "batch_submitted_counts" );
+    private final Counter backpressureCounter = Metrics.newCounter( AbstractBatcher.class, "batch_submit_waits" );
     protected int batchSize = 500;
     protected int batchIntervalSeconds = 10;
+    protected int maxPendingSubmissions = 4;
     private final AtomicLong batchSubmissionCount = new AtomicLong();
 
+    /**
+     * Submissions that may not have completed yet, oldest first
+     */
+    private final Deque<Future<?>> pendingSubmissions = new ArrayDeque<>();
+
     /**
      * Create our scheduler to fire our execution
      */
@@ -79,6 +92,14 @@ public abstract class AbstractBatcher implements Batcher {
     }
 
 
+    /**
+     * Set the number of submissions that may be in flight before flushing waits for the oldest to complete
+     */
+    public void setMaxPendingSubmissions( int maxPendingSubmissions ) {
+        this.maxPendingSubmissions = maxPendingSubmissions;
+    }
+
+
     public void setBatchSubmitter( BatchSubmitter batchSubmitter ) {
         this.batchSubmitter = batchSubmitter;
     }
@@ -99,10 +120,24 @@ public abstract class AbstractBatcher implements Batcher {
         invocationCounter.inc();
         final TimerContext context = addTimer.time();
         if ( batchSize == 1 ) {
-            getBatch().addSerial( count );
+            addSerial( count );
         }
         else {
-            getBatch().add( count );
+            final Batch active = acquireBatch();
+
+            final int size;
+
+            try {
+                size = active.add( count );
+            }
+            finally {
+                active.release();
+            }
+
+            //we've reached our size, flush unless someone beat us to it
+            if ( size == batchSize ) {
+                flush( active );
+            }
         }
         context.stop();
     }
@@ -124,22 +159,106 @@ public abstract class AbstractBatcher implements Batcher {
             }
         }
 
-        //we want to flush, and we have no capacity left, perform a flush
-        if ( batchSize > 1 && active.getCapacity() == 0 ) {
-            synchronized ( this ) {
-                if ( active.getCapacity() == 0 ) {
-                    active.flush();
-                }
+        return active;
+    }
+
+
+    /**
+     * Get the current batch and register as a writer, so it isn't drained until our add is complete
+     */
+    private Batch acquireBatch() {
+        while ( true ) {
+            final Batch active = getBatch();
+
+            active.acquire();
+
+            if ( batch == active ) {
+                return active;
             }
+
+            //it was flushed underneath us, add to the new one
+            active.release();
         }
+    }
 
-        return active;
+
+    /**
+     * Swap in a new batch and submit the old one.
+     *
+     * @param expected The batch to flush, or null to flush whatever batch is current
+     */
+    private void flush( final Batch expected ) {
+        final Batch flushed;
+
+        synchronized ( this ) {
+            flushed = batch;
+
+            if ( flushed == null || ( expected != null && flushed != expected ) ) {
+                return;
+            }
+
+            batch = new Batch();
+        }
+
+        final List<Count> counts = flushed.drain();
+
+        if ( counts.isEmpty() ) {
+            return;
+        }
+
+        submit( counts );
+    }
+
+
+    private void submit( final List<Count> counts ) {
+        final Future<?> future = batchSubmitter.submit( counts );
+        batchSubmissionCount.incrementAndGet();
+        opCount.incrementAndGet();
+        submittedCounter.inc( counts.size() );
+
+        if ( future == null ) {
+            return;
+        }
+
+        synchronized ( pendingSubmissions ) {
+            pendingSubmissions.addLast( future );
+
+            while ( !pendingSubmissions.isEmpty() && pendingSubmissions.peekFirst().isDone() ) {
+                pendingSubmissions.pollFirst();
+            }
+
+            //too many writes outstanding, wait for the oldest rather than queue without bound
+            while ( pendingSubmissions.size() > maxPendingSubmissions ) {
+                backpressureCounter.inc();
+                await( pendingSubmissions.pollFirst() );
+            }
+        }
+    }
+
+
+    private void await( final Future<?> future ) {
+        try {
+            future.get();
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        catch ( Exception ex ) {
+            logger.error( "Counter batch submission failed", ex );
+        }
     }
 
-    private void flush(){
-        synchronized(this) {
-            getBatch().flush();
+
+    private void addSerial( Count count ) {
+        Future f = batchSubmitter.submit( Arrays.asList( count ) );
+        try {
+            f.get();
+        }
+        catch ( Exception ex ) {
+            logger.error( "Unable to add count, dropping count {}", count, ex );
         }
+        batchSubmissionCount.incrementAndGet();
+        opCount.incrementAndGet();
     }
 
 
@@ -151,7 +270,7 @@ public abstract class AbstractBatcher implements Batcher {
         @Override
         public void run() {
             //explicitly flush the batch
-            AbstractBatcher.this.flush();
+            AbstractBatcher.this.flush( null );
         }
     }
 
@@ -161,56 +280,75 @@ public abstract class AbstractBatcher implements Batcher {
     }
 
 
-    class Batch {
-        private BlockingQueue<Count> counts;
-        private final AtomicInteger localCallCounter = new AtomicInteger();
+    /**
+     * The counts summed since the last flush, keyed by counter name.  The counter name is made of the column family,
+     * row key and column, so counts of different applications, counters and time buckets never sum together
+     */
+    static final class Batch {
+        private final ConcurrentHashMap<String, Aggregate> counts = new ConcurrentHashMap<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicInteger writers = new AtomicInteger();
 
 
-        Batch() {
-            counts = new ArrayBlockingQueue<>( batchSize );
+        void acquire() {
+            writers.incrementAndGet();
         }
 
 
-        int getCapacity() {
-            return counts.remainingCapacity();
+        void release() {
+            writers.decrementAndGet();
         }
 
 
-
-
-        void flush() {
-            ArrayList<Count> flushed = new ArrayList<Count>( batchSize );
-            counts.drainTo( flushed );
-            batchSubmitter.submit( flushed );
-            batchSubmissionCount.incrementAndGet();
-            opCount.incrementAndGet();
-            localCallCounter.incrementAndGet();
+        /**
+         * Add the count, and return the number of counts added to this batch, including this one
+         */
+        int add( Count count ) {
+            counts.computeIfAbsent( count.getCounterName(), name -> new Aggregate( count ) ).add( count.getValue() );
+            return size.incrementAndGet();
         }
 
 
-        void add( Count count ) {
-            try {
-                counts.offer( count, 500, TimeUnit.MILLISECONDS );
+        /**
+         * Wait for writers that acquired this batch before it was swapped out, then return the summed counts
+         */
+        List<Count> drain() {
+            while ( writers.get() > 0 ) {
+                Thread.yield();
             }
-            catch ( Exception ex ) {
-                logger.error( "Unable to add count, dropping count {}", count, ex );
+
+            final List<Count> drained = new ArrayList<>( counts.size() );
+
+            for ( final Aggregate aggregate : counts.values() ) {
+                drained.add( aggregate.toCount() );
             }
+
+            return drained;
         }
+    }
 
 
-        void addSerial( Count count ) {
-            Future f = batchSubmitter.submit( Arrays.asList( count ) );
-            try {
-                f.get();
-            }
-            catch ( Exception ex ) {
-                logger.error( "Unable to add count, dropping count {}", count, ex );
-            }
-            batchSubmissionCount.incrementAndGet();
-            opCount.incrementAndGet();
-            localCallCounter.incrementAndGet();
+    /**
+     * The sum of a single counter.  Uses a LongAdder so a hot counter doesn't serialize its writers, the sum is only
+     * read once all writers have left the batch
+     */
+    private static final class Aggregate {
+        private final Count first;
+        private final LongAdder value = new LongAdder();
+
+
+        private Aggregate( final Count first ) {
+            this.first = first;
         }
 
 
+        private void add( final long delta ) {
+            value.add( delta );
+        }
+
+
+        private Count toCount() {
+            return new Count( first.getTableName(), first.getKeyName(), first.getColumnName(), value.sum() );
+        }
     }
 }
@@ -41,6 +41,12 @@ public interface QueueManager {
 
     public QueueResults getFromQueue( String queuePath, QueueQuery query );
 
+    /**
+     * Get the ids of the messages posted with a timestamp after now and before until, oldest first.  Doesn't load the
+     * messages, start a transaction or move the consumer's position.
+     */
+    public List<UUID> getScheduledIds( String queuePath, long until, int limit );
+
     public Message getMessage( UUID messageId );
 
     public UUID getNewConsumerId();
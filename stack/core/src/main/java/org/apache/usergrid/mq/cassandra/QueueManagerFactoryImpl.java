@@ -25,6 +25,7 @@ import org.slf4j.LoggerFactory;
 import org.apache.usergrid.locking.LockManager;
 import org.apache.usergrid.mq.QueueManager;
 import org.apache.usergrid.mq.QueueManagerFactory;
+import org.apache.usergrid.mq.cassandra.io.ConsumerLeases;
 import org.apache.usergrid.persistence.cassandra.CassandraService;
 import org.apache.usergrid.persistence.cassandra.CounterUtils;
 
@@ -37,10 +38,15 @@ public class QueueManagerFactoryImpl implements QueueManagerFactory {
 
     public static String IMPLEMENTATION_DESCRIPTION = "Cassandra Queue Manager Factory 1.0";
 
+    public static final long DEFAULT_LEASE_BUCKET = 10000;
+
     private CassandraService cass;
     private CounterUtils counterUtils;
     private LockManager lockManager;
     private int lockTimeout;
+    private int leaseTimeout;
+    private long leaseBucket = DEFAULT_LEASE_BUCKET;
+    private ConsumerLeases consumerLeases;
 
     /**
      * Must be constructed with a CassandraClientPool.
@@ -56,6 +62,41 @@ public class QueueManagerFactoryImpl implements QueueManagerFactory {
     }
 
 
+    /**
+     * Read transactionally with leases on time buckets of the queue instead of locking the consumer on every read.
+     *
+     * @param leaseTimeout How long, in seconds, a lease lives without being renewed. 0 to lock on every read
+     */
+    public void setLeaseTimeout( int leaseTimeout ) {
+        this.leaseTimeout = leaseTimeout;
+    }
+
+
+    /** @param leaseBucket The width, in milliseconds, of the time buckets that are leased */
+    public void setLeaseBucket( long leaseBucket ) {
+        this.leaseBucket = leaseBucket;
+    }
+
+
+    /** The leases are shared by every application so they're renewed together */
+    private synchronized ConsumerLeases getConsumerLeases() {
+        if ( consumerLeases == null && leaseTimeout > 0 ) {
+            consumerLeases = new ConsumerLeases( cass, leaseTimeout, leaseBucket );
+        }
+
+        return consumerLeases;
+    }
+
+
+    /** Stop renewing the consumer leases */
+    public synchronized void destroy() {
+        if ( consumerLeases != null ) {
+            consumerLeases.shutdown();
+            consumerLeases = null;
+        }
+    }
+
+
     @Override
     public String getImpementationDescription() throws Exception {
         return IMPLEMENTATION_DESCRIPTION;
@@ -65,7 +106,7 @@ public class QueueManagerFactoryImpl implements QueueManagerFactory {
     @Override
     public QueueManager getQueueManager( UUID applicationId ) {
         QueueManagerImpl qm = new QueueManagerImpl();
-        qm.init( cass, counterUtils, lockManager, applicationId, lockTimeout );
+        qm.init( cass, counterUtils, lockManager, applicationId, lockTimeout ).setConsumerLeases( getConsumerLeases() );
         return qm;
         //return applicationContext.getAutowireCapableBeanFactory()
         //		.createBean(QueueManagerImpl.class)
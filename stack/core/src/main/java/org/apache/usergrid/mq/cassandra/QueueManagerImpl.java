@@ -45,12 +45,15 @@ import org.apache.usergrid.mq.QueueResults;
 import org.apache.usergrid.mq.QueueSet;
 import org.apache.usergrid.mq.QueueSet.QueueInfo;
 import org.apache.usergrid.mq.cassandra.QueueIndexUpdate.QueueIndexEntry;
+import org.apache.usergrid.mq.cassandra.io.ConsumerLeases;
 import org.apache.usergrid.mq.cassandra.io.ConsumerTransaction;
 import org.apache.usergrid.mq.cassandra.io.EndSearch;
 import org.apache.usergrid.mq.cassandra.io.FilterSearch;
+import org.apache.usergrid.mq.cassandra.io.LeasedConsumerTransaction;
 import org.apache.usergrid.mq.cassandra.io.NoTransactionSearch;
 import org.apache.usergrid.mq.cassandra.io.QueueBounds;
 import org.apache.usergrid.mq.cassandra.io.QueueSearch;
+import org.apache.usergrid.mq.cassandra.io.ScheduledSearch;
 import org.apache.usergrid.mq.cassandra.io.StartSearch;
 import org.apache.usergrid.persistence.AggregateCounter;
 import org.apache.usergrid.persistence.AggregateCounterSet;
@@ -148,6 +151,7 @@ public class QueueManagerImpl implements QueueManager {
     private CounterUtils counterUtils;
     private LockManager lockManager;
     private int lockTimeout;
+    private ConsumerLeases consumerLeases;
 
 
 
@@ -166,6 +170,16 @@ public class QueueManagerImpl implements QueueManager {
     }
 
 
+    /**
+     * Read transactionally with leases on time buckets of the queue instead of locking the consumer on every read.
+     * Null to lock.
+     */
+    public QueueManagerImpl setConsumerLeases( ConsumerLeases consumerLeases ) {
+        this.consumerLeases = consumerLeases;
+        return this;
+    }
+
+
     @Override
     public Message getMessage( UUID messageId ) {
         SliceQuery<UUID, String, ByteBuffer> q =
@@ -395,7 +409,10 @@ public class QueueManagerImpl implements QueueManager {
         }
 
         else if ( query.getPosition() == LAST || query.getPosition() == CONSUMER ) {
-            if ( query.getTimeout() > 0 ) {
+            if ( query.getTimeout() > 0 && consumerLeases != null ) {
+                search = new LeasedConsumerTransaction( applicationId, ko, cass, consumerLeases );
+            }
+            else if ( query.getTimeout() > 0 ) {
                 search = new ConsumerTransaction( applicationId, ko, lockManager, cass, lockTimeout );
             }
             else {
@@ -417,6 +434,15 @@ public class QueueManagerImpl implements QueueManager {
     }
 
 
+    @Override
+    public List<UUID> getScheduledIds( String queuePath, long until, int limit ) {
+
+        Keyspace ko = cass.getApplicationKeyspace( applicationId );
+
+        return new ScheduledSearch( ko ).getIds( queuePath, until, limit );
+    }
+
+
     public void batchSubscribeToQueue( Mutator<ByteBuffer> batch, String publisherQueuePath, UUID publisherQueueId,
                                        String subscriberQueuePath, UUID subscriberQueueId, long timestamp ) {
 
@@ -51,6 +51,12 @@ public enum QueuesCF implements CFEnum {
 
     CONSUMERS( "MQ_Consumers", "BytesType" ),
 
+    /**
+     * Leases, read cursors and completion markers of the time buckets of a consumer when reading with leases instead
+     * of locks. Keyed the same way as the consumer's timeouts
+     */
+    CONSUMER_LEASES( "MQ_Consumer_Leases", "BytesType" ),
+
     COUNTERS( "MQ_Counters", "BytesType", COUNTERTYPE.getClassName() ),
 
     PROPERTY_INDEX( "MQ_Property_Index",
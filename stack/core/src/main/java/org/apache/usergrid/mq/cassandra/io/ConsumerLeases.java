@@ -0,0 +1,566 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.mq.cassandra.io;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.persistence.cassandra.CassandraService;
+import org.apache.usergrid.persistence.hector.CountingMutator;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import me.prettyprint.hector.api.Keyspace;
+import me.prettyprint.hector.api.beans.HColumn;
+import me.prettyprint.hector.api.mutation.Mutator;
+import me.prettyprint.hector.api.query.SliceQuery;
+
+import static me.prettyprint.hector.api.factory.HFactory.createColumn;
+import static me.prettyprint.hector.api.factory.HFactory.createSliceQuery;
+import static org.apache.usergrid.mq.cassandra.QueuesCF.CONSUMER_LEASES;
+import static org.apache.usergrid.persistence.cassandra.Serializers.be;
+import static org.apache.usergrid.persistence.cassandra.Serializers.se;
+import static org.apache.usergrid.persistence.cassandra.Serializers.ue;
+
+
+/**
+ * Leases on time buckets of a queue for a single consumer, shared by every {@link LeasedConsumerTransaction} on this
+ * node.
+ *
+ * A lease is claimed by writing a column unique to this node into the consumer's lease row with a TTL and reading the
+ * bucket's lease columns back; the claim succeeds only when ours is the only one. Once claimed, the lease is kept and
+ * reused by local readers, which serialize on an in-process lock, and all leases held by this node are renewed together
+ * in a single mutation per keyspace. Leases that have not been used for a full lease period are released.
+ *
+ * The lease row also holds the read cursor of every bucket that has been started and a marker for every bucket that
+ * has been fully read, so another node can resume a bucket whose lease expired.
+ */
+public class ConsumerLeases {
+
+    private static final Logger logger = LoggerFactory.getLogger( ConsumerLeases.class );
+
+    /** The bucket used to redeliver expired transactions */
+    public static final long TIMEOUTS = -1;
+
+    private static final String LEASE_PREFIX = "lease:";
+    private static final String CURSOR_PREFIX = "cursor:";
+    private static final String DONE_PREFIX = "done:";
+
+    /** Sorts after every character used in a holder id */
+    private static final String LEASE_RANGE_END = "~";
+
+    /** The most columns read from a single lease row */
+    private static final int MAX_LEASE_COLUMNS = 10000;
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate( 0 );
+
+    private final CassandraService cass;
+    private final int leaseSeconds;
+    private final long leaseMillis;
+    private final long bucketMillis;
+
+    /** Unique to this node, a restarted node never inherits the leases of its previous run */
+    private final String holderId = UUID.randomUUID().toString();
+
+    /** Leases known to this node keyed by consumer, then by bucket */
+    private final ConcurrentMap<String, ConcurrentNavigableMap<Long, Lease>> leases =
+            new ConcurrentHashMap<String, ConcurrentNavigableMap<Long, Lease>>();
+
+    private final ScheduledExecutorService renewer;
+
+
+    /**
+     * @param cass The cassandra service
+     * @param leaseSeconds How long a lease lives without being renewed
+     * @param bucketMillis The width of the time buckets that are leased
+     */
+    public ConsumerLeases( CassandraService cass, int leaseSeconds, long bucketMillis ) {
+        if ( leaseSeconds < 3 ) {
+            throw new IllegalArgumentException( "The lease must last at least 3 seconds" );
+        }
+
+        if ( bucketMillis < 1 ) {
+            throw new IllegalArgumentException( "The bucket must be at least 1 millisecond wide" );
+        }
+
+        this.cass = cass;
+        this.leaseSeconds = leaseSeconds;
+        this.leaseMillis = TimeUnit.SECONDS.toMillis( leaseSeconds );
+        this.bucketMillis = bucketMillis;
+
+        long renewInterval = leaseMillis / 3;
+
+        renewer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon( true ).setNameFormat( "ConsumerLeases-%d" ).build() );
+        renewer.scheduleWithFixedDelay( new Runnable() {
+            @Override
+            public void run() {
+                renew();
+            }
+        }, renewInterval, renewInterval, TimeUnit.MILLISECONDS );
+    }
+
+
+    /**
+     * Stop renewing. The leases still held lapse on their own and are claimed again by whichever node reads next
+     */
+    public void shutdown() {
+        renewer.shutdown();
+
+        try {
+            if ( !renewer.awaitTermination( leaseMillis, TimeUnit.MILLISECONDS ) ) {
+                logger.warn( "Consumer lease renewal did not stop within {} ms", leaseMillis );
+            }
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    public long getBucket( long timestamp ) {
+        return timestamp / bucketMillis;
+    }
+
+
+    public long getBucketStart( long bucket ) {
+        return bucket * bucketMillis;
+    }
+
+
+    public long getBucketEnd( long bucket ) {
+        return getBucketStart( bucket ) + bucketMillis;
+    }
+
+
+    /**
+     * Get the leases this node holds on the buckets of a consumer, oldest bucket first. The timeouts lease is not
+     * included. Leases must be locked with {@link Lease#tryLock()} before they are used.
+     */
+    public Collection<Lease> getHeld( String consumer ) {
+        ConcurrentNavigableMap<Long, Lease> consumerLeases = leases.get( consumer );
+
+        if ( consumerLeases == null ) {
+            return new ArrayList<Lease>( 0 );
+        }
+
+        List<Lease> held = new ArrayList<Lease>();
+
+        for ( Lease lease : consumerLeases.tailMap( 0L ).values() ) {
+            if ( lease.isHeld() ) {
+                held.add( lease );
+            }
+        }
+
+        return held;
+    }
+
+
+    /** True if this node currently holds the lease on the bucket */
+    public boolean isHeld( String consumer, long bucket ) {
+        Lease lease = getLease( consumer, bucket );
+        return lease != null && lease.isHeld();
+    }
+
+
+    /**
+     * Lock the lease of this node on the bucket, claiming it if it is not held yet.
+     *
+     * @param ko The keyspace of the queue
+     * @param rowKey The lease row of the consumer
+     * @param consumer Identifies the consumer on this node
+     * @param bucket The bucket to lease
+     *
+     * @return The locked lease, or null if another reader on this node is using it or another node holds it. The
+     *         caller must {@link Lease#unlock()} it.
+     */
+    public Lease acquire( Keyspace ko, ByteBuffer rowKey, String consumer, long bucket ) {
+        ConcurrentNavigableMap<Long, Lease> consumerLeases = leases.get( consumer );
+
+        if ( consumerLeases == null ) {
+            ConcurrentNavigableMap<Long, Lease> created = new ConcurrentSkipListMap<Long, Lease>();
+            consumerLeases = leases.putIfAbsent( consumer, created );
+
+            if ( consumerLeases == null ) {
+                consumerLeases = created;
+            }
+        }
+
+        Lease lease = consumerLeases.get( bucket );
+
+        if ( lease == null ) {
+            Lease created = new Lease( ko, rowKey, consumer, bucket );
+            lease = consumerLeases.putIfAbsent( bucket, created );
+
+            if ( lease == null ) {
+                lease = created;
+            }
+        }
+
+        if ( !lease.lock.tryLock() ) {
+            return null;
+        }
+
+        // another reader released it between the lookup and the lock, start over with a new lease
+        if ( lease.released ) {
+            lease.lock.unlock();
+            return acquire( ko, rowKey, consumer, bucket );
+        }
+
+        if ( lease.isHeld() ) {
+            return lease;
+        }
+
+        // the lease lapsed, whoever held it since may have moved the cursor
+        lease.cursor = null;
+
+        boolean claimed = false;
+
+        try {
+            claimed = claim( lease );
+        }
+        catch ( RuntimeException e ) {
+            logger.warn( "Unable to claim lease on bucket {} for consumer {}", bucket, consumer, e );
+        }
+
+        if ( !claimed ) {
+            forget( lease );
+            lease.lock.unlock();
+            return null;
+        }
+
+        return lease;
+    }
+
+
+    /** Give up a lease. The caller must hold its lock */
+    public void release( Lease lease ) {
+        forget( lease );
+
+        Mutator<ByteBuffer> mutator = CountingMutator.createFlushingMutator( lease.ko, be );
+        mutator.addDeletion( lease.rowKey, CONSUMER_LEASES.getColumnFamily(), lease.getColumnName(), se,
+                cass.createTimestamp() );
+        mutator.execute();
+    }
+
+
+    /** Read the state of every bucket of a consumer's lease row */
+    public LeaseState readState( Keyspace ko, ByteBuffer rowKey ) {
+        SliceQuery<ByteBuffer, String, ByteBuffer> q = createSliceQuery( ko, be, se, be );
+        q.setColumnFamily( CONSUMER_LEASES.getColumnFamily() );
+        q.setKey( rowKey );
+        q.setRange( null, null, false, MAX_LEASE_COLUMNS );
+
+        LeaseState state = new LeaseState();
+
+        for ( HColumn<String, ByteBuffer> column : q.execute().get().getColumns() ) {
+            String name = column.getName();
+
+            if ( name.startsWith( DONE_PREFIX ) ) {
+                state.done.add( parseBucket( name.substring( DONE_PREFIX.length() ) ) );
+            }
+            else if ( name.startsWith( CURSOR_PREFIX ) ) {
+                state.cursors.put( parseBucket( name.substring( CURSOR_PREFIX.length() ) ),
+                        ue.fromByteBuffer( column.getValue() ) );
+            }
+            else if ( name.startsWith( LEASE_PREFIX ) ) {
+                String lease = name.substring( LEASE_PREFIX.length() );
+                int separator = lease.indexOf( ':' );
+
+                if ( !holderId.equals( lease.substring( separator + 1 ) ) ) {
+                    state.claimed.add( parseBucket( lease.substring( 0, separator ) ) );
+                }
+            }
+        }
+
+        return state;
+    }
+
+
+    /** Add the cursor of a bucket to a mutation */
+    public void addCursor( Mutator<ByteBuffer> mutator, ByteBuffer rowKey, long bucket, UUID cursor ) {
+        mutator.addInsertion( rowKey, CONSUMER_LEASES.getColumnFamily(),
+                createColumn( CURSOR_PREFIX + formatBucket( bucket ), cursor, cass.createTimestamp(), se, ue ) );
+    }
+
+
+    /** Add the completion of a bucket to a mutation. Its cursor is no longer needed */
+    public void addDone( Mutator<ByteBuffer> mutator, ByteBuffer rowKey, long bucket ) {
+        long timestamp = cass.createTimestamp();
+
+        mutator.addInsertion( rowKey, CONSUMER_LEASES.getColumnFamily(),
+                createColumn( DONE_PREFIX + formatBucket( bucket ), EMPTY, timestamp, se, be ) );
+        mutator.addDeletion( rowKey, CONSUMER_LEASES.getColumnFamily(), CURSOR_PREFIX + formatBucket( bucket ), se,
+                timestamp );
+    }
+
+
+    /** Add the removal of a completed bucket's marker to a mutation */
+    public void addDoneRemoval( Mutator<ByteBuffer> mutator, ByteBuffer rowKey, long bucket ) {
+        mutator.addDeletion( rowKey, CONSUMER_LEASES.getColumnFamily(), DONE_PREFIX + formatBucket( bucket ), se,
+                cass.createTimestamp() );
+    }
+
+
+    /** Write our lease column and verify nobody else holds the bucket */
+    private boolean claim( Lease lease ) {
+        long claimedAt = System.currentTimeMillis();
+
+        Mutator<ByteBuffer> mutator = CountingMutator.createFlushingMutator( lease.ko, be );
+        mutator.addInsertion( lease.rowKey, CONSUMER_LEASES.getColumnFamily(),
+                createColumn( lease.getColumnName(), EMPTY, cass.createTimestamp(), leaseSeconds, se, be ) );
+        mutator.execute();
+
+        String prefix = LEASE_PREFIX + formatBucket( lease.bucket ) + ":";
+
+        SliceQuery<ByteBuffer, String, ByteBuffer> q = createSliceQuery( lease.ko, be, se, be );
+        q.setColumnFamily( CONSUMER_LEASES.getColumnFamily() );
+        q.setKey( lease.rowKey );
+        q.setRange( prefix, prefix + LEASE_RANGE_END, false, 2 );
+
+        List<HColumn<String, ByteBuffer>> holders = q.execute().get().getColumns();
+
+        if ( holders.size() == 1 && lease.getColumnName().equals( holders.get( 0 ).getName() ) ) {
+            lease.expiresAt = claimedAt + leaseMillis;
+            lease.lastUsed = claimedAt;
+
+            if ( logger.isDebugEnabled() ) {
+                logger.debug( "Claimed lease on bucket {} for consumer {}", lease.bucket, lease.consumer );
+            }
+
+            return true;
+        }
+
+        // somebody else got there first, or we raced them. Back off so one of us can win on the next attempt
+        mutator = CountingMutator.createFlushingMutator( lease.ko, be );
+        mutator.addDeletion( lease.rowKey, CONSUMER_LEASES.getColumnFamily(), lease.getColumnName(), se,
+                cass.createTimestamp() );
+        mutator.execute();
+
+        return false;
+    }
+
+
+    /** Renew every lease in use in a single mutation per keyspace, and release the idle ones */
+    private void renew() {
+        try {
+            long now = System.currentTimeMillis();
+
+            Map<Keyspace, Mutator<ByteBuffer>> mutators = new HashMap<Keyspace, Mutator<ByteBuffer>>();
+            List<Lease> renewed = new ArrayList<Lease>();
+
+            for ( ConcurrentNavigableMap<Long, Lease> consumerLeases : leases.values() ) {
+                for ( Lease lease : consumerLeases.values() ) {
+                    if ( !lease.isHeld() ) {
+                        forget( lease );
+                        continue;
+                    }
+
+                    if ( now - lease.lastUsed > leaseMillis ) {
+                        if ( lease.lock.tryLock() ) {
+                            try {
+                                release( lease );
+                            }
+                            finally {
+                                lease.lock.unlock();
+                            }
+                        }
+                        continue;
+                    }
+
+                    Mutator<ByteBuffer> mutator = mutators.get( lease.ko );
+
+                    if ( mutator == null ) {
+                        mutator = CountingMutator.createFlushingMutator( lease.ko, be );
+                        mutators.put( lease.ko, mutator );
+                    }
+
+                    mutator.addInsertion( lease.rowKey, CONSUMER_LEASES.getColumnFamily(),
+                            createColumn( lease.getColumnName(), EMPTY, cass.createTimestamp(), leaseSeconds, se,
+                                    be ) );
+                    renewed.add( lease );
+                }
+            }
+
+            for ( Mutator<ByteBuffer> mutator : mutators.values() ) {
+                mutator.execute();
+            }
+
+            for ( Lease lease : renewed ) {
+                lease.expiresAt = now + leaseMillis;
+            }
+
+            if ( logger.isDebugEnabled() ) {
+                logger.debug( "Renewed {} consumer leases", renewed.size() );
+            }
+        }
+        catch ( RuntimeException e ) {
+            // the leases will lapse and be claimed again by whichever node reads next
+            logger.error( "Unable to renew consumer leases", e );
+        }
+    }
+
+
+    private Lease getLease( String consumer, long bucket ) {
+        ConcurrentNavigableMap<Long, Lease> consumerLeases = leases.get( consumer );
+        return consumerLeases == null ? null : consumerLeases.get( bucket );
+    }
+
+
+    private void forget( Lease lease ) {
+        lease.released = true;
+        lease.expiresAt = 0;
+
+        ConcurrentNavigableMap<Long, Lease> consumerLeases = leases.get( lease.consumer );
+
+        if ( consumerLeases != null ) {
+            consumerLeases.remove( lease.bucket, lease );
+        }
+    }
+
+
+    private static String formatBucket( long bucket ) {
+        return bucket == TIMEOUTS ? "timeouts" : String.format( "%019d", bucket );
+    }
+
+
+    private static long parseBucket( String bucket ) {
+        int separator = bucket.indexOf( ':' );
+
+        if ( separator != -1 ) {
+            bucket = bucket.substring( 0, separator );
+        }
+
+        return "timeouts".equals( bucket ) ? TIMEOUTS : Long.parseLong( bucket );
+    }
+
+
+    /** A lease of this node on a single bucket */
+    public class Lease {
+
+        private final Keyspace ko;
+        private final ByteBuffer rowKey;
+        private final String consumer;
+        private final long bucket;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private volatile long expiresAt;
+        private volatile long lastUsed;
+        private volatile boolean released;
+
+        /** The last message read from the bucket, only touched while locked */
+        private UUID cursor;
+
+
+        private Lease( Keyspace ko, ByteBuffer rowKey, String consumer, long bucket ) {
+            this.ko = ko;
+            this.rowKey = rowKey;
+            this.consumer = consumer;
+            this.bucket = bucket;
+        }
+
+
+        public long getBucket() {
+            return bucket;
+        }
+
+
+        public UUID getCursor() {
+            return cursor;
+        }
+
+
+        public void setCursor( UUID cursor ) {
+            this.cursor = cursor;
+        }
+
+
+        /** True while enough of the lease remains to safely read under it */
+        public boolean isHeld() {
+            return !released && expiresAt - System.currentTimeMillis() > leaseMillis / 3;
+        }
+
+
+        public boolean tryLock() {
+            if ( !lock.tryLock() ) {
+                return false;
+            }
+
+            if ( !isHeld() ) {
+                lock.unlock();
+                return false;
+            }
+
+            return true;
+        }
+
+
+        public void unlock() {
+            lastUsed = System.currentTimeMillis();
+            lock.unlock();
+        }
+
+
+        private String getColumnName() {
+            return LEASE_PREFIX + formatBucket( bucket ) + ":" + holderId;
+        }
+    }
+
+
+    /** The buckets of a consumer that are finished, started or leased by other nodes */
+    public static class LeaseState {
+
+        private final Set<Long> done = new HashSet<Long>();
+        private final Map<Long, UUID> cursors = new HashMap<Long, UUID>();
+        private final Set<Long> claimed = new HashSet<Long>();
+
+
+        public boolean isDone( long bucket ) {
+            return done.contains( bucket );
+        }
+
+
+        /** True if another node has a lease column on the bucket */
+        public boolean isClaimed( long bucket ) {
+            return claimed.contains( bucket );
+        }
+
+
+        public UUID getCursor( long bucket ) {
+            return cursors.get( bucket );
+        }
+    }
+}
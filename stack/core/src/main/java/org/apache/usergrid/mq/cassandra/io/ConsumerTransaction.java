@@ -61,7 +61,7 @@ public class ConsumerTransaction extends NoTransactionSearch
 {
 
     private static final Logger logger = LoggerFactory.getLogger( ConsumerTransaction.class );
-    private static final int MAX_READ = 10000;
+    protected static final int MAX_READ = 10000;
     private final LockManager lockManager;
     private final UUID applicationId;
     protected final CassandraService cass;
@@ -461,10 +461,10 @@ public class ConsumerTransaction extends NoTransactionSearch
     }
 
 
-    private static class TransactionPointer
+    protected static class TransactionPointer
     {
-        private UUID expiration;
-        private UUID targetMessage;
+        protected final UUID expiration;
+        protected final UUID targetMessage;
 
 
         /**
@@ -0,0 +1,346 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.mq.cassandra.io;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.mq.Message;
+import org.apache.usergrid.mq.QueueQuery;
+import org.apache.usergrid.mq.QueueResults;
+import org.apache.usergrid.mq.cassandra.io.ConsumerLeases.Lease;
+import org.apache.usergrid.mq.cassandra.io.ConsumerLeases.LeaseState;
+import org.apache.usergrid.persistence.cassandra.CassandraService;
+import org.apache.usergrid.persistence.hector.CountingMutator;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import me.prettyprint.hector.api.Keyspace;
+import me.prettyprint.hector.api.mutation.Mutator;
+
+import static org.apache.usergrid.mq.cassandra.CassandraMQUtils.getConsumerId;
+import static org.apache.usergrid.mq.cassandra.CassandraMQUtils.getQueueClientTransactionKey;
+import static org.apache.usergrid.mq.cassandra.CassandraMQUtils.getQueueId;
+import static org.apache.usergrid.persistence.cassandra.Serializers.be;
+import static org.apache.usergrid.utils.UUIDUtils.getTimestampInMillis;
+
+
+/**
+ * Reads from the queue and starts a transaction without taking the distributed lock of the consumer.
+ *
+ * The messages of a consumer are split into time buckets and each bucket is read by the single node holding its lease,
+ * see {@link ConsumerLeases}. Readers first drain the buckets their node already leases and only read the lease row to
+ * claim more buckets when those run dry. Expired transactions are redelivered by the node holding the timeouts lease.
+ * The consumer's position is moved past a bucket once it, and every bucket before it, has been fully read.
+ */
+public class LeasedConsumerTransaction extends ConsumerTransaction {
+
+    private static final Logger logger = LoggerFactory.getLogger( LeasedConsumerTransaction.class );
+
+    /** The most buckets a single read will try to claim */
+    private static final int MAX_CLAIMS = 10;
+
+    private final UUID applicationId;
+    private final ConsumerLeases leases;
+
+
+    public LeasedConsumerTransaction( UUID applicationId, Keyspace ko, CassandraService cass,
+                                      ConsumerLeases leases ) {
+        super( applicationId, ko, null, cass, 0 );
+        this.applicationId = applicationId;
+        this.leases = leases;
+    }
+
+
+    @Override
+    public QueueResults getResults( String queuePath, QueueQuery query ) {
+
+        UUID queueId = getQueueId( queuePath );
+        UUID consumerId = getConsumerId( queueId, query );
+
+        if ( query.getLimit() > MAX_READ ) {
+            throw new IllegalArgumentException( String.format(
+                    "You specified a size of %d, you cannot specify a size larger than %d when using transations",
+                    query.getLimit( DEFAULT_READ ), MAX_READ ) );
+        }
+
+        long startTime = System.currentTimeMillis();
+
+        UUID startTimeUUID = UUIDUtils.newTimeUUID( startTime, 0 );
+
+        QueueBounds bounds = getQueueBounds( queueId );
+
+        //queue has never been written to
+        if ( bounds == null ) {
+            return createResults( new ArrayList<Message>( 0 ), queuePath, queueId, consumerId );
+        }
+
+        Read read = new Read( queueId, consumerId, startTime, startTimeUUID, query.getLimit( DEFAULT_READ ) );
+
+        try {
+            if ( leases.isHeld( read.consumer, ConsumerLeases.TIMEOUTS ) ) {
+                readTimeouts( read );
+            }
+
+            for ( Lease lease : leases.getHeld( read.consumer ) ) {
+                if ( read.isFull() ) {
+                    break;
+                }
+
+                // a lease that was never positioned is picked up again when it's claimed
+                if ( lease.getCursor() == null || !lease.tryLock() ) {
+                    continue;
+                }
+
+                read.locked.add( lease );
+                readBucket( read, lease );
+            }
+
+            if ( !read.isFull() ) {
+                claimBuckets( read, bounds );
+            }
+
+            List<Message> messages = loadMessages( read.ids, false );
+
+            // write our future timeouts for all these messages
+            writeTransactions( messages, query.getTimeout() + startTime, queueId, consumerId );
+
+            // remove all read transaction pointers
+            deleteTransactionPointers( read.pointers, read.pointers.size(), queueId, consumerId );
+
+            // only move the cursors once the transactions exist, a failure in between redelivers instead of losing
+            if ( read.mutations > 0 ) {
+                read.mutator.execute();
+            }
+
+            for ( Map.Entry<Lease, UUID> cursor : read.cursors.entrySet() ) {
+                cursor.getKey().setCursor( cursor.getValue() );
+            }
+
+            for ( Lease lease : read.finished ) {
+                leases.release( lease );
+            }
+
+            return createResults( messages, queuePath, queueId, consumerId );
+        }
+        finally {
+            for ( Lease lease : read.locked ) {
+                lease.unlock();
+            }
+        }
+    }
+
+
+    /** Claim buckets this node doesn't lease yet, moving the consumer's position past the finished ones first */
+    private void claimBuckets( Read read, QueueBounds bounds ) {
+
+        UUID position = getConsumerQueuePosition( read.queueId, read.consumerId );
+
+        LeaseState state = leases.readState( ko, read.rowKey );
+
+        long first = leases.getBucket( getTimestampInMillis( position != null ? position : bounds.getOldest() ) );
+        long last = leases.getBucket( read.startTime );
+
+        long next = first;
+
+        while ( next < last && state.isDone( next ) ) {
+            next++;
+        }
+
+        // closed buckets without a single message don't need to be leased, skip straight past them
+        long from = next;
+
+        if ( next < last ) {
+            UUID nextStart = getBucketBoundary( next );
+
+            List<UUID> firstIds = getQueueRange( read.queueId, new QueueBounds( nextStart, read.startTimeUUID ),
+                    new SearchParam( nextStart, false, false, 1 ) );
+
+            from = firstIds.isEmpty() ? last :
+                   Math.max( next, leases.getBucket( getTimestampInMillis( firstIds.get( 0 ) ) ) );
+        }
+
+        if ( from > first ) {
+            // the position lands on the last bucket behind us, which keeps its marker so the next read skips it
+            for ( long bucket = first; bucket < from - 1; bucket++ ) {
+                if ( state.isDone( bucket ) ) {
+                    leases.addDoneRemoval( read.mutator, read.rowKey, bucket );
+                    read.mutations++;
+                }
+            }
+
+            if ( !state.isDone( from - 1 ) ) {
+                leases.addDone( read.mutator, read.rowKey, from - 1 );
+                read.mutations++;
+            }
+
+            writeClientPointer( read.queueId, read.consumerId, getBucketBoundary( from ) );
+
+            if ( logger.isDebugEnabled() ) {
+                logger.debug( "Moved consumer '{}' of queue '{}' from bucket {} to {}",
+                        new Object[] { read.consumerId, read.queueId, first, from } );
+            }
+        }
+
+        if ( !read.isFull() && !state.isClaimed( ConsumerLeases.TIMEOUTS ) && !leases
+                .isHeld( read.consumer, ConsumerLeases.TIMEOUTS ) ) {
+            readTimeouts( read );
+        }
+
+        int claims = 0;
+
+        for ( long bucket = from; bucket <= last && !read.isFull() && claims < MAX_CLAIMS; bucket++ ) {
+            if ( state.isDone( bucket ) || state.isClaimed( bucket ) || leases.isHeld( read.consumer, bucket ) ) {
+                continue;
+            }
+
+            claims++;
+
+            Lease lease = leases.acquire( ko, read.rowKey, read.consumer, bucket );
+
+            if ( lease == null ) {
+                continue;
+            }
+
+            read.locked.add( lease );
+
+            // resume where the last holder stopped, never before the consumer's position
+            if ( lease.getCursor() == null ) {
+                lease.setCursor( UUIDUtils.max( state.getCursor( bucket ),
+                        UUIDUtils.max( getBucketBoundary( bucket ), position ) ) );
+            }
+
+            readBucket( read, lease );
+        }
+    }
+
+
+    /**
+     * Read the next messages of a leased bucket, finishing it when a closed bucket has nothing left. The lease keeps its
+     * cursor until the read commits, so a failed read is retried from the same place
+     */
+    private void readBucket( Read read, Lease lease ) {
+
+        long bucket = lease.getBucket();
+        long bucketEnd = leases.getBucketEnd( bucket );
+
+        UUID cursor = lease.getCursor();
+        UUID finish = UUIDUtils.min( getBucketBoundary( bucket + 1 ), read.startTimeUUID );
+
+        int limit = read.limit - read.ids.size();
+
+        List<UUID> ids = new ArrayList<UUID>( 0 );
+
+        if ( UUIDUtils.compare( cursor, finish ) < 0 ) {
+            ids = getQueueRange( read.queueId, new QueueBounds( cursor, finish ),
+                    new SearchParam( cursor, false, true, limit ) );
+        }
+
+        if ( !ids.isEmpty() ) {
+            UUID last = ids.get( ids.size() - 1 );
+            read.cursors.put( lease, last );
+            leases.addCursor( read.mutator, read.rowKey, bucket, last );
+            read.mutations++;
+            read.ids.addAll( ids );
+        }
+
+        if ( ids.size() < limit && bucketEnd <= read.startTime ) {
+            leases.addDone( read.mutator, read.rowKey, bucket );
+            read.mutations++;
+            read.finished.add( lease );
+        }
+    }
+
+
+    /** Redeliver expired transactions if this node holds, or can claim, the timeouts lease */
+    private void readTimeouts( Read read ) {
+
+        Lease lease = leases.acquire( ko, read.rowKey, read.consumer, ConsumerLeases.TIMEOUTS );
+
+        if ( lease == null ) {
+            return;
+        }
+
+        read.locked.add( lease );
+
+        int limit = read.limit - read.ids.size();
+
+        List<TransactionPointer> pointers =
+                getConsumerIds( read.queueId, read.consumerId, new SearchParam( null, false, false, limit ),
+                        read.startTimeUUID );
+
+        if ( pointers.size() > limit ) {
+            pointers = pointers.subList( 0, limit );
+        }
+
+        for ( TransactionPointer pointer : pointers ) {
+            read.ids.add( pointer.targetMessage );
+        }
+
+        read.pointers.addAll( pointers );
+    }
+
+
+    /** The greatest message id that still falls before the bucket */
+    private UUID getBucketBoundary( long bucket ) {
+        return UUIDUtils.maxTimeUUID( leases.getBucketStart( bucket ) - 1 );
+    }
+
+
+    /** The state of a single read */
+    private class Read {
+
+        private final UUID queueId;
+        private final UUID consumerId;
+        private final ByteBuffer rowKey;
+        private final String consumer;
+        private final long startTime;
+        private final UUID startTimeUUID;
+        private final int limit;
+
+        private final List<UUID> ids = new ArrayList<UUID>();
+        private final List<TransactionPointer> pointers = new ArrayList<TransactionPointer>();
+        private final List<Lease> locked = new ArrayList<Lease>();
+        private final List<Lease> finished = new ArrayList<Lease>();
+        private final Map<Lease, UUID> cursors = new LinkedHashMap<Lease, UUID>();
+        private final Mutator<ByteBuffer> mutator = CountingMutator.createFlushingMutator( ko, be );
+        private int mutations;
+
+
+        private Read( UUID queueId, UUID consumerId, long startTime, UUID startTimeUUID, int limit ) {
+            this.queueId = queueId;
+            this.consumerId = consumerId;
+            this.rowKey = getQueueClientTransactionKey( queueId, consumerId );
+            this.consumer = applicationId + ":" + queueId + ":" + consumerId;
+            this.startTime = startTime;
+            this.startTimeUUID = startTimeUUID;
+            this.limit = limit;
+        }
+
+
+        private boolean isFull() {
+            return ids.size() >= limit;
+        }
+    }
+}
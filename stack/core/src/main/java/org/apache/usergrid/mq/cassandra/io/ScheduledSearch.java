@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.mq.cassandra.io;
+
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.usergrid.mq.QueueQuery;
+
+import me.prettyprint.hector.api.Keyspace;
+
+import static org.apache.usergrid.mq.cassandra.CassandraMQUtils.getQueueId;
+import static org.apache.usergrid.utils.UUIDUtils.getTimestampInMillis;
+import static org.apache.usergrid.utils.UUIDUtils.newTimeUUID;
+
+
+/**
+ * Reads the messages that were posted with a timestamp that is still in the future, oldest first, without starting
+ * transactions or moving the consumer's position.  Transactional reads won't return these until their time has come.
+ */
+public class ScheduledSearch extends NoTransactionSearch
+{
+    public ScheduledSearch( Keyspace ko )
+    {
+        super( ko );
+    }
+
+
+    /**
+     * Get the ids of the messages due after now and before until, oldest first.  The messages themselves are never
+     * loaded, a message id is a time uuid of its timestamp.
+     */
+    public List<UUID> getIds( String queuePath, long until, int limit )
+    {
+        UUID queueId = getQueueId( queuePath );
+        QueueBounds bounds = getQueueBounds( queueId );
+
+        if ( bounds == null || bounds.getNewest() == null )
+        {
+            return Collections.emptyList();
+        }
+
+        //don't slice past until, everything after it is later still
+        UUID finish = getTimestampInMillis( bounds.getNewest() ) < until ? bounds.getNewest() : newTimeUUID( until );
+
+        return getIds( queueId, null, new QueueBounds( bounds.getOldest(), finish ), getParams( limit ) );
+    }
+
+
+    @Override
+    protected SearchParam getParams( UUID queueId, UUID consumerId, QueueQuery query )
+    {
+        return getParams( query.getLimit( DEFAULT_READ ) );
+    }
+
+
+    private SearchParam getParams( int limit )
+    {
+        return new SearchParam( newTimeUUID( System.currentTimeMillis() ), false, false, limit );
+    }
+
+
+    @Override
+    protected List<UUID> getIds( UUID queueId, UUID consumerId, QueueBounds bounds, SearchParam params )
+    {
+        //nothing posted past now, don't slice from a start after the finish
+        if ( bounds == null || bounds.getNewest() == null
+                || getTimestampInMillis( bounds.getNewest() ) <= getTimestampInMillis( params.startId ) )
+        {
+            return Collections.emptyList();
+        }
+
+        return getQueueRange( queueId, bounds, params );
+    }
+
+
+    @Override
+    protected void writeClientPointer( UUID queueId, UUID consumerId, UUID lastReturnedId )
+    {
+        //no op, peeking ahead doesn't consume anything
+    }
+}
@@ -91,6 +91,22 @@ public interface EntityManager {
     public Entity create( UUID importId, String entityType, Map<String, Object> properties )
             throws Exception;
 
+    /**
+     * Creates a group of imported entities of the specified type.  Unique values of the whole group are verified
+     * together, the entities and their collection edges are written with combined mutations, and the group is
+     * indexed with a single index batch.
+     *
+     * @param entityType the type of the entities to create.
+     * @param entities property values of each entity, keyed by the UUID to assign to it.
+     *
+     * @return the reason each entity that could not be created failed, keyed by its UUID.  Every other entity was
+     * created.
+     *
+     * @throws Exception if the group could not be written
+     */
+    public Map<UUID, Exception> createBatch( String entityType, Map<UUID, Map<String, Object>> entities )
+            throws Exception;
+
     /**
      * Creates an entity of the specified type attached to the specified application.
      * @param id
@@ -143,6 +159,15 @@ public interface EntityManager {
      */
     public Entity get( EntityRef entityRef ) throws Exception;
 
+    /**
+     * Get the latest version of the entity without loading it.  Versions are time uuids that change on every write.
+     *
+     * @param entityRef an Entity reference
+     *
+     * @return the version, or null if the entity doesn't exist or has been deleted
+     */
+    public UUID getEntityVersion( EntityRef entityRef ) throws Exception;
+
     public <A extends Entity> A get( UUID entityId, Class<A> entityClass ) throws Exception;
 
     /**
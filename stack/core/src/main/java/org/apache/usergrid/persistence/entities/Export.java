@@ -18,6 +18,9 @@
 package org.apache.usergrid.persistence.entities;
 
 
+import java.util.List;
+import java.util.Map;
+
 import javax.xml.bind.annotation.XmlRootElement;
 
 import org.apache.usergrid.persistence.TypedEntity;
@@ -51,6 +54,12 @@ public class Export extends TypedEntity {
     @EntityProperty
     protected String errorMessage;
 
+    /**
+     * Progress of every collection being exported, so a failed export can resume
+     */
+    @EntityProperty
+    protected List<Map<String, Object>> partitions;
+
 
     public Export() {
     }
@@ -85,4 +94,15 @@ public class Export extends TypedEntity {
         this.errorMessage = errorMessage;
     }
 
+
+    @JsonSerialize(include = JsonSerialize.Inclusion.NON_NULL)
+    public List<Map<String, Object>> getPartitions() {
+        return partitions;
+    }
+
+
+    public void setPartitions( final List<Map<String, Object>> partitions ) {
+        this.partitions = partitions;
+    }
+
 }
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.batch.service;
+
+
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import org.apache.usergrid.batch.repository.JobAccessor;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+
+import com.google.inject.Injector;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * When the scheduler reads the job queue, driven by single iterations rather than the service's own schedule
+ */
+public class JobSchedulerServiceTest {
+
+    /** Long enough that no second lookahead happens during a test */
+    private static final long INTERVAL = 60000;
+
+    private JobAccessor jobAccessor;
+    private JobSchedulerService scheduler;
+
+
+    @Before
+    public void startScheduler() throws Exception {
+        jobAccessor = mock( JobAccessor.class );
+
+        Injector injector = mock( Injector.class );
+        when( injector.getInstance( MetricsFactory.class ) ).thenReturn( mock( MetricsFactory.class ) );
+
+        scheduler = new JobSchedulerService();
+        scheduler.setJobAccessor( jobAccessor );
+        scheduler.setInjector( injector );
+        scheduler.setInterval( INTERVAL );
+        scheduler.setTick( 10 );
+
+        scheduler.startUp();
+    }
+
+
+    @After
+    public void stopScheduler() throws Exception {
+        scheduler.shutDown();
+    }
+
+
+    @Test
+    public void lookaheadLoadsNextInterval() throws Exception {
+        long before = System.currentTimeMillis();
+
+        scheduler.runOneIteration();
+
+        long after = System.currentTimeMillis();
+
+        ArgumentCaptor<Long> until = ArgumentCaptor.forClass( Long.class );
+        verify( jobAccessor ).getUpcoming( until.capture(), anyInt() );
+        verify( jobAccessor ).getJobs( anyInt() );
+
+        assertTrue( until.getValue() >= before + INTERVAL );
+        assertTrue( until.getValue() <= after + INTERVAL );
+
+        // nothing is due and nobody woke us, the queue isn't read again
+        scheduler.runOneIteration();
+
+        verify( jobAccessor ).getUpcoming( anyLong(), anyInt() );
+        verify( jobAccessor ).getJobs( anyInt() );
+    }
+
+
+    @Test
+    public void upcomingJobReadsQueueWhenDue() throws Exception {
+        long fireTime = System.currentTimeMillis() + 50;
+
+        when( jobAccessor.getUpcoming( anyLong(), anyInt() ) ).thenReturn( Collections.singletonList( fireTime ) );
+
+        scheduler.runOneIteration();
+        verify( jobAccessor ).getJobs( anyInt() );
+
+        Thread.sleep( 100 );
+
+        scheduler.runOneIteration();
+
+        // loaded by the lookahead, due before the next one
+        verify( jobAccessor ).getUpcoming( anyLong(), anyInt() );
+        verify( jobAccessor, times( 2 ) ).getJobs( anyInt() );
+    }
+
+
+    @Test
+    public void scheduledNowWakes() throws Exception {
+        scheduler.runOneIteration();
+
+        scheduler.onSchedule( System.currentTimeMillis() );
+        scheduler.runOneIteration();
+
+        verify( jobAccessor ).getUpcoming( anyLong(), anyInt() );
+        verify( jobAccessor, times( 2 ) ).getJobs( anyInt() );
+
+        // woken once only
+        scheduler.runOneIteration();
+        verify( jobAccessor, times( 2 ) ).getJobs( anyInt() );
+    }
+
+
+    @Test
+    public void scheduledLaterWaitsForFireTime() throws Exception {
+        scheduler.runOneIteration();
+
+        scheduler.onSchedule( System.currentTimeMillis() + 50 );
+        scheduler.runOneIteration();
+
+        verify( jobAccessor ).getJobs( anyInt() );
+
+        Thread.sleep( 100 );
+
+        scheduler.runOneIteration();
+
+        verify( jobAccessor ).getUpcoming( anyLong(), anyInt() );
+        verify( jobAccessor, times( 2 ) ).getJobs( anyInt() );
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.batch.service;
+
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class TimeWheelTest {
+
+    private static final long START = 1000000;
+
+
+    @Test
+    public void dueOnTick() {
+        TimeWheel wheel = new TimeWheel( 10, 8, 1000, START );
+
+        assertTrue( wheel.schedule( START + 25 ) );
+
+        // rounded up to the tick, never early
+        assertFalse( wheel.advance( START + 20 ) );
+        assertFalse( wheel.advance( START + 29 ) );
+        assertTrue( wheel.advance( START + 30 ) );
+        assertFalse( wheel.advance( START + 40 ) );
+        assertEquals( 0, wheel.size() );
+    }
+
+
+    @Test
+    public void cascadesFromUpperLevels() {
+        TimeWheel wheel = new TimeWheel( 10, 8, 1000, START );
+
+        // past the lowest level, the second and third levels hold these
+        assertTrue( wheel.schedule( START + 200 ) );
+        assertTrue( wheel.schedule( START + 900 ) );
+
+        for ( long now = START; now < START + 200; now += 10 ) {
+            assertFalse( wheel.advance( now ) );
+        }
+
+        assertTrue( wheel.advance( START + 200 ) );
+
+        for ( long now = START + 210; now < START + 900; now += 10 ) {
+            assertFalse( wheel.advance( now ) );
+        }
+
+        assertTrue( wheel.advance( START + 900 ) );
+        assertEquals( 0, wheel.size() );
+    }
+
+
+    @Test
+    public void sameTickHeldOnce() {
+        TimeWheel wheel = new TimeWheel( 10, 8, 1000, START );
+
+        wheel.schedule( START + 51 );
+        wheel.schedule( START + 55 );
+        wheel.schedule( START + 60 );
+
+        assertEquals( 1, wheel.size() );
+    }
+
+
+    @Test
+    public void pastHorizon() {
+        TimeWheel wheel = new TimeWheel( 10, 8, 1000, START );
+
+        assertFalse( wheel.schedule( START + 100000 ) );
+        assertEquals( 0, wheel.size() );
+    }
+
+
+    @Test
+    public void alreadyDue() {
+        TimeWheel wheel = new TimeWheel( 10, 8, 1000, START );
+
+        assertTrue( wheel.schedule( START - 100 ) );
+        assertTrue( wheel.advance( START ) );
+        assertFalse( wheel.advance( START ) );
+    }
+
+
+    @Test
+    public void skippedAhead() {
+        TimeWheel wheel = new TimeWheel( 10, 8, 1000, START );
+
+        wheel.schedule( START + 500 );
+
+        // everything held comes due when the wheel is turned past its reach at once
+        assertTrue( wheel.advance( START + 100000 ) );
+        assertEquals( 0, wheel.size() );
+    }
+}
@@ -75,5 +75,8 @@ public class AggregationServiceTest extends AbstractCoreIT {
         Assert.assertTrue(sumEach.containsKey("tests") && sumEach.containsKey("test2s"));
         Assert.assertEquals(sum3, (long) sumEach.get("tests"));
 
+        Assert.assertEquals(sum3, aggregationService.getCollectionSize(applicationScope, "tests"));
+        Assert.assertEquals(2, aggregationService.getCollectionCount(applicationScope, "tests"));
+
     }
 }
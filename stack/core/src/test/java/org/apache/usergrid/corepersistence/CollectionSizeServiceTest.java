@@ -0,0 +1,90 @@
+/*
+ *
+ *  * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  *  contributor license agreements.  The ASF licenses this file to You
+ *  * under the Apache License, Version 2.0 (the "License"); you may not
+ *  * use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *     http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.  For additional information regarding
+ *  * copyright in this work, please see the NOTICE file in the top level
+ *  * directory of this distribution.
+ *
+ */
+package org.apache.usergrid.corepersistence;
+
+import com.google.inject.Injector;
+import org.apache.usergrid.AbstractCoreIT;
+import org.apache.usergrid.cassandra.SpringResource;
+import org.apache.usergrid.persistence.Entity;
+import org.apache.usergrid.persistence.EntityManager;
+import org.apache.usergrid.persistence.SimpleEntityRef;
+import org.apache.usergrid.persistence.map.MapManager;
+import org.apache.usergrid.persistence.map.MapManagerFactory;
+import org.apache.usergrid.persistence.map.impl.MapScopeImpl;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.utils.UUIDUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Collection counters kept by the collection size service.
+ */
+public class CollectionSizeServiceTest extends AbstractCoreIT {
+
+    @Test
+    public void testBatchCreateCounted() throws Exception {
+        EntityManager em = this.app.getEntityManager();
+        Injector injector = SpringResource.getInstance().getBean(Injector.class);
+
+        //the counters the service keeps in the application's collectionsizes map
+        MapManager mapManager = injector.getInstance(MapManagerFactory.class)
+            .createMapManager(new MapScopeImpl(new SimpleId(this.app.getId(), "application"), "collectionsizes"));
+
+        Map<UUID, Map<String, Object>> batch = new LinkedHashMap<>();
+        for(int i = 0; i < 3; i++){
+            Map<String, Object> props = new HashMap<>();
+            props.put("name", "batchcount" + i);
+            batch.put(UUIDUtils.newTimeUUID(), props);
+        }
+
+        Map<UUID, Exception> failures = em.createBatch("batchcount", batch);
+        Assert.assertTrue(failures.isEmpty());
+
+        //the batch is indexed through its collection edges, which count it before createBatch returns
+        Assert.assertEquals(3L, (long) mapManager.getCounter("count:batchcounts"));
+
+        long size = 0;
+        for(UUID uuid : batch.keySet()){
+            Entity entity = em.get(new SimpleEntityRef("batchcount", uuid));
+            size += entity.getSize();
+        }
+        Assert.assertEquals(size, (long) mapManager.getCounter("size:batchcounts"));
+
+        //updating a batch created entity goes through the entity index, it changes the size but isn't a new member
+        UUID updated = batch.keySet().iterator().next();
+        Map<String, Object> props = new HashMap<>();
+        props.put("description", "a property that makes the entity bigger");
+        em.updateProperties(new SimpleEntityRef("batchcount", updated), props);
+
+        this.app.refreshIndex();
+
+        for(int i = 0; i < 50 && mapManager.getCounter("size:batchcounts") == size; i++){
+            Thread.sleep(100);
+        }
+
+        Assert.assertTrue(mapManager.getCounter("size:batchcounts") > size);
+        Assert.assertEquals(3L, (long) mapManager.getCounter("count:batchcounts"));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.corepersistence.asyncevents;
+
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class AsyncEventWorkerScalerTest {
+
+    private static final int MIN = 4;
+    private static final int MAX = 64;
+    private static final int DEPTH_PER_WORKER = 100;
+    private static final long MAX_LATENCY = 10000;
+    private static final double MAX_REJECTION_RATE = 1.0;
+
+
+    @Test
+    public void backlogAddsWorkers() {
+        assertEquals( 20, target( 16, 5000, 100, 0 ) );
+
+        // at least one at a time
+        assertEquals( 5, target( 4, 5000, 100, 0 ) );
+    }
+
+
+    @Test
+    public void ceilingIsRespected() {
+        assertEquals( MAX, target( 60, 100000, 100, 0 ) );
+        assertEquals( MAX, target( MAX, 100000, 100, 0 ) );
+    }
+
+
+    @Test
+    public void slowBatchesDontAddWorkers() {
+        assertEquals( 16, target( 16, 5000, MAX_LATENCY + 1, 0 ) );
+    }
+
+
+    @Test
+    public void rejectionsRemoveWorkers() {
+        assertEquals( 15, target( 16, 5000, 100, 5.0 ) );
+        assertEquals( MIN, target( MIN, 5000, 100, 5.0 ) );
+    }
+
+
+    @Test
+    public void drainedQueueRemovesWorkers() {
+        assertEquals( 15, target( 16, 0, 100, 0 ) );
+        assertEquals( MIN, target( MIN, 0, 100, 0 ) );
+    }
+
+
+    @Test
+    public void steadyLoadKeepsWorkers() {
+        assertEquals( 16, target( 16, 1000, 100, 0 ) );
+    }
+
+
+    private static int target( final int current, final long queueDepth, final double batchLatency,
+                               final double rejectionRate ) {
+        return AsyncEventWorkerScaler.getTargetWorkerCount( current, MIN, MAX, queueDepth, batchLatency,
+            rejectionRate, DEPTH_PER_WORKER, MAX_LATENCY, MAX_REJECTION_RATE );
+    }
+}
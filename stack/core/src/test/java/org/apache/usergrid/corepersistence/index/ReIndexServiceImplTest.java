@@ -0,0 +1,334 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.corepersistence.index;
+
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.usergrid.corepersistence.asyncevents.AsyncEventService;
+import org.apache.usergrid.corepersistence.rx.impl.AllApplicationsObservable;
+import org.apache.usergrid.corepersistence.rx.impl.AllEntityIdsObservable;
+import org.apache.usergrid.corepersistence.rx.impl.EdgeScope;
+import org.apache.usergrid.corepersistence.util.CpNamingUtils;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.graph.Edge;
+import org.apache.usergrid.persistence.graph.GraphManager;
+import org.apache.usergrid.persistence.graph.GraphManagerFactory;
+import org.apache.usergrid.persistence.index.EntityIndexFactory;
+import org.apache.usergrid.persistence.map.MapBatch;
+import org.apache.usergrid.persistence.map.MapManager;
+import org.apache.usergrid.persistence.map.MapManagerFactory;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+
+import com.google.common.base.Optional;
+
+import rx.Observable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * Interrupts a re-index job part way through a collection and checks that resuming it picks every partition up from
+ * its checkpoint
+ */
+public class ReIndexServiceImplTest {
+
+    private static final String CATS = CpNamingUtils.getEdgeTypeFromCollectionName( "cats" );
+    private static final String DOGS = CpNamingUtils.getEdgeTypeFromCollectionName( "dogs" );
+
+    private ApplicationScope applicationScope;
+
+    /** The edges of every collection, in the order they're read */
+    private Map<String, List<Edge>> collections;
+
+    /** Everything that was sent to be indexed, in order */
+    private List<Edge> indexed;
+
+    /** The edge whose batch fails to index, once */
+    private volatile Edge interruptAt;
+
+    private ReIndexService reIndexService;
+
+
+    @Before
+    public void setup() {
+
+        applicationScope = CpNamingUtils.getApplicationScope( UUIDGenerator.newTimeUUID() );
+
+        collections = new HashMap<>();
+        collections.put( CATS, createEdges( CATS, "cat", 5 ) );
+        collections.put( DOGS, createEdges( DOGS, "dog", 4 ) );
+
+        indexed = new CopyOnWriteArrayList<>();
+
+        final IndexProcessorFig indexProcessorFig = mock( IndexProcessorFig.class );
+        when( indexProcessorFig.getReindexBufferSize() ).thenReturn( 2 );
+        //one partition at a time so the interruption always lands in the same place
+        when( indexProcessorFig.getReindexConcurrency() ).thenReturn( 1 );
+        when( indexProcessorFig.getReindexMaxRate() ).thenReturn( 0d );
+
+        final GraphManager graphManager = mock( GraphManager.class );
+        when( graphManager.getEdgeTypesFromSource( any() ) ).thenReturn( Observable.just( CATS, DOGS ) );
+
+        final GraphManagerFactory graphManagerFactory = mock( GraphManagerFactory.class );
+        when( graphManagerFactory.createEdgeManager( any() ) ).thenReturn( graphManager );
+
+        final AllEntityIdsObservable allEntityIdsObservable = mock( AllEntityIdsObservable.class );
+        when( allEntityIdsObservable.getEdgesToEntities( any(), any(), any() ) ).thenAnswer( invocation -> {
+            final Optional<String> edgeType = ( Optional<String> ) invocation.getArguments()[1];
+            final Optional<Edge> lastEdge = ( Optional<Edge> ) invocation.getArguments()[2];
+
+            final List<Edge> edges = collections.get( edgeType.get() );
+
+            //like graph paging, the last edge is where the read starts and isn't returned again
+            int start = 0;
+
+            if ( lastEdge.isPresent() ) {
+                while ( !edges.get( start ).getTargetNode().equals( lastEdge.get().getTargetNode() ) ) {
+                    start++;
+                }
+
+                start++;
+            }
+
+            return Observable.from( edges.subList( start, edges.size() ) )
+                             .map( edge -> new EdgeScope( applicationScope, edge ) );
+        } );
+
+        final AsyncEventService indexService = mock( AsyncEventService.class );
+        doAnswer( invocation -> {
+            final List<EdgeScope> batch = ( List<EdgeScope> ) invocation.getArguments()[0];
+
+            for ( final EdgeScope edgeScope : batch ) {
+                if ( edgeScope.getEdge().equals( interruptAt ) ) {
+                    interruptAt = null;
+                    throw new RuntimeException( "Interrupted re-index" );
+                }
+            }
+
+            for ( final EdgeScope edgeScope : batch ) {
+                indexed.add( edgeScope.getEdge() );
+            }
+
+            return null;
+        } ).when( indexService ).indexBatch( any(), anyLong() );
+
+        final MapManagerFactory mapManagerFactory = mock( MapManagerFactory.class );
+        when( mapManagerFactory.createMapManager( any() ) ).thenReturn( createMapManager() );
+
+        reIndexService =
+            new ReIndexServiceImpl( mock( EntityIndexFactory.class ), mock( IndexLocationStrategyFactory.class ),
+                allEntityIdsObservable, graphManagerFactory, mapManagerFactory,
+                mock( AllApplicationsObservable.class ), indexProcessorFig, indexService );
+    }
+
+
+    @Test
+    public void resumeInterruptedPartition() throws InterruptedException {
+
+        //fail the second batch of dogs, after the cats and the first batch of dogs were indexed
+        interruptAt = collections.get( DOGS ).get( 2 );
+
+        final ReIndexService.ReIndexStatus interrupted = waitForJob( reIndexService.rebuildIndex(
+            reIndexService.getBuilder().withApplicationId( applicationScope.getApplication().getUuid() ) ) );
+
+        assertEquals( ReIndexService.Status.FAILED, interrupted.getStatus() );
+        assertEquals( 7, interrupted.getNumberProcessed() );
+
+        final Map<String, ReIndexService.PartitionStatus> partitions = getPartitions( interrupted );
+        assertEquals( ReIndexService.Status.COMPLETE, partitions.get( "cats" ).getStatus() );
+        assertEquals( 5, partitions.get( "cats" ).getNumberProcessed() );
+        assertEquals( ReIndexService.Status.FAILED, partitions.get( "dogs" ).getStatus() );
+        assertEquals( 2, partitions.get( "dogs" ).getNumberProcessed() );
+
+        final List<Edge> expected = new ArrayList<>( collections.get( CATS ) );
+        expected.addAll( collections.get( DOGS ).subList( 0, 2 ) );
+
+        assertEquals( expected, indexed );
+
+        //resuming skips the completed cats and restarts the dogs after the last edge they flushed
+        final ReIndexService.ReIndexStatus resumed = waitForJob(
+            reIndexService.rebuildIndex( reIndexService.getBuilder().withCursor( interrupted.getJobId() ) ) );
+
+        assertEquals( interrupted.getJobId(), resumed.getJobId() );
+        assertEquals( ReIndexService.Status.COMPLETE, resumed.getStatus() );
+        assertEquals( 9, resumed.getNumberProcessed() );
+
+        final Map<String, ReIndexService.PartitionStatus> resumedPartitions = getPartitions( resumed );
+        assertEquals( ReIndexService.Status.COMPLETE, resumedPartitions.get( "cats" ).getStatus() );
+        assertEquals( 5, resumedPartitions.get( "cats" ).getNumberProcessed() );
+        assertEquals( ReIndexService.Status.COMPLETE, resumedPartitions.get( "dogs" ).getStatus() );
+        assertEquals( 4, resumedPartitions.get( "dogs" ).getNumberProcessed() );
+
+        //every edge was indexed exactly once
+        expected.addAll( collections.get( DOGS ).subList( 2, 4 ) );
+
+        assertEquals( expected, indexed );
+    }
+
+
+    @Test
+    public void resumeCompletedJob() throws InterruptedException {
+
+        final ReIndexService.ReIndexStatus completed = waitForJob( reIndexService.rebuildIndex(
+            reIndexService.getBuilder().withApplicationId( applicationScope.getApplication().getUuid() ) ) );
+
+        assertEquals( ReIndexService.Status.COMPLETE, completed.getStatus() );
+        assertEquals( 9, indexed.size() );
+
+        final ReIndexService.ReIndexStatus resumed = waitForJob(
+            reIndexService.rebuildIndex( reIndexService.getBuilder().withCursor( completed.getJobId() ) ) );
+
+        //nothing is left to index
+        assertEquals( ReIndexService.Status.COMPLETE, resumed.getStatus() );
+        assertEquals( 9, resumed.getNumberProcessed() );
+        assertEquals( 9, indexed.size() );
+    }
+
+
+    @Test( expected = IllegalArgumentException.class )
+    public void resumeUnknownJob() {
+        reIndexService.rebuildIndex( reIndexService.getBuilder().withCursor( "unknown" ) );
+    }
+
+
+    private List<Edge> createEdges( final String edgeType, final String entityType, final int count ) {
+
+        final List<Edge> edges = new ArrayList<>( count );
+
+        for ( int i = 0; i < count; i++ ) {
+            edges.add( CpNamingUtils.createCollectionEdge( applicationScope.getApplication(),
+                CpNamingUtils.getNameFromEdgeType( edgeType ), new SimpleId( entityType ) ) );
+        }
+
+        return edges;
+    }
+
+
+    /**
+     * Wait until the job finishes one way or the other
+     */
+    private ReIndexService.ReIndexStatus waitForJob( final ReIndexService.ReIndexStatus started )
+        throws InterruptedException {
+
+        for ( int i = 0; i < 100; i++ ) {
+            final ReIndexService.ReIndexStatus status = reIndexService.getStatus( started.getJobId() );
+
+            if ( status.getStatus() == ReIndexService.Status.COMPLETE
+                || status.getStatus() == ReIndexService.Status.FAILED ) {
+                return status;
+            }
+
+            Thread.sleep( 100 );
+        }
+
+        fail( "Re-index job " + started.getJobId() + " never finished" );
+        return null;
+    }
+
+
+    private Map<String, ReIndexService.PartitionStatus> getPartitions( final ReIndexService.ReIndexStatus status ) {
+
+        final Map<String, ReIndexService.PartitionStatus> partitions = new HashMap<>();
+
+        for ( final ReIndexService.PartitionStatus partition : status.getPartitions() ) {
+            partitions.put( partition.getCollectionName(), partition );
+        }
+
+        return partitions;
+    }
+
+
+    /**
+     * A map manager that keeps everything in memory
+     */
+    private MapManager createMapManager() {
+
+        final Map<String, Object> values = new ConcurrentHashMap<>();
+
+        final MapManager mapManager = mock( MapManager.class );
+
+        when( mapManager.getString( anyString() ) )
+            .thenAnswer( invocation -> values.get( invocation.getArguments()[0] ) );
+
+        when( mapManager.getLong( anyString() ) )
+            .thenAnswer( invocation -> values.get( invocation.getArguments()[0] ) );
+
+        when( mapManager.getStrings( anyCollectionOf( String.class ) ) ).thenAnswer( invocation -> {
+            final Map<String, String> found = new HashMap<>();
+
+            for ( final String key : ( Collection<String> ) invocation.getArguments()[0] ) {
+                if ( values.containsKey( key ) ) {
+                    found.put( key, ( String ) values.get( key ) );
+                }
+            }
+
+            return found;
+        } );
+
+        doAnswer( invocation -> values.put( ( String ) invocation.getArguments()[0], invocation.getArguments()[1] ) )
+            .when( mapManager ).putString( anyString(), anyString(), anyInt() );
+
+        when( mapManager.createBatch() ).thenAnswer( invocation -> {
+            final Map<String, Object> writes = Collections.synchronizedMap( new HashMap<>() );
+
+            final MapBatch batch = mock( MapBatch.class );
+
+            when( batch.putString( anyString(), anyString() ) ).thenAnswer( put -> {
+                writes.put( ( String ) put.getArguments()[0], put.getArguments()[1] );
+                return batch;
+            } );
+
+            when( batch.putLong( anyString(), any() ) ).thenAnswer( put -> {
+                writes.put( ( String ) put.getArguments()[0], put.getArguments()[1] );
+                return batch;
+            } );
+
+            doAnswer( execute -> {
+                values.putAll( writes );
+                return null;
+            } ).when( batch ).execute();
+
+            return batch;
+        } );
+
+        return mapManager;
+    }
+}
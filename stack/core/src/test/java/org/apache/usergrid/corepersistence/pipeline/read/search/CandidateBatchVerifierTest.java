@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.corepersistence.pipeline.read.search;
+
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.usergrid.corepersistence.index.IndexLocationStrategyFactory;
+import org.apache.usergrid.corepersistence.pipeline.PipelineContext;
+import org.apache.usergrid.corepersistence.pipeline.cursor.RequestCursor;
+import org.apache.usergrid.corepersistence.pipeline.read.EdgePath;
+import org.apache.usergrid.corepersistence.pipeline.read.FilterResult;
+import org.apache.usergrid.persistence.collection.EntityCollectionManager;
+import org.apache.usergrid.persistence.collection.EntityCollectionManagerFactory;
+import org.apache.usergrid.persistence.collection.EntitySet;
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.collection.mvcc.entity.impl.MvccEntityImpl;
+import org.apache.usergrid.persistence.collection.serialization.impl.EntitySetImpl;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
+import org.apache.usergrid.persistence.index.CandidateResult;
+import org.apache.usergrid.persistence.index.EntityIndex;
+import org.apache.usergrid.persistence.index.EntityIndexBatch;
+import org.apache.usergrid.persistence.index.EntityIndexFactory;
+import org.apache.usergrid.persistence.index.SearchEdge;
+import org.apache.usergrid.persistence.index.SelectFieldMapping;
+import org.apache.usergrid.persistence.index.impl.IndexOperationMessage;
+import org.apache.usergrid.persistence.index.impl.IndexProducer;
+import org.apache.usergrid.persistence.index.impl.SearchEdgeImpl;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+
+import com.google.common.base.Optional;
+
+import rx.Observable;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * Tests verifying candidates in batches, both the ordering of the batches and the checks each batch makes against
+ * what's stored in cassandra
+ */
+public class CandidateBatchVerifierTest {
+
+    private static final int BATCH_SIZE = 2;
+
+    private final ApplicationScope scope = new ApplicationScopeImpl( new SimpleId( "application" ) );
+
+    private final SearchEdge searchEdge =
+        new SearchEdgeImpl( scope.getApplication(), "zzzcollzzz|things", SearchEdge.NodeType.SOURCE );
+
+    /**
+     * What the mocked collection manager returns for each id
+     */
+    private final Map<Id, MvccEntity> stored = new HashMap<>();
+
+    private CandidateBatchVerifier candidateBatchVerifier;
+    private EntityIndexBatch entityIndexBatch;
+    private CandidateEntityFilter candidateEntityFilter;
+
+
+    @Before
+    @SuppressWarnings( "unchecked" )
+    public void setup() {
+        final CandidateVerificationFig fig = mock( CandidateVerificationFig.class );
+        when( fig.getBatchSize() ).thenReturn( BATCH_SIZE );
+        when( fig.getConcurrency() ).thenReturn( 4 );
+
+        candidateBatchVerifier = new CandidateBatchVerifier( fig );
+
+        final EntityCollectionManager entityCollectionManager = mock( EntityCollectionManager.class );
+
+        when( entityCollectionManager.load( anyCollectionOf( Id.class ) ) ).thenAnswer( invocation -> {
+            final Collection<Id> ids = ( Collection<Id> ) invocation.getArguments()[0];
+            final EntitySetImpl entitySet = new EntitySetImpl( ids.size() );
+
+            for ( final Id id : ids ) {
+                if ( stored.containsKey( id ) ) {
+                    entitySet.addEntity( stored.get( id ) );
+                }
+            }
+
+            return Observable.just( ( EntitySet ) entitySet );
+        } );
+
+        final EntityCollectionManagerFactory entityCollectionManagerFactory =
+            mock( EntityCollectionManagerFactory.class );
+        when( entityCollectionManagerFactory.createCollectionManager( scope ) ).thenReturn( entityCollectionManager );
+
+        entityIndexBatch = mock( EntityIndexBatch.class );
+
+        final EntityIndex entityIndex = mock( EntityIndex.class );
+        when( entityIndex.createBatch() ).thenReturn( entityIndexBatch );
+
+        final EntityIndexFactory entityIndexFactory = mock( EntityIndexFactory.class );
+        when( entityIndexFactory.createEntityIndex( any() ) ).thenReturn( entityIndex );
+
+        final IndexProducer indexProducer = mock( IndexProducer.class );
+        when( indexProducer.put( any( IndexOperationMessage.class ) ) ).thenReturn( Observable.empty() );
+
+        candidateEntityFilter =
+            new CandidateEntityFilter( entityCollectionManagerFactory, entityIndexFactory,
+                mock( IndexLocationStrategyFactory.class ), indexProducer, candidateBatchVerifier );
+
+        candidateEntityFilter.setContext(
+            new PipelineContext( scope, new RequestCursor( Optional.<String>absent() ), 10, 0 ) );
+    }
+
+
+    @Test
+    public void batchesKeepCandidateOrder() {
+        final List<FilterResult<Candidate>> candidates = new ArrayList<>();
+
+        for ( int i = 0; i < 7; i++ ) {
+            candidates.add( candidate( new SimpleId( "thing" ), UUIDGenerator.newTimeUUID() ) );
+        }
+
+        //the first batches are the slowest to load, so they complete last
+        final List<FilterResult<Id>> results = candidateBatchVerifier.<Id>verify( candidates, batch -> {
+            final List<FilterResult<Id>> verified = new ArrayList<>( batch.size() );
+
+            for ( final FilterResult<Candidate> candidate : batch ) {
+                verified.add( new FilterResult<>( candidate.getValue().getCandidateResult().getId(),
+                    Optional.<EdgePath>absent() ) );
+            }
+
+            final int position = candidates.indexOf( batch.get( 0 ) );
+
+            return Observable.timer( 100 - position * 10, TimeUnit.MILLISECONDS ).map( tick -> verified );
+        } ).toList().toBlocking().last();
+
+        assertEquals( candidates.size(), results.size() );
+
+        for ( int i = 0; i < candidates.size(); i++ ) {
+            assertEquals( candidates.get( i ).getValue().getCandidateResult().getId(), results.get( i ).getValue() );
+        }
+    }
+
+
+    @Test
+    public void staleCandidate() {
+        final Id id = new SimpleId( "thing" );
+        final UUID candidateVersion = UUIDGenerator.newTimeUUID();
+
+        store( id, UUIDGenerator.newTimeUUID() );
+
+        final List<FilterResult<Entity>> results = filter( candidate( id, candidateVersion ) );
+
+        assertEquals( 0, results.size() );
+
+        //cassandra has a newer version, the old document is removed
+        verify( entityIndexBatch ).deindex( searchEdge, id, candidateVersion );
+    }
+
+
+    @Test
+    public void deletedEntity() {
+        final Id id = new SimpleId( "thing" );
+        final UUID version = UUIDGenerator.newTimeUUID();
+
+        stored.put( id, new MvccEntityImpl( id, version, MvccEntity.Status.DELETED, Optional.<Entity>absent() ) );
+
+        final List<FilterResult<Entity>> results = filter( candidate( id, version ) );
+
+        assertEquals( 0, results.size() );
+
+        verify( entityIndexBatch ).deindex( searchEdge, id, version );
+    }
+
+
+    @Test
+    public void missingEntity() {
+        final Id id = new SimpleId( "thing" );
+
+        final List<FilterResult<Entity>> results = filter( candidate( id, UUIDGenerator.newTimeUUID() ) );
+
+        assertEquals( 0, results.size() );
+
+        //could be a region that hasn't caught up, we leave the document alone
+        verify( entityIndexBatch, never() ).deindex( any( SearchEdge.class ), any( Id.class ), any( UUID.class ) );
+    }
+
+
+    @Test
+    public void mixedVersionBatches() {
+        final Id current1 = new SimpleId( "thing" );
+        final Id stale = new SimpleId( "thing" );
+        final Id newerInIndex = new SimpleId( "thing" );
+        final Id missing = new SimpleId( "thing" );
+        final Id current2 = new SimpleId( "thing" );
+
+        final UUID current1Version = UUIDGenerator.newTimeUUID();
+        final UUID staleCandidateVersion = UUIDGenerator.newTimeUUID();
+        final UUID newerInIndexStoredVersion = UUIDGenerator.newTimeUUID();
+        final UUID current2Version = UUIDGenerator.newTimeUUID();
+
+        store( current1, current1Version );
+        store( stale, UUIDGenerator.newTimeUUID() );
+        store( newerInIndex, newerInIndexStoredVersion );
+        store( current2, current2Version );
+
+        //spans 3 batches, each with a different mix of versions
+        final List<FilterResult<Entity>> results =
+            filter( candidate( current1, current1Version ), candidate( stale, staleCandidateVersion ),
+                candidate( newerInIndex, UUIDGenerator.newTimeUUID() ),
+                candidate( missing, UUIDGenerator.newTimeUUID() ), candidate( current2, current2Version ) );
+
+        assertEquals( 2, results.size() );
+        assertEquals( current1, results.get( 0 ).getValue().getId() );
+        assertEquals( current2, results.get( 1 ).getValue().getId() );
+
+        //only the candidate cassandra has a newer version of is removed, the index being ahead is left for repair
+        verify( entityIndexBatch, times( 1 ) ).deindex( any( SearchEdge.class ), any( Id.class ), any( UUID.class ) );
+        verify( entityIndexBatch ).deindex( searchEdge, stale, staleCandidateVersion );
+    }
+
+
+    @SafeVarargs
+    private final List<FilterResult<Entity>> filter( final FilterResult<Candidate>... candidates ) {
+        return candidateEntityFilter.call( Observable.from( candidates ) ).toList().toBlocking().last();
+    }
+
+
+    private void store( final Id id, final UUID version ) {
+        stored.put( id, new MvccEntityImpl( id, version, MvccEntity.Status.COMPLETE, new Entity( id ) ) );
+    }
+
+
+    private FilterResult<Candidate> candidate( final Id id, final UUID version ) {
+        final Candidate candidate =
+            new Candidate( new CandidateResult( id, version, id.getUuid() + "_" + version ), searchEdge,
+                Collections.<SelectFieldMapping>emptyList() );
+
+        return new FilterResult<>( candidate, Optional.<EdgePath>absent() );
+    }
+}
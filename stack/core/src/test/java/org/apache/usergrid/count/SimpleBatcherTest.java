@@ -17,6 +17,13 @@
 package org.apache.usergrid.count;
 
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -49,4 +56,44 @@ public class SimpleBatcherTest {
         simpleBatcher.add( new Count( "Counter", "k1", "c4", 1 ) );
         assertEquals( 1, simpleBatcher.getBatchSubmissionCount() );
     }
+
+
+    @Test
+    public void testIncrementsCoalesce() {
+        final List<Collection<Count>> submitted = new ArrayList<>();
+
+        SimpleBatcher simpleBatcher = new SimpleBatcher();
+        simpleBatcher.setBatchSubmitter( new BatchSubmitter() {
+            @Override
+            public Future<?> submit( final Collection<Count> counts ) {
+                submitted.add( counts );
+                return null;
+            }
+
+
+            @Override
+            public void shutdown() {
+            }
+        } );
+        simpleBatcher.setBatchSize( 6 );
+
+        simpleBatcher.add( new Count( "Counter", "k1", "c1", 1 ) );
+        simpleBatcher.add( new Count( "Counter", "k1", "c1", 2 ) );
+        simpleBatcher.add( new Count( "Counter", "k1", "c2", 1 ) );
+        simpleBatcher.add( new Count( "Counter", "k2", "c1", 5 ) );
+        simpleBatcher.add( new Count( "Counter", "k1", "c1", 3 ) );
+        simpleBatcher.add( new Count( "Counter", "k1", "c2", 1 ) );
+
+        assertEquals( 1, submitted.size() );
+
+        final Map<String, Long> values = new HashMap<>();
+        for ( Count count : submitted.get( 0 ) ) {
+            values.put( count.getKeyName() + ":" + count.getColumnName(), count.getValue() );
+        }
+
+        assertEquals( 3, values.size() );
+        assertEquals( 6L, values.get( "k1:c1" ).longValue() );
+        assertEquals( 2L, values.get( "k1:c2" ).longValue() );
+        assertEquals( 5L, values.get( "k2:c1" ).longValue() );
+    }
 }
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.mq.cassandra.io;
+
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.usergrid.AbstractCoreIT;
+import org.apache.usergrid.mq.Message;
+import org.apache.usergrid.mq.QueueQuery;
+import org.apache.usergrid.mq.QueueResults;
+import org.apache.usergrid.mq.cassandra.io.ConsumerLeases.Lease;
+import org.apache.usergrid.persistence.cassandra.CassandraService;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import me.prettyprint.hector.api.Keyspace;
+
+import static org.apache.usergrid.mq.cassandra.CassandraMQUtils.getQueueClientTransactionKey;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class ConsumerLeasesIT extends AbstractCoreIT {
+
+    /** Renewed every second, and no longer held once less than a second remains */
+    private static final int LEASE_SECONDS = 3;
+
+    private static final long BUCKET_MILLIS = 60000;
+
+    private static final String CONSUMER = "consumer";
+
+    private CassandraService cass;
+    private Keyspace ko;
+    private ByteBuffer rowKey;
+
+
+    @Before
+    public void setupKeys() {
+        cass = setup.getCassSvc();
+        ko = cass.getApplicationKeyspace( app.getId() );
+        rowKey = getQueueClientTransactionKey( UUIDUtils.newTimeUUID(), UUIDUtils.newTimeUUID() );
+    }
+
+
+    @Test
+    public void acquireExcludesOtherNodes() {
+        ConsumerLeases leases = new ConsumerLeases( cass, LEASE_SECONDS, BUCKET_MILLIS );
+        ConsumerLeases other = new ConsumerLeases( cass, LEASE_SECONDS, BUCKET_MILLIS );
+
+        try {
+            Lease lease = leases.acquire( ko, rowKey, CONSUMER, 1 );
+            assertNotNull( lease );
+            assertTrue( lease.isHeld() );
+            lease.unlock();
+
+            assertNull( other.acquire( ko, rowKey, CONSUMER, 1 ) );
+            assertTrue( other.readState( ko, rowKey ).isClaimed( 1 ) );
+            assertFalse( leases.readState( ko, rowKey ).isClaimed( 1 ) );
+
+            assertTrue( lease.tryLock() );
+            leases.release( lease );
+            lease.unlock();
+
+            assertFalse( lease.isHeld() );
+
+            Lease taken = other.acquire( ko, rowKey, CONSUMER, 1 );
+            assertNotNull( taken );
+            taken.unlock();
+        }
+        finally {
+            leases.shutdown();
+            other.shutdown();
+        }
+    }
+
+
+    @Test
+    public void renewalKeepsLease() throws InterruptedException {
+        ConsumerLeases leases = new ConsumerLeases( cass, LEASE_SECONDS, BUCKET_MILLIS );
+        ConsumerLeases other = new ConsumerLeases( cass, LEASE_SECONDS, BUCKET_MILLIS );
+
+        try {
+            Lease lease = leases.acquire( ko, rowKey, CONSUMER, 1 );
+            assertNotNull( lease );
+            lease.unlock();
+
+            // without renewal the lease would no longer be held after 2 seconds
+            Thread.sleep( 2500 );
+
+            assertTrue( lease.isHeld() );
+            assertTrue( leases.getHeld( CONSUMER ).contains( lease ) );
+            assertNull( other.acquire( ko, rowKey, CONSUMER, 1 ) );
+        }
+        finally {
+            leases.shutdown();
+            other.shutdown();
+        }
+    }
+
+
+    @Test
+    public void idleLeaseExpires() throws InterruptedException {
+        ConsumerLeases leases = new ConsumerLeases( cass, LEASE_SECONDS, BUCKET_MILLIS );
+        ConsumerLeases other = new ConsumerLeases( cass, LEASE_SECONDS, BUCKET_MILLIS );
+
+        try {
+            Lease lease = leases.acquire( ko, rowKey, CONSUMER, 1 );
+            assertNotNull( lease );
+            lease.unlock();
+
+            // unused for longer than the lease, the next renewal releases it
+            Thread.sleep( 5000 );
+
+            assertFalse( lease.isHeld() );
+            assertFalse( leases.getHeld( CONSUMER ).contains( lease ) );
+
+            Lease taken = other.acquire( ko, rowKey, CONSUMER, 1 );
+            assertNotNull( taken );
+            taken.unlock();
+        }
+        finally {
+            leases.shutdown();
+            other.shutdown();
+        }
+    }
+
+
+    @Test
+    public void shutdownStopsRenewal() throws InterruptedException {
+        ConsumerLeases leases = new ConsumerLeases( cass, LEASE_SECONDS, BUCKET_MILLIS );
+        ConsumerLeases other = new ConsumerLeases( cass, LEASE_SECONDS, BUCKET_MILLIS );
+
+        try {
+            Lease lease = leases.acquire( ko, rowKey, CONSUMER, 1 );
+            assertNotNull( lease );
+            lease.unlock();
+
+            leases.shutdown();
+
+            // the lease column outlives its TTL without renewal
+            Thread.sleep( 3500 );
+
+            assertFalse( lease.isHeld() );
+
+            Lease taken = other.acquire( ko, rowKey, CONSUMER, 1 );
+            assertNotNull( taken );
+            taken.unlock();
+        }
+        finally {
+            other.shutdown();
+        }
+    }
+
+
+    @Test
+    public void failedReadKeepsCursor() {
+        String queuePath = "/leases/failed";
+
+        for ( int i = 0; i < 3; i++ ) {
+            Message message = new Message();
+            message.setStringProperty( "index", String.valueOf( i ) );
+            app.getQm().postToQueue( queuePath, message );
+        }
+
+        QueueQuery query = new QueueQuery();
+        query.setTimeout( 30000 );
+        query.setLimit( 10 );
+
+        ConsumerLeases leases = new ConsumerLeases( cass, 10, BUCKET_MILLIS );
+
+        try {
+            LeasedConsumerTransaction failing = new LeasedConsumerTransaction( app.getId(), ko, cass, leases ) {
+                @Override
+                protected void writeTransactions( List<Message> messages, long futureTimeout, UUID queueId,
+                                                  UUID consumerId ) {
+                    throw new RuntimeException( "Unable to write transactions" );
+                }
+            };
+
+            try {
+                failing.getResults( queuePath, query );
+                fail( "The read should have failed" );
+            }
+            catch ( RuntimeException e ) {
+                assertEquals( "Unable to write transactions", e.getMessage() );
+            }
+
+            // the messages of the failed read are read again from the lease it left behind
+            QueueResults results =
+                    new LeasedConsumerTransaction( app.getId(), ko, cass, leases ).getResults( queuePath, query );
+            assertEquals( 3, results.size() );
+
+            results = new LeasedConsumerTransaction( app.getId(), ko, cass, leases ).getResults( queuePath, query );
+            assertEquals( 0, results.size() );
+        }
+        finally {
+            leases.shutdown();
+        }
+    }
+}
@@ -167,6 +167,15 @@ public class RebuildIndexTest extends AbstractCoreIT {
 
         waitForRebuild( status, reIndexService );
 
+        //only the requested collection is a partition of the job
+        final List<ReIndexService.PartitionStatus> partitions =
+            reIndexService.getStatus( status.getJobId() ).getPartitions();
+
+        assertEquals( 1, partitions.size() );
+        assertEquals( "catherders", partitions.get( 0 ).getCollectionName() );
+        assertEquals( ReIndexService.Status.COMPLETE, partitions.get( 0 ).getStatus() );
+        assertEquals( herderCount, partitions.get( 0 ).getNumberProcessed() );
+
 
         // ----------------- test that we can read the catherder collection and not the catshepard
 
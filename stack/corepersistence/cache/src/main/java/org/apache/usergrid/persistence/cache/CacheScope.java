@@ -35,4 +35,23 @@ public class CacheScope implements ApplicationScope {
     public Id getApplication() {
         return appId;
     }
+
+    @Override
+    public boolean equals( final Object o ) {
+        if ( this == o ) {
+            return true;
+        }
+        if ( !( o instanceof CacheScope ) ) {
+            return false;
+        }
+
+        final CacheScope that = ( CacheScope ) o;
+
+        return appId.equals( that.appId );
+    }
+
+    @Override
+    public int hashCode() {
+        return appId.hashCode();
+    }
 }
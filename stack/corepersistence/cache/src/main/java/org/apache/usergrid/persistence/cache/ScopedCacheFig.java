@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.cache;
+
+
+import org.safehaus.guicyfig.Default;
+import org.safehaus.guicyfig.FigSingleton;
+import org.safehaus.guicyfig.GuicyFig;
+import org.safehaus.guicyfig.Key;
+
+
+/**
+ * Config for the local (in-process) tier of the scoped cache.  The local tier sits in front of the
+ * SCOPED_CACHE column family, so its timeout is the longest another node can serve a stale value.
+ */
+@FigSingleton
+public interface ScopedCacheFig extends GuicyFig {
+
+    @Key( "usergrid.scoped_cache.local.enabled" )
+    @Default( "true" )
+    boolean getLocalCacheEnabled();
+
+    /** Max number of entries held locally for each application scope */
+    @Key( "usergrid.scoped_cache.local.size" )
+    @Default( "1000" )
+    int getLocalCacheSize();
+
+    @Key( "usergrid.scoped_cache.local.timeout_ms" )
+    @Default( "5000" )
+    int getLocalCacheTimeout();
+
+}
@@ -26,6 +26,8 @@ import com.google.inject.Singleton;
 import org.apache.usergrid.persistence.cache.CacheFactory;
 import org.apache.usergrid.persistence.cache.CacheScope;
 import org.apache.usergrid.persistence.cache.ScopedCache;
+import org.apache.usergrid.persistence.cache.ScopedCacheFig;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 
 import java.util.concurrent.ExecutionException;
 
@@ -38,12 +40,13 @@ public class CacheFactoryImpl<K, V> implements CacheFactory<K, V> {
     private LoadingCache<CacheScope, ScopedCache> cacheCache;
 
     @Inject
-    public CacheFactoryImpl( final ScopedCacheSerialization serializer ) {
+    public CacheFactoryImpl( final ScopedCacheSerialization serializer, final ScopedCacheFig cacheFig,
+                             final MetricsFactory metricsFactory ) {
 
         cacheCache = CacheBuilder.newBuilder().maximumSize(1000).build(
             new CacheLoader<CacheScope, ScopedCache>() {
                 public ScopedCache load(CacheScope scope) {
-                    return new ScopedCacheImpl(scope, serializer);
+                    return new ScopedCacheImpl(scope, serializer, cacheFig, metricsFactory);
                 }
             });
     }
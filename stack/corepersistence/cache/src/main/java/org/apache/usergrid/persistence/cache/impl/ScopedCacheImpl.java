@@ -16,14 +16,25 @@
  */
 package org.apache.usergrid.persistence.cache.impl;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.google.inject.Inject;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.usergrid.persistence.cache.CacheScope;
 import org.apache.usergrid.persistence.cache.ScopedCache;
+import org.apache.usergrid.persistence.cache.ScopedCacheFig;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+
+import java.util.concurrent.TimeUnit;
 
 
 /**
  * Cache divided into scopes which can be individually invalidated.
+ *
+ * Reads are served from a bounded in-process tier when possible and fall through to the
+ * SCOPED_CACHE column family on a miss.  Writes and removals on this node update both tiers, other
+ * nodes see the change once their local entry times out.
  */
 public class ScopedCacheImpl<K,V> implements ScopedCache<K,V> {
 
@@ -31,27 +42,116 @@ public class ScopedCacheImpl<K,V> implements ScopedCache<K,V> {
 
     ScopedCacheSerialization<K,V> serializer;
 
-    public ScopedCacheImpl( CacheScope scope, ScopedCacheSerialization<K,V> serializer ) {
+    private final Cache<K, LocalEntry<V>> localCache;
+
+    private final Meter hitMeter;
+    private final Meter missMeter;
+    private final Timer loadTimer;
+
+
+    public ScopedCacheImpl( CacheScope scope, ScopedCacheSerialization<K,V> serializer,
+                            ScopedCacheFig cacheFig, MetricsFactory metricsFactory ) {
         this.scope = scope;
         this.serializer = serializer;
+
+        if ( cacheFig.getLocalCacheEnabled() ) {
+            this.localCache = CacheBuilder.newBuilder()
+                .maximumSize( cacheFig.getLocalCacheSize() )
+                .expireAfterWrite( cacheFig.getLocalCacheTimeout(), TimeUnit.MILLISECONDS )
+                .build();
+        }
+        else {
+            this.localCache = null;
+        }
+
+        this.hitMeter = metricsFactory.getMeter( ScopedCacheImpl.class, "local.hit" );
+        this.missMeter = metricsFactory.getMeter( ScopedCacheImpl.class, "local.miss" );
+        this.loadTimer = metricsFactory.getTimer( ScopedCacheImpl.class, "load" );
     }
 
     @Override
     public V put(K key, V value, Integer ttl) {
-        return serializer.writeValue( scope, key, value, ttl );
+        final V written = serializer.writeValue( scope, key, value, ttl );
+        putLocal( key, value, ttl );
+        return written;
     }
 
     @Override
     public V get(K key, TypeReference typeRef ) {
-        return serializer.readValue( scope, key, typeRef );
+
+        if ( localCache != null ) {
+            final LocalEntry<V> entry = localCache.getIfPresent( key );
+
+            if ( entry != null ) {
+                if ( !entry.isExpired() ) {
+                    hitMeter.mark();
+                    return entry.value;
+                }
+                localCache.invalidate( key );
+            }
+            missMeter.mark();
+        }
+
+        final Timer.Context timer = loadTimer.time();
+
+        final V value;
+        try {
+            value = serializer.readValue( scope, key, typeRef );
+        }
+        finally {
+            timer.stop();
+        }
+
+        // the column ttl is not returned with the value, so rely on the local timeout alone
+        if ( value != null ) {
+            putLocal( key, value, null );
+        }
+
+        return value;
     }
 
     public void remove( K key ) {
         serializer.removeValue( scope, key );
+        if ( localCache != null ) {
+            localCache.invalidate( key );
+        }
     }
 
     @Override
     public void invalidate() {
         serializer.invalidate(scope);
+        if ( localCache != null ) {
+            localCache.invalidateAll();
+        }
+    }
+
+
+    private void putLocal( final K key, final V value, final Integer ttl ) {
+        if ( localCache == null ) {
+            return;
+        }
+
+        // never let the local copy outlive the ttl (in seconds) it was written to cassandra with
+        final long expiresAt = ttl != null && ttl > 0 ? System.currentTimeMillis() + ttl * 1000L : Long.MAX_VALUE;
+
+        localCache.put( key, new LocalEntry<>( value, expiresAt ) );
+    }
+
+
+    /**
+     * Value held in the local tier along with the time it must be dropped
+     */
+    private static final class LocalEntry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private LocalEntry( final V value, final long expiresAt ) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
     }
 }
@@ -175,4 +175,27 @@ public class ScopedCacheTest {
 
         assertNull( cache.get("item", typeRef));
     }
+
+
+    @Test
+    public void testRemoveVisibleThroughEqualScope() {
+
+        SimpleId appId = new SimpleId( "application" );
+
+        ScopedCache<String, Map<String, Object>> cache1 = cf.getScopedCache( new CacheScope( appId ) );
+        ScopedCache<String, Map<String, Object>> cache2 = cf.getScopedCache( new CacheScope( appId ) );
+
+        Map<String, Object> item = new HashMap<String, Object>() {{
+            put("field1", "value1");
+        }};
+        cache1.put("item", item, 60);
+
+        // second read is served from the local tier
+        assertEquals("value1", cache2.get("item", typeRef).get("field1"));
+        assertEquals("value1", cache2.get("item", typeRef).get("field1"));
+
+        cache1.remove("item");
+
+        assertNull( cache2.get("item", typeRef));
+    }
 }
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.collection;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.usergrid.persistence.collection.exception.CollectionRuntimeException;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.Id;
+
+
+/**
+ * The outcome of writing a group of entities.  Entities that failed verification are not written and are reported
+ * with the exception a single write would have thrown for them.
+ */
+public class BatchWriteResult {
+
+    private final List<Entity> written;
+    private final Map<Id, CollectionRuntimeException> failures;
+
+
+    public BatchWriteResult( final int expectedSize ) {
+        this.written = new ArrayList<>( expectedSize );
+        this.failures = new HashMap<>();
+    }
+
+
+    public void addWritten( final Entity entity ) {
+        written.add( entity );
+    }
+
+
+    public void addFailure( final Id entityId, final CollectionRuntimeException failure ) {
+        failures.put( entityId, failure );
+    }
+
+
+    /**
+     * Get the entities that were written, with their new versions set
+     */
+    public List<Entity> getWritten() {
+        return Collections.unmodifiableList( written );
+    }
+
+
+    /**
+     * Get the reason each entity that was not written failed, keyed by entity id
+     */
+    public Map<Id, CollectionRuntimeException> getFailures() {
+        return Collections.unmodifiableMap( failures );
+    }
+}
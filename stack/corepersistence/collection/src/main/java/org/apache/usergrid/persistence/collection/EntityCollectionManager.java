@@ -45,6 +45,18 @@ public interface EntityCollectionManager {
     Observable<Entity> write( Entity entity );
 
 
+    /**
+     * Write a group of entities of this collection together.  Each entity goes through the same stages as {@link
+     * #write(Entity)}, but unique values are verified with batched reads and every entity that passes verification is
+     * committed with a single mutation.  An entity that fails verification does not fail the rest of the group.
+     *
+     * @param entities The entities to write
+     *
+     * @return the Observable with the result of the write in the body
+     */
+    Observable<BatchWriteResult> writeBatch( Collection<Entity> entities );
+
+
     /**
      * @param entityId MarkCommit the entity as deleted.  Will not actually remove it from cassandra.  This operation will
      * also remove all unique properties for this entity
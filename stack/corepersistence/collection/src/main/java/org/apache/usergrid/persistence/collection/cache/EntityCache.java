@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.collection.cache;
+
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.model.entity.Id;
+
+
+/**
+ * A node local cache of the latest version of entities
+ */
+public interface EntityCache {
+
+    /**
+     * Get the cached entities for the ids.  Ids that are not cached are not present in the returned map.  Each call
+     * returns new entity instances, so callers are free to modify them
+     */
+    Map<Id, MvccEntity> getAll( final ApplicationScope applicationScope, final Collection<Id> entityIds );
+
+    /**
+     * Cache the entity.  If a newer version of the entity is already cached this is a no-op
+     */
+    void put( final ApplicationScope applicationScope, final MvccEntity entity );
+
+    /**
+     * Remove the entity from the cache
+     */
+    void invalidate( final ApplicationScope applicationScope, final Id entityId );
+
+    /**
+     * Remove all entities from the cache
+     */
+    void invalidateAll();
+}
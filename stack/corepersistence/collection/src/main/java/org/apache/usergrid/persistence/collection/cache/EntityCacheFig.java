@@ -27,11 +27,16 @@ import org.safehaus.guicyfig.Key;
 
 
 /**
- * The config for the entity cache
+ * The config for the entity cache.  The cache is local to each node and is updated by writes and deletes on that
+ * node, so the timeout is the longest another node can serve a stale entity.  Off unless enabled, since every
+ * deployment would otherwise accept that staleness.
  */
 @FigSingleton
 public interface EntityCacheFig extends GuicyFig {
 
+    @Key( "usergrid.entity_cache_enabled" )
+    @Default( "false" )
+    boolean getCacheEnabled();
 
     @Key( "usergrid.entity_cache_size" )
     @Default( "10000" )
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.collection.cache;
+
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.collection.mvcc.entity.impl.MvccEntityImpl;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.EntityMap;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.util.EntityUtils;
+
+import com.codahale.metrics.Meter;
+import com.fasterxml.uuid.UUIDComparator;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+
+/**
+ * Guava backed entity cache.  Entities are held as their entity map, and a new entity is built on every read, so a
+ * caller mutating a loaded entity can never change what is cached.  Entries expire after the configured timeout
+ * regardless of reads, which bounds how long a write on another node can go unseen.
+ */
+@Singleton
+public class EntityCacheImpl implements EntityCache {
+
+    private final boolean enabled;
+    private final Cache<CacheKey, CachedEntity> cache;
+
+    private final Meter hitMeter;
+    private final Meter missMeter;
+
+
+    @Inject
+    public EntityCacheImpl( final EntityCacheFig entityCacheFig, final MetricsFactory metricsFactory ) {
+
+        this.enabled = entityCacheFig.getCacheEnabled() && entityCacheFig.getCacheSize() > 0;
+
+        this.cache = CacheBuilder.newBuilder().maximumSize( Math.max( 0, entityCacheFig.getCacheSize() ) )
+                                 .expireAfterWrite( entityCacheFig.getCacheTimeout(), TimeUnit.MILLISECONDS )
+                                 .recordStats().build();
+
+        this.hitMeter = metricsFactory.getMeter( EntityCacheImpl.class, "cache.hit" );
+        this.missMeter = metricsFactory.getMeter( EntityCacheImpl.class, "cache.miss" );
+
+        metricsFactory.addGauge( EntityCacheImpl.class, "cache.size", () -> cache.size() );
+        metricsFactory.addGauge( EntityCacheImpl.class, "cache.hit_rate", () -> cache.stats().hitRate() );
+    }
+
+
+    @Override
+    public Map<Id, MvccEntity> getAll( final ApplicationScope applicationScope, final Collection<Id> entityIds ) {
+
+        if ( !enabled ) {
+            return new HashMap<>();
+        }
+
+        final Map<Id, MvccEntity> results = new HashMap<>( entityIds.size() );
+
+        for ( final Id entityId : entityIds ) {
+            final CachedEntity cached = cache.getIfPresent( new CacheKey( applicationScope, entityId ) );
+
+            if ( cached == null ) {
+                missMeter.mark();
+                continue;
+            }
+
+            hitMeter.mark();
+            results.put( entityId, cached.toMvccEntity( entityId ) );
+        }
+
+        return results;
+    }
+
+
+    @Override
+    public void put( final ApplicationScope applicationScope, final MvccEntity entity ) {
+
+        if ( !enabled ) {
+            return;
+        }
+
+        final CachedEntity incoming;
+
+        if ( entity.getStatus() == MvccEntity.Status.COMPLETE && entity.getEntity().isPresent() ) {
+            incoming = new CachedEntity( entity.getVersion(), entity.getStatus(),
+                EntityMap.fromEntity( entity.getEntity().get() ), entity.getSize() );
+        }
+        else if ( entity.getStatus() == MvccEntity.Status.DELETED ) {
+            incoming = new CachedEntity( entity.getVersion(), entity.getStatus(), null, 0 );
+        }
+        else {
+            //partial entities are never cached
+            return;
+        }
+
+        //never replace a newer version, a slow read can finish after a write on this node
+        cache.asMap().merge( new CacheKey( applicationScope, entity.getId() ), incoming,
+            ( existing, updated ) -> UUIDComparator.staticCompare( updated.version, existing.version ) >= 0 ? updated :
+                                     existing );
+    }
+
+
+    @Override
+    public void invalidate( final ApplicationScope applicationScope, final Id entityId ) {
+        cache.invalidate( new CacheKey( applicationScope, entityId ) );
+    }
+
+
+    @Override
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+
+    /**
+     * The latest version of an entity
+     */
+    private static final class CachedEntity {
+        private final UUID version;
+        private final MvccEntity.Status status;
+        private final EntityMap entityMap;
+        private final long size;
+
+
+        private CachedEntity( final UUID version, final MvccEntity.Status status, final EntityMap entityMap,
+                              final long size ) {
+            this.version = version;
+            this.status = status;
+            this.entityMap = entityMap;
+            this.size = size;
+        }
+
+
+        private MvccEntity toMvccEntity( final Id entityId ) {
+            final Entity entity = Entity.fromMap( entityMap );
+
+            if ( entity != null ) {
+                EntityUtils.setId( entity, entityId );
+                EntityUtils.setVersion( entity, version );
+                entity.setSize( size );
+            }
+
+            return new MvccEntityImpl( entityId, version, status, Optional.fromNullable( entity ), size );
+        }
+    }
+
+
+    /**
+     * Entities are cached per application
+     */
+    private static final class CacheKey {
+        private final ApplicationScope applicationScope;
+        private final Id entityId;
+
+
+        private CacheKey( final ApplicationScope applicationScope, final Id entityId ) {
+            this.applicationScope = applicationScope;
+            this.entityId = entityId;
+        }
+
+
+        @Override
+        public boolean equals( final Object o ) {
+            if ( this == o ) {
+                return true;
+            }
+            if ( !( o instanceof CacheKey ) ) {
+                return false;
+            }
+
+            final CacheKey cacheKey = ( CacheKey ) o;
+
+            return applicationScope.equals( cacheKey.applicationScope ) && entityId.equals( cacheKey.entityId );
+        }
+
+
+        @Override
+        public int hashCode() {
+            int result = applicationScope.hashCode();
+            result = 31 * result + entityId.hashCode();
+            return result;
+        }
+    }
+}
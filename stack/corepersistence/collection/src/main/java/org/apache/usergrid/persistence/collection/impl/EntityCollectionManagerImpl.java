@@ -24,17 +24,23 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.usergrid.persistence.collection.BatchWriteResult;
 import org.apache.usergrid.persistence.collection.EntityCollectionManager;
 import org.apache.usergrid.persistence.collection.EntitySet;
 import org.apache.usergrid.persistence.collection.FieldSet;
 import org.apache.usergrid.persistence.collection.MvccEntity;
 import org.apache.usergrid.persistence.collection.MvccLogEntry;
 import org.apache.usergrid.persistence.collection.VersionSet;
+import org.apache.usergrid.persistence.collection.cache.EntityCache;
+import org.apache.usergrid.persistence.collection.exception.WriteOptimisticVerifyException;
+import org.apache.usergrid.persistence.collection.exception.WriteUniqueVerifyException;
+import org.apache.usergrid.persistence.collection.mvcc.entity.impl.MvccEntityImpl;
 import org.apache.usergrid.persistence.collection.mvcc.stage.CollectionIoEvent;
 import org.apache.usergrid.persistence.collection.mvcc.stage.delete.MarkCommit;
 import org.apache.usergrid.persistence.collection.mvcc.stage.delete.MarkStart;
@@ -51,6 +57,7 @@ import org.apache.usergrid.persistence.collection.serialization.SerializationFig
 import org.apache.usergrid.persistence.collection.serialization.UniqueValue;
 import org.apache.usergrid.persistence.collection.serialization.UniqueValueSerializationStrategy;
 import org.apache.usergrid.persistence.collection.serialization.UniqueValueSet;
+import org.apache.usergrid.persistence.collection.serialization.impl.EntitySetImpl;
 import org.apache.usergrid.persistence.collection.serialization.impl.MinMaxLogEntryIterator;
 import org.apache.usergrid.persistence.collection.serialization.impl.MutableFieldSet;
 import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
@@ -67,6 +74,7 @@ import org.apache.usergrid.persistence.model.util.EntityUtils;
 import org.apache.usergrid.persistence.model.util.UUIDGenerator;
 
 import com.codahale.metrics.Timer;
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
@@ -114,6 +122,7 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
 
     private final Keyspace keyspace;
     private final Timer writeTimer;
+    private final Timer writeBatchTimer;
     private final Timer deleteTimer;
     private final Timer fieldIdTimer;
     private final Timer fieldEntityTimer;
@@ -122,6 +131,7 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
 
     private final ApplicationScope applicationScope;
     private final RxTaskScheduler rxTaskScheduler;
+    private final EntityCache entityCache;
 
 
     @Inject
@@ -135,6 +145,7 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
                                         final MvccLogEntrySerializationStrategy mvccLogEntrySerializationStrategy,
                                         final Keyspace keyspace, final MetricsFactory metricsFactory,
                                         final SerializationFig serializationFig, final RxTaskScheduler rxTaskScheduler,
+                                        final EntityCache entityCache,
                                         @Assisted final ApplicationScope applicationScope ) {
         this.uniqueValueSerializationStrategy = uniqueValueSerializationStrategy;
         this.entitySerializationStrategy = entitySerializationStrategy;
@@ -142,6 +153,7 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
         this.versionCompact = versionCompact;
         this.serializationFig = serializationFig;
         this.rxTaskScheduler = rxTaskScheduler;
+        this.entityCache = entityCache;
 
         ValidationUtils.validateApplicationScope( applicationScope );
 
@@ -161,6 +173,7 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
         this.applicationScope = applicationScope;
         this.mvccLogEntrySerializationStrategy = mvccLogEntrySerializationStrategy;
         this.writeTimer = metricsFactory.getTimer(EntityCollectionManagerImpl.class, "base.write");
+        this.writeBatchTimer = metricsFactory.getTimer(EntityCollectionManagerImpl.class, "base.writeBatch");
         this.deleteTimer = metricsFactory.getTimer(EntityCollectionManagerImpl.class, "base.delete");
         this.fieldIdTimer = metricsFactory.getTimer(EntityCollectionManagerImpl.class, "base.fieldId");
         this.fieldEntityTimer = metricsFactory.getTimer(EntityCollectionManagerImpl.class, "base.fieldEntity");
@@ -187,6 +200,8 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
 
 
         final Observable<Entity> write = observable.map( writeCommit )
+                                                   //this node now has the latest version, so cache it
+                                                   .doOnNext( ioEvent -> entityCache.put( applicationScope, ioEvent.getEvent() ) )
                                                    .map(ioEvent -> {
                 //fire this in the background so we don't block writes
                 Observable.just( ioEvent ).compose( uniqueCleanup ).subscribeOn( rxTaskScheduler.getAsyncIOScheduler() ).subscribe();
@@ -200,6 +215,86 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
     }
 
 
+    @Override
+    public Observable<BatchWriteResult> writeBatch( final Collection<Entity> entities ) {
+
+        //do our input validation
+        Preconditions.checkNotNull( entities, "Entities are required in the new stage of the mvcc write" );
+
+        final Observable<BatchWriteResult> write = Observable.just( entities ).map( toWrite -> {
+
+            final BatchWriteResult result = new BatchWriteResult( toWrite.size() );
+
+            final List<CollectionIoEvent<MvccEntity>> started = new ArrayList<>( toWrite.size() );
+
+            for ( final Entity entity : toWrite ) {
+
+                ValidationUtils.verifyIdentity( entity.getId() );
+
+                final CollectionIoEvent<MvccEntity> ioEvent =
+                    writeStart.call( new CollectionIoEvent<>( applicationScope, entity ) );
+
+                try {
+                    writeOptimisticVerify.call( ioEvent );
+                }
+                catch ( WriteOptimisticVerifyException e ) {
+                    result.addFailure( entity.getId(), e );
+                    continue;
+                }
+
+                started.add( ioEvent );
+            }
+
+            final Map<Id, Map<String, Field>> violations = writeVerifyUnique.verifyBatch( applicationScope, started );
+
+            //merge the commit of everything that passed verification into a single mutation
+            final MutationBatch commit = keyspace.prepareMutationBatch();
+            final List<CollectionIoEvent<MvccEntity>> verified = new ArrayList<>( started.size() );
+
+            for ( final CollectionIoEvent<MvccEntity> ioEvent : started ) {
+
+                final MvccEntity mvccEntity = ioEvent.getEvent();
+                final Map<String, Field> entityViolations = violations.get( mvccEntity.getId() );
+
+                if ( entityViolations != null ) {
+                    result.addFailure( mvccEntity.getId(),
+                        new WriteUniqueVerifyException( mvccEntity, applicationScope, entityViolations ) );
+                    continue;
+                }
+
+                commit.mergeShallow( writeCommit.buildMutation( ioEvent ) );
+                verified.add( ioEvent );
+            }
+
+            if ( verified.isEmpty() ) {
+                return result;
+            }
+
+            try {
+                commit.execute();
+            }
+            catch ( ConnectionException e ) {
+                logger.error( "Failed to execute batch write", e );
+                throw new RuntimeException( "Unable to write to cassandra", e );
+            }
+
+            for ( final CollectionIoEvent<MvccEntity> ioEvent : verified ) {
+                //this node now has the latest version, so cache it
+                entityCache.put( applicationScope, ioEvent.getEvent() );
+                result.addWritten( ioEvent.getEvent().getEntity().get() );
+            }
+
+            //fire this in the background so we don't block writes
+            Observable.from( verified ).compose( uniqueCleanup ).subscribeOn( rxTaskScheduler.getAsyncIOScheduler() )
+                      .subscribe();
+
+            return result;
+        } );
+
+        return ObservableTimer.time( write, writeBatchTimer );
+    }
+
+
     @Override
     public Observable<Id> mark( final Id entityId ) {
 
@@ -208,7 +303,12 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
         Preconditions.checkNotNull( entityId.getType(), "Entity type is required in this stage" );
 
         Observable<Id> o = Observable.just( new CollectionIoEvent<>( applicationScope, entityId ) ).map( markStart )
-            .doOnNext( markCommit ).compose( uniqueCleanup ).map(
+            .doOnNext( markCommit )
+            //cache the delete rather than invalidating, so a concurrent load can't re-cache the previous version
+            .doOnNext( markEvent -> entityCache.put( applicationScope,
+                new MvccEntityImpl( entityId, markEvent.getEvent().getVersion(), MvccEntity.Status.DELETED,
+                    Optional.<Entity>absent(), 0 ) ) )
+            .compose( uniqueCleanup ).map(
                 entityEvent -> entityEvent.getEvent().getId() );
 
 
@@ -248,8 +348,32 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
             @Override
             public void call( final Subscriber<? super EntitySet> subscriber ) {
                 try {
-                    final EntitySet results =
-                        entitySerializationStrategy.load( applicationScope, entityIds, UUIDGenerator.newTimeUUID() );
+                    final Map<Id, MvccEntity> cached = entityCache.getAll( applicationScope, entityIds );
+
+                    final EntitySet results;
+
+                    if ( cached.isEmpty() ) {
+                        results = loadAndCache( entityIds );
+                    }
+                    else {
+                        final EntitySetImpl merged = new EntitySetImpl( entityIds.size() );
+
+                        cached.values().forEach( merged::addEntity );
+
+                        final List<Id> missing = new ArrayList<>( entityIds.size() - cached.size() );
+
+                        for ( final Id entityId : entityIds ) {
+                            if ( !cached.containsKey( entityId ) ) {
+                                missing.add( entityId );
+                            }
+                        }
+
+                        if ( !missing.isEmpty() ) {
+                            loadAndCache( missing ).getEntities().forEach( merged::addEntity );
+                        }
+
+                        results = merged;
+                    }
 
                     subscriber.onNext( results );
                     subscriber.onCompleted();
@@ -265,6 +389,21 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
     }
 
 
+    /**
+     * Load the entities from cassandra and add them to the entity cache
+     */
+    private EntitySet loadAndCache( final Collection<Id> entityIds ) {
+        final EntitySet results =
+            entitySerializationStrategy.load( applicationScope, entityIds, UUIDGenerator.newTimeUUID() );
+
+        for ( final MvccEntity entity : results.getEntities() ) {
+            entityCache.put( applicationScope, entity );
+        }
+
+        return results;
+    }
+
+
     @Override
     public Observable<MvccLogEntry> getVersions( final Id entityId ) {
         ValidationUtils.verifyIdentity( entityId );
@@ -285,7 +424,8 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
 
 
         return Observable.from( entries ).map( logEntry -> new CollectionIoEvent<>( applicationScope, logEntry ) )
-            .compose( versionCompact ).map( event -> event.getEvent() );
+            .compose( versionCompact ).map( event -> event.getEvent() )
+            .doOnNext( logEntry -> entityCache.invalidate( applicationScope, logEntry.getEntityId() ) );
     }
 
 
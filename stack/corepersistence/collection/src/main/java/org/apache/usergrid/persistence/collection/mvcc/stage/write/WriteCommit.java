@@ -86,6 +86,30 @@ public class WriteCommit implements Func1<CollectionIoEvent<MvccEntity>, Collect
     @Override
     public CollectionIoEvent<MvccEntity> call( final CollectionIoEvent<MvccEntity> ioEvent ) {
 
+        final MvccEntity mvccEntity = ioEvent.getEvent();
+
+        final MutationBatch logMutation = buildMutation( ioEvent );
+
+        try {
+            logMutation.execute();
+        }
+        catch ( ConnectionException e ) {
+            LOG.error( "Failed to execute write asynchronously ", e );
+            throw new WriteCommitException( mvccEntity, ioEvent.getEntityCollection(),
+                "Failed to execute write asynchronously ", e );
+        }
+
+
+        return ioEvent;
+    }
+
+
+    /**
+     * Build the log entry, entity and unique value mutations that commit the entity without executing them, so
+     * callers writing many entities can merge them into a single batch
+     */
+    public MutationBatch buildMutation( final CollectionIoEvent<MvccEntity> ioEvent ) {
+
         final MvccEntity mvccEntity = ioEvent.getEvent();
         MvccValidationUtils.verifyMvccEntityWithEntity( mvccEntity );
 
@@ -125,16 +149,6 @@ public class WriteCommit implements Func1<CollectionIoEvent<MvccEntity>, Collect
                 logMutation.mergeShallow( mb );
         }
 
-        try {
-            logMutation.execute();
-        }
-        catch ( ConnectionException e ) {
-            LOG.error( "Failed to execute write asynchronously ", e );
-            throw new WriteCommitException( mvccEntity, applicationScope,
-                "Failed to execute write asynchronously ", e );
-        }
-
-
-        return ioEvent;
+        return logMutation;
     }
 }
@@ -19,9 +19,13 @@ package org.apache.usergrid.persistence.collection.mvcc.stage.write;
 
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -147,6 +151,109 @@ public class WriteUniqueVerify implements Action1<CollectionIoEvent<MvccEntity>>
         }
     }
 
+    /**
+     * Verify the unique fields of a group of entities together.  The temporary unique values of every entity are
+     * written in a single batch and read back with one load per entity type, instead of a write and a read per
+     * entity.  Entities of the group that claim the same value are resolved the same way as concurrent writers.
+     *
+     * @return The violations of every entity that failed verification, keyed by entity id.  Entities that passed are
+     * not present
+     */
+    public Map<Id, Map<String, Field>> verifyBatch( final ApplicationScope scope,
+                                                    final Collection<CollectionIoEvent<MvccEntity>> ioevents ) {
+
+        final MutationBatch batch = keyspace.prepareMutationBatch();
+
+        final Map<Id, List<Field>> entityFields = new LinkedHashMap<>( ioevents.size() );
+        final Map<String, Set<Field>> typeFields = new HashMap<>();
+
+        for ( final CollectionIoEvent<MvccEntity> ioevent : ioevents ) {
+
+            MvccValidationUtils.verifyMvccEntityWithEntity( ioevent.getEvent() );
+
+            final MvccEntity mvccEntity = ioevent.getEvent();
+
+            final Entity entity = mvccEntity.getEntity().get();
+
+            final List<Field> uniqueFields = new ArrayList<>( EntityUtils.getUniqueFields( entity ) );
+
+            if ( uniqueFields.size() == 0 ) {
+                continue;
+            }
+
+            for ( final Field field : uniqueFields ) {
+                final UniqueValue written = new UniqueValueImpl( field, mvccEntity.getId(), mvccEntity.getVersion() );
+
+                // use TTL in case something goes wrong before entity is finally committed
+                batch.mergeShallow( uniqueValueStrat.write( scope, written, serializationFig.getTimeout() ) );
+            }
+
+            entityFields.put( mvccEntity.getId(), uniqueFields );
+
+            Set<Field> fields = typeFields.get( mvccEntity.getId().getType() );
+
+            if ( fields == null ) {
+                fields = new LinkedHashSet<>();
+                typeFields.put( mvccEntity.getId().getType(), fields );
+            }
+
+            fields.addAll( uniqueFields );
+        }
+
+        //short circuit nothing to do
+        if ( entityFields.size() == 0 ) {
+            return new HashMap<>();
+        }
+
+        //perform the write
+        try {
+            batch.execute();
+        }
+        catch ( ConnectionException ex ) {
+            throw new RuntimeException( "Unable to write to cassandra", ex );
+        }
+
+        final Map<String, UniqueValueSet> typeValues = new HashMap<>( typeFields.size() );
+
+        for ( final Map.Entry<String, Set<Field>> entry : typeFields.entrySet() ) {
+            typeValues.put( entry.getKey(),
+                new ConsistentBatchReplayCommand( uniqueValueStrat, cassandraFig, scope, entry.getKey(),
+                    new ArrayList<>( entry.getValue() ) ).execute() );
+        }
+
+        final Map<Id, Map<String, Field>> violations = new HashMap<>();
+
+        for ( final Map.Entry<Id, List<Field>> entry : entityFields.entrySet() ) {
+
+            final Id entityId = entry.getKey();
+            final UniqueValueSet uniqueValues = typeValues.get( entityId.getType() );
+
+            final Map<String, Field> uniquenessViolations = new HashMap<>( entry.getValue().size() );
+
+            for ( final Field field : entry.getValue() ) {
+
+                final UniqueValue uniqueValue = uniqueValues.getValue( field );
+
+                if ( uniqueValue == null ) {
+                    throw new RuntimeException(
+                        String.format( "Could not retrieve unique value for field %s, unable to verify",
+                            field.getName() ) );
+                }
+
+                if ( !entityId.equals( uniqueValue.getEntityId() ) ) {
+                    uniquenessViolations.put( field.getName(), field );
+                }
+            }
+
+            if ( !uniquenessViolations.isEmpty() ) {
+                violations.put( entityId, uniquenessViolations );
+            }
+        }
+
+        return violations;
+    }
+
+
     private static class ConsistentReplayCommand extends HystrixCommand<Map<String,Field>>{
 
         private final UniqueValueSerializationStrategy uniqueValueSerializationStrategy;
@@ -213,6 +320,48 @@ public class WriteUniqueVerify implements Action1<CollectionIoEvent<MvccEntity>>
         }
     }
 
+    /**
+     * Loads the unique values of a whole group of fields of a single type, falling back to the consistent read level
+     */
+    private static class ConsistentBatchReplayCommand extends HystrixCommand<UniqueValueSet>{
+
+        private final UniqueValueSerializationStrategy uniqueValueSerializationStrategy;
+        private final CassandraConfig fig;
+        private final ApplicationScope scope;
+        private final String type;
+        private final List<Field> uniqueFields;
+
+        public ConsistentBatchReplayCommand( UniqueValueSerializationStrategy uniqueValueSerializationStrategy,
+                                             CassandraConfig fig, ApplicationScope scope, final String type,
+                                             List<Field> uniqueFields ){
+            super(REPLAY_GROUP);
+            this.uniqueValueSerializationStrategy = uniqueValueSerializationStrategy;
+            this.fig = fig;
+            this.scope = scope;
+            this.type = type;
+            this.uniqueFields = uniqueFields;
+        }
+
+        @Override
+        protected UniqueValueSet run() throws Exception {
+            return executeStrategy(fig.getReadCL());
+        }
+
+        @Override
+        protected UniqueValueSet getFallback() {
+            return executeStrategy(fig.getConsistentReadCL());
+        }
+
+        public UniqueValueSet executeStrategy(ConsistencyLevel consistencyLevel){
+            try {
+                return uniqueValueSerializationStrategy.load( scope, consistencyLevel, type,  uniqueFields );
+            }
+            catch ( ConnectionException e ) {
+                throw new RuntimeException( "Unable to read from cassandra", e );
+            }
+        }
+    }
+
     /**
      * Command group used for realtime user commands
      */
@@ -18,6 +18,9 @@ package org.apache.usergrid.persistence.collection.serialization;/*
  */
 
 
+import org.apache.usergrid.persistence.model.field.Field;
+
+
 /**
  * A read only view of unique values
  */
@@ -30,4 +33,12 @@ public interface UniqueValueSet extends Iterable<UniqueValue> {
      */
     public UniqueValue getValue(final String fieldName);
 
+    /**
+     * Get the unique value for the field with the same name and value.  Use this when the set was loaded with more
+     * than one value for the same field name
+     * @param field
+     * @return
+     */
+    public UniqueValue getValue(final Field field);
+
 }
@@ -0,0 +1,489 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.collection.serialization.impl;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.collection.exception.DataCorruptionException;
+import org.apache.usergrid.persistence.collection.serialization.impl.MvccEntitySerializationStrategyV3Impl.EntityWrapper;
+import org.apache.usergrid.persistence.model.entity.EntityMap;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+
+/**
+ * Compact binary encoding of an {@link EntityMap}.  The layout is
+ *
+ * <pre>
+ * byte     format version
+ * byte     state, complete or deleted
+ * long[2]  entity version
+ * long[2]  entity id uuid, followed by the id type as a string
+ *
+ * (complete only)
+ * int      dictionary size, followed by each field name as a string.  Names of nested objects share the dictionary
+ * int      top level field count, followed by (int name index, int value offset) for each field
+ * byte[]   the values, each prefixed with a type byte
+ * </pre>
+ *
+ * Strings are an int length followed by the UTF-8 bytes.  Since the offset table points straight at each top level
+ * value, a single field can be read with {@link #readField(ByteBuffer, String)} without decoding the rest of the
+ * entity.  Values without a native type are written with a typed smile mapper so they round trip as they did in
+ * v3.
+ */
+public final class BinaryEntityCodec {
+
+    public static final byte FORMAT_VERSION = 1;
+
+    private static final byte STATE_COMPLETE = 0;
+    private static final byte STATE_DELETED = 1;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_TRUE = 2;
+    private static final byte TYPE_FALSE = 3;
+    private static final byte TYPE_INTEGER = 4;
+    private static final byte TYPE_LONG = 5;
+    private static final byte TYPE_FLOAT = 6;
+    private static final byte TYPE_DOUBLE = 7;
+    private static final byte TYPE_UUID = 8;
+    private static final byte TYPE_LIST = 9;
+    private static final byte TYPE_MAP = 10;
+    private static final byte TYPE_OBJECT = 11;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper( new SmileFactory() );
+
+
+    static {
+        OBJECT_MAPPER.enableDefaultTypingAsProperty( ObjectMapper.DefaultTyping.JAVA_LANG_OBJECT, "@class" );
+    }
+
+
+    private BinaryEntityCodec() {}
+
+
+    /**
+     * Encode the wrapper.  A null entity map is written as a deleted marker
+     */
+    public static byte[] encode( final EntityWrapper wrapper ) {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream( 256 );
+        final DataOutputStream out = new DataOutputStream( bytes );
+
+        try {
+            out.writeByte( FORMAT_VERSION );
+
+            final EntityMap entityMap = wrapper.getEntityMap();
+
+            out.writeByte( entityMap == null ? STATE_DELETED : STATE_COMPLETE );
+
+            writeUuid( out, wrapper.getVersion() );
+
+            final Id id = wrapper.getId();
+            writeUuid( out, id.getUuid() );
+            writeString( out, id.getType() );
+
+            if ( entityMap == null ) {
+                out.flush();
+                return bytes.toByteArray();
+            }
+
+            //write the values first so we know the offsets and dictionary
+            final Map<String, Integer> dictionary = new LinkedHashMap<>();
+            final ByteArrayOutputStream valueBytes = new ByteArrayOutputStream( 256 );
+            final DataOutputStream values = new DataOutputStream( valueBytes );
+
+            final int[] nameIndexes = new int[entityMap.size()];
+            final int[] offsets = new int[entityMap.size()];
+
+            int field = 0;
+
+            for ( final Map.Entry<String, Object> entry : entityMap.entrySet() ) {
+                nameIndexes[field] = nameIndex( dictionary, entry.getKey() );
+                offsets[field] = values.size();
+                writeValue( values, dictionary, entry.getValue() );
+                field++;
+            }
+
+            values.flush();
+
+            out.writeInt( dictionary.size() );
+
+            for ( final String name : dictionary.keySet() ) {
+                writeString( out, name );
+            }
+
+            out.writeInt( field );
+
+            for ( int i = 0; i < field; i++ ) {
+                out.writeInt( nameIndexes[i] );
+                out.writeInt( offsets[i] );
+            }
+
+            valueBytes.writeTo( out );
+
+            out.flush();
+        }
+        catch ( IOException e ) {
+            throw new RuntimeException( "Unable to serialize entity", e );
+        }
+
+        return bytes.toByteArray();
+    }
+
+
+    /**
+     * Decode the entire wrapper
+     */
+    public static EntityWrapper decode( final ByteBuffer byteBuffer ) {
+        final ByteBuffer buffer = byteBuffer.duplicate();
+        final int size = buffer.remaining();
+
+        try {
+            checkFormat( buffer );
+
+            final byte state = buffer.get();
+            final UUID version = readUuid( buffer );
+            final Id id = new SimpleId( readUuid( buffer ), readString( buffer ) );
+
+            if ( state == STATE_DELETED ) {
+                return new EntityWrapper( id, version, MvccEntity.Status.DELETED, null, 0 );
+            }
+
+            final String[] dictionary = readDictionary( buffer );
+            final int fieldCount = buffer.getInt();
+
+            final int[] nameIndexes = new int[fieldCount];
+            final int[] offsets = new int[fieldCount];
+
+            for ( int i = 0; i < fieldCount; i++ ) {
+                nameIndexes[i] = buffer.getInt();
+                offsets[i] = buffer.getInt();
+            }
+
+            final int valueStart = buffer.position();
+
+            final EntityMap entityMap = new EntityMap();
+
+            for ( int i = 0; i < fieldCount; i++ ) {
+                buffer.position( valueStart + offsets[i] );
+                entityMap.put( dictionary[nameIndexes[i]], readValue( buffer, dictionary ) );
+            }
+
+            return new EntityWrapper( id, version, MvccEntity.Status.COMPLETE, entityMap, size );
+        }
+        catch ( Exception e ) {
+            throw new DataCorruptionException( "Unable to read entity data", e );
+        }
+    }
+
+
+    /**
+     * Read a single top level field without decoding the rest of the entity.  Returns null if the field is not
+     * present, the field value is null, or the entity is deleted
+     */
+    public static Object readField( final ByteBuffer byteBuffer, final String fieldName ) {
+        final ByteBuffer buffer = byteBuffer.duplicate();
+
+        try {
+            checkFormat( buffer );
+
+            if ( buffer.get() == STATE_DELETED ) {
+                return null;
+            }
+
+            //skip the version, id uuid and id type
+            buffer.position( buffer.position() + 32 );
+            skipString( buffer );
+
+            final byte[] wanted = fieldName.getBytes( StandardCharsets.UTF_8 );
+
+            //find the name in the dictionary by comparing bytes, and keep the dictionary around for nested maps
+            final int dictionarySize = buffer.getInt();
+            final int dictionaryStart = buffer.position();
+
+            int wantedIndex = -1;
+
+            for ( int i = 0; i < dictionarySize; i++ ) {
+                final int length = buffer.getInt();
+
+                if ( wantedIndex == -1 && length == wanted.length && matches( buffer, wanted ) ) {
+                    wantedIndex = i;
+                }
+
+                buffer.position( buffer.position() + length );
+            }
+
+            if ( wantedIndex == -1 ) {
+                return null;
+            }
+
+            final int fieldCount = buffer.getInt();
+            final int tableStart = buffer.position();
+            final int valueStart = tableStart + fieldCount * 8;
+
+            for ( int i = 0; i < fieldCount; i++ ) {
+                if ( buffer.getInt( tableStart + i * 8 ) != wantedIndex ) {
+                    continue;
+                }
+
+                buffer.position( valueStart + buffer.getInt( tableStart + i * 8 + 4 ) );
+
+                final byte type = buffer.get( buffer.position() );
+
+                //only pay for the dictionary when the value has nested names
+                if ( type == TYPE_MAP || type == TYPE_LIST ) {
+                    final ByteBuffer dictionaryBuffer = buffer.duplicate();
+                    dictionaryBuffer.position( dictionaryStart - 4 );
+                    return readValue( buffer, readDictionary( dictionaryBuffer ) );
+                }
+
+                return readValue( buffer, null );
+            }
+
+            return null;
+        }
+        catch ( Exception e ) {
+            throw new DataCorruptionException( "Unable to read entity data", e );
+        }
+    }
+
+
+    private static void checkFormat( final ByteBuffer buffer ) {
+        final byte format = buffer.get();
+
+        if ( format != FORMAT_VERSION ) {
+            throw new IllegalArgumentException( "Unknown entity format version " + format );
+        }
+    }
+
+
+    private static int nameIndex( final Map<String, Integer> dictionary, final String name ) {
+        Integer index = dictionary.get( name );
+
+        if ( index == null ) {
+            index = dictionary.size();
+            dictionary.put( name, index );
+        }
+
+        return index;
+    }
+
+
+    @SuppressWarnings( "unchecked" )
+    private static void writeValue( final DataOutputStream out, final Map<String, Integer> dictionary,
+                                    final Object value ) throws IOException {
+
+        if ( value == null ) {
+            out.writeByte( TYPE_NULL );
+        }
+        else if ( value instanceof String ) {
+            out.writeByte( TYPE_STRING );
+            writeString( out, ( String ) value );
+        }
+        else if ( value instanceof Boolean ) {
+            out.writeByte( ( Boolean ) value ? TYPE_TRUE : TYPE_FALSE );
+        }
+        else if ( value instanceof Integer ) {
+            out.writeByte( TYPE_INTEGER );
+            out.writeInt( ( Integer ) value );
+        }
+        else if ( value instanceof Long ) {
+            out.writeByte( TYPE_LONG );
+            out.writeLong( ( Long ) value );
+        }
+        else if ( value instanceof Float ) {
+            out.writeByte( TYPE_FLOAT );
+            out.writeFloat( ( Float ) value );
+        }
+        else if ( value instanceof Double ) {
+            out.writeByte( TYPE_DOUBLE );
+            out.writeDouble( ( Double ) value );
+        }
+        else if ( value instanceof UUID ) {
+            out.writeByte( TYPE_UUID );
+            writeUuid( out, ( UUID ) value );
+        }
+        else if ( value instanceof List ) {
+            final List<Object> list = ( List<Object> ) value;
+
+            out.writeByte( TYPE_LIST );
+            out.writeInt( list.size() );
+
+            for ( final Object element : list ) {
+                writeValue( out, dictionary, element );
+            }
+        }
+        else if ( value instanceof Map ) {
+            final Map<Object, Object> map = ( Map<Object, Object> ) value;
+
+            out.writeByte( TYPE_MAP );
+            out.writeInt( map.size() );
+
+            for ( final Map.Entry<Object, Object> entry : map.entrySet() ) {
+                out.writeInt( nameIndex( dictionary, String.valueOf( entry.getKey() ) ) );
+                writeValue( out, dictionary, entry.getValue() );
+            }
+        }
+        else {
+            final byte[] serialized = OBJECT_MAPPER.writerWithType( Object.class ).writeValueAsBytes( value );
+
+            out.writeByte( TYPE_OBJECT );
+            out.writeInt( serialized.length );
+            out.write( serialized );
+        }
+    }
+
+
+    private static Object readValue( final ByteBuffer buffer, final String[] dictionary ) throws IOException {
+        final byte type = buffer.get();
+
+        switch ( type ) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_STRING:
+                return readString( buffer );
+            case TYPE_TRUE:
+                return Boolean.TRUE;
+            case TYPE_FALSE:
+                return Boolean.FALSE;
+            case TYPE_INTEGER:
+                return buffer.getInt();
+            case TYPE_LONG:
+                return buffer.getLong();
+            case TYPE_FLOAT:
+                return buffer.getFloat();
+            case TYPE_DOUBLE:
+                return buffer.getDouble();
+            case TYPE_UUID:
+                return readUuid( buffer );
+            case TYPE_LIST: {
+                final int size = buffer.getInt();
+                final List<Object> list = new ArrayList<>( size );
+
+                for ( int i = 0; i < size; i++ ) {
+                    list.add( readValue( buffer, dictionary ) );
+                }
+
+                return list;
+            }
+            case TYPE_MAP: {
+                final int size = buffer.getInt();
+                final Map<String, Object> map = new HashMap<>( Math.max( 4, size * 2 ) );
+
+                for ( int i = 0; i < size; i++ ) {
+                    final String name = dictionary[buffer.getInt()];
+                    map.put( name, readValue( buffer, dictionary ) );
+                }
+
+                return map;
+            }
+            case TYPE_OBJECT: {
+                final byte[] serialized = new byte[buffer.getInt()];
+                buffer.get( serialized );
+                return OBJECT_MAPPER.readValue( serialized, Object.class );
+            }
+            default:
+                throw new IllegalArgumentException( "Unknown value type " + type );
+        }
+    }
+
+
+    private static String[] readDictionary( final ByteBuffer buffer ) {
+        final String[] dictionary = new String[buffer.getInt()];
+
+        for ( int i = 0; i < dictionary.length; i++ ) {
+            dictionary[i] = readString( buffer );
+        }
+
+        return dictionary;
+    }
+
+
+    private static boolean matches( final ByteBuffer buffer, final byte[] wanted ) {
+        final int start = buffer.position();
+
+        for ( int i = 0; i < wanted.length; i++ ) {
+            if ( buffer.get( start + i ) != wanted[i] ) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    private static void writeString( final DataOutputStream out, final String value ) throws IOException {
+        final byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+
+
+    private static String readString( final ByteBuffer buffer ) {
+        final int length = buffer.getInt();
+
+        final String value;
+
+        if ( buffer.hasArray() ) {
+            value = new String( buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8 );
+            buffer.position( buffer.position() + length );
+        }
+        else {
+            final byte[] bytes = new byte[length];
+            buffer.get( bytes );
+            value = new String( bytes, StandardCharsets.UTF_8 );
+        }
+
+        return value;
+    }
+
+
+    private static void skipString( final ByteBuffer buffer ) {
+        final int length = buffer.getInt();
+        buffer.position( buffer.position() + length );
+    }
+
+
+    private static void writeUuid( final DataOutputStream out, final UUID uuid ) throws IOException {
+        out.writeLong( uuid.getMostSignificantBits() );
+        out.writeLong( uuid.getLeastSignificantBits() );
+    }
+
+
+    private static UUID readUuid( final ByteBuffer buffer ) {
+        return new UUID( buffer.getLong(), buffer.getLong() );
+    }
+}
@@ -111,7 +111,7 @@ public class MvccEntitySerializationStrategyV3Impl implements MvccEntitySerializ
         final UUID version = entity.getVersion();
 
         Optional<EntityMap> map =  EntityMap.fromEntity(entity.getEntity());
-        ByteBuffer byteBuffer = entitySerializer.toByteBuffer(
+        ByteBuffer byteBuffer = getEntitySerializer().toByteBuffer(
             new EntityWrapper(entityId,entity.getVersion(), entity.getStatus(), map.isPresent() ? map.get() : null, 0 )
         );
 
@@ -190,7 +190,7 @@ public class MvccEntitySerializationStrategyV3Impl implements MvccEntitySerializ
 
 
                     try {
-                        return keyspace.prepareQuery( CF_ENTITY_DATA ).getKeySlice( scopedRowKeys )
+                        return keyspace.prepareQuery( getColumnFamily() ).getKeySlice( scopedRowKeys )
                             .withColumnSlice( COL_VALUE ).execute().getResult();
                     }
                     catch ( ConnectionException e ) {
@@ -215,7 +215,7 @@ public class MvccEntitySerializationStrategyV3Impl implements MvccEntitySerializ
                     final Column<Boolean> column = columns.getColumnByIndex( 0 );
 
                     final MvccEntity parsedEntity =
-                        new MvccColumnParser( entityId, entitySerializer ).parseColumn( column );
+                        new MvccColumnParser( entityId, getEntitySerializer() ).parseColumn( column );
 
 
                     entitySet.addEntity( parsedEntity );
@@ -273,7 +273,7 @@ public class MvccEntitySerializationStrategyV3Impl implements MvccEntitySerializ
 
         return doWrite(applicationScope, entityId, version, colMutation ->
                 colMutation.putColumn(COL_VALUE,
-                    entitySerializer.toByteBuffer(new EntityWrapper(entityId, version, MvccEntity.Status.DELETED, null, 0))
+                    getEntitySerializer().toByteBuffer(new EntityWrapper(entityId, version, MvccEntity.Status.DELETED, null, 0))
                 )
         );
     }
@@ -296,7 +296,7 @@ public class MvccEntitySerializationStrategyV3Impl implements MvccEntitySerializ
         //create the CF entity data.  We want it reversed b/c we want the most recent version at the top of the
         //row for fast seeks
         MultiTenantColumnFamilyDefinition cf =
-                new MultiTenantColumnFamilyDefinition( CF_ENTITY_DATA, BytesType.class.getSimpleName(),
+                new MultiTenantColumnFamilyDefinition( getColumnFamily(), BytesType.class.getSimpleName(),
                         BooleanType.class.getSimpleName() ,
                         BytesType.class.getSimpleName(), MultiTenantColumnFamilyDefinition.CacheOption.KEYS );
 
@@ -318,7 +318,7 @@ public class MvccEntitySerializationStrategyV3Impl implements MvccEntitySerializ
 
         final long timestamp = version.timestamp();
 
-        op.doOp( batch.withRow( CF_ENTITY_DATA, rowKey ).setTimestamp( timestamp  ) );
+        op.doOp( batch.withRow( getColumnFamily(), rowKey ).setTimestamp( timestamp  ) );
 
         return batch;
     }
@@ -330,6 +330,22 @@ public class MvccEntitySerializationStrategyV3Impl implements MvccEntitySerializ
     }
 
 
+    /**
+     * Get the serializer used to read and write the entity column
+     */
+    protected AbstractSerializer<EntityWrapper> getEntitySerializer() {
+        return entitySerializer;
+    }
+
+
+    /**
+     * Get the column family the entity data is stored in
+     */
+    protected MultiTenantColumnFamily<ScopedRowKey<Id>, Boolean> getColumnFamily() {
+        return CF_ENTITY_DATA;
+    }
+
+
     /**
      * Converts raw columns the to MvccEntity representation
      */
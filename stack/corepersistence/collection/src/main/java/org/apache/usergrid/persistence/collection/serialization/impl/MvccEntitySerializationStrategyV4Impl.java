@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.collection.serialization.impl;
+
+
+import java.nio.ByteBuffer;
+
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.collection.exception.EntityTooLargeException;
+import org.apache.usergrid.persistence.collection.serialization.SerializationFig;
+import org.apache.usergrid.persistence.core.astyanax.CassandraFig;
+import org.apache.usergrid.persistence.core.astyanax.IdRowCompositeSerializer;
+import org.apache.usergrid.persistence.core.astyanax.MultiTenantColumnFamily;
+import org.apache.usergrid.persistence.core.astyanax.ScopedRowKey;
+import org.apache.usergrid.persistence.core.astyanax.ScopedRowKeySerializer;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.Id;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.serializers.AbstractSerializer;
+import com.netflix.astyanax.serializers.BooleanSerializer;
+
+
+/**
+ * V4 Serialization Implementation.  Storage is identical to v3, a single column per entity holding the latest
+ * version, but the value is written with {@link BinaryEntityCodec} instead of typed json.
+ */
+@Singleton
+public class MvccEntitySerializationStrategyV4Impl extends MvccEntitySerializationStrategyV3Impl {
+
+    private static final IdRowCompositeSerializer ID_SER = IdRowCompositeSerializer.get();
+
+    private static final ScopedRowKeySerializer<Id> ROW_KEY_SER = new ScopedRowKeySerializer<>( ID_SER );
+
+
+    private static final MultiTenantColumnFamily<ScopedRowKey<Id>, Boolean> CF_ENTITY_DATA =
+        new MultiTenantColumnFamily<>( "Entity_Version_Data_V4", ROW_KEY_SER, BooleanSerializer.get() );
+
+
+    private final EntitySerializer entitySerializer;
+
+
+    @Inject
+    public MvccEntitySerializationStrategyV4Impl( final Keyspace keyspace, final SerializationFig serializationFig,
+                                                  final CassandraFig cassandraFig,
+                                                  final MetricsFactory metricsFactory ) {
+        super( keyspace, serializationFig, cassandraFig, metricsFactory );
+        this.entitySerializer = new EntitySerializer( serializationFig, metricsFactory );
+    }
+
+
+    @Override
+    public int getImplementationVersion() {
+        return CollectionDataVersions.BINARY_ENTITY.getVersion();
+    }
+
+
+    @Override
+    protected AbstractSerializer<EntityWrapper> getEntitySerializer() {
+        return entitySerializer;
+    }
+
+
+    @Override
+    protected MultiTenantColumnFamily<ScopedRowKey<Id>, Boolean> getColumnFamily() {
+        return CF_ENTITY_DATA;
+    }
+
+
+    /**
+     * We should only ever create this once, since this impl is a singleton
+     */
+    public static final class EntitySerializer extends AbstractSerializer<EntityWrapper> {
+
+        private final Histogram bytesInHistorgram;
+        private final Histogram bytesOutHistorgram;
+        private final Timer bytesOutTimer;
+
+        private final SerializationFig serializationFig;
+
+
+        public EntitySerializer( final SerializationFig serializationFig, final MetricsFactory metricsFactory ) {
+            this.serializationFig = serializationFig;
+            this.bytesOutHistorgram =
+                metricsFactory.getHistogram( MvccEntitySerializationStrategyV4Impl.class, "bytes.out" );
+            this.bytesOutTimer = metricsFactory.getTimer( MvccEntitySerializationStrategyV4Impl.class, "bytes.out" );
+            this.bytesInHistorgram =
+                metricsFactory.getHistogram( MvccEntitySerializationStrategyV4Impl.class, "bytes.in" );
+        }
+
+
+        @Override
+        public ByteBuffer toByteBuffer( final EntityWrapper wrapper ) {
+            if ( wrapper == null ) {
+                return null;
+            }
+
+            //we have an entity but status is not complete don't allow it
+            if ( wrapper.getEntityMap() != null && wrapper.getStatus() != MvccEntity.Status.COMPLETE ) {
+                throw new UnsupportedOperationException(
+                    "Only states " + MvccEntity.Status.DELETED + " and " + MvccEntity.Status.COMPLETE
+                        + " are supported" );
+            }
+
+            final byte[] wrapperBytes = BinaryEntityCodec.encode( wrapper );
+
+            if ( wrapper.getEntityMap() != null ) {
+                final int maxEntrySize = serializationFig.getMaxEntitySize();
+
+                bytesInHistorgram.update( wrapperBytes.length );
+
+                if ( wrapperBytes.length > maxEntrySize ) {
+                    throw new EntityTooLargeException( Entity.fromMap( wrapper.getEntityMap() ), maxEntrySize,
+                        wrapperBytes.length,
+                        "Your entity cannot exceed " + maxEntrySize + " bytes. The entity you tried to save was "
+                            + wrapperBytes.length + " bytes" );
+                }
+            }
+
+            return ByteBuffer.wrap( wrapperBytes );
+        }
+
+
+        @Override
+        public EntityWrapper fromByteBuffer( final ByteBuffer byteBuffer ) {
+            final Timer.Context time = bytesOutTimer.time();
+
+            try {
+                bytesOutHistorgram.update( byteBuffer.remaining() );
+
+                //throws a data corruption exception if we can't read it, same as v3
+                return BinaryEntityCodec.decode( byteBuffer );
+            }
+            finally {
+                time.stop();
+            }
+        }
+    }
+}
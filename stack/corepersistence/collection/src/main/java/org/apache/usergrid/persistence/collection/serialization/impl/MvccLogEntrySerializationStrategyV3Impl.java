@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.collection.serialization.impl;
+
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.apache.usergrid.persistence.collection.serialization.SerializationFig;
+import org.apache.usergrid.persistence.core.astyanax.MultiTenantColumnFamilyDefinition;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.netflix.astyanax.Keyspace;
+
+
+/**
+ * Log entries didn't change with the binary entity format, this is V2 at that version of the collection data.  It
+ * reads and writes the V2 column family, and is only here so the proxy has an implementation for the version
+ */
+@Singleton
+public class MvccLogEntrySerializationStrategyV3Impl extends MvccLogEntrySerializationStrategyV2Impl {
+
+
+    @Inject
+    public MvccLogEntrySerializationStrategyV3Impl( final Keyspace keyspace, final SerializationFig fig ) {
+        super( keyspace, fig );
+    }
+
+
+    @Override
+    public int getImplementationVersion() {
+        return CollectionDataVersions.BINARY_ENTITY.getVersion();
+    }
+
+
+    @Override
+    public Collection<MultiTenantColumnFamilyDefinition> getColumnFamilies() {
+        //V2 creates the column family
+        return Collections.emptyList();
+    }
+}
@@ -24,6 +24,7 @@ import org.apache.usergrid.persistence.collection.serialization.UniqueValueSeria
 import org.apache.usergrid.persistence.collection.serialization.impl.migration.CollectionMigration;
 import org.apache.usergrid.persistence.collection.serialization.impl.migration.CollectionMigrationPlugin;
 import org.apache.usergrid.persistence.collection.serialization.impl.migration.EntityIdScope;
+import org.apache.usergrid.persistence.collection.serialization.impl.migration.MvccEntityBinaryDataMigrationImpl;
 import org.apache.usergrid.persistence.collection.serialization.impl.migration.MvccEntityDataMigrationImpl;
 import org.apache.usergrid.persistence.core.migration.data.DataMigration;
 import org.apache.usergrid.persistence.core.migration.data.MigrationPlugin;
@@ -52,19 +53,21 @@ public class SerializationModule extends AbstractModule {
         // bind the serialization strategies
 
 
-        //bind all 3 implementations
+        //bind all 4 implementations
         bind( MvccEntitySerializationStrategyV1Impl.class );
         bind( MvccEntitySerializationStrategyV2Impl.class );
         bind( MvccEntitySerializationStrategyV3Impl.class );
+        bind( MvccEntitySerializationStrategyV4Impl.class );
         //We've migrated this one, so we need to set up the previous, current, and proxy
 
 
         bind( MvccEntitySerializationStrategy.class ).to( MvccEntitySerializationStrategyProxyImpl.class );
 
 
-        //bind 2 implementations
+        //bind 3 implementations, v3 is v2 at the binary entity version
         bind( MvccLogEntrySerializationStrategyV1Impl.class );
         bind( MvccLogEntrySerializationStrategyV2Impl.class );
+        bind( MvccLogEntrySerializationStrategyV3Impl.class );
 
 
         bind( MvccLogEntrySerializationStrategy.class ).to( MvccLogEntrySerializationProxyImpl.class );
@@ -72,6 +75,7 @@ public class SerializationModule extends AbstractModule {
 
         bind( UniqueValueSerializationStrategyV1Impl.class );
         bind(UniqueValueSerializationStrategyV2Impl.class);
+        bind( UniqueValueSerializationStrategyV3Impl.class );
 
         bind( UniqueValueSerializationStrategy.class ).to( UniqueValueSerializationStrategyProxyImpl.class );
 
@@ -81,6 +85,7 @@ public class SerializationModule extends AbstractModule {
         migrationBinder.addBinding().to( Key.get( MvccEntitySerializationStrategyV1Impl.class ) );
         migrationBinder.addBinding().to( Key.get( MvccEntitySerializationStrategyV2Impl.class ) );
         migrationBinder.addBinding().to( Key.get( MvccEntitySerializationStrategyV3Impl.class ) );
+        migrationBinder.addBinding().to( Key.get( MvccEntitySerializationStrategyV4Impl.class ) );
 
         //log serialization versions
         migrationBinder.addBinding().to( Key.get( MvccLogEntrySerializationStrategyV1Impl.class ) );
@@ -101,6 +106,7 @@ public class SerializationModule extends AbstractModule {
 
 
         dataMigrationMultibinder.addBinding().to( MvccEntityDataMigrationImpl.class );
+        dataMigrationMultibinder.addBinding().to( MvccEntityBinaryDataMigrationImpl.class );
 
 
         //wire up the collection migration plugin
@@ -116,7 +122,7 @@ public class SerializationModule extends AbstractModule {
     @Provides
     public VersionedMigrationSet<MvccEntitySerializationStrategy> getVersions(
         final MvccEntitySerializationStrategyV1Impl v1, final MvccEntitySerializationStrategyV2Impl v2,
-        final MvccEntitySerializationStrategyV3Impl v3 ) {
+        final MvccEntitySerializationStrategyV3Impl v3, final MvccEntitySerializationStrategyV4Impl v4 ) {
 
 
         //we must perform a migration from v1 to v3 in order to maintain consistency
@@ -127,15 +133,20 @@ public class SerializationModule extends AbstractModule {
         MigrationRelationship<MvccEntitySerializationStrategy> v2Tov3 = new MigrationRelationship<>( v2, v3 );
 
 
-        //note that we MUST migrate to v3 before our next migration, if v4 and v5 is implemented we will need a
-        // v3->v5 and a v4->v5 set
+        //once on v3 we rewrite into the binary format.  v1 and v2 MUST go through v3 first, since only v3 and
+        // beyond drop the history
+        MigrationRelationship<MvccEntitySerializationStrategy> v3Tov4 = new MigrationRelationship<>( v3, v4 );
+
+
+        //note that we MUST migrate to v4 before our next migration, if v5 and v6 is implemented we will need a
+        // v4->v6 and a v5->v6 set
         MigrationRelationship<MvccEntitySerializationStrategy> current =
-            new MigrationRelationship<>( v3, v3 );
+            new MigrationRelationship<>( v4, v4 );
 
 
         //now create our set of versions
         VersionedMigrationSet<MvccEntitySerializationStrategy> set =
-            new VersionedMigrationSet<>( v1Tov3, v2Tov3, current );
+            new VersionedMigrationSet<>( v1Tov3, v2Tov3, v3Tov4, current );
 
         return set;
     }
@@ -148,7 +159,8 @@ public class SerializationModule extends AbstractModule {
     @Inject
     @Provides
     public VersionedMigrationSet<MvccLogEntrySerializationStrategy> getVersions(
-        final MvccLogEntrySerializationStrategyV1Impl v1, final MvccLogEntrySerializationStrategyV2Impl v2) {
+        final MvccLogEntrySerializationStrategyV1Impl v1, final MvccLogEntrySerializationStrategyV2Impl v2,
+        final MvccLogEntrySerializationStrategyV3Impl v3) {
 
 
         //we must perform a migration from v1 to v3 in order to maintain consistency
@@ -157,13 +169,19 @@ public class SerializationModule extends AbstractModule {
 
         //note that we MUST migrate to v3 before our next migration, if v4 and v5 is implemented we will need a
         // v3->v5 and a v4->v5 set
-        MigrationRelationship<MvccLogEntrySerializationStrategy> current =
+        MigrationRelationship<MvccLogEntrySerializationStrategy> v2Current =
             new MigrationRelationship<>( v2, v2 );
 
 
+        //the binary entity migration shares our version, but log entries are unchanged by it.  v3 is the same
+        // storage as v2, so there is nothing to dual write
+        MigrationRelationship<MvccLogEntrySerializationStrategy> current =
+            new MigrationRelationship<>( v3, v3 );
+
+
         //now create our set of versions
         VersionedMigrationSet<MvccLogEntrySerializationStrategy> set =
-            new VersionedMigrationSet<>( v1Tov2, current );
+            new VersionedMigrationSet<>( v1Tov2, v2Current, current );
 
         return set;
     }
@@ -177,7 +195,8 @@ public class SerializationModule extends AbstractModule {
     @Inject
     @Provides
     public VersionedMigrationSet<UniqueValueSerializationStrategy> getVersions(
-        final UniqueValueSerializationStrategyV1Impl v1, final UniqueValueSerializationStrategyV2Impl v2) {
+        final UniqueValueSerializationStrategyV1Impl v1, final UniqueValueSerializationStrategyV2Impl v2,
+        final UniqueValueSerializationStrategyV3Impl v3) {
 
 
         //we must perform a migration from v1 to v3 in order to maintain consistency
@@ -186,13 +205,19 @@ public class SerializationModule extends AbstractModule {
 
         //note that we MUST migrate to v3 before our next migration, if v4 and v5 is implemented we will need a
         // v3->v5 and a v4->v5 set
-        MigrationRelationship<UniqueValueSerializationStrategy> current =
+        MigrationRelationship<UniqueValueSerializationStrategy> v2Current =
             new MigrationRelationship<>( v2, v2 );
 
 
+        //the binary entity migration shares our version, but unique values are unchanged by it.  v3 is the same
+        // storage as v2, so there is nothing to dual write
+        MigrationRelationship<UniqueValueSerializationStrategy> current =
+            new MigrationRelationship<>( v3, v3 );
+
+
         //now create our set of versions
         VersionedMigrationSet<UniqueValueSerializationStrategy> set =
-            new VersionedMigrationSet<>( v1Tov2, current );
+            new VersionedMigrationSet<>( v1Tov2, v2Current, current );
 
         return set;
     }
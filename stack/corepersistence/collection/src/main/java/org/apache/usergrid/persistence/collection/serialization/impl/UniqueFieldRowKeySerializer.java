@@ -75,8 +75,15 @@ public class UniqueFieldRowKeySerializer implements CompositeFieldSerializer<Fie
 
         builder.addString( field.getName() );
 
-        //write all values as lowercase for normalization
-        builder.addString( field.getValue().toString().toLowerCase() );
+        builder.addString( normalizeValue( field ) );
+    }
+
+
+    /**
+     * All values are written as lowercase for normalization, so fields differing only in case are the same unique value
+     */
+    public static String normalizeValue( final Field field ) {
+        return field.getValue().toString().toLowerCase();
     }
 
 
@@ -18,26 +18,32 @@ package org.apache.usergrid.persistence.collection.serialization.impl;/*
  */
 
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.usergrid.persistence.collection.serialization.UniqueValue;
 import org.apache.usergrid.persistence.collection.serialization.UniqueValueSet;
+import org.apache.usergrid.persistence.model.field.Field;
 
 
 public class UniqueValueSetImpl implements UniqueValueSet {
 
     private final Map<String, UniqueValue> values;
+    private final Map<List<String>, UniqueValue> fieldValues;
 
     public UniqueValueSetImpl(final int expectedMaxSize) {
         values = new HashMap<>(expectedMaxSize);
+        fieldValues = new HashMap<>(expectedMaxSize);
     }
 
 
     public void addValue(UniqueValue value){
         values.put( value.getField().getName(), value );
+        fieldValues.put( fieldKey( value.getField() ), value );
     }
 
     @Override
@@ -46,9 +52,24 @@ public class UniqueValueSetImpl implements UniqueValueSet {
     }
 
 
+    @Override
+    public UniqueValue getValue( final Field field ) {
+        return fieldValues.get( fieldKey( field ) );
+    }
+
+
+    /**
+     * Values are read back in the normalized form they're stored in, so fields are matched the same way
+     */
+    private static List<String> fieldKey( final Field field ) {
+        return Arrays.asList( field.getTypeName().name(), field.getName(),
+            UniqueFieldRowKeySerializer.normalizeValue( field ) );
+    }
+
+
     @Override
     public Iterator<UniqueValue> iterator() {
-        return new UniqueValueIterator(values.entrySet());
+        return new UniqueValueIterator(fieldValues.entrySet());
     }
 
 
@@ -58,9 +79,9 @@ public class UniqueValueSetImpl implements UniqueValueSet {
     private static final class
             UniqueValueIterator implements Iterator<UniqueValue>{
 
-        private final Iterator<Map.Entry<String, UniqueValue>> sourceIterator;
+        private final Iterator<? extends Map.Entry<?, UniqueValue>> sourceIterator;
 
-        public UniqueValueIterator( final Set<Map.Entry<String, UniqueValue>> entries ) {
+        public UniqueValueIterator( final Set<? extends Map.Entry<?, UniqueValue>> entries ) {
             this.sourceIterator = entries.iterator();
         }
 
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.collection.serialization.impl.migration;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.collection.serialization.MvccEntitySerializationStrategy;
+import org.apache.usergrid.persistence.collection.serialization.impl.MvccEntitySerializationStrategyV3Impl;
+import org.apache.usergrid.persistence.collection.serialization.impl.MvccEntitySerializationStrategyV4Impl;
+import org.apache.usergrid.persistence.core.migration.data.DataMigration;
+import org.apache.usergrid.persistence.core.migration.data.DataMigrationException;
+import org.apache.usergrid.persistence.core.migration.data.MigrationDataProvider;
+import org.apache.usergrid.persistence.core.migration.data.MigrationRelationship;
+import org.apache.usergrid.persistence.core.migration.data.ProgressObserver;
+import org.apache.usergrid.persistence.core.migration.data.VersionedMigrationSet;
+
+import com.google.common.base.Optional;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.MutationBatch;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+
+/**
+ * Data migration that rewrites the latest version of every entity from the v3 json format to the v4 binary format.
+ * V3 only stores the latest version, so unlike {@link MvccEntityDataMigrationImpl} there is no history to walk, and
+ * unique values and log entries are unchanged between the two versions.
+ */
+@Singleton
+public class MvccEntityBinaryDataMigrationImpl implements DataMigration {
+
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( MvccEntityBinaryDataMigrationImpl.class );
+
+    private final Keyspace keyspace;
+    private final VersionedMigrationSet<MvccEntitySerializationStrategy> allVersions;
+    private final MvccEntitySerializationStrategyV3Impl mvccEntitySerializationStrategyV3;
+    private final MvccEntitySerializationStrategyV4Impl mvccEntitySerializationStrategyV4;
+    private final MigrationDataProvider<EntityIdScope> migrationDataProvider;
+
+
+    @Inject
+    public MvccEntityBinaryDataMigrationImpl( final Keyspace keyspace,
+                                              final VersionedMigrationSet<MvccEntitySerializationStrategy> allVersions,
+                                              final MvccEntitySerializationStrategyV3Impl mvccEntitySerializationStrategyV3,
+                                              final MvccEntitySerializationStrategyV4Impl mvccEntitySerializationStrategyV4,
+                                              final MigrationDataProvider<EntityIdScope> migrationDataProvider ) {
+        this.keyspace = keyspace;
+        this.allVersions = allVersions;
+        this.mvccEntitySerializationStrategyV3 = mvccEntitySerializationStrategyV3;
+        this.mvccEntitySerializationStrategyV4 = mvccEntitySerializationStrategyV4;
+        this.migrationDataProvider = migrationDataProvider;
+    }
+
+
+    @Override
+    public boolean supports( final int currentVersion ) {
+        //we only move from v3 to v4, older versions must be brought to v3 by MvccEntityDataMigrationImpl first
+        return currentVersion >= mvccEntitySerializationStrategyV3.getImplementationVersion()
+            && currentVersion < mvccEntitySerializationStrategyV4.getImplementationVersion();
+    }
+
+
+    @Override
+    public int getMaxVersion() {
+        return mvccEntitySerializationStrategyV4.getImplementationVersion();
+    }
+
+
+    @Override
+    public int migrate( final int currentVersion, final ProgressObserver observer ) {
+
+        final AtomicLong count = new AtomicLong();
+
+        final MigrationRelationship<MvccEntitySerializationStrategy> migration =
+            allVersions.getMigrationRelationship( currentVersion );
+
+        final int targetVersion = migration.to.getImplementationVersion();
+
+
+        migrationDataProvider.getData().buffer( 100 ).flatMap( entityIdScopes -> Observable.just( entityIdScopes )
+            .doOnNext( batch -> {
+
+                final MutationBatch totalBatch = keyspace.prepareMutationBatch();
+
+                for ( final EntityIdScope entityIdScope : batch ) {
+                    try {
+                        final Optional<MvccEntity> entity =
+                            migration.from.load( entityIdScope.getApplicationScope(), entityIdScope.getId() );
+
+                        if ( !entity.isPresent() ) {
+                            continue;
+                        }
+
+                        //deleted markers are written as well, so a delete in flight isn't resurrected
+                        totalBatch.mergeShallow( migration.to.write( entityIdScope.getApplicationScope(), entity.get() ) );
+
+                        count.incrementAndGet();
+                    }
+                    catch ( Exception e ) {
+                        LOGGER.error( "Failed to migrate entity " + entityIdScope.getId(), e );
+                    }
+                }
+
+                executeBatch( targetVersion, totalBatch, observer, count );
+            } ).subscribeOn( Schedulers.io() ), 10 ).toBlocking().lastOrDefault( null );
+
+        return targetVersion;
+    }
+
+
+    protected void executeBatch( final int targetVersion, final MutationBatch batch, final ProgressObserver po,
+                                 final AtomicLong count ) {
+        try {
+            batch.execute();
+
+            po.update( targetVersion, "Finished copying " + count + " entities to the binary format" );
+        }
+        catch ( ConnectionException e ) {
+            po.failed( targetVersion, "Failed to execute mutation in cassandra" );
+            throw new DataMigrationException( "Unable to migrate batches ", e );
+        }
+    }
+}
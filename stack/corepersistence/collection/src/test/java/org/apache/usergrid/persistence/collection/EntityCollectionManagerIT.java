@@ -142,6 +142,52 @@ public class EntityCollectionManagerIT {
     }
 
 
+    @Test
+    public void writeBatchWithUniqueValues() {
+
+
+        ApplicationScope context = new ApplicationScopeImpl( new SimpleId( "organization" ) );
+
+        EntityCollectionManager manager = factory.createCollectionManager( context );
+
+        Entity existing = new Entity( new SimpleId( "test" ) );
+        existing.setField( new StringField( "name", "existing", true ) );
+
+        manager.write( existing ).toBlocking().last();
+
+
+        Entity first = new Entity( new SimpleId( "test" ) );
+        first.setField( new StringField( "name", "first", true ) );
+
+        Entity second = new Entity( new SimpleId( "test" ) );
+        second.setField( new StringField( "name", "second", true ) );
+
+        Entity duplicate = new Entity( new SimpleId( "test" ) );
+        duplicate.setField( new StringField( "name", "existing", true ) );
+
+        BatchWriteResult result =
+            manager.writeBatch( Arrays.asList( first, duplicate, second ) ).toBlocking().last();
+
+        assertEquals( 2, result.getWritten().size() );
+        assertEquals( 1, result.getFailures().size() );
+
+        WriteUniqueVerifyException e = ( WriteUniqueVerifyException ) result.getFailures().get( duplicate.getId() );
+        assertEquals( 1, e.getVioliations().size() );
+
+        for ( Entity written : result.getWritten() ) {
+            assertNotNull( "Version was assigned", written.getVersion() );
+
+            Entity loaded = manager.load( written.getId() ).toBlocking().last();
+            assertEquals( "Same value", written, loaded );
+
+            Id fieldId = manager.getIdField( "test", written.getField( "name" ) ).toBlocking().last();
+            assertEquals( "Unique value is committed", written.getId(), fieldId );
+        }
+
+        assertNull( "Duplicate was not written", manager.load( duplicate.getId() ).toBlocking().lastOrDefault( null ) );
+    }
+
+
     @Test
     public void writeAndLoad() {
 
@@ -246,6 +292,39 @@ public class EntityCollectionManagerIT {
     }
 
 
+    @Test
+    public void loadedEntitiesAreNotShared() {
+
+        ApplicationScope context = new ApplicationScopeImpl( new SimpleId( "organization" ) );
+
+        Entity newEntity = new Entity( new SimpleId( "test" ) );
+        newEntity.setField( new IntegerField( "counter", 1 ) );
+
+        EntityCollectionManager manager = factory.createCollectionManager( context );
+
+        Entity createReturned = manager.write( newEntity ).toBlocking().lastOrDefault( null );
+
+        //changing the written and loaded instances must not change what the next load returns
+        createReturned.setField( new IntegerField( "counter", 2 ) );
+
+        Entity loadReturned = manager.load( createReturned.getId() ).toBlocking().lastOrDefault( null );
+
+        assertEquals( 1, loadReturned.getField( "counter" ).getValue() );
+
+        loadReturned.setField( new IntegerField( "counter", 3 ) );
+
+        loadReturned = manager.load( createReturned.getId() ).toBlocking().lastOrDefault( null );
+
+        assertEquals( 1, loadReturned.getField( "counter" ).getValue() );
+
+        //a different manager for the same scope sees the same state
+        Entity otherLoad = factory.createCollectionManager( new ApplicationScopeImpl( context.getApplication() ) )
+                                  .load( createReturned.getId() ).toBlocking().lastOrDefault( null );
+
+        assertEquals( loadReturned, otherLoad );
+    }
+
+
     @Test
     public void writeAndLoadScopeClosure() {
 
@@ -18,6 +18,9 @@
 package org.apache.usergrid.persistence.collection.mvcc.stage.write;
 
 
+import java.util.Arrays;
+import java.util.Map;
+
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -26,6 +29,7 @@ import org.apache.usergrid.persistence.collection.EntityCollectionManager;
 import org.apache.usergrid.persistence.collection.EntityCollectionManagerFactory;
 import org.apache.usergrid.persistence.collection.exception.WriteUniqueVerifyException;
 import org.apache.usergrid.persistence.collection.guice.TestCollectionModule;
+import org.apache.usergrid.persistence.collection.mvcc.stage.CollectionIoEvent;
 import org.apache.usergrid.persistence.collection.mvcc.stage.TestEntityGenerator;
 import org.apache.usergrid.persistence.collection.serialization.SerializationFig;
 import org.apache.usergrid.persistence.core.guice.MigrationManagerRule;
@@ -36,12 +40,15 @@ import org.apache.usergrid.persistence.core.test.UseModules;
 import org.apache.usergrid.persistence.model.entity.Entity;
 import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.field.Field;
 import org.apache.usergrid.persistence.model.field.IntegerField;
 import org.apache.usergrid.persistence.model.field.StringField;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
 
 import com.google.inject.Inject;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 
@@ -62,6 +69,9 @@ public class WriteUniqueVerifyIT {
     @Inject
     public EntityCollectionManagerFactory cmf;
 
+    @Inject
+    public WriteUniqueVerify writeUniqueVerify;
+
     @Test
     public void testConflict() {
 
@@ -106,6 +116,43 @@ public class WriteUniqueVerifyIT {
         entityManager.write( entity );
     }
 
+    @Test
+    public void testBatchMixedCase() {
+
+        final Id appId = new SimpleId("testBatchMixedCase");
+
+        final ApplicationScope scope = new ApplicationScopeImpl( appId );
+
+        final String suffix = UUIDGenerator.newTimeUUID().toString();
+
+        // values are stored lowercased, the batch still finds what it wrote for each entity
+        final Entity entity = TestEntityGenerator.generateEntity();
+        entity.setField(new StringField("name", "Lotus Evora " + suffix, true));
+
+        final Entity entity2 = TestEntityGenerator.generateEntity();
+        entity2.setField(new StringField("name", "Lotus Exige " + suffix, true));
+
+        Map<Id, Map<String, Field>> violations = writeUniqueVerify.verifyBatch( scope, Arrays.asList(
+            new CollectionIoEvent<>( scope, TestEntityGenerator.fromEntity( entity ) ),
+            new CollectionIoEvent<>( scope, TestEntityGenerator.fromEntity( entity2 ) ) ) );
+
+        assertTrue( violations.isEmpty() );
+
+        // values differing only in case are the same unique value
+        final Entity entity3 = TestEntityGenerator.generateEntity();
+        entity3.setField(new StringField("name", "Lotus Elise " + suffix, true));
+
+        final Entity entity4 = TestEntityGenerator.generateEntity();
+        entity4.setField(new StringField("name", "LOTUS elise " + suffix, true));
+
+        violations = writeUniqueVerify.verifyBatch( scope, Arrays.asList(
+            new CollectionIoEvent<>( scope, TestEntityGenerator.fromEntity( entity3 ) ),
+            new CollectionIoEvent<>( scope, TestEntityGenerator.fromEntity( entity4 ) ) ) );
+
+        assertEquals( 1, violations.size() );
+        assertTrue( violations.values().iterator().next().containsKey( "name" ) );
+    }
+
     @Test
     public void testNoConflict1() {
 
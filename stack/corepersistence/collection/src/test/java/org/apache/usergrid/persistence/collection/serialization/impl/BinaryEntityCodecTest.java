@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.collection.serialization.impl;
+
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.collection.exception.DataCorruptionException;
+import org.apache.usergrid.persistence.collection.serialization.impl.MvccEntitySerializationStrategyV3Impl.EntityWrapper;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.EntityMap;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.field.ArrayField;
+import org.apache.usergrid.persistence.model.field.BooleanField;
+import org.apache.usergrid.persistence.model.field.DoubleField;
+import org.apache.usergrid.persistence.model.field.EntityObjectField;
+import org.apache.usergrid.persistence.model.field.IntegerField;
+import org.apache.usergrid.persistence.model.field.LocationField;
+import org.apache.usergrid.persistence.model.field.LongField;
+import org.apache.usergrid.persistence.model.field.StringField;
+import org.apache.usergrid.persistence.model.field.UUIDField;
+import org.apache.usergrid.persistence.model.field.value.EntityObject;
+import org.apache.usergrid.persistence.model.field.value.Location;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+
+public class BinaryEntityCodecTest {
+
+
+    @Test
+    public void roundTrip() {
+        final Entity entity = createEntity();
+        final EntityMap entityMap = EntityMap.fromEntity( entity );
+
+        final byte[] bytes = BinaryEntityCodec.encode(
+            new EntityWrapper( entity.getId(), entity.getVersion(), MvccEntity.Status.COMPLETE, entityMap, 0 ) );
+
+        final EntityWrapper read = BinaryEntityCodec.decode( ByteBuffer.wrap( bytes ) );
+
+        assertEquals( entity.getId(), read.getId() );
+        assertEquals( entity.getVersion(), read.getVersion() );
+        assertEquals( MvccEntity.Status.COMPLETE, read.getStatus() );
+        assertEquals( bytes.length, read.getSize() );
+        assertEquals( entityMap, read.getEntityMap() );
+
+        final Entity readEntity = read.getOptionalEntity().get();
+
+        assertEquals( entity.getField( "name" ), readEntity.getField( "name" ) );
+        assertEquals( entity.getField( "count" ), readEntity.getField( "count" ) );
+        assertEquals( entity.getField( "created" ), readEntity.getField( "created" ) );
+        assertEquals( entity.getField( "uuid" ), readEntity.getField( "uuid" ) );
+
+        final Location location = ( Location ) readEntity.getField( "location" ).getValue();
+        assertEquals( 37.77d, location.getLatitude(), 0d );
+        assertEquals( -122.41d, location.getLongitude(), 0d );
+    }
+
+
+    @Test
+    public void deleted() {
+        final Id id = new SimpleId( "test" );
+        final UUID version = UUIDGenerator.newTimeUUID();
+
+        final byte[] bytes =
+            BinaryEntityCodec.encode( new EntityWrapper( id, version, MvccEntity.Status.DELETED, null, 0 ) );
+
+        final EntityWrapper read = BinaryEntityCodec.decode( ByteBuffer.wrap( bytes ) );
+
+        assertEquals( id, read.getId() );
+        assertEquals( version, read.getVersion() );
+        assertEquals( MvccEntity.Status.DELETED, read.getStatus() );
+        assertNull( read.getEntityMap() );
+        assertNull( BinaryEntityCodec.readField( ByteBuffer.wrap( bytes ), "name" ) );
+    }
+
+
+    @Test
+    @SuppressWarnings( "unchecked" )
+    public void readSingleField() {
+        final Entity entity = createEntity();
+
+        final ByteBuffer bytes = ByteBuffer.wrap( BinaryEntityCodec.encode(
+            new EntityWrapper( entity.getId(), entity.getVersion(), MvccEntity.Status.COMPLETE,
+                EntityMap.fromEntity( entity ), 0 ) ) );
+
+        assertEquals( "test name", BinaryEntityCodec.readField( bytes, "name" ) );
+        assertEquals( 42, BinaryEntityCodec.readField( bytes, "count" ) );
+        assertEquals( Arrays.asList( "a", "b", "c" ), BinaryEntityCodec.readField( bytes, "tags" ) );
+
+        final Map<String, Object> address = ( Map<String, Object> ) BinaryEntityCodec.readField( bytes, "address" );
+        assertEquals( "San Francisco", address.get( "city" ) );
+
+        final List<Object> contacts = ( List<Object> ) BinaryEntityCodec.readField( bytes, "contacts" );
+        assertEquals( "Jane", ( ( Map<String, Object> ) contacts.get( 0 ) ).get( "name" ) );
+
+        //"city" is only a nested name, it's not a top level field
+        assertNull( BinaryEntityCodec.readField( bytes, "city" ) );
+        assertNull( BinaryEntityCodec.readField( bytes, "missing" ) );
+
+        //reading a field must not move the caller's buffer
+        assertEquals( 0, bytes.position() );
+    }
+
+
+    @Test( expected = DataCorruptionException.class )
+    public void truncated() {
+        final Entity entity = createEntity();
+
+        final byte[] bytes = BinaryEntityCodec.encode(
+            new EntityWrapper( entity.getId(), entity.getVersion(), MvccEntity.Status.COMPLETE,
+                EntityMap.fromEntity( entity ), 0 ) );
+
+        BinaryEntityCodec.decode( ByteBuffer.wrap( bytes, 0, bytes.length / 2 ) );
+    }
+
+
+    private Entity createEntity() {
+        final Entity entity = new Entity( new SimpleId( "test" ), UUIDGenerator.newTimeUUID() );
+
+        entity.setField( new StringField( "name", "test name" ) );
+        entity.setField( new IntegerField( "count", 42 ) );
+        entity.setField( new LongField( "created", System.currentTimeMillis() ) );
+        entity.setField( new DoubleField( "score", 1.5d ) );
+        entity.setField( new BooleanField( "active", true ) );
+        entity.setField( new UUIDField( "uuid", UUID.randomUUID() ) );
+        entity.setField( new LocationField( "location", new Location( 37.77d, -122.41d ) ) );
+        entity.setField( new ArrayField<>( "tags", Arrays.asList( "a", "b", "c" ) ) );
+
+        final EntityObject address = new EntityObject();
+        address.setField( new StringField( "city", "San Francisco" ) );
+        address.setField( new IntegerField( "zip", 94105 ) );
+        entity.setField( new EntityObjectField( "address", address ) );
+
+        final EntityObject contact = new EntityObject();
+        contact.setField( new StringField( "name", "Jane" ) );
+        entity.setField( new ArrayField<>( "contacts", Arrays.asList( contact ) ) );
+
+        return entity;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.collection.serialization.impl;
+
+
+import java.util.UUID;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.apache.usergrid.persistence.collection.guice.TestCollectionModule;
+import org.apache.usergrid.persistence.collection.serialization.MvccEntitySerializationStrategy;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
+import org.apache.usergrid.persistence.core.test.ITRunner;
+import org.apache.usergrid.persistence.core.test.UseModules;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+
+import com.google.inject.Inject;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+
+
+/**
+ * Same tests as v3 against the binary format, we just override some methods to ensure they throw the correct exceptions
+ */
+@RunWith( ITRunner.class )
+@UseModules( TestCollectionModule.class )
+public class MvccEntitySerializationStrategyV4ImplTest extends MvccEntitySerializationStrategyV2Test {
+    @Inject
+    private MvccEntitySerializationStrategyV4Impl serializationStrategy;
+
+
+    @Override
+    protected MvccEntitySerializationStrategy getMvccEntitySerializationStrategy() {
+        return serializationStrategy;
+    }
+
+
+    @Test( expected = UnsupportedOperationException.class )
+    public void loadAscendingHistory() throws ConnectionException {
+        final Id applicationId = new SimpleId( "application" );
+        final String name = "test";
+
+        ApplicationScope context = new ApplicationScopeImpl( applicationId );
+
+
+        final Id entityId = new SimpleId( UUIDGenerator.newTimeUUID(), name );
+        final UUID version1 = UUIDGenerator.newTimeUUID();
+
+        serializationStrategy.loadAscendingHistory( context, entityId, version1, 20 );
+    }
+
+
+    @Test( expected = UnsupportedOperationException.class )
+    public void loadDescendingHistory() throws ConnectionException {
+
+        final String name = "test";
+
+        final Id applicationId = new SimpleId( "application" );
+
+        ApplicationScope context = new ApplicationScopeImpl( applicationId );
+
+        final Id entityId = new SimpleId( UUIDGenerator.newTimeUUID(), name );
+        final UUID version1 = UUIDGenerator.newTimeUUID();
+
+        serializationStrategy.loadDescendingHistory( context, entityId, version1, 20 );
+    }
+}
+
@@ -52,6 +52,7 @@ import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 
@@ -258,6 +259,43 @@ public abstract class UniqueValueSerializationStrategyImplTest {
 
 
 
+    @Test
+    public void mixedCaseFieldLookup() throws ConnectionException {
+
+        ApplicationScope scope =
+                new ApplicationScopeImpl( new SimpleId( "organization" ) );
+
+        StringField field = new StringField( "email", "MiXeD@CaSe.com" );
+        StringField other = new StringField( "username", "OtHeR" );
+        Id entityId = new SimpleId( UUIDGenerator.newTimeUUID(), "entity" );
+        UUID version = UUIDGenerator.newTimeUUID();
+
+        strategy.write( scope, new UniqueValueImpl( field, entityId, version ) ).execute();
+        strategy.write( scope, new UniqueValueImpl( other, entityId, version ) ).execute();
+
+        UniqueValueSet fields =
+                strategy.load( scope, entityId.getType(), Arrays.<Field>asList( field, other ) );
+
+        //values are read back lowercased, the fields we asked with still find them
+        UniqueValue value = fields.getValue( field );
+        Assert.assertNotNull( value );
+        assertEquals( entityId, value.getEntityId() );
+        assertEquals( version, value.getEntityVersion() );
+
+        value = fields.getValue( other );
+        Assert.assertNotNull( value );
+        assertEquals( entityId, value.getEntityId() );
+
+        //any other case of the same value is the same unique value
+        value = fields.getValue( new StringField( field.getName(), "mixed@case.COM" ) );
+        Assert.assertNotNull( value );
+        assertEquals( entityId, value.getEntityId() );
+
+        //the same value under another name isn't
+        assertNull( fields.getValue( new StringField( "alias", field.getValue() ) ) );
+    }
+
+
     @Test
     public void twoFieldsPerVersion() throws ConnectionException, InterruptedException {
 
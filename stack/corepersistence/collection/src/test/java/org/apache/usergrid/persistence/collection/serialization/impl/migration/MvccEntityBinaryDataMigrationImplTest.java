@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.collection.serialization.impl.migration;
+
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.collection.MvccLogEntry;
+import org.apache.usergrid.persistence.collection.guice.TestCollectionModule;
+import org.apache.usergrid.persistence.collection.mvcc.entity.Stage;
+import org.apache.usergrid.persistence.collection.mvcc.entity.impl.MvccEntityImpl;
+import org.apache.usergrid.persistence.collection.mvcc.entity.impl.MvccLogEntryImpl;
+import org.apache.usergrid.persistence.collection.serialization.MvccEntitySerializationStrategy;
+import org.apache.usergrid.persistence.collection.serialization.MvccLogEntrySerializationStrategy;
+import org.apache.usergrid.persistence.collection.serialization.UniqueValue;
+import org.apache.usergrid.persistence.collection.serialization.UniqueValueSerializationStrategy;
+import org.apache.usergrid.persistence.collection.serialization.UniqueValueSet;
+import org.apache.usergrid.persistence.collection.serialization.impl.CollectionDataVersions;
+import org.apache.usergrid.persistence.collection.serialization.impl.MvccEntitySerializationStrategyV3Impl;
+import org.apache.usergrid.persistence.collection.serialization.impl.MvccEntitySerializationStrategyV4Impl;
+import org.apache.usergrid.persistence.collection.serialization.impl.UniqueValueImpl;
+import org.apache.usergrid.persistence.core.guice.DataMigrationResetRule;
+import org.apache.usergrid.persistence.core.guice.MigrationManagerRule;
+import org.apache.usergrid.persistence.core.migration.data.DataMigrationManager;
+import org.apache.usergrid.persistence.core.migration.data.MigrationDataProvider;
+import org.apache.usergrid.persistence.core.migration.data.MigrationRelationship;
+import org.apache.usergrid.persistence.core.migration.data.TestProgressObserver;
+import org.apache.usergrid.persistence.core.migration.data.VersionedMigrationSet;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
+import org.apache.usergrid.persistence.core.test.ITRunner;
+import org.apache.usergrid.persistence.core.test.UseModules;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.field.Field;
+import org.apache.usergrid.persistence.model.field.StringField;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+
+import com.google.inject.Inject;
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import rx.Observable;
+
+import static org.apache.usergrid.persistence.core.util.IdGenerator.createId;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+
+@NotThreadSafe
+@RunWith( ITRunner.class )
+@UseModules( { TestCollectionModule.class } )
+public class MvccEntityBinaryDataMigrationImplTest implements DataMigrationResetRule.DataMigrationManagerProvider {
+
+
+    @Inject
+    @Rule
+    public MigrationManagerRule migrationManagerRule;
+
+
+    @Inject
+    public DataMigrationManager dataMigrationManager;
+
+
+    @Inject
+    public Keyspace keyspace;
+    @Inject
+    public VersionedMigrationSet<MvccEntitySerializationStrategy> allVersions;
+    @Inject
+    public MvccEntitySerializationStrategyV3Impl mvccEntitySerializationStrategyV3;
+    @Inject
+    public MvccEntitySerializationStrategyV4Impl mvccEntitySerializationStrategyV4;
+
+    /**
+     * The proxies, they pick their implementation from the migration version
+     */
+    @Inject
+    public MvccEntitySerializationStrategy mvccEntitySerializationStrategy;
+    @Inject
+    public UniqueValueSerializationStrategy uniqueValueSerializationStrategy;
+    @Inject
+    public MvccLogEntrySerializationStrategy mvccLogEntrySerializationStrategy;
+
+    /**
+     * Rule to do the resets we need
+     */
+    @Rule
+    public DataMigrationResetRule migrationTestRule =
+        new DataMigrationResetRule( this, CollectionMigrationPlugin.PLUGIN_NAME,
+            CollectionDataVersions.LOG_REMOVAL.getVersion() );
+
+
+    @Test
+    public void testMigration() throws ConnectionException {
+
+        final Id applicationId = createId( "application" );
+
+        ApplicationScope scope = new ApplicationScopeImpl( applicationId );
+
+        final MvccEntity entity1 = getEntity( "thing" );
+        final MvccEntity entity2 = getEntity( "thing" );
+
+        mvccEntitySerializationStrategyV3.write( scope, entity1 ).execute();
+        mvccEntitySerializationStrategyV3.write( scope, entity2 ).execute();
+
+        final Observable<EntityIdScope> entityIdScope =
+            Observable.just( new EntityIdScope( scope, entity1.getId() ), new EntityIdScope( scope, entity2.getId() ) );
+
+        final MigrationDataProvider<EntityIdScope> migrationProvider = () -> entityIdScope;
+
+        final TestProgressObserver progressObserver = new TestProgressObserver();
+
+        final MvccEntityBinaryDataMigrationImpl migration =
+            new MvccEntityBinaryDataMigrationImpl( keyspace, allVersions, mvccEntitySerializationStrategyV3,
+                mvccEntitySerializationStrategyV4, migrationProvider );
+
+        assertTrue( migration.supports( CollectionDataVersions.LOG_REMOVAL.getVersion() ) );
+
+        final int newVersion = migration.migrate( CollectionDataVersions.LOG_REMOVAL.getVersion(), progressObserver );
+
+        assertEquals( "Correct version returned", CollectionDataVersions.BINARY_ENTITY.getVersion(), newVersion );
+        assertFalse( "Progress observer should not have failed", progressObserver.isFailed() );
+
+        assertEquals( "Same entity", entity1, mvccEntitySerializationStrategyV4.load( scope, entity1.getId() ).get() );
+        assertEquals( "Same entity", entity2, mvccEntitySerializationStrategyV4.load( scope, entity2.getId() ).get() );
+
+        final MigrationRelationship<MvccEntitySerializationStrategy> newTuple =
+            allVersions.getMigrationRelationship( newVersion );
+
+        assertEquals( "Same instance for from", MvccEntitySerializationStrategyV4Impl.class,
+            newTuple.from.getClass() );
+        assertEquals( "Same instance for to", MvccEntitySerializationStrategyV4Impl.class, newTuple.to.getClass() );
+
+
+        //the migration manager stores the new version once the migration is done, now every proxy is on it
+        dataMigrationManager.resetToVersion( CollectionMigrationPlugin.PLUGIN_NAME, newVersion );
+
+        assertEquals( "Migrated entity read through the proxy", entity1,
+            mvccEntitySerializationStrategy.load( scope, entity1.getId() ).get() );
+
+        final MvccEntity entity3 = getEntity( "thing" );
+
+        mvccEntitySerializationStrategy.write( scope, entity3 ).execute();
+
+        assertEquals( "Same entity", entity3, mvccEntitySerializationStrategy.load( scope, entity3.getId() ).get() );
+
+
+        final MvccLogEntry logEntry =
+            new MvccLogEntryImpl( entity3.getId(), entity3.getVersion(), Stage.ACTIVE, MvccLogEntry.State.COMPLETE );
+
+        mvccLogEntrySerializationStrategy.write( scope, logEntry ).execute();
+
+        final List<MvccLogEntry> logEntries =
+            mvccLogEntrySerializationStrategy.load( scope, entity3.getId(), entity3.getVersion(), 10 );
+
+        assertEquals( 1, logEntries.size() );
+        assertEquals( logEntry, logEntries.get( 0 ) );
+
+
+        final StringField field = new StringField( "name", "thing" + entity3.getId().getUuid() );
+        final UniqueValue uniqueValue = new UniqueValueImpl( field, entity3.getId(), entity3.getVersion() );
+
+        uniqueValueSerializationStrategy.write( scope, uniqueValue ).execute();
+
+        final UniqueValueSet uniqueValues = uniqueValueSerializationStrategy
+            .load( scope, entity3.getId().getType(), Collections.<Field>singleton( field ) );
+
+        final UniqueValue retrieved = uniqueValues.getValue( field.getName() );
+
+        assertNotNull( retrieved );
+        assertEquals( uniqueValue, retrieved );
+    }
+
+
+    private MvccEntity getEntity( final String type ) {
+
+        final SimpleId entityId = new SimpleId( type );
+        final UUID version = UUIDGenerator.newTimeUUID();
+        final Entity entity = new Entity( entityId );
+
+        return new MvccEntityImpl( entityId, version, MvccEntity.Status.COMPLETE, entity );
+    }
+
+
+    @Override
+    public DataMigrationManager getDataMigrationManager() {
+        return dataMigrationManager;
+    }
+}
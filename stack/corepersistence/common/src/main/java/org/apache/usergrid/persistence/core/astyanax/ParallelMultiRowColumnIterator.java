@@ -0,0 +1,292 @@
+/*
+ *
+ *  * Licensed to the Apache Software Foundation (ASF) under one
+ *  * or more contributor license agreements.  See the NOTICE file
+ *  * distributed with this work for additional information
+ *  * regarding copyright ownership.  The ASF licenses this file
+ *  * to you under the Apache License, Version 2.0 (the
+ *  * "License"); you may not use this file except in compliance
+ *  * with the License.  You may obtain a copy of the License at
+ *  *
+ *  *    http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing,
+ *  * software distributed under the License is distributed on an
+ *  * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  * KIND, either express or implied.  See the License for the
+ *  * specific language governing permissions and limitations
+ *  * under the License.
+ *
+ */
+
+package org.apache.usergrid.persistence.core.astyanax;
+
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.model.ColumnFamily;
+import com.netflix.astyanax.model.ConsistencyLevel;
+
+
+/**
+ * Reads the same column range as {@link MultiRowColumnIterator}, but splits the row keys into groups that are read
+ * concurrently.  The first page of every group is requested up front, and each group reads its next page in the
+ * background while the current one is consumed.  Pages are merged in comparator order on the calling thread.
+ *
+ * At most one page per group is in flight, so an iterator that is abandoned part way through never leaves a task
+ * blocked on the executor.
+ */
+public class ParallelMultiRowColumnIterator<R, C, T> implements Iterator<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger( ParallelMultiRowColumnIterator.class );
+
+
+    private final Comparator<T> comparator;
+
+    private final ExecutorService executorService;
+
+    private final int pageSize;
+
+    private final List<RowGroup> rowGroups;
+
+    private final PriorityQueue<RowGroup> nextValues;
+
+
+    private boolean started;
+
+    private T next;
+
+    private T last;
+
+
+    /**
+     * Create the iterator
+     *
+     * @param concurrency The maximum number of groups to read at the same time
+     * @param executorService The executor to read pages on
+     */
+    public ParallelMultiRowColumnIterator( final Keyspace keyspace, final ColumnFamily<R, C> cf,
+                                           final ConsistencyLevel consistencyLevel,
+                                           final ColumnParser<C, T> columnParser, final ColumnSearch<T> columnSearch,
+                                           final Comparator<T> comparator, final Collection<R> rowKeys,
+                                           final int pageSize, final int concurrency,
+                                           final ExecutorService executorService ) {
+        this.comparator = comparator;
+        this.executorService = executorService;
+        this.pageSize = pageSize;
+
+        final int groupCount = Math.max( 1, Math.min( concurrency, rowKeys.size() ) );
+
+        //round robin the rows into groups, each group is still a single multi row read
+        final List<List<R>> groupKeys = new ArrayList<>( groupCount );
+
+        for ( int i = 0; i < groupCount; i++ ) {
+            groupKeys.add( new ArrayList<>() );
+        }
+
+        int index = 0;
+
+        for ( final R rowKey : rowKeys ) {
+            groupKeys.get( index % groupCount ).add( rowKey );
+            index++;
+        }
+
+        this.rowGroups = new ArrayList<>( groupCount );
+
+        for ( final List<R> keys : groupKeys ) {
+            rowGroups.add( new RowGroup(
+                new MultiRowColumnIterator<>( keyspace, cf, consistencyLevel, columnParser, columnSearch, comparator,
+                    keys, pageSize ) ) );
+        }
+
+        this.nextValues = new PriorityQueue<>( groupCount,
+            ( first, second ) -> comparator.compare( first.peek(), second.peek() ) );
+    }
+
+
+    @Override
+    public boolean hasNext() {
+
+        if ( next != null ) {
+            return true;
+        }
+
+        if ( !started ) {
+            start();
+        }
+
+        while ( !nextValues.isEmpty() ) {
+
+            final RowGroup rowGroup = nextValues.poll();
+
+            final T value = rowGroup.pop();
+
+            if ( rowGroup.fill() ) {
+                nextValues.add( rowGroup );
+            }
+
+            //the same column can be present in more than one row during shard transitions, only emit it once
+            if ( last != null && comparator.compare( last, value ) == 0 ) {
+                continue;
+            }
+
+            next = value;
+            last = value;
+
+            return true;
+        }
+
+        return false;
+    }
+
+
+    @Override
+    public T next() {
+        if ( !hasNext() ) {
+            throw new NoSuchElementException( "No new element exists" );
+        }
+
+        final T toReturn = next;
+        next = null;
+        return toReturn;
+    }
+
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException( "Remove is unsupported this is a read only iterator" );
+    }
+
+
+    /**
+     * Request the first page of every group, then wait for them to arrive
+     */
+    private void start() {
+
+        started = true;
+
+        if ( logger.isTraceEnabled() ) {
+            logger.trace( "Reading first page of {} row groups in parallel", rowGroups.size() );
+        }
+
+        for ( final RowGroup rowGroup : rowGroups ) {
+            rowGroup.requestPage();
+        }
+
+        for ( final RowGroup rowGroup : rowGroups ) {
+            if ( rowGroup.fill() ) {
+                nextValues.add( rowGroup );
+            }
+        }
+    }
+
+
+    /**
+     * A group of rows that is read as a unit.  Only the calling thread touches the buffer, and only the task of the
+     * pending page touches the iterator.
+     */
+    private final class RowGroup {
+
+        private final Iterator<T> columnIterator;
+
+        private final Deque<T> buffer;
+
+        private Future<List<T>> pendingPage;
+
+
+        private RowGroup( final Iterator<T> columnIterator ) {
+            this.columnIterator = columnIterator;
+            this.buffer = new ArrayDeque<>( pageSize );
+        }
+
+
+        private T peek() {
+            return buffer.peekFirst();
+        }
+
+
+        private T pop() {
+            return buffer.pollFirst();
+        }
+
+
+        /**
+         * Submit the read of our next page
+         */
+        private void requestPage() {
+            pendingPage = executorService.submit( () -> {
+                final List<T> page = new ArrayList<>( pageSize );
+
+                while ( page.size() < pageSize && columnIterator.hasNext() ) {
+                    page.add( columnIterator.next() );
+                }
+
+                return page;
+            } );
+        }
+
+
+        /**
+         * Ensure our buffer has a value, waiting for our pending page if required.  Returns false when the group is
+         * exhausted
+         */
+        private boolean fill() {
+
+            while ( buffer.isEmpty() ) {
+
+                if ( pendingPage == null ) {
+                    return false;
+                }
+
+                final List<T> page = awaitPage();
+
+                buffer.addAll( page );
+
+                //a short page means the rows are exhausted, otherwise read ahead while this one is consumed
+                if ( page.size() == pageSize ) {
+                    requestPage();
+                }
+            }
+
+            return true;
+        }
+
+
+        private List<T> awaitPage() {
+            try {
+                return pendingPage.get();
+            }
+            catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException( "Interrupted while reading rows", e );
+            }
+            catch ( ExecutionException e ) {
+                final Throwable cause = e.getCause();
+
+                if ( cause instanceof RuntimeException ) {
+                    throw ( RuntimeException ) cause;
+                }
+
+                throw new RuntimeException( "Unable to read rows", cause );
+            }
+            finally {
+                pendingPage = null;
+            }
+        }
+    }
+}
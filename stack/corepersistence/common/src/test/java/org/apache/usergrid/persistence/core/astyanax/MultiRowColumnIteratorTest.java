@@ -27,6 +27,8 @@ import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -497,6 +499,101 @@ public class MultiRowColumnIteratorTest {
     }
 
 
+    @Test
+    public void parallelIterator() throws InterruptedException {
+
+        final String rowKey1 = UUIDGenerator.newTimeUUID().toString();
+
+        final String rowKey2 = UUIDGenerator.newTimeUUID().toString();
+
+        final String rowKey3 = UUIDGenerator.newTimeUUID().toString();
+
+
+        final long maxValue = 10000;
+
+        final CountDownLatch latch = new CountDownLatch( 3 );
+
+
+        writeData( latch, rowKey1, maxValue, 1 );
+        writeData( latch, rowKey2, maxValue, 2 );
+        writeData( latch, rowKey3, maxValue, 10 );
+
+
+        latch.await();
+
+
+        final ColumnParser<Long, Long> longParser = new ColumnParser<Long, Long>() {
+            @Override
+            public Long parseColumn( final Column<Long> column ) {
+                return column.getName();
+            }
+        };
+
+
+        final ColumnSearch<Long> ascendingSearch = new ColumnSearch<Long>() {
+            @Override
+            public void buildRange( final RangeBuilder rangeBuilder, final Long value ) {
+                rangeBuilder.setStart( value );
+            }
+
+
+            @Override
+            public void buildRange( final RangeBuilder rangeBuilder ) {
+
+            }
+
+
+            @Override
+            public boolean skipFirst( final Long first ) {
+                return false;
+            }
+        };
+
+
+        final Comparator<Long> ascendingComparator = new Comparator<Long>() {
+
+            @Override
+            public int compare( final Long o1, final Long o2 ) {
+                return Long.compare( o1, o2 );
+            }
+        };
+
+
+        final Collection<String> rowKeys = Arrays.asList( rowKey1, rowKey2, rowKey3 );
+
+        final ExecutorService executorService = Executors.newFixedThreadPool( 3 );
+
+        try {
+
+            //2 groups, so one group still merges 2 rows, and every row shares values with another group
+            ParallelMultiRowColumnIterator<String, Long, Long> groupedItr =
+                new ParallelMultiRowColumnIterator<>( keyspace, COLUMN_FAMILY, ConsistencyLevel.CL_QUORUM, longParser,
+                    ascendingSearch, ascendingComparator, rowKeys, 852, 2, executorService );
+
+            for ( long i = 0; i < maxValue; i++ ) {
+                assertEquals( i, groupedItr.next().longValue() );
+            }
+
+            assertFalse( "Should have no more values", groupedItr.hasNext() );
+
+
+            //a row per group
+            ParallelMultiRowColumnIterator<String, Long, Long> rowItr =
+                new ParallelMultiRowColumnIterator<>( keyspace, COLUMN_FAMILY, ConsistencyLevel.CL_QUORUM, longParser,
+                    ascendingSearch, ascendingComparator, rowKeys, 712, 10, executorService );
+
+            for ( long i = 0; i < maxValue; i++ ) {
+                assertEquals( i, rowItr.next().longValue() );
+            }
+
+            assertFalse( "Should have no more values", rowItr.hasNext() );
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+
+
     private void writeData( final CountDownLatch latch, final String rowKey, final long maxValue, final long mod ) {
 
         Observable.just( rowKey ).doOnNext( new Action1<String>() {
@@ -75,6 +75,12 @@ public interface GraphFig extends GuicyFig {
     String SHARD_REPAIR_CHANCE = "usergrid.graph.shard.repair.chance";
 
 
+    /**
+     * The maximum number of shard audits per second a single application may queue.  0 disables the limit
+     */
+    String SHARD_AUDIT_RATE = "usergrid.graph.shard.audit.rate";
+
+
     /**
      * The minimum amount of time than can occur (in millis) between shard allocation and compaction.  Must be at least 2x the cache
      * timeout. Set to 2.5x the cache timeout to be safe
@@ -85,6 +91,25 @@ public interface GraphFig extends GuicyFig {
     String SHARD_MIN_DELTA = "usergrid.graph.shard.min.delta";
 
 
+    /**
+     * When true, the rows of the shards read in a single search are read concurrently and merged, instead of with a
+     * single multi row read
+     */
+    String SHARD_SCAN_PARALLEL = "usergrid.graph.shard.scan.parallel";
+
+
+    /**
+     * The maximum number of concurrent reads a single search may use when scanning shards in parallel
+     */
+    String SHARD_SCAN_CONCURRENCY = "usergrid.graph.shard.scan.concurrency";
+
+
+    /**
+     * The number of threads shared by all parallel shard scans.  When they are all busy the caller reads the page
+     */
+    String SHARD_SCAN_WORKERS = "usergrid.graph.shard.scan.worker.count";
+
+
     String COUNTER_WRITE_FLUSH_COUNT = "usergrid.graph.shard.counter.beginFlush.count";
 
     String COUNTER_WRITE_FLUSH_INTERVAL = "usergrid.graph.shard.counter.beginFlush.interval";
@@ -109,6 +134,11 @@ public interface GraphFig extends GuicyFig {
     double getShardRepairChance();
 
 
+    @Default( "10" )
+    @Key( SHARD_AUDIT_RATE )
+    double getShardAuditRate();
+
+
     @Default( "50000" )
     @Key( SHARD_SIZE )
     long getShardSize();
@@ -142,6 +172,19 @@ public interface GraphFig extends GuicyFig {
     int getShardAuditWorkerQueueSize();
 
 
+    @Default( "false" )
+    @Key( SHARD_SCAN_PARALLEL )
+    boolean getShardScanParallel();
+
+    @Default( "4" )
+    @Key( SHARD_SCAN_CONCURRENCY )
+    int getShardScanConcurrency();
+
+    @Default( "40" )
+    @Key( SHARD_SCAN_WORKERS )
+    int getShardScanWorkerCount();
+
+
     @Default("10000")
     @Key(COUNTER_WRITE_FLUSH_COUNT)
     long getCounterFlushCount();
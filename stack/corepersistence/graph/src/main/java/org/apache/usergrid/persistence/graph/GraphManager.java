@@ -20,6 +20,8 @@
 package org.apache.usergrid.persistence.graph;
 
 
+import java.util.Collection;
+
 import org.apache.usergrid.persistence.core.CPManager;
 import org.apache.usergrid.persistence.model.entity.Id;
 
@@ -62,6 +64,14 @@ public interface GraphManager extends CPManager {
     Observable<MarkedEdge> writeEdge( Edge edge );
 
 
+    /**
+     * @param edges The edges to write
+     *
+     * Create or update a group of edges with a single mutation.  Behaves as {@link #writeEdge(Edge)} for every edge.
+     */
+    Observable<MarkedEdge> writeEdges( Collection<Edge> edges );
+
+
     /**
      * @param edge Mark the edge as deleted in the graph
      *
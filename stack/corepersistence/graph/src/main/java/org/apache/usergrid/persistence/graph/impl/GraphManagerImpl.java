@@ -20,6 +20,8 @@
 package org.apache.usergrid.persistence.graph.impl;
 
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -80,6 +82,7 @@ public class GraphManagerImpl implements GraphManager {
     private final EdgeDeleteListener edgeDeleteListener;
     private final NodeDeleteListener nodeDeleteListener;
     private final Timer writeEdgeTimer;
+    private final Timer writeEdgesTimer;
     private final Timer markEdgeTimer;
     private final Timer markNodeTimer;
     private final Timer loadEdgesFromSourceTimer;
@@ -125,6 +128,7 @@ public class GraphManagerImpl implements GraphManager {
         this.markNodeTimer = metricsFactory.getTimer( GraphManagerImpl.class, "node.mark" );
         this.deleteNodeTimer = metricsFactory.getTimer( GraphManagerImpl.class, "node.delete" );
         this.writeEdgeTimer = metricsFactory.getTimer( GraphManagerImpl.class, "edge.write" );
+        this.writeEdgesTimer = metricsFactory.getTimer( GraphManagerImpl.class, "edge.write.batch" );
 
         this.markEdgeTimer = metricsFactory.getTimer( GraphManagerImpl.class, "edge.mark" );
         this.deleteEdgeTimer = metricsFactory.getTimer( GraphManagerImpl.class, "edge.delete" );
@@ -174,6 +178,54 @@ public class GraphManagerImpl implements GraphManager {
     }
 
 
+    @Override
+    public Observable<MarkedEdge> writeEdges( final Collection<Edge> edges ) {
+        Preconditions.checkNotNull( edges, "edges are required" );
+
+        final List<MarkedEdge> markedEdges = new ArrayList<>( edges.size() );
+
+        for ( final Edge edge : edges ) {
+            GraphValidation.validateEdge( edge );
+            markedEdges.add( new SimpleMarkedEdge( edge, false ) );
+        }
+
+        final Observable<MarkedEdge> observable = Observable.just( markedEdges ).flatMap( toWrite -> {
+
+            final UUID timestamp = UUIDGenerator.newTimeUUID();
+
+            if ( toWrite.isEmpty() ) {
+                return Observable.<MarkedEdge>empty();
+            }
+
+            MutationBatch mutation = null;
+
+            for ( final MarkedEdge edge : toWrite ) {
+                final MutationBatch edgeMutation = edgeMetadataSerialization.writeEdge( scope, edge );
+
+                edgeMutation.mergeShallow( storageEdgeSerialization.writeEdge( scope, edge, timestamp ) );
+
+                if ( mutation == null ) {
+                    mutation = edgeMutation;
+                }
+                else {
+                    mutation.mergeShallow( edgeMutation );
+                }
+            }
+
+            try {
+                mutation.execute();
+            }
+            catch ( ConnectionException e ) {
+                throw new RuntimeException( "Unable to execute mutation", e );
+            }
+
+            return Observable.from( toWrite );
+        } );
+
+        return ObservableTimer.time( observable, writeEdgesTimer );
+    }
+
+
     @Override
     public Observable<MarkedEdge> markEdge( final Edge edge ) {
         GraphValidation.validateEdge( edge );
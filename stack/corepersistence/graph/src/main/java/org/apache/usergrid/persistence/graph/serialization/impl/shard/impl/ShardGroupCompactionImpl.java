@@ -31,7 +31,9 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nullable;
@@ -40,6 +42,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.usergrid.persistence.core.consistency.TimeService;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.graph.GraphFig;
 import org.apache.usergrid.persistence.graph.MarkedEdge;
@@ -56,7 +59,12 @@ import org.apache.usergrid.persistence.graph.serialization.impl.shard.ShardedEdg
 import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.model.util.UUIDGenerator;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
@@ -64,7 +72,9 @@ import com.google.common.hash.PrimitiveSink;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
 import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.RateLimiter;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.netflix.astyanax.Keyspace;
@@ -101,6 +111,22 @@ public class ShardGroupCompactionImpl implements ShardGroupCompaction {
     private final ShardCompactionTaskTracker shardCompactionTaskTracker;
     private final ShardAuditTaskTracker shardAuditTaskTracker;
 
+    /**
+     * Audits that are queued or running, keyed by node and edge type
+     */
+    private final ConcurrentMap<Long, ListenableFuture<AuditResult>> pendingAudits;
+
+    /**
+     * Limits the rate of audits each application may queue
+     */
+    private final LoadingCache<Id, RateLimiter> auditRateLimiters;
+
+    private final Meter auditCoalescedMeter;
+    private final Meter auditRateLimitedMeter;
+    private final Meter auditRejectedMeter;
+    private final Timer auditLagTimer;
+    private final Timer auditTimer;
+
 
     @Inject
     public ShardGroupCompactionImpl( final TimeService timeService, final GraphFig graphFig,
@@ -108,7 +134,8 @@ public class ShardGroupCompactionImpl implements ShardGroupCompaction {
                                      final ShardedEdgeSerialization shardedEdgeSerialization,
                                      final EdgeColumnFamilies edgeColumnFamilies, final Keyspace keyspace,
                                      final EdgeShardSerialization edgeShardSerialization,
-                                     final AsyncTaskExecutor asyncTaskExecutor) {
+                                     final AsyncTaskExecutor asyncTaskExecutor,
+                                     final MetricsFactory metricsFactory ) {
 
         this.timeService = timeService;
         this.countAudits = new AtomicLong();
@@ -125,6 +152,23 @@ public class ShardGroupCompactionImpl implements ShardGroupCompaction {
 
 
         this.taskExecutor = asyncTaskExecutor.getExecutorService();
+
+        this.pendingAudits = new ConcurrentHashMap<>();
+        this.auditRateLimiters = CacheBuilder.newBuilder().expireAfterAccess( 5, TimeUnit.MINUTES )
+            .build( new CacheLoader<Id, RateLimiter>() {
+                @Override
+                public RateLimiter load( final Id applicationId ) {
+                    return RateLimiter.create( graphFig.getShardAuditRate() );
+                }
+            } );
+
+        this.auditCoalescedMeter = metricsFactory.getMeter( ShardGroupCompactionImpl.class, "audit.coalesced" );
+        this.auditRateLimitedMeter = metricsFactory.getMeter( ShardGroupCompactionImpl.class, "audit.rate_limited" );
+        this.auditRejectedMeter = metricsFactory.getMeter( ShardGroupCompactionImpl.class, "audit.rejected" );
+        this.auditLagTimer = metricsFactory.getTimer( ShardGroupCompactionImpl.class, "audit.lag" );
+        this.auditTimer = metricsFactory.getTimer( ShardGroupCompactionImpl.class, "audit.time" );
+
+        metricsFactory.addGauge( ShardGroupCompactionImpl.class, "audit.pending", () -> pendingAudits.size() );
     }
 
 
@@ -302,6 +346,34 @@ public class ShardGroupCompactionImpl implements ShardGroupCompaction {
             return Futures.immediateFuture( AuditResult.NOT_CHECKED );
         }
 
+        final long auditKey = shardAuditTaskTracker.doHash( scope, edgeMeta, group ).hash().asLong();
+
+        //this node and edge type is already queued or being audited, share that audit instead of queueing a duplicate
+        final ListenableFuture<AuditResult> pending = pendingAudits.get( auditKey );
+
+        if ( pending != null ) {
+            auditCoalescedMeter.mark();
+            return pending;
+        }
+
+        //a burst of reads against a single application shouldn't fill the queue for everyone else
+        if ( graphFig.getShardAuditRate() > 0 && !auditRateLimiters.getUnchecked( scope.getApplication() )
+                                                                   .tryAcquire() ) {
+            auditRateLimitedMeter.mark();
+            return Futures.immediateFuture( AuditResult.NOT_CHECKED );
+        }
+
+        final ListenableFutureTask<AuditResult> future =
+            ListenableFutureTask.create( new ShardAuditTask( scope, edgeMeta, group, auditKey, System.nanoTime() ) );
+
+        final ListenableFuture<AuditResult> existing = pendingAudits.putIfAbsent( auditKey, future );
+
+        //we lost the race to another reader, use theirs
+        if ( existing != null ) {
+            auditCoalescedMeter.mark();
+            return existing;
+        }
+
         countAudits.getAndIncrement();
 
         if(logger.isDebugEnabled()) {
@@ -312,13 +384,14 @@ public class ShardGroupCompactionImpl implements ShardGroupCompaction {
          * Try and submit.  During back pressure, we may not be able to submit, that's ok.  Better to drop than to
          * hose the system
          */
-        final ListenableFuture<AuditResult> future;
-
         try {
-            future = taskExecutor.submit( new ShardAuditTask( scope, edgeMeta, group ) );
+            taskExecutor.execute( future );
         }
         catch ( RejectedExecutionException ree ) {
 
+            pendingAudits.remove( auditKey, future );
+            auditRejectedMeter.mark();
+
             //ignore, if this happens we don't care, we're saturated, we can check later
             logger.error( "Rejected audit for shard of scope {} edge, meta {} and group {}", scope, edgeMeta, group );
 
@@ -350,18 +423,44 @@ public class ShardGroupCompactionImpl implements ShardGroupCompaction {
         private final ApplicationScope scope;
         private final DirectedEdgeMeta edgeMeta;
         private final ShardEntryGroup group;
+        private final long auditKey;
+        private final long queuedNanos;
 
 
         public ShardAuditTask( final ApplicationScope scope, final DirectedEdgeMeta edgeMeta,
-                               final ShardEntryGroup group ) {
+                               final ShardEntryGroup group, final long auditKey, final long queuedNanos ) {
             this.scope = scope;
             this.edgeMeta = edgeMeta;
             this.group = group;
+            this.auditKey = auditKey;
+            this.queuedNanos = queuedNanos;
         }
 
 
         @Override
         public AuditResult call() throws Exception {
+
+            //how long we waited in the queue
+            auditLagTimer.update( System.nanoTime() - queuedNanos, TimeUnit.NANOSECONDS );
+
+            final Timer.Context timer = auditTimer.time();
+
+            try {
+                return audit();
+            }
+            finally {
+                /**
+                 * Always stop tracking the audit, even if it fails.  This runs before the result is published, so
+                 * nobody that has seen the result can be handed this audit again.  Only this audit can be tracked
+                 * under the key until it's removed
+                 */
+                pendingAudits.remove( auditKey );
+                timer.stop();
+            }
+        }
+
+
+        private AuditResult audit() throws Exception {
             /**
              * We don't have a compaction pending.  Run an audit on the shards
              */
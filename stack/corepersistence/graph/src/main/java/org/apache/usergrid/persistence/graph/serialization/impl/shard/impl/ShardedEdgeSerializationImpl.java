@@ -25,6 +25,7 @@ import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -33,6 +34,7 @@ import org.apache.usergrid.persistence.core.astyanax.CassandraConfig;
 import org.apache.usergrid.persistence.core.astyanax.MultiTenantColumnFamily;
 import org.apache.usergrid.persistence.core.astyanax.ScopedRowKey;
 import org.apache.usergrid.persistence.core.consistency.TimeService;
+import org.apache.usergrid.persistence.core.executor.TaskExecutorFactory;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.core.util.ValidationUtils;
 import org.apache.usergrid.persistence.graph.Edge;
@@ -83,6 +85,11 @@ public class ShardedEdgeSerializationImpl implements ShardedEdgeSerialization {
     protected final EdgeShardStrategy writeEdgeShardStrategy;
     protected final TimeService timeService;
 
+    /**
+     * Shared by all parallel shard scans, the caller reads the page itself when every worker is busy
+     */
+    private final ExecutorService shardScanExecutor;
+
 
     @Inject
     public ShardedEdgeSerializationImpl( final Keyspace keyspace, final CassandraConfig cassandraConfig,
@@ -102,6 +109,9 @@ public class ShardedEdgeSerializationImpl implements ShardedEdgeSerialization {
         this.graphFig = graphFig;
         this.writeEdgeShardStrategy = writeEdgeShardStrategy;
         this.timeService = timeService;
+        this.shardScanExecutor = TaskExecutorFactory
+            .createTaskExecutor( "GraphShardScan", Math.max( 1, graphFig.getShardScanWorkerCount() ), 0,
+                TaskExecutorFactory.RejectionAction.CALLERRUNS );
     }
 
 
@@ -388,8 +398,7 @@ public class ShardedEdgeSerializationImpl implements ShardedEdgeSerialization {
 
                 };
 
-        return new ShardsColumnIterator<>( searcher, columnFamily, keyspace, cassandraConfig.getReadCL(),
-                graphFig.getScanPageSize() );
+        return createIterator( searcher, columnFamily );
     }
 
 
@@ -451,8 +460,7 @@ public class ShardedEdgeSerializationImpl implements ShardedEdgeSerialization {
                 };
 
 
-        return new ShardsColumnIterator<>( searcher, columnFamily, keyspace, cassandraConfig.getReadCL(),
-                graphFig.getScanPageSize() );
+        return createIterator( searcher, columnFamily );
     }
 
 
@@ -512,8 +520,7 @@ public class ShardedEdgeSerializationImpl implements ShardedEdgeSerialization {
                     }
                 };
 
-        return new ShardsColumnIterator( searcher, columnFamily, keyspace, cassandraConfig.getReadCL(),
-                graphFig.getScanPageSize() );
+        return createIterator( searcher, columnFamily );
     }
 
 
@@ -569,8 +576,7 @@ public class ShardedEdgeSerializationImpl implements ShardedEdgeSerialization {
                 };
 
 
-        return new ShardsColumnIterator<>( searcher, columnFamily, keyspace, cassandraConfig.getReadCL(),
-                graphFig.getScanPageSize() );
+        return createIterator( searcher, columnFamily );
     }
 
 
@@ -628,8 +634,24 @@ public class ShardedEdgeSerializationImpl implements ShardedEdgeSerialization {
                     }
                 };
 
+        return createIterator( searcher, columnFamily );
+    }
+
+
+    /**
+     * Create the iterator for the search.  In parallel mode the rows of each shard are read concurrently within the
+     * per search concurrency budget, otherwise they are read with a single multi row read per page
+     */
+    private <R, C> Iterator<MarkedEdge> createIterator( final EdgeSearcher<R, C, MarkedEdge> searcher,
+                                                        final MultiTenantColumnFamily<ScopedRowKey<R>, C> columnFamily ) {
+
+        if ( graphFig.getShardScanParallel() ) {
+            return new ShardsColumnIterator<>( searcher, columnFamily, keyspace, cassandraConfig.getReadCL(),
+                graphFig.getScanPageSize(), graphFig.getShardScanConcurrency(), shardScanExecutor );
+        }
+
         return new ShardsColumnIterator<>( searcher, columnFamily, keyspace, cassandraConfig.getReadCL(),
-                graphFig.getScanPageSize() );
+            graphFig.getScanPageSize() );
     }
 
 
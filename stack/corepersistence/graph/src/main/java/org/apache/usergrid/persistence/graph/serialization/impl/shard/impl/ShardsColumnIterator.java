@@ -4,12 +4,14 @@ package org.apache.usergrid.persistence.graph.serialization.impl.shard.impl;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.usergrid.persistence.core.astyanax.MultiRowColumnIterator;
 import org.apache.usergrid.persistence.core.astyanax.MultiTenantColumnFamily;
+import org.apache.usergrid.persistence.core.astyanax.ParallelMultiRowColumnIterator;
 import org.apache.usergrid.persistence.core.astyanax.ScopedRowKey;
 
 import com.netflix.astyanax.Keyspace;
@@ -41,15 +43,32 @@ public class ShardsColumnIterator<R, C, T> implements Iterator<T> {
 
     private final ConsistencyLevel consistencyLevel;
 
+    private final int concurrency;
+
+    private final ExecutorService executorService;
+
 
     public ShardsColumnIterator(final EdgeSearcher<R, C, T> searcher,
                                 final MultiTenantColumnFamily<ScopedRowKey<R>, C> cf, final Keyspace keyspace,
                                 final ConsistencyLevel consistencyLevel, final int pageSize ) {
+        this( searcher, cf, keyspace, consistencyLevel, pageSize, 1, null );
+    }
+
+
+    /**
+     * Create an iterator that reads its shard rows with up to concurrency reads at once on the executor service
+     */
+    public ShardsColumnIterator(final EdgeSearcher<R, C, T> searcher,
+                                final MultiTenantColumnFamily<ScopedRowKey<R>, C> cf, final Keyspace keyspace,
+                                final ConsistencyLevel consistencyLevel, final int pageSize, final int concurrency,
+                                final ExecutorService executorService ) {
         this.searcher = searcher;
         this.cf = cf;
         this.keyspace = keyspace;
         this.pageSize = pageSize;
         this.consistencyLevel = consistencyLevel;
+        this.concurrency = concurrency;
+        this.executorService = executorService;
     }
 
 
@@ -114,6 +133,14 @@ public class ShardsColumnIterator<R, C, T> implements Iterator<T> {
             logger.trace("Searching with row keys {}", rowKeys);
         }
 
+        //only fan out when there is more than 1 shard to read
+        if ( executorService != null && concurrency > 1 && rowKeys.size() > 1 ) {
+            currentColumnIterator =
+                new ParallelMultiRowColumnIterator<>( keyspace, cf, consistencyLevel, searcher, searcher,
+                    searcher.getComparator(), rowKeys, pageSize, concurrency, executorService );
+            return;
+        }
+
         currentColumnIterator = new MultiRowColumnIterator<>( keyspace, cf,  consistencyLevel, searcher, searcher, searcher.getComparator(), rowKeys, pageSize);
 
 
@@ -23,6 +23,7 @@ package org.apache.usergrid.persistence.graph.serialization.impl.shard;
 
 
 import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
 
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
@@ -32,19 +33,29 @@ import org.junit.Test;
 
 import org.apache.usergrid.persistence.core.consistency.TimeService;
 import org.apache.usergrid.persistence.core.executor.TaskExecutorFactory;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
 import org.apache.usergrid.persistence.core.util.IdGenerator;
 import org.apache.usergrid.persistence.graph.GraphFig;
 import org.apache.usergrid.persistence.graph.serialization.impl.shard.impl.ShardGroupCompactionImpl;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.netflix.astyanax.Keyspace;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -116,7 +127,8 @@ public class ShardGroupCompactionTest {
 
         ShardGroupCompactionImpl compaction =
             new ShardGroupCompactionImpl( timeService, graphFig, nodeShardAllocation, shardedEdgeSerialization,
-                edgeColumnFamilies, keyspace, edgeShardSerialization, asyncTaskExecutor );
+                edgeColumnFamilies, keyspace, edgeShardSerialization, asyncTaskExecutor,
+                mock( MetricsFactory.class ) );
 
         DirectedEdgeMeta directedEdgeMeta = DirectedEdgeMeta.fromSourceNode( IdGenerator.createId( "source" ), "test" );
 
@@ -131,6 +143,76 @@ public class ShardGroupCompactionTest {
     }
 
 
+    @Test
+    public void duplicateAuditsCoalesce() throws Exception {
+
+        final TimeService timeService = mock( TimeService.class );
+
+        final NodeShardAllocation nodeShardAllocation = mock( NodeShardAllocation.class );
+
+        final MetricsFactory metricsFactory = mock( MetricsFactory.class );
+
+        when( metricsFactory.getMeter( any( Class.class ), anyString() ) ).thenReturn( new Meter() );
+
+        when( metricsFactory.getTimer( any( Class.class ), anyString() ) ).thenReturn( new Timer() );
+
+        //always audit, and don't rate limit
+        when( graphFig.getShardRepairChance() ).thenReturn( 1d );
+
+        when( graphFig.getShardAuditRate() ).thenReturn( 0d );
+
+
+        final ShardEntryGroup group = new ShardEntryGroup( 10000 );
+        group.addShard( new Shard( 0, 0, true ) );
+
+        final DirectedEdgeMeta directedEdgeMeta =
+            DirectedEdgeMeta.fromSourceNode( IdGenerator.createId( "source" ), "test" );
+
+
+        //hold the audit open until we've requested it again
+        final CountDownLatch auditStarted = new CountDownLatch( 1 );
+        final CountDownLatch releaseAudit = new CountDownLatch( 1 );
+
+        when( nodeShardAllocation.auditShard( this.scope, group, directedEdgeMeta ) ).thenAnswer( invocation -> {
+            auditStarted.countDown();
+            releaseAudit.await();
+            return false;
+        } );
+
+
+        ShardGroupCompactionImpl compaction =
+            new ShardGroupCompactionImpl( timeService, graphFig, nodeShardAllocation,
+                mock( ShardedEdgeSerialization.class ), mock( EdgeColumnFamilies.class ), mock( Keyspace.class ),
+                mock( EdgeShardSerialization.class ), asyncTaskExecutor, metricsFactory );
+
+
+        final ListenableFuture<ShardGroupCompaction.AuditResult> first =
+            compaction.evaluateShardGroup( this.scope, directedEdgeMeta, group );
+
+        auditStarted.await();
+
+        final ListenableFuture<ShardGroupCompaction.AuditResult> second =
+            compaction.evaluateShardGroup( this.scope, directedEdgeMeta, group );
+
+        assertSame( "Duplicate audit shares the pending one", first, second );
+
+        releaseAudit.countDown();
+
+        assertEquals( ShardGroupCompaction.AuditResult.CHECKED_NO_OP, first.get() );
+
+
+        //once complete, a new audit can be queued
+        final ListenableFuture<ShardGroupCompaction.AuditResult> third =
+            compaction.evaluateShardGroup( this.scope, directedEdgeMeta, group );
+
+        assertNotSame( "Completed audits are not reused", first, third );
+
+        assertEquals( ShardGroupCompaction.AuditResult.CHECKED_NO_OP, third.get() );
+
+        verify( nodeShardAllocation, times( 2 ) ).auditShard( this.scope, group, directedEdgeMeta );
+    }
+
+
     //    /**
     //     * Tests that when we copy edges, we do not actually run the compaction,
     // we can only run it after we get nothing
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.usergrid.persistence.map;
+
+
+import java.util.UUID;
+
+
+/**
+ * A batch of writes to a map, sent to cassandra in a single mutation when executed
+ */
+public interface MapBatch {
+
+    /**
+     * Write the string
+     */
+    MapBatch putString( final String key, final String value );
+
+    /**
+     * Write the string with a time to live (in seconds)
+     */
+    MapBatch putString( final String key, final String value, final int ttl );
+
+    /**
+     * Write the uuid
+     */
+    MapBatch putUuid( final String key, final UUID value );
+
+    /**
+     * Write the long
+     */
+    MapBatch putLong( final String key, final Long value );
+
+    /**
+     * Delete the key
+     */
+    MapBatch delete( final String key );
+
+    /**
+     * Execute all the writes of the batch
+     */
+    void execute();
+}
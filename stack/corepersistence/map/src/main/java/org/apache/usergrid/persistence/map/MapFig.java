@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.usergrid.persistence.map;
+
+
+import org.safehaus.guicyfig.Default;
+import org.safehaus.guicyfig.FigSingleton;
+import org.safehaus.guicyfig.GuicyFig;
+import org.safehaus.guicyfig.Key;
+
+
+/**
+ * Configuration of the map module
+ */
+@FigSingleton
+public interface MapFig extends GuicyFig {
+
+    /**
+     * Comma separated names of the maps values are cached locally for.  Empty to not cache any map
+     */
+    String CACHE_NAMES = "usergrid.map.cache.names";
+
+    /**
+     * The longest a cached value is kept, in millis.  Writes on other nodes aren't seen until it expires
+     */
+    String CACHE_TIMEOUT = "usergrid.map.cache.timeout";
+
+    /**
+     * The most values cached for a single map scope
+     */
+    String CACHE_SIZE = "usergrid.map.cache.size";
+
+
+    @Default( "" )
+    @Key( CACHE_NAMES )
+    String getCacheNames();
+
+    @Default( "10000" )
+    @Key( CACHE_TIMEOUT )
+    long getCacheTimeout();
+
+    @Default( "10000" )
+    @Key( CACHE_SIZE )
+    long getCacheSize();
+}
@@ -84,10 +84,31 @@ public interface MapManager {
      */
     void putLong( final String key, final Long value );
 
+    /**
+     * Add the delta to the counter, the delta may be negative.  Counters live beside the other values, a key can hold
+     * both a value and a counter
+     */
+    void increment( final String key, final long delta );
+
+    /**
+     * Return the counter, null if it was never incremented
+     */
+    Long getCounter( final String key );
+
+    /**
+     * Get the counters for all the keys.  If a counter was never incremented, it won't be present in the map
+     */
+    Map<String, Long> getCounters( final Collection<String> keys );
+
     /**
      * Delete the key
      *
      * @param key The key used to delete the entry
      */
     void delete( final String key );
+
+    /**
+     * Create a batch to write and delete many keys in a single round trip
+     */
+    MapBatch createBatch();
 }
@@ -18,7 +18,10 @@
 package org.apache.usergrid.persistence.map.guice;
 
 
+import org.safehaus.guicyfig.GuicyFigModule;
+
 import org.apache.usergrid.persistence.core.migration.schema.Migration;
+import org.apache.usergrid.persistence.map.MapFig;
 import org.apache.usergrid.persistence.map.MapManager;
 import org.apache.usergrid.persistence.map.MapManagerFactory;
 import org.apache.usergrid.persistence.map.impl.MapManagerFactoryImpl;
@@ -45,6 +48,8 @@ public class MapModule extends AbstractModule {
         bind( MapManagerFactory.class ).to( MapManagerFactoryImpl.class );
         bind( MapSerialization.class ).to( MapSerializationImpl.class );
 
+        install( new GuicyFigModule( MapFig.class ) );
+
         Multibinder<Migration> migrationBinding = Multibinder.newSetBinder( binder(), Migration.class );
         migrationBinding.addBinding().to(  Key.get( MapSerialization.class ) );
 
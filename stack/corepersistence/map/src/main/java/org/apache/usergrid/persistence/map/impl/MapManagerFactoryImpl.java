@@ -25,6 +25,7 @@ import com.google.common.cache.LoadingCache;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.netflix.astyanax.Execution;
+import org.apache.usergrid.persistence.map.MapFig;
 import org.apache.usergrid.persistence.map.MapManager;
 import org.apache.usergrid.persistence.map.MapManagerFactory;
 import org.apache.usergrid.persistence.map.MapScope;
@@ -37,17 +38,19 @@ import java.util.concurrent.ExecutionException;
 @Singleton
 public class MapManagerFactoryImpl implements MapManagerFactory {
     private final MapSerialization mapSerialization;
+    private final MapFig mapFig;
     private LoadingCache<MapScope, MapManager> mmCache =
         CacheBuilder.newBuilder().maximumSize( 1000 ).build( new CacheLoader<MapScope, MapManager>() {
             public MapManager load( MapScope scope ) {
-                return  new MapManagerImpl(scope,mapSerialization);
+                return  new MapManagerImpl(scope,mapSerialization,mapFig);
             }
         } );
 
     @Inject
-    public MapManagerFactoryImpl(final MapSerialization mapSerialization){
+    public MapManagerFactoryImpl(final MapSerialization mapSerialization, final MapFig mapFig){
 
         this.mapSerialization = mapSerialization;
+        this.mapFig = mapFig;
     }
 
     @Override
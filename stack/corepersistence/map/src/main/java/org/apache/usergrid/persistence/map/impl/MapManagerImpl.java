@@ -18,93 +18,302 @@
 package org.apache.usergrid.persistence.map.impl;
 
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
+import org.apache.usergrid.persistence.map.MapBatch;
+import org.apache.usergrid.persistence.map.MapFig;
 import org.apache.usergrid.persistence.map.MapManager;
 import org.apache.usergrid.persistence.map.MapScope;
 
+import com.google.common.base.Optional;
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
-;
 
 
 /**
- * Implementation of the map manager
+ * Implementation of the map manager.
+ *
+ * Maps named in {@link MapFig#CACHE_NAMES} keep the values this node read and wrote in a local cache, including the
+ * keys that were missing.  Writes through this manager update the cache, writes on other nodes are seen once the
+ * cached value expires.  High consistency reads and counters always go to cassandra.
  */
 public class MapManagerImpl implements MapManager {
 
     private final MapScope scope;
     private final MapSerialization mapSerialization;
 
+    /**
+     * The cached values, null when the map isn't cached
+     */
+    private final Cache<String, Optional<Object>> cache;
+
 
     @Inject
-    public MapManagerImpl( @Assisted final MapScope scope, final MapSerialization mapSerialization) {
+    public MapManagerImpl( @Assisted final MapScope scope, final MapSerialization mapSerialization,
+                           final MapFig mapFig ) {
         this.scope = scope;
         this.mapSerialization = mapSerialization;
+
+        final List<String> cacheNames = Splitter.on( ',' ).trimResults().omitEmptyStrings()
+                                                .splitToList( mapFig.getCacheNames() );
+
+        if ( cacheNames.contains( scope.getName() ) ) {
+            this.cache = CacheBuilder.newBuilder().maximumSize( mapFig.getCacheSize() )
+                                     .expireAfterWrite( mapFig.getCacheTimeout(), TimeUnit.MILLISECONDS ).build();
+        }
+        else {
+            this.cache = null;
+        }
     }
 
 
     @Override
     public String getString( final String key ) {
-        return mapSerialization.getString( scope, key );
+        return getCached( key, String.class, () -> mapSerialization.getString( scope, key ) );
     }
 
 
     @Override
     public String getStringHighConsistency( final String key ) {
-        return mapSerialization.getStringHighConsistency(scope, key);
+        final String value = mapSerialization.getStringHighConsistency( scope, key );
+        cachePut( key, value );
+        return value;
     }
 
 
     @Override
     public Map<String, String> getStrings( final Collection<String> keys ) {
-        return mapSerialization.getStrings( scope, keys );
+        if ( cache == null ) {
+            return mapSerialization.getStrings( scope, keys );
+        }
+
+        final Map<String, String> results = new HashMap<>( keys.size() );
+        final List<String> missing = new ArrayList<>();
+
+        for ( final String key : keys ) {
+            final Optional<Object> cached = cache.getIfPresent( key );
+
+            if ( cached == null || ( cached.isPresent() && !( cached.get() instanceof String ) ) ) {
+                missing.add( key );
+            }
+            else if ( cached.isPresent() ) {
+                results.put( key, ( String ) cached.get() );
+            }
+        }
+
+        if ( missing.isEmpty() ) {
+            return results;
+        }
+
+        Map<String, String> loaded = mapSerialization.getStrings( scope, missing );
+
+        if ( loaded == null ) {
+            loaded = Collections.emptyMap();
+        }
+
+        for ( final String key : missing ) {
+            final String value = loaded.get( key );
+
+            cachePut( key, value );
+
+            if ( value != null ) {
+                results.put( key, value );
+            }
+        }
+
+        return results;
     }
 
 
     @Override
     public void putString( final String key, final String value ) {
-          mapSerialization.putString( scope, key, value );
+        mapSerialization.putString( scope, key, value );
+        cachePut( key, value );
     }
 
 
     @Override
     public void putString( final String key, final String value, final int ttl ) {
         mapSerialization.putString( scope, key, value, ttl );
+        //the value may expire before the cache does
+        cacheInvalidate( Collections.singleton( key ) );
     }
 
 
     @Override
     public UUID getUuid( final String key ) {
-        return mapSerialization.getUuid(scope,key);
+        return getCached( key, UUID.class, () -> mapSerialization.getUuid( scope, key ) );
     }
 
 
     @Override
     public void putUuid( final String key, final UUID putUuid ) {
-         mapSerialization.putUuid(scope,key,putUuid);
+        mapSerialization.putUuid( scope, key, putUuid );
+        cachePut( key, putUuid );
     }
 
 
     @Override
     public Long getLong( final String key ) {
-        return mapSerialization.getLong(scope,key);
+        return getCached( key, Long.class, () -> mapSerialization.getLong( scope, key ) );
     }
 
 
     @Override
     public void putLong( final String key, final Long value ) {
-         mapSerialization.putLong(scope,key,value);
+        mapSerialization.putLong( scope, key, value );
+        cachePut( key, value );
+    }
+
+
+    @Override
+    public void increment( final String key, final long delta ) {
+        mapSerialization.increment( scope, key, delta );
+    }
+
+
+    @Override
+    public Long getCounter( final String key ) {
+        return mapSerialization.getCounters( scope, Collections.singleton( key ) ).get( key );
+    }
+
+
+    @Override
+    public Map<String, Long> getCounters( final Collection<String> keys ) {
+        return mapSerialization.getCounters( scope, keys );
     }
 
 
     @Override
     public void delete( final String key ) {
-        mapSerialization.delete(scope,key);
+        mapSerialization.delete( scope, key );
+        cachePut( key, null );
+    }
+
+
+    @Override
+    public MapBatch createBatch() {
+        final MapBatch batch = mapSerialization.createBatch( scope );
+
+        if ( cache == null ) {
+            return batch;
+        }
+
+        return new CachedMapBatch( batch );
+    }
+
+
+    /**
+     * Read the value from the cache if it holds one of the type, otherwise load and cache it
+     */
+    private <T> T getCached( final String key, final Class<T> type, final Supplier<T> loader ) {
+        if ( cache == null ) {
+            return loader.get();
+        }
+
+        final Optional<Object> cached = cache.getIfPresent( key );
+
+        if ( cached != null ) {
+            if ( !cached.isPresent() ) {
+                return null;
+            }
+
+            if ( type.isInstance( cached.get() ) ) {
+                return type.cast( cached.get() );
+            }
+        }
+
+        final T value = loader.get();
+        cachePut( key, value );
+        return value;
+    }
+
+
+    private void cachePut( final String key, final Object value ) {
+        if ( cache != null ) {
+            cache.put( key, Optional.fromNullable( value ) );
+        }
+    }
+
+
+    private void cacheInvalidate( final Collection<String> keys ) {
+        if ( cache != null ) {
+            cache.invalidateAll( keys );
+        }
     }
 
 
+    /**
+     * Drops the keys written by the batch from the cache once it's executed
+     */
+    private class CachedMapBatch implements MapBatch {
 
+        private final MapBatch batch;
+        private final Set<String> keys = new HashSet<>();
+
+
+        private CachedMapBatch( final MapBatch batch ) {
+            this.batch = batch;
+        }
+
+
+        @Override
+        public MapBatch putString( final String key, final String value ) {
+            batch.putString( key, value );
+            keys.add( key );
+            return this;
+        }
+
+
+        @Override
+        public MapBatch putString( final String key, final String value, final int ttl ) {
+            batch.putString( key, value, ttl );
+            keys.add( key );
+            return this;
+        }
+
+
+        @Override
+        public MapBatch putUuid( final String key, final UUID value ) {
+            batch.putUuid( key, value );
+            keys.add( key );
+            return this;
+        }
+
+
+        @Override
+        public MapBatch putLong( final String key, final Long value ) {
+            batch.putLong( key, value );
+            keys.add( key );
+            return this;
+        }
+
+
+        @Override
+        public MapBatch delete( final String key ) {
+            batch.delete( key );
+            keys.add( key );
+            return this;
+        }
+
+
+        @Override
+        public void execute() {
+            batch.execute();
+            cacheInvalidate( keys );
+        }
+    }
 }
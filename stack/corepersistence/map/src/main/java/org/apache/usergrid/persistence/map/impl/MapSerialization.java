@@ -25,6 +25,7 @@ import java.util.Map;
 import java.util.UUID;
 
 import org.apache.usergrid.persistence.core.migration.schema.Migration;
+import org.apache.usergrid.persistence.map.MapBatch;
 import org.apache.usergrid.persistence.map.MapScope;
 
 
@@ -81,10 +82,25 @@ public interface MapSerialization extends Migration {
      */
     void putLong( final MapScope scope, final String key, final Long value );
 
+    /**
+     * Add the delta to the counter
+     */
+    void increment( final MapScope scope, final String key, final long delta );
+
+    /**
+     * Get the counters, keys that were never incremented are not present in the map
+     */
+    Map<String, Long> getCounters( final MapScope scope, final Collection<String> keys );
+
     /**
      * Delete the key
      *
      * @param key The key used to delete the entry
      */
     void delete( final MapScope scope, final String key );
+
+    /**
+     * Create a batch of writes to the map
+     */
+    MapBatch createBatch( final MapScope scope );
 }
@@ -27,8 +27,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.apache.cassandra.db.marshal.BytesType;
+import org.apache.cassandra.db.marshal.CounterColumnType;
+import org.apache.cassandra.db.marshal.Int32Type;
 import org.apache.cassandra.db.marshal.UTF8Type;
 
 import org.apache.usergrid.persistence.core.astyanax.BucketScopedRowKey;
@@ -41,13 +44,13 @@ import org.apache.usergrid.persistence.core.astyanax.ScopedRowKey;
 import org.apache.usergrid.persistence.core.astyanax.ScopedRowKeySerializer;
 import org.apache.usergrid.persistence.core.shard.ExpandingShardLocator;
 import org.apache.usergrid.persistence.core.shard.StringHashUtils;
+import org.apache.usergrid.persistence.map.MapBatch;
 import org.apache.usergrid.persistence.map.MapScope;
 
 import com.google.common.base.Preconditions;
 import com.google.common.hash.Funnel;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
-import com.netflix.astyanax.ColumnListMutation;
 import com.netflix.astyanax.Keyspace;
 import com.netflix.astyanax.MutationBatch;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
@@ -59,6 +62,7 @@ import com.netflix.astyanax.model.ConsistencyLevel;
 import com.netflix.astyanax.model.Row;
 import com.netflix.astyanax.model.Rows;
 import com.netflix.astyanax.serializers.BooleanSerializer;
+import com.netflix.astyanax.serializers.IntegerSerializer;
 import com.netflix.astyanax.serializers.StringSerializer;
 
 
@@ -80,6 +84,8 @@ public class MapSerializationImpl implements MapSerialization {
 
     private static final StringSerializer STRING_SERIALIZER = StringSerializer.get();
 
+    private static final IntegerSerializer INTEGER_SERIALIZER = IntegerSerializer.get();
+
 
     private static final StringResultsBuilder STRING_RESULTS_BUILDER = new StringResultsBuilder();
 
@@ -97,6 +103,18 @@ public class MapSerializationImpl implements MapSerialization {
     public static final MultiTenantColumnFamily<BucketScopedRowKey<String>, String> MAP_KEYS =
         new MultiTenantColumnFamily<>( "Map_Keys", MAP_KEY_SERIALIZER, STRING_SERIALIZER );
 
+    /**
+     * Counters, one column per shard of the counter.  The shard is picked at random on every increment so concurrent
+     * writers don't contend on the same cell, reads sum the whole row
+     */
+    public static final MultiTenantColumnFamily<ScopedRowKey<MapEntryKey>, Integer> MAP_COUNTERS =
+        new MultiTenantColumnFamily<>( "Map_Counters", MAP_ENTRY_SERIALIZER, INTEGER_SERIALIZER );
+
+    /**
+     * Number of shards each counter is spread over
+     */
+    private static final int COUNTER_SHARDS = 16;
+
     /**
      * Number of buckets to hash across.
      */
@@ -147,99 +165,13 @@ public class MapSerializationImpl implements MapSerialization {
 
     @Override
     public void putString( final MapScope scope, final String key, final String value ) {
-        final RowOp op = new RowOp() {
-            @Override
-            public void putValue( final ColumnListMutation<Boolean> columnListMutation ) {
-                columnListMutation.putColumn( true, value );
-            }
-
-
-            @Override
-            public void putKey( final ColumnListMutation<String> keysMutation ) {
-                keysMutation.putColumn( key, true );
-            }
-        };
-
-
-        writeString( scope, key, value, op );
+        createBatch( scope ).putString( key, value ).execute();
     }
 
 
     @Override
     public void putString( final MapScope scope, final String key, final String value, final int ttl ) {
-        Preconditions.checkArgument( ttl > 0, "ttl must be > than 0" );
-
-        final RowOp op = new RowOp() {
-            @Override
-            public void putValue( final ColumnListMutation<Boolean> columnListMutation ) {
-                columnListMutation.putColumn( true, value, ttl );
-            }
-
-
-            @Override
-            public void putKey( final ColumnListMutation<String> keysMutation ) {
-                keysMutation.putColumn( key, true, ttl );
-            }
-        };
-
-
-        writeString( scope, key, value, op );
-    }
-
-
-    /**
-     * Write our string index with the specified row op
-     */
-    private void writeString( final MapScope scope, final String key, final String value, final RowOp rowOp ) {
-
-        Preconditions.checkNotNull( scope, "mapscope is required" );
-        Preconditions.checkNotNull( key, "key is required" );
-        Preconditions.checkNotNull( value, "value is required" );
-
-        final MutationBatch batch = keyspace.prepareMutationBatch();
-
-        //add it to the entry
-        final ScopedRowKey<MapEntryKey> entryRowKey = MapEntryKey.fromKey( scope, key );
-
-        //serialize to the
-        // entry
-
-
-        rowOp.putValue( batch.withRow( MAP_ENTRIES, entryRowKey ) );
-
-
-        //add it to the keys
-
-        final int bucket = BUCKET_LOCATOR.getCurrentBucket( key );
-
-        final BucketScopedRowKey<String> keyRowKey = BucketScopedRowKey.fromKey( scope.getApplication(), key, bucket );
-
-        //serialize to the entry
-
-        rowOp.putKey( batch.withRow( MAP_KEYS, keyRowKey ) );
-
-
-        executeBatch( batch );
-    }
-
-
-    /**
-     * Callbacks for performing row operations
-     */
-    private static interface RowOp {
-
-        /**
-         * Callback to do the row
-         *
-         * @param columnListMutation The column mutation
-         */
-        void putValue( final ColumnListMutation<Boolean> columnListMutation );
-
-
-        /**
-         * Write the key
-         */
-        void putKey( final ColumnListMutation<String> keysMutation );
+        createBatch( scope ).putString( key, value, ttl ).execute();
     }
 
 
@@ -253,86 +185,97 @@ public class MapSerializationImpl implements MapSerialization {
 
     @Override
     public void putUuid( final MapScope scope, final String key, final UUID putUuid ) {
+        createBatch( scope ).putUuid( key, putUuid ).execute();
+    }
 
-        Preconditions.checkNotNull( scope, "mapscope is required" );
-        Preconditions.checkNotNull( key, "key is required" );
-        Preconditions.checkNotNull( putUuid, "value is required" );
-
-        final MutationBatch batch = keyspace.prepareMutationBatch();
-
-        //add it to the entry
-        final ScopedRowKey<MapEntryKey> entryRowKey = MapEntryKey.fromKey( scope, key );
-
-        //serialize to the entry
-        batch.withRow( MAP_ENTRIES, entryRowKey ).putColumn( true, putUuid );
 
-        //add it to the keys
+    @Override
+    public Long getLong( final MapScope scope, final String key ) {
+        Column<Boolean> col = getValue( scope, key, cassandraConfig.getReadCL() );
+        return ( col != null ) ? col.getLongValue() : null;
+    }
 
-        final int bucket = BUCKET_LOCATOR.getCurrentBucket( key );
 
-        final BucketScopedRowKey<String> keyRowKey = BucketScopedRowKey.fromKey( scope.getApplication(), key, bucket );
+    @Override
+    public void putLong( final MapScope scope, final String key, final Long value ) {
+        createBatch( scope ).putLong( key, value ).execute();
+    }
 
-        //serialize to the entry
-        batch.withRow( MAP_KEYS, keyRowKey ).putColumn( key, true );
 
-        executeBatch( batch );
+    @Override
+    public void delete( final MapScope scope, final String key ) {
+        createBatch( scope ).delete( key ).execute();
     }
 
 
     @Override
-    public Long getLong( final MapScope scope, final String key ) {
-        Column<Boolean> col = getValue( scope, key, cassandraConfig.getReadCL() );
-        return ( col != null ) ? col.getLongValue() : null;
+    public MapBatch createBatch( final MapScope scope ) {
+        Preconditions.checkNotNull( scope, "mapscope is required" );
+
+        return new MapBatchImpl( scope, keyspace.prepareMutationBatch() );
     }
 
 
     @Override
-    public void putLong( final MapScope scope, final String key, final Long value ) {
+    public void increment( final MapScope scope, final String key, final long delta ) {
 
         Preconditions.checkNotNull( scope, "mapscope is required" );
         Preconditions.checkNotNull( key, "key is required" );
-        Preconditions.checkNotNull( value, "value is required" );
-
-        final MutationBatch batch = keyspace.prepareMutationBatch();
-
-        //add it to the entry
-        final ScopedRowKey<MapEntryKey> entryRowKey = MapEntryKey.fromKey( scope, key );
 
-        //serialize to the entry
-        batch.withRow( MAP_ENTRIES, entryRowKey ).putColumn( true, value );
+        if ( delta == 0 ) {
+            return;
+        }
 
-        //add it to the keys
-        final int bucket = BUCKET_LOCATOR.getCurrentBucket( key );
+        final MutationBatch batch = keyspace.prepareMutationBatch();
 
-        final BucketScopedRowKey<String> keyRowKey = BucketScopedRowKey.fromKey( scope.getApplication(), key, bucket );
+        final int shard = ThreadLocalRandom.current().nextInt( COUNTER_SHARDS );
 
-        //serialize to the entry
-        batch.withRow( MAP_KEYS, keyRowKey ).putColumn( key, true );
+        batch.withRow( MAP_COUNTERS, MapEntryKey.fromKey( scope, key ) ).incrementCounterColumn( shard, delta );
 
         executeBatch( batch );
     }
 
 
     @Override
-    public void delete( final MapScope scope, final String key ) {
-        final MutationBatch batch = keyspace.prepareMutationBatch();
-        final ScopedRowKey<MapEntryKey> entryRowKey = MapEntryKey.fromKey( scope, key );
+    public Map<String, Long> getCounters( final MapScope scope, final Collection<String> keys ) {
+
+        final List<ScopedRowKey<MapEntryKey>> rowKeys = new ArrayList<>( keys.size() );
+
+        for ( final String key : keys ) {
+            rowKeys.add( MapEntryKey.fromKey( scope, key ) );
+        }
+
+        final Map<String, Long> results = new HashMap<>( keys.size() );
 
-        //serialize to the entry
-        batch.withRow( MAP_ENTRIES, entryRowKey ).delete();
+        try {
+            final Rows<ScopedRowKey<MapEntryKey>, Integer> rows =
+                keyspace.prepareQuery( MAP_COUNTERS ).setConsistencyLevel( cassandraConfig.getReadCL() )
+                        .getKeySlice( rowKeys ).execute().getResult();
 
-        //add it to the keys, we're not sure which one it may have come from
-        final int[] buckets = BUCKET_LOCATOR.getAllBuckets( key );
+            for ( final Row<ScopedRowKey<MapEntryKey>, Integer> row : rows ) {
 
+                //never incremented
+                if ( row.getColumns().isEmpty() ) {
+                    continue;
+                }
 
-        final List<BucketScopedRowKey<String>> rowKeys =
-            BucketScopedRowKey.fromRange( scope.getApplication(), key, buckets );
+                long sum = 0;
 
-        for ( BucketScopedRowKey<String> rowKey : rowKeys ) {
-            batch.withRow( MAP_KEYS, rowKey ).deleteColumn( key );
+                for ( final Column<Integer> shard : row.getColumns() ) {
+                    sum += shard.getLongValue();
+                }
+
+                results.put( row.getKey().getKey().key, sum );
+            }
+        }
+        catch ( NotFoundException nfe ) {
+            //nothing to return
+        }
+        catch ( ConnectionException e ) {
+            throw new RuntimeException( "Unable to connect to cassandra", e );
         }
 
-        executeBatch( batch );
+        return results;
     }
 
 
@@ -349,7 +292,12 @@ public class MapSerializationImpl implements MapSerialization {
                 UTF8Type.class.getSimpleName(), BytesType.class.getSimpleName(),
                 MultiTenantColumnFamilyDefinition.CacheOption.KEYS );
 
-        return Arrays.asList( mapEntries, mapKeys );
+        final MultiTenantColumnFamilyDefinition mapCounters =
+            new MultiTenantColumnFamilyDefinition( MAP_COUNTERS, BytesType.class.getSimpleName(),
+                Int32Type.class.getSimpleName(), CounterColumnType.class.getSimpleName(),
+                MultiTenantColumnFamilyDefinition.CacheOption.KEYS );
+
+        return Arrays.asList( mapEntries, mapKeys, mapCounters );
     }
 
 
@@ -421,6 +369,113 @@ public class MapSerializationImpl implements MapSerialization {
     }
 
 
+    /**
+     * Writes every entry and its key into a single mutation
+     */
+    private class MapBatchImpl implements MapBatch {
+
+        private final MapScope scope;
+        private final MutationBatch batch;
+
+
+        private MapBatchImpl( final MapScope scope, final MutationBatch batch ) {
+            this.scope = scope;
+            this.batch = batch;
+        }
+
+
+        @Override
+        public MapBatch putString( final String key, final String value ) {
+            checkEntry( key, value );
+
+            batch.withRow( MAP_ENTRIES, MapEntryKey.fromKey( scope, key ) ).putColumn( true, value );
+            batch.withRow( MAP_KEYS, getKeyRowKey( key ) ).putColumn( key, true );
+
+            return this;
+        }
+
+
+        @Override
+        public MapBatch putString( final String key, final String value, final int ttl ) {
+            checkEntry( key, value );
+            Preconditions.checkArgument( ttl > 0, "ttl must be > than 0" );
+
+            batch.withRow( MAP_ENTRIES, MapEntryKey.fromKey( scope, key ) ).putColumn( true, value, ttl );
+            batch.withRow( MAP_KEYS, getKeyRowKey( key ) ).putColumn( key, true, ttl );
+
+            return this;
+        }
+
+
+        @Override
+        public MapBatch putUuid( final String key, final UUID value ) {
+            checkEntry( key, value );
+
+            batch.withRow( MAP_ENTRIES, MapEntryKey.fromKey( scope, key ) ).putColumn( true, value );
+            batch.withRow( MAP_KEYS, getKeyRowKey( key ) ).putColumn( key, true );
+
+            return this;
+        }
+
+
+        @Override
+        public MapBatch putLong( final String key, final Long value ) {
+            checkEntry( key, value );
+
+            batch.withRow( MAP_ENTRIES, MapEntryKey.fromKey( scope, key ) ).putColumn( true, value );
+            batch.withRow( MAP_KEYS, getKeyRowKey( key ) ).putColumn( key, true );
+
+            return this;
+        }
+
+
+        @Override
+        public MapBatch delete( final String key ) {
+            Preconditions.checkNotNull( key, "key is required" );
+
+            batch.withRow( MAP_ENTRIES, MapEntryKey.fromKey( scope, key ) ).delete();
+
+            //remove it from the keys, we're not sure which one it may have come from
+            final int[] buckets = BUCKET_LOCATOR.getAllBuckets( key );
+
+            final List<BucketScopedRowKey<String>> rowKeys =
+                BucketScopedRowKey.fromRange( scope.getApplication(), key, buckets );
+
+            for ( BucketScopedRowKey<String> rowKey : rowKeys ) {
+                batch.withRow( MAP_KEYS, rowKey ).deleteColumn( key );
+            }
+
+            return this;
+        }
+
+
+        @Override
+        public void execute() {
+            if ( batch.isEmpty() ) {
+                return;
+            }
+
+            executeBatch( batch );
+        }
+
+
+        private void checkEntry( final String key, final Object value ) {
+            Preconditions.checkNotNull( key, "key is required" );
+            Preconditions.checkNotNull( value, "value is required" );
+        }
+
+
+        /**
+         * The row of the keys the key is written to
+         */
+        private BucketScopedRowKey<String> getKeyRowKey( final String key ) {
+            final int bucket = BUCKET_LOCATOR.getCurrentBucket( key );
+
+            return BucketScopedRowKey.fromKey( scope.getApplication(), key, bucket );
+        }
+    }
+
+
     /**
      * Inner class to serialize and edgeIdTypeKey
      */
@@ -32,10 +32,13 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import org.apache.usergrid.persistence.core.guice.MigrationManagerRule;
+import org.apache.usergrid.persistence.core.guicyfig.SetConfigTestBypass;
 import org.apache.usergrid.persistence.core.test.ITRunner;
 import org.apache.usergrid.persistence.core.test.UseModules;
 import org.apache.usergrid.persistence.map.guice.TestMapModule;
+import org.apache.usergrid.persistence.map.impl.MapManagerImpl;
 import org.apache.usergrid.persistence.map.impl.MapScopeImpl;
+import org.apache.usergrid.persistence.map.impl.MapSerialization;
 import org.apache.usergrid.persistence.model.entity.SimpleId;
 import org.apache.usergrid.persistence.model.util.UUIDGenerator;
 
@@ -59,6 +62,12 @@ public class MapManagerTest {
     @Inject
     protected MapManagerFactory mmf;
 
+    @Inject
+    protected MapSerialization mapSerialization;
+
+    @Inject
+    protected MapFig mapFig;
+
     protected MapScope scope;
 
 
@@ -267,6 +276,96 @@ public class MapManagerTest {
     }
 
 
+    @Test
+    public void incrementReadCounter() {
+        MapManager mm = mmf.createMapManager( this.scope );
+
+        final String key = "counter";
+
+        assertNull( mm.getCounter( key ) );
+
+        for ( int i = 0; i < 100; i++ ) {
+            mm.increment( key, 2 );
+        }
+
+        mm.increment( key, -50 );
+
+        assertEquals( Long.valueOf( 150 ), mm.getCounter( key ) );
+    }
+
+
+    @Test
+    public void readCounterBatch() {
+        MapManager mm = mmf.createMapManager( this.scope );
+
+        mm.increment( "counter1", 1 );
+        mm.increment( "counter2", 2 );
+
+        final Map<String, Long> results = mm.getCounters( Arrays.asList( "counter1", "counter2", "counter3" ) );
+
+        assertEquals( 2, results.size() );
+        assertEquals( Long.valueOf( 1 ), results.get( "counter1" ) );
+        assertEquals( Long.valueOf( 2 ), results.get( "counter2" ) );
+    }
+
+
+    @Test
+    public void writeReadDeleteBatch() {
+        MapManager mm = mmf.createMapManager( this.scope );
+
+        final UUID uuid = UUID.randomUUID();
+
+        mm.createBatch().putString( "string", "value" ).putUuid( "uuid", uuid ).putLong( "long", 10L ).execute();
+
+        assertEquals( "value", mm.getString( "string" ) );
+        assertEquals( uuid, mm.getUuid( "uuid" ) );
+        assertEquals( Long.valueOf( 10L ), mm.getLong( "long" ) );
+
+        mm.createBatch().delete( "string" ).delete( "uuid" ).putLong( "long", 11L ).execute();
+
+        assertNull( mm.getString( "string" ) );
+        assertNull( mm.getUuid( "uuid" ) );
+        assertEquals( Long.valueOf( 11L ), mm.getLong( "long" ) );
+    }
+
+
+    @Test
+    public void cachedReads() {
+        SetConfigTestBypass.setValueByPass( mapFig, "getCacheNames", "cachedMap" );
+
+        try {
+            final MapScope cachedScope = new MapScopeImpl( new SimpleId( "application" ), "cachedMap" );
+
+            final MapManager cached = new MapManagerImpl( cachedScope, mapSerialization, mapFig );
+
+            cached.putString( "key", "value" );
+
+            //written elsewhere, the cache doesn't see it
+            mapSerialization.putString( cachedScope, "key", "value2" );
+            mapSerialization.putString( cachedScope, "key2", "value2" );
+
+            assertEquals( "value", cached.getString( "key" ) );
+
+            //high consistency reads skip the cache and refresh it
+            assertEquals( "value2", cached.getStringHighConsistency( "key" ) );
+            assertEquals( "value2", cached.getString( "key" ) );
+
+            final Map<String, String> results = cached.getStrings( Arrays.asList( "key", "key2" ) );
+
+            assertEquals( "value2", results.get( "key" ) );
+            assertEquals( "value2", results.get( "key2" ) );
+
+            //batches drop what they wrote from the cache
+            cached.createBatch().delete( "key" ).execute();
+
+            assertNull( cached.getString( "key" ) );
+        }
+        finally {
+            SetConfigTestBypass.setValueByPass( mapFig, "getCacheNames", "" );
+        }
+    }
+
+
     @Test( expected = NullPointerException.class )
     public void nullInputString() {
         MapManager mm = mmf.createMapManager( this.scope );
@@ -62,6 +62,14 @@ public interface IndexFig extends GuicyFig {
 
     String ELASTICSEARCH_VERSION_QUERY_LIMIT = "elasticsearch.version_query_limit";
 
+    String INDEX_BATCH_MAX_BYTES = "elasticsearch.batch_max_bytes";
+
+    String INDEX_BATCH_TARGET_LATENCY = "elasticsearch.batch_target_latency_ms";
+
+    String INDEX_BATCH_MAX_CONCURRENT = "elasticsearch.batch_max_concurrent";
+
+    String INDEX_BATCH_MAX_RETRIES = "elasticsearch.batch_max_retries";
+
 
     /**
      * Comma-separated list of Elasticsearch hosts.
@@ -205,4 +213,34 @@ public interface IndexFig extends GuicyFig {
     @Default("1000")
     @Key( ELASTICSEARCH_VERSION_QUERY_LIMIT )
     int getVersionQueryLimit();
+
+
+    /**
+     * The maximum size (in bytes) of a single bulk request sent to Elasticsearch.
+     */
+    @Default( "5242880" )
+    @Key( INDEX_BATCH_MAX_BYTES )
+    long getIndexBatchMaxBytes();
+
+    /**
+     * The bulk request latency (in milliseconds) we aim for.  Bulk requests grow towards the batch size while
+     * they complete faster than this and shrink when they are slower or rejected.
+     */
+    @Default( "1000" )
+    @Key( INDEX_BATCH_TARGET_LATENCY )
+    long getIndexBatchTargetLatency();
+
+    /**
+     * The maximum number of bulk requests in flight to Elasticsearch from this node.
+     */
+    @Default( "4" )
+    @Key( INDEX_BATCH_MAX_CONCURRENT )
+    int getIndexBatchMaxConcurrent();
+
+    /**
+     * The number of times items rejected by Elasticsearch are retried before the batch fails.
+     */
+    @Default( "3" )
+    @Key( INDEX_BATCH_MAX_RETRIES )
+    int getIndexBatchMaxRetries();
 }
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.index.impl;
+
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Tracks how many operations go into a single bulk request.  The size grows additively while bulk requests complete
+ * within the target latency, and is halved when they are slower or Elasticsearch rejects items.
+ */
+public class BulkRequestSizer {
+
+    private static final int MIN_SIZE = 10;
+
+    private final int minSize;
+    private final int maxSize;
+    private final int step;
+    private final long targetLatency;
+    private final AtomicInteger size;
+
+
+    /**
+     * @param maxSize The largest number of operations in a bulk request
+     * @param targetLatency The bulk request latency (in milliseconds) to aim for
+     */
+    public BulkRequestSizer( final int maxSize, final long targetLatency ) {
+        this.minSize = Math.min( MIN_SIZE, maxSize );
+        this.maxSize = maxSize;
+        this.step = Math.max( 1, maxSize / 10 );
+        this.targetLatency = targetLatency;
+        this.size = new AtomicInteger( maxSize );
+    }
+
+
+    /**
+     * Get the number of operations the next bulk request should hold
+     */
+    public int getSize() {
+        return size.get();
+    }
+
+
+    /**
+     * Record the outcome of a bulk request
+     *
+     * @param latency The time (in milliseconds) the request took
+     * @param rejected True if Elasticsearch rejected any item because it was overloaded
+     */
+    public void record( final long latency, final boolean rejected ) {
+        if ( rejected || latency > targetLatency ) {
+            size.updateAndGet( current -> Math.max( minSize, current / 2 ) );
+        }
+        else {
+            size.updateAndGet( current -> Math.min( maxSize, current + step ) );
+        }
+    }
+}
@@ -814,6 +814,17 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
         return  getEntitySizeAggregation(builder);
     }
 
+    @Override
+    public long getEntityCount(final SearchEdge edge){
+        SearchRequestBuilder builder = searchRequestBuilderStrategyV2.getBuilder();
+        builder.setQuery(new TermQueryBuilder("edgeSearch",IndexingUtils.createContextName(applicationScope,edge)));
+        builder.setSize(0);
+
+        Observable<Long> o = Observable.from(builder.execute())
+            .map(response -> response.getHits().getTotalHits());
+        return ObservableTimer.time(o,aggregationTimer).toBlocking().lastOrDefault(-1L);
+    }
+
     private long getEntitySizeAggregation( final SearchRequestBuilder builder ) {
         final String key = "entitySize";
         SumBuilder sumBuilder = new SumBuilder(key);
@@ -18,13 +18,18 @@
 package org.apache.usergrid.persistence.index.impl;
 
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.codahale.metrics.Histogram;
 
 
 import org.apache.usergrid.persistence.index.EntityIndexBatch;
+import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.WriteConsistencyLevel;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
@@ -38,12 +43,15 @@ import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.index.IndexFig;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
 import rx.Observable;
+import rx.schedulers.Schedulers;
 
 
 /**
@@ -61,6 +69,10 @@ public class EsIndexProducerImpl implements IndexProducer {
     private final Counter indexSizeCounter;
     private final Histogram roundtripTimer;
     private final Timer indexTimer;
+    private final Histogram bulkSizeHistogram;
+    private final Meter rejectedMeter;
+    private final BulkRequestSizer bulkRequestSizer;
+    private final Semaphore inFlightRequests;
 
 
     private AtomicLong inFlight = new AtomicLong();
@@ -78,17 +90,29 @@ public class EsIndexProducerImpl implements IndexProducer {
 
 
         this.indexTimer = metricsFactory.getTimer( EsIndexProducerImpl.class, "index" );
+        this.bulkSizeHistogram = metricsFactory.getHistogram( EsIndexProducerImpl.class, "index.bulk_size" );
+        this.rejectedMeter = metricsFactory.getMeter( EsIndexProducerImpl.class, "index.rejected" );
 
         this.config = config;
         this.failureMonitor = new FailureMonitorImpl(config, provider);
         this.client = provider.getClient();
         this.indexFig = indexFig;
 
+        this.bulkRequestSizer = new BulkRequestSizer( indexFig.getIndexBatchSize(), indexFig.getIndexBatchTargetLatency() );
+        this.inFlightRequests = new Semaphore( indexFig.getIndexBatchMaxConcurrent() );
+
+        metricsFactory.addGauge( EsIndexProducerImpl.class, "index.bulk_target_size", () -> bulkRequestSizer.getSize() );
 
         //batch up sets of some size and send them in batch
 
     }
 
+    @Override
+    public double getRejectionRate() {
+        return rejectedMeter.getOneMinuteRate();
+    }
+
+
     @Override
     public Observable<IndexOperationMessage> put(EntityIndexBatch message) {
         return put(message.build());
@@ -121,29 +145,19 @@ public class EsIndexProducerImpl implements IndexProducer {
         indexSizeCounter.dec(indexOperationSetSize);
         indexSizeCounter.dec(deIndexOperationSetSize);
 
-        final Observable<IndexOperation> index = Observable.from(batch.getIndexRequests());
-        final Observable<DeIndexOperation> deIndex = Observable.from(batch.getDeIndexRequests());
-
-        //TODO: look at indexing ordering
-        final Observable<BatchOperation> batchOps = Observable.merge(index, deIndex);
+        //split into bulk requests sized by our current target and byte limit
+        final Observable<BulkRequestBuilder> requests = Observable.defer( () -> Observable.from( buildRequests( batch ) ) );
 
-        //buffer into the max size we can send ES and fire them all off until we're completed
-        final Observable<BulkRequestBuilder> requests = batchOps.buffer(indexFig.getIndexBatchSize())
-            //flatten the buffer into a single batch execution
-            .flatMap(individualOps -> Observable.from(individualOps)
-                //collect them
-                .collect(() -> initRequest(), (bulkRequestBuilder, batchOperation) -> {
-                    log.debug("adding operation {} to bulkRequestBuilder {}", batchOperation, bulkRequestBuilder);
-                    batchOperation.doOperation(client, bulkRequestBuilder);
-                }))
-                //write them
-            .doOnNext(bulkRequestBuilder -> sendRequest(bulkRequestBuilder));
+        //write them, keeping up to our max number of bulk requests in flight at once
+        final Observable<BulkRequestBuilder> sentRequests = Observable.merge( requests.map(
+            bulkRequestBuilder -> Observable.just( bulkRequestBuilder ).doOnNext( request -> sendRequest( request ) )
+                .subscribeOn( Schedulers.io() ) ), indexFig.getIndexBatchMaxConcurrent() );
 
 
         //now that we've processed them all, ack the futures after our last batch comes through
         final Observable<IndexOperationMessage> processedIndexOperations =
-            requests.flatMap(lastRequest -> {
-                if (lastRequest != null) {
+            sentRequests.toList().flatMap(sent -> {
+                if (!sent.isEmpty()) {
                     return Observable.just(batch);
                 } else {
                     return Observable.empty();
@@ -158,7 +172,39 @@ public class EsIndexProducerImpl implements IndexProducer {
     }
 
 
-    /*
+    /**
+     * Add all operations to bulk requests, starting a new request each time we reach the current bulk size or the
+     * max bytes
+     */
+    private List<BulkRequestBuilder> buildRequests( final IndexOperationMessage batch ) {
+
+        final int maxActions = bulkRequestSizer.getSize();
+        final long maxBytes = indexFig.getIndexBatchMaxBytes();
+
+        final List<BulkRequestBuilder> requests = new ArrayList<>();
+
+        BulkRequestBuilder bulkRequestBuilder = initRequest();
+
+        for ( final BatchOperation batchOperation : Iterables.<BatchOperation>concat( batch.getIndexRequests(),
+            batch.getDeIndexRequests() ) ) {
+
+            log.debug( "adding operation {} to bulkRequestBuilder {}", batchOperation, bulkRequestBuilder );
+            batchOperation.doOperation( client, bulkRequestBuilder );
+
+            if ( bulkRequestBuilder.numberOfActions() >= maxActions
+                || bulkRequestBuilder.request().estimatedSizeInBytes() >= maxBytes ) {
+                requests.add( bulkRequestBuilder );
+                bulkRequestBuilder = initRequest();
+            }
+        }
+
+        if ( bulkRequestBuilder.numberOfActions() > 0 ) {
+            requests.add( bulkRequestBuilder );
+        }
+
+        return requests;
+    }
+
 
     /**
      * initialize request
@@ -172,64 +218,154 @@ public class EsIndexProducerImpl implements IndexProducer {
 
 
     /**
-     * send bulk request
+     * send bulk request, retrying only the items Elasticsearch rejected because it was overloaded
      */
-    private void sendRequest( BulkRequestBuilder bulkRequest ) {
+    void sendRequest( BulkRequestBuilder bulkRequest ) {
         //nothing to do, we haven't added anything to the index
         if ( bulkRequest.numberOfActions() == 0 ) {
             return;
         }
 
-        final BulkResponse responses;
+        final int maxRetries = indexFig.getIndexBatchMaxRetries();
 
+        boolean error = false;
+        boolean hasTooManyRequests = false;
 
-        final Timer.Context timer = indexTimer.time();
+        final StringBuilder errorString = new StringBuilder(  );
 
-        try {
-            responses = bulkRequest.execute().actionGet( );
-        } catch ( Throwable t ) {
-            log.error( "Unable to communicate with elasticsearch", t );
-            failureMonitor.fail( "Unable to execute batch", t );
-            throw t;
-        }finally{
-            timer.stop();
-        }
+        BulkRequestBuilder toSend = bulkRequest;
 
-        failureMonitor.success();
+        for ( int attempt = 0; ; attempt++ ) {
 
-        boolean error = false;
+            final BulkResponse responses = execute( toSend );
 
-        final StringBuilder errorString = new StringBuilder(  );
+            final List<ActionRequest> requests = toSend.request().requests();
+            final BulkRequestBuilder retry = initRequest();
+
+            for ( BulkItemResponse response : responses ) {
 
-        boolean hasTooManyRequests= false;
-        for ( BulkItemResponse response : responses ) {
+                if ( !response.isFailed() ) {
+                    continue;
+                }
+
+                final boolean rejected = isRejected( response );
+
+                if ( rejected && attempt < maxRetries ) {
+                    retry.request().add( requests.get( response.getItemId() ) );
+                    continue;
+                }
 
-            if ( response.isFailed() ) {
                 // log error and continue processing
                 log.error( "Unable to index id={}, type={}, index={}, failureMessage={} ", response.getId(),
                     response.getType(), response.getIndex(),  response.getFailureMessage() );
-                //if index is overloaded on the queue fail.
-                if(response.getFailure()!=null && response.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS){
-                    hasTooManyRequests =true;
-                }
+
+                hasTooManyRequests |= rejected;
                 error = true;
 
                 errorString.append( response.getFailureMessage() ).append( "\n" );
             }
+
+            if ( retry.numberOfActions() == 0 ) {
+                break;
+            }
+
+            final long sleepTime = indexFig.getSleepTimeForQueueError() * ( attempt + 1 );
+
+            log.warn( "Elasticsearch rejected {} of {} operations, retrying them in {} ms", retry.numberOfActions(),
+                toSend.numberOfActions(), sleepTime );
+
+            sleep( sleepTime );
+
+            toSend = retry;
         }
 
         if ( error ) {
             if(hasTooManyRequests){
-                try{
-                    log.warn("Encountered Queue Capacity Exception from ElasticSearch slowing by "
-                        + indexFig.getSleepTimeForQueueError() );
-                    Thread.sleep(indexFig.getSleepTimeForQueueError());
-                }catch (Exception e){
-                    //move on
-                }
+                log.warn("Encountered Queue Capacity Exception from ElasticSearch slowing by "
+                    + indexFig.getSleepTimeForQueueError() );
+                sleep( indexFig.getSleepTimeForQueueError() );
             }
             throw new RuntimeException(
                 "Error during processing of bulk index operations one of the responses failed. \n" + errorString);
         }
     }
+
+
+    /**
+     * Execute the bulk request once we have a free slot, and feed the outcome back into our bulk sizing
+     */
+    BulkResponse execute( final BulkRequestBuilder bulkRequest ) {
+
+        try {
+            inFlightRequests.acquire();
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted waiting to send bulk request", e );
+        }
+
+        bulkSizeHistogram.update( bulkRequest.numberOfActions() );
+
+        final BulkResponse responses;
+
+        final Timer.Context timer = indexTimer.time();
+
+        try {
+            responses = bulkRequest.execute().actionGet( );
+        } catch ( Throwable t ) {
+            log.error( "Unable to communicate with elasticsearch", t );
+            failureMonitor.fail( "Unable to execute batch", t );
+            bulkRequestSizer.record( TimeUnit.NANOSECONDS.toMillis( timer.stop() ), true );
+            rejectedMeter.mark();
+            throw t;
+        }finally{
+            inFlightRequests.release();
+        }
+
+        failureMonitor.success();
+
+        boolean rejected = false;
+
+        if ( responses.hasFailures() ) {
+            for ( BulkItemResponse response : responses ) {
+                if ( response.isFailed() && isRejected( response ) ) {
+                    rejected = true;
+                    break;
+                }
+            }
+        }
+
+        bulkRequestSizer.record( TimeUnit.NANOSECONDS.toMillis( timer.stop() ), rejected );
+
+        if ( rejected ) {
+            rejectedMeter.mark();
+        }
+
+        return responses;
+    }
+
+
+    /**
+     * True if the item failed because the index was overloaded, and is safe to send again
+     */
+    private static boolean isRejected( final BulkItemResponse response ) {
+        final BulkItemResponse.Failure failure = response.getFailure();
+
+        return failure != null && ( failure.getStatus() == RestStatus.TOO_MANY_REQUESTS
+            || failure.getStatus() == RestStatus.SERVICE_UNAVAILABLE );
+    }
+
+
+    /**
+     * Back off before sending again.  If we're interrupted, give up on the request rather than sending it early
+     */
+    void sleep( final long millis ) {
+        try {
+            Thread.sleep( millis );
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted waiting to resend bulk request", e );
+        }
+    }
 }
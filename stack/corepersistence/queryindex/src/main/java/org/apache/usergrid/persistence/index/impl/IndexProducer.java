@@ -36,4 +36,11 @@ public interface IndexProducer {
     Observable<IndexOperationMessage>  put(EntityIndexBatch message);
     Observable<IndexOperationMessage>  put(IndexOperationMessage message);
 
+    /**
+     * The rate at which Elasticsearch has been rejecting bulk requests because it's overloaded, per second over the
+     * last minute
+     * @return
+     */
+    double getRejectionRate();
+
 }
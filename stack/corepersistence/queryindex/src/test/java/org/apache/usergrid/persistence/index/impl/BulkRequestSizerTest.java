@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.index.impl;
+
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class BulkRequestSizerTest {
+
+    private static final long TARGET = 1000;
+
+
+    @Test
+    public void startsAtMax() {
+        BulkRequestSizer sizer = new BulkRequestSizer( 100, TARGET );
+
+        assertEquals( 100, sizer.getSize() );
+    }
+
+
+    @Test
+    public void slowRequestHalves() {
+        BulkRequestSizer sizer = new BulkRequestSizer( 100, TARGET );
+
+        sizer.record( TARGET + 1, false );
+        assertEquals( 50, sizer.getSize() );
+
+        // on target is fast enough
+        sizer.record( TARGET, false );
+        assertEquals( 60, sizer.getSize() );
+    }
+
+
+    @Test
+    public void rejectionHalves() {
+        BulkRequestSizer sizer = new BulkRequestSizer( 100, TARGET );
+
+        sizer.record( 1, true );
+        assertEquals( 50, sizer.getSize() );
+    }
+
+
+    @Test
+    public void fastRequestsGrowToMax() {
+        BulkRequestSizer sizer = new BulkRequestSizer( 100, TARGET );
+
+        sizer.record( 1, true );
+        sizer.record( 1, true );
+        assertEquals( 25, sizer.getSize() );
+
+        // grows by a tenth of the max
+        sizer.record( 1, false );
+        assertEquals( 35, sizer.getSize() );
+
+        for ( int i = 0; i < 10; i++ ) {
+            sizer.record( 1, false );
+        }
+
+        assertEquals( 100, sizer.getSize() );
+    }
+
+
+    @Test
+    public void neverBelowMin() {
+        BulkRequestSizer sizer = new BulkRequestSizer( 100, TARGET );
+
+        for ( int i = 0; i < 10; i++ ) {
+            sizer.record( 1, true );
+        }
+
+        assertEquals( 10, sizer.getSize() );
+    }
+
+
+    @Test
+    public void smallMax() {
+        BulkRequestSizer sizer = new BulkRequestSizer( 5, TARGET );
+
+        // the min can't be above the max
+        sizer.record( 1, true );
+        assertEquals( 5, sizer.getSize() );
+
+        sizer.record( 1, false );
+        assertEquals( 5, sizer.getSize() );
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.index.impl;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.index.IndexFig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * Retrying the items of a bulk request that Elasticsearch rejected, without an Elasticsearch to send them to
+ */
+public class EsIndexProducerImplTest {
+
+    private static final long SLEEP = 10;
+    private static final int MAX_RETRIES = 2;
+
+    private Client client;
+    private TestProducer producer;
+
+
+    @Before
+    public void setupProducer() {
+        IndexFig indexFig = mock( IndexFig.class );
+        when( indexFig.getIndexBatchSize() ).thenReturn( 100 );
+        when( indexFig.getIndexBatchTargetLatency() ).thenReturn( 1000L );
+        when( indexFig.getIndexBatchMaxConcurrent() ).thenReturn( 1 );
+        when( indexFig.getIndexBatchMaxRetries() ).thenReturn( MAX_RETRIES );
+        when( indexFig.getSleepTimeForQueueError() ).thenReturn( SLEEP );
+        when( indexFig.getWriteConsistencyLevel() ).thenReturn( "one" );
+
+        client = mock( Client.class );
+        when( client.prepareBulk() ).thenAnswer( invocation -> new BulkRequestBuilder( client ) );
+
+        EsProvider provider = mock( EsProvider.class );
+        when( provider.getClient() ).thenReturn( client );
+
+        producer = new TestProducer( indexFig, provider );
+    }
+
+
+    @After
+    public void clearInterrupt() {
+        Thread.interrupted();
+    }
+
+
+    @Test
+    public void onlyRejectedItemsRetried() {
+        BulkRequestBuilder request = request( 3 );
+
+        producer.responses.add( response( RestStatus.OK, RestStatus.TOO_MANY_REQUESTS, RestStatus.OK ) );
+        producer.responses.add( response( RestStatus.OK ) );
+
+        producer.sendRequest( request );
+
+        assertEquals( 2, producer.sent.size() );
+
+        BulkRequestBuilder retry = producer.sent.get( 1 );
+        assertEquals( 1, retry.numberOfActions() );
+        assertSame( request.request().requests().get( 1 ), retry.request().requests().get( 0 ) );
+
+        assertEquals( Arrays.asList( SLEEP ), producer.sleeps );
+    }
+
+
+    @Test
+    public void backoffGrowsUntilRetriesRunOut() {
+        producer.responses.add( response( RestStatus.SERVICE_UNAVAILABLE, RestStatus.OK ) );
+        producer.responses.add( response( RestStatus.SERVICE_UNAVAILABLE ) );
+        producer.responses.add( response( RestStatus.SERVICE_UNAVAILABLE ) );
+
+        try {
+            producer.sendRequest( request( 2 ) );
+            fail( "The rejected item should fail once retries run out" );
+        }
+        catch ( RuntimeException e ) {
+            //expected
+        }
+
+        assertEquals( MAX_RETRIES + 1, producer.sent.size() );
+
+        // one backoff per retry, then one more before failing because we were rejected
+        assertEquals( Arrays.asList( SLEEP, 2 * SLEEP, SLEEP ), producer.sleeps );
+    }
+
+
+    @Test
+    public void otherFailuresNotRetried() {
+        producer.responses.add( response( RestStatus.OK, RestStatus.BAD_REQUEST ) );
+
+        try {
+            producer.sendRequest( request( 2 ) );
+            fail( "The failed item should fail the request" );
+        }
+        catch ( RuntimeException e ) {
+            //expected
+        }
+
+        assertEquals( 1, producer.sent.size() );
+        assertTrue( producer.sleeps.isEmpty() );
+    }
+
+
+    @Test
+    public void interruptedBackoffAborts() {
+        producer.responses.add( response( RestStatus.TOO_MANY_REQUESTS ) );
+        producer.responses.add( response( RestStatus.OK ) );
+
+        Thread.currentThread().interrupt();
+
+        try {
+            producer.sendRequest( request( 1 ) );
+            fail( "An interrupted backoff should abort the request" );
+        }
+        catch ( RuntimeException e ) {
+            assertTrue( e.getCause() instanceof InterruptedException );
+        }
+
+        // still interrupted, and the retry was never sent
+        assertTrue( Thread.interrupted() );
+        assertEquals( 1, producer.sent.size() );
+    }
+
+
+    private BulkRequestBuilder request( final int size ) {
+        BulkRequestBuilder request = new BulkRequestBuilder( client );
+
+        for ( int i = 0; i < size; i++ ) {
+            request.add( new IndexRequest( "index", "type", "id" + i ).source( "field", i ) );
+        }
+
+        return request;
+    }
+
+
+    private static BulkResponse response( final RestStatus... statuses ) {
+        BulkItemResponse[] items = new BulkItemResponse[statuses.length];
+
+        for ( int i = 0; i < statuses.length; i++ ) {
+            if ( statuses[i] == RestStatus.OK ) {
+                items[i] = new BulkItemResponse( i, "index", new IndexResponse( "index", "type", "id" + i, 1, true ) );
+            }
+            else {
+                items[i] = new BulkItemResponse( i, "index",
+                    new BulkItemResponse.Failure( "index", "type", "id" + i, statuses[i].name(), statuses[i] ) );
+            }
+        }
+
+        return new BulkResponse( items, 1 );
+    }
+
+
+    /**
+     * Answers bulk requests from a list of canned responses, and records backoffs while still sleeping them
+     */
+    private static final class TestProducer extends EsIndexProducerImpl {
+
+        private final Queue<BulkResponse> responses = new LinkedList<>();
+        private final List<BulkRequestBuilder> sent = new ArrayList<>();
+        private final List<Long> sleeps = new ArrayList<>();
+
+
+        private TestProducer( final IndexFig indexFig, final EsProvider provider ) {
+            super( indexFig, provider, mock( MetricsFactory.class ), indexFig );
+        }
+
+
+        @Override
+        BulkResponse execute( final BulkRequestBuilder bulkRequest ) {
+            sent.add( bulkRequest );
+            return responses.remove();
+        }
+
+
+        @Override
+        void sleep( final long millis ) {
+            sleeps.add( millis );
+            super.sleep( millis );
+        }
+    }
+}
@@ -82,4 +82,40 @@ public interface QueueFig extends GuicyFig {
     @Key( "usergrid.queue.visibilityTimeout" )
     @Default("5000") // 5 seconds
     int getVisibilityTimeout();
+
+
+    /**
+     * Use the disk backed local queue instead of the in memory one when not using Amazon queues
+     */
+    @Key( "usergrid.queue.local.persistent" )
+    @Default("false")
+    boolean isLocalQueuePersistent();
+
+    /**
+     * Directory for the disk backed local queue, defaults to a directory under java.io.tmpdir
+     */
+    @Key( "usergrid.queue.local.directory" )
+    @Default("")
+    String getLocalQueueDirectory();
+
+    /**
+     * Size (in bytes) at which a local queue log segment is sealed and a new one started
+     */
+    @Key( "usergrid.queue.local.segment.size" )
+    @Default("67108864") // 64 MB
+    long getLocalQueueSegmentSize();
+
+    /**
+     * Number of bytes written to the local queue before they are forced to disk
+     */
+    @Key( "usergrid.queue.local.sync.bytes" )
+    @Default("1048576") // 1 MB
+    long getLocalQueueSyncBytes();
+
+    /**
+     * Max time (in milliseconds) written messages and acks may wait before they are forced to disk
+     */
+    @Key( "usergrid.queue.local.sync.interval" )
+    @Default("1000")
+    long getLocalQueueSyncInterval();
 }
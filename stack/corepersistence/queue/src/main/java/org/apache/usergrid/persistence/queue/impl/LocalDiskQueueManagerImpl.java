@@ -0,0 +1,869 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.queue.impl;
+
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.persistence.queue.QueueFig;
+import org.apache.usergrid.persistence.queue.QueueManager;
+import org.apache.usergrid.persistence.queue.QueueMessage;
+import org.apache.usergrid.persistence.queue.QueueScope;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+
+/**
+ * A durable, single node queue.  Messages are appended to a log of segment files on local disk and fsync'd in
+ * batches, either once {@link QueueFig#getLocalQueueSyncBytes()} have been written or every {@link
+ * QueueFig#getLocalQueueSyncInterval()} milliseconds.  Sealed segments are memory mapped for reads.
+ *
+ * Delivery follows the SQS semantics the async event service relies on: a message that is not committed within
+ * its visibility timeout becomes visible again.  Commits are appended to a per segment ack file, and a segment is
+ * deleted once every message in it has been committed.  On restart every message that was never committed is
+ * delivered again.
+ *
+ * Each instance syncs from its own thread, {@link #close()} it once it's no longer used.
+ */
+public class LocalDiskQueueManagerImpl implements QueueManager, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger( LocalDiskQueueManagerImpl.class );
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String ACK_SUFFIX = ".ack";
+
+    /**
+     * Each record is the payload length, the crc32 of the payload, then the payload
+     */
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * How long a waiting reader sleeps before checking for expired in flight messages
+     */
+    private static final long MAX_WAIT_SLICE = 100;
+
+    private final File directory;
+    private final long maxSegmentSize;
+    private final long syncBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition messagesAvailable = lock.newCondition();
+
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+
+    /**
+     * Messages that have been delivered at least once and not yet committed, by message id
+     */
+    private final Map<String, Pending> unacked = new HashMap<>();
+
+    /**
+     * In flight messages ordered by the time they become visible again
+     */
+    private final PriorityQueue<Pending> inFlight =
+        new PriorityQueue<>( 64, ( p1, p2 ) -> Long.compare( p1.visibleAt, p2.visibleAt ) );
+
+    /**
+     * Messages whose visibility timeout expired, delivered before any new messages
+     */
+    private final Deque<Pending> redeliver = new ArrayDeque<>();
+
+    private final ScheduledExecutorService syncExecutor;
+
+    private Segment writeSegment;
+    private Segment readSegment;
+    private long readPosition;
+
+    private long pendingCount;
+    private long inFlightCount;
+    private long unsyncedBytes;
+
+
+    public LocalDiskQueueManagerImpl( final QueueScope scope, final QueueFig queueFig ) {
+        this( new File( getBaseDirectory( queueFig ), scope.getName() ), queueFig.getLocalQueueSegmentSize(),
+            queueFig.getLocalQueueSyncBytes(), queueFig.getLocalQueueSyncInterval() );
+    }
+
+
+    public LocalDiskQueueManagerImpl( final File directory, final long maxSegmentSize, final long syncBytes,
+                                      final long syncInterval ) {
+
+        Preconditions.checkArgument( maxSegmentSize > HEADER_SIZE, "maxSegmentSize must be larger than a header" );
+        Preconditions.checkArgument( maxSegmentSize <= Integer.MAX_VALUE, "maxSegmentSize must fit in a mapping" );
+        Preconditions.checkArgument( syncInterval > 0, "syncInterval must be greater than 0" );
+
+        this.directory = directory;
+        this.maxSegmentSize = maxSegmentSize;
+        this.syncBytes = syncBytes;
+
+        try {
+            open();
+        }
+        catch ( IOException e ) {
+            throw new RuntimeException( "Unable to open local queue in " + directory, e );
+        }
+
+        this.syncExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat( "queue-sync-" + directory.getName() ).setDaemon( true ).build() );
+
+        this.syncExecutor.scheduleWithFixedDelay( this::sync, syncInterval, syncInterval, TimeUnit.MILLISECONDS );
+    }
+
+
+    @Override
+    public List<QueueMessage> getMessages( final int limit, final int transactionTimeout, final int waitTime,
+                                           final Class klass ) {
+
+        final long waitUntil = System.currentTimeMillis() + waitTime;
+
+        final List<Pending> taken;
+        final List<byte[]> payloads;
+
+        lock.lock();
+        try {
+            while ( true ) {
+                final long now = System.currentTimeMillis();
+
+                final List<Pending> next = take( limit, now, transactionTimeout );
+
+                final long remaining = waitUntil - now;
+
+                if ( !next.isEmpty() || remaining <= 0 ) {
+                    taken = next;
+                    break;
+                }
+
+                messagesAvailable.await( Math.min( remaining, MAX_WAIT_SLICE ), TimeUnit.MILLISECONDS );
+            }
+
+            // read while we hold the lock, a redelivered copy committed by another reader can delete the segment
+            payloads = new ArrayList<>( taken.size() );
+
+            for ( final Pending pending : taken ) {
+                payloads.add( pending.segment.readPayload( pending.position ) );
+            }
+        }
+        catch ( InterruptedException ie ) {
+            throw new RuntimeException( ie );
+        }
+        catch ( IOException e ) {
+            throw new RuntimeException( "Unable to read from local queue in " + directory, e );
+        }
+        finally {
+            lock.unlock();
+        }
+
+        final List<QueueMessage> messages = new ArrayList<>( taken.size() );
+
+        for ( int i = 0; i < taken.size(); i++ ) {
+            final Pending pending = taken.get( i );
+            final byte[] payload = payloads.get( i );
+
+            final Object body;
+
+            try {
+                body = mapper.readValue( payload, klass );
+            }
+            catch ( IOException e ) {
+                throw new RuntimeException( "Unable to deserialize message " + pending.id + " for class " + klass, e );
+            }
+
+            final QueueMessage message = new QueueMessage( pending.id, pending.id, body, null );
+            message.setStringBody( new String( payload, StandardCharsets.UTF_8 ) );
+            messages.add( message );
+        }
+
+        return messages;
+    }
+
+
+    @Override
+    public long getQueueDepth() {
+        lock.lock();
+        try {
+            return pendingCount - inFlightCount;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+
+    @Override
+    public void commitMessage( final QueueMessage queueMessage ) {
+        commitMessages( Collections.singletonList( queueMessage ) );
+    }
+
+
+    @Override
+    public void commitMessages( final List<QueueMessage> queueMessages ) {
+
+        lock.lock();
+        try {
+            for ( final QueueMessage queueMessage : queueMessages ) {
+
+                final Pending pending = unacked.remove( queueMessage.getMessageId() );
+
+                // already committed, or delivered again after its visibility timeout and committed by another reader
+                if ( pending == null ) {
+                    continue;
+                }
+
+                if ( pending.state == State.IN_FLIGHT ) {
+                    inFlightCount--;
+                }
+
+                pending.state = State.ACKED;
+                pending.segment.ack( pending.position );
+                pendingCount--;
+
+                deleteIfDone( pending.segment );
+            }
+        }
+        catch ( IOException e ) {
+            throw new RuntimeException( "Unable to commit messages to local queue", e );
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+
+    @Override
+    public void sendMessages( final List bodies ) throws IOException {
+
+        final List<ByteBuffer> records = new ArrayList<>( bodies.size() );
+
+        for ( final Object body : bodies ) {
+            records.add( toRecord( body ) );
+        }
+
+        append( records );
+    }
+
+
+    @Override
+    public <T extends Serializable> void sendMessage( final T body ) throws IOException {
+        append( Collections.singletonList( toRecord( body ) ) );
+    }
+
+
+    @Override
+    public <T extends Serializable> void sendMessageToTopic( final T body ) throws IOException {
+        sendMessage( body );
+    }
+
+
+    @Override
+    public void deleteQueue() {
+        logger.warn( "Deleting local queue in {}", directory );
+
+        lock.lock();
+        try {
+            for ( final Segment segment : segments.values() ) {
+                segment.delete();
+            }
+
+            segments.clear();
+            unacked.clear();
+            inFlight.clear();
+            redeliver.clear();
+
+            pendingCount = 0;
+            inFlightCount = 0;
+            unsyncedBytes = 0;
+
+            open();
+        }
+        catch ( IOException e ) {
+            throw new RuntimeException( "Unable to delete local queue in " + directory, e );
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Stop syncing, force everything written to disk and close the segment files
+     */
+    @Override
+    public void close() {
+        syncExecutor.shutdown();
+
+        try {
+            if ( !syncExecutor.awaitTermination( 10, TimeUnit.SECONDS ) ) {
+                logger.warn( "Timed out waiting for local queue in {} to finish syncing", directory );
+            }
+        }
+        catch ( InterruptedException ie ) {
+            Thread.currentThread().interrupt();
+        }
+
+        sync();
+
+        lock.lock();
+        try {
+            for ( final Segment segment : segments.values() ) {
+                segment.close();
+            }
+
+            segments.clear();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Take up to limit messages, redeliveries first.  Must hold the lock
+     */
+    private List<Pending> take( final int limit, final long now, final int transactionTimeout ) throws IOException {
+
+        expireInFlight( now );
+
+        final List<Pending> taken = new ArrayList<>( Math.min( limit, 100 ) );
+
+        while ( taken.size() < limit && !redeliver.isEmpty() ) {
+            final Pending pending = redeliver.poll();
+            deliver( pending, now + transactionTimeout );
+            taken.add( pending );
+        }
+
+        while ( taken.size() < limit ) {
+            final Pending pending = readNext();
+
+            if ( pending == null ) {
+                break;
+            }
+
+            unacked.put( pending.id, pending );
+            deliver( pending, now + transactionTimeout );
+            taken.add( pending );
+        }
+
+        return taken;
+    }
+
+
+    private void deliver( final Pending pending, final long visibleAt ) {
+        pending.state = State.IN_FLIGHT;
+        pending.visibleAt = visibleAt;
+        inFlight.add( pending );
+        inFlightCount++;
+    }
+
+
+    /**
+     * Move every in flight message past its visibility timeout to the redelivery queue
+     */
+    private void expireInFlight( final long now ) {
+        while ( !inFlight.isEmpty() && inFlight.peek().visibleAt <= now ) {
+            final Pending pending = inFlight.poll();
+
+            // committed while in flight, nothing to do
+            if ( pending.state != State.IN_FLIGHT ) {
+                continue;
+            }
+
+            pending.state = State.WAITING;
+            inFlightCount--;
+            redeliver.add( pending );
+        }
+
+        // drop anything committed while waiting for redelivery
+        redeliver.removeIf( pending -> pending.state == State.ACKED );
+    }
+
+
+    /**
+     * Read the next never delivered message from the log, or null if we're caught up with the writer
+     */
+    private Pending readNext() throws IOException {
+        while ( readSegment != null ) {
+
+            if ( readPosition < readSegment.end ) {
+                final long position = readPosition;
+                final int length = readSegment.readLength( position );
+
+                readPosition += HEADER_SIZE + length;
+
+                // committed before we restarted
+                if ( readSegment.recoveredAcks.contains( position ) ) {
+                    continue;
+                }
+
+                return new Pending( readSegment, position );
+            }
+
+            if ( readSegment == writeSegment ) {
+                return null;
+            }
+
+            final Segment finished = readSegment;
+            finished.recoveredAcks = Collections.emptySet();
+
+            readSegment = segments.higherEntry( finished.id ).getValue();
+            readPosition = 0;
+
+            deleteIfDone( finished );
+        }
+
+        return null;
+    }
+
+
+    private void append( final List<ByteBuffer> records ) throws IOException {
+
+        boolean syncNeeded = false;
+
+        lock.lock();
+        try {
+            for ( final ByteBuffer record : records ) {
+
+                if ( writeSegment.records > 0 && writeSegment.end + record.remaining() > maxSegmentSize ) {
+                    roll();
+                }
+
+                unsyncedBytes += writeSegment.append( record );
+                pendingCount++;
+            }
+
+            if ( unsyncedBytes >= syncBytes ) {
+                unsyncedBytes = 0;
+                syncNeeded = true;
+            }
+
+            messagesAvailable.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+
+        if ( syncNeeded ) {
+            sync();
+        }
+    }
+
+
+    /**
+     * Seal the current write segment and start a new one.  Must hold the lock
+     */
+    private void roll() throws IOException {
+        final Segment sealed = writeSegment;
+        sealed.seal();
+
+        writeSegment = Segment.create( directory, sealed.id + 1 );
+        segments.put( writeSegment.id, writeSegment );
+    }
+
+
+    /**
+     * Remove the segment if it has been fully read and every message in it committed.  Must hold the lock
+     */
+    private void deleteIfDone( final Segment segment ) {
+        if ( segment == writeSegment || segment.id >= readSegment.id || segment.acked < segment.records ) {
+            return;
+        }
+
+        segments.remove( segment.id );
+        segment.delete();
+    }
+
+
+    /**
+     * Force written messages and acks to disk
+     */
+    private void sync() {
+        final List<Segment> toSync;
+
+        lock.lock();
+        try {
+            toSync = new ArrayList<>( segments.values() );
+            unsyncedBytes = 0;
+        }
+        finally {
+            lock.unlock();
+        }
+
+        for ( final Segment segment : toSync ) {
+            try {
+                segment.sync();
+            }
+            catch ( ClosedChannelException cce ) {
+                //deleted while we were syncing, nothing left to do
+            }
+            catch ( IOException e ) {
+                logger.error( "Unable to sync local queue segment {}", segment.id, e );
+            }
+        }
+    }
+
+
+    /**
+     * Load the segments on disk, or start a new log.  Must hold the lock or be constructing
+     */
+    private void open() throws IOException {
+
+        if ( !directory.exists() && !directory.mkdirs() ) {
+            throw new IOException( "Unable to create directory " + directory );
+        }
+
+        final File[] files = directory.listFiles( ( dir, name ) -> name.endsWith( SEGMENT_SUFFIX ) );
+
+        Arrays.sort( files );
+
+        for ( final File file : files ) {
+            final String name = file.getName();
+            final long id = Long.parseLong( name.substring( 0, name.length() - SEGMENT_SUFFIX.length() ) );
+
+            final Segment segment = Segment.recover( directory, id );
+
+            segments.put( id, segment );
+            pendingCount += segment.records - segment.acked;
+        }
+
+        if ( segments.isEmpty() ) {
+            segments.put( 0L, Segment.create( directory, 0 ) );
+        }
+
+        writeSegment = segments.lastEntry().getValue();
+
+        for ( final Segment segment : segments.headMap( writeSegment.id ).values() ) {
+            segment.seal();
+        }
+
+        readSegment = segments.firstEntry().getValue();
+        readPosition = 0;
+
+        if ( pendingCount > 0 ) {
+            logger.info( "Recovered {} uncommitted messages from local queue in {}", pendingCount, directory );
+        }
+    }
+
+
+    private static ByteBuffer toRecord( final Object body ) throws IOException {
+        final byte[] payload = mapper.writeValueAsBytes( body );
+
+        final CRC32 crc = new CRC32();
+        crc.update( payload );
+
+        final ByteBuffer record = ByteBuffer.allocate( HEADER_SIZE + payload.length );
+        record.putInt( payload.length );
+        record.putInt( ( int ) crc.getValue() );
+        record.put( payload );
+        record.flip();
+
+        return record;
+    }
+
+
+    private static File getBaseDirectory( final QueueFig queueFig ) {
+        final String configured = queueFig.getLocalQueueDirectory();
+
+        if ( configured == null || configured.isEmpty() ) {
+            return new File( System.getProperty( "java.io.tmpdir" ), "usergrid-queues" );
+        }
+
+        return new File( configured );
+    }
+
+
+    private enum State {
+        IN_FLIGHT,
+        WAITING,
+        ACKED
+    }
+
+
+    /**
+     * A delivered but uncommitted message
+     */
+    private static final class Pending {
+        private final Segment segment;
+        private final long position;
+        private final String id;
+
+        private State state;
+        private long visibleAt;
+
+
+        private Pending( final Segment segment, final long position ) {
+            this.segment = segment;
+            this.position = position;
+            this.id = segment.id + ":" + position;
+        }
+    }
+
+
+    /**
+     * A single log file and its ack file
+     */
+    private static final class Segment {
+
+        private final long id;
+        private final File logFile;
+        private final File ackFile;
+        private final FileChannel log;
+        private final FileChannel acks;
+
+        /**
+         * Positions committed before the last restart, only needed until the reader passes this segment
+         */
+        private Set<Long> recoveredAcks = Collections.emptySet();
+
+        private long end;
+        private long records;
+        private long acked;
+
+        private volatile MappedByteBuffer mapped;
+
+
+        private Segment( final File directory, final long id ) throws IOException {
+            this.id = id;
+
+            final String name = String.format( "%020d", id );
+
+            this.logFile = new File( directory, name + SEGMENT_SUFFIX );
+            this.ackFile = new File( directory, name + ACK_SUFFIX );
+            this.log = new RandomAccessFile( logFile, "rw" ).getChannel();
+            this.acks = new RandomAccessFile( ackFile, "rw" ).getChannel();
+        }
+
+
+        private static Segment create( final File directory, final long id ) throws IOException {
+            return new Segment( directory, id );
+        }
+
+
+        /**
+         * Open an existing segment, dropping any partially written record at its tail
+         */
+        private static Segment recover( final File directory, final long id ) throws IOException {
+            final Segment segment = new Segment( directory, id );
+
+            final long size = segment.log.size();
+            final ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+
+            long position = 0;
+
+            while ( position + HEADER_SIZE <= size ) {
+                header.clear();
+                readFully( segment.log, header, position );
+                header.flip();
+
+                final int length = header.getInt();
+                final int checksum = header.getInt();
+
+                if ( length < 0 || position + HEADER_SIZE + length > size ) {
+                    break;
+                }
+
+                final ByteBuffer payload = ByteBuffer.allocate( length );
+                readFully( segment.log, payload, position + HEADER_SIZE );
+
+                final CRC32 crc = new CRC32();
+                crc.update( payload.array() );
+
+                if ( ( int ) crc.getValue() != checksum ) {
+                    break;
+                }
+
+                position += HEADER_SIZE + length;
+                segment.records++;
+            }
+
+            if ( position < size ) {
+                logger.warn( "Truncating {} bytes of partially written messages from {}", size - position,
+                    segment.logFile );
+                segment.log.truncate( position );
+            }
+
+            segment.end = position;
+
+            // a torn trailing ack is simply ignored, the message will be delivered again
+            final long ackCount = segment.acks.size() / 8;
+            final ByteBuffer ackBuffer = ByteBuffer.allocate( ( int ) ( ackCount * 8 ) );
+            readFully( segment.acks, ackBuffer, 0 );
+            ackBuffer.flip();
+
+            final Set<Long> ackedPositions = new HashSet<>( ( int ) ackCount );
+
+            while ( ackBuffer.remaining() >= 8 ) {
+                ackedPositions.add( ackBuffer.getLong() );
+            }
+
+            segment.acks.truncate( ackCount * 8 );
+            segment.acks.position( ackCount * 8 );
+
+            segment.recoveredAcks = ackedPositions;
+            segment.acked = ackedPositions.size();
+
+            return segment;
+        }
+
+
+        private long append( final ByteBuffer record ) throws IOException {
+            final int length = record.remaining();
+
+            while ( record.hasRemaining() ) {
+                end += log.write( record, end );
+            }
+
+            records++;
+
+            return length;
+        }
+
+
+        private void ack( final long position ) throws IOException {
+            final ByteBuffer buffer = ByteBuffer.allocate( 8 );
+            buffer.putLong( position );
+            buffer.flip();
+
+            while ( buffer.hasRemaining() ) {
+                acks.write( buffer );
+            }
+
+            acked++;
+        }
+
+
+        /**
+         * No more writes will be made to this segment, flush and map it for reading
+         */
+        private void seal() throws IOException {
+            log.force( false );
+            mapped = log.map( FileChannel.MapMode.READ_ONLY, 0, end );
+        }
+
+
+        private int readLength( final long position ) throws IOException {
+            final MappedByteBuffer map = mapped;
+
+            if ( map != null ) {
+                return map.getInt( ( int ) position );
+            }
+
+            final ByteBuffer header = ByteBuffer.allocate( 4 );
+            readFully( log, header, position );
+            header.flip();
+
+            return header.getInt();
+        }
+
+
+        private byte[] readPayload( final long position ) throws IOException {
+            final int length = readLength( position );
+            final byte[] payload = new byte[length];
+
+            final MappedByteBuffer map = mapped;
+
+            if ( map != null ) {
+                final ByteBuffer view = map.duplicate();
+                view.position( ( int ) position + HEADER_SIZE );
+                view.get( payload );
+                return payload;
+            }
+
+            readFully( log, ByteBuffer.wrap( payload ), position + HEADER_SIZE );
+
+            return payload;
+        }
+
+
+        private void sync() throws IOException {
+            log.force( false );
+            acks.force( false );
+        }
+
+
+        private void close() {
+            try {
+                log.close();
+                acks.close();
+            }
+            catch ( IOException e ) {
+                logger.warn( "Unable to close local queue segment {}", id, e );
+            }
+
+            mapped = null;
+        }
+
+
+        private void delete() {
+            close();
+
+            if ( !logFile.delete() || !ackFile.delete() ) {
+                logger.warn( "Unable to delete local queue segment {}", logFile );
+            }
+        }
+
+
+        private static void readFully( final FileChannel channel, final ByteBuffer buffer, final long position )
+            throws IOException {
+
+            long offset = position;
+
+            while ( buffer.hasRemaining() ) {
+                final int read = channel.read( buffer, offset );
+
+                if ( read < 0 ) {
+                    throw new IOException( "Unexpected end of file at " + offset );
+                }
+
+                offset += read;
+            }
+        }
+    }
+}
@@ -48,7 +48,8 @@ public class QueueManagerFactoryImpl implements QueueManagerFactory {
         if(queueFig.overrideQueueForDefault()){
             QueueManager manager = defaultManager.get(scope.getName());
             if(manager==null){
-                manager = new LocalQueueManager();
+                manager = queueFig.isLocalQueuePersistent() ? new LocalDiskQueueManagerImpl( scope, queueFig )
+                    : new LocalQueueManager();
                 defaultManager.put(scope.getName(),manager);
             }
             return manager;
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.queue.impl;
+
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.apache.usergrid.persistence.queue.QueueMessage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class LocalDiskQueueManagerImplTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void sendAndCommit() throws Exception {
+        final LocalDiskQueueManagerImpl qm = new LocalDiskQueueManagerImpl( folder.getRoot(), 1024, 1024, 100 );
+
+        qm.sendMessage( "bodytest" );
+        assertEquals( 1, qm.getQueueDepth() );
+
+        List<QueueMessage> messages = qm.getMessages( 10, 5000, 0, String.class );
+        assertEquals( 1, messages.size() );
+        assertEquals( "bodytest", messages.get( 0 ).getBody() );
+        assertEquals( 0, qm.getQueueDepth() );
+
+        qm.commitMessages( messages );
+
+        messages = qm.getMessages( 10, 5000, 0, String.class );
+        assertTrue( messages.isEmpty() );
+        assertEquals( 0, qm.getQueueDepth() );
+
+        qm.close();
+    }
+
+
+    @Test
+    public void visibilityTimeout() throws Exception {
+        final LocalDiskQueueManagerImpl qm = new LocalDiskQueueManagerImpl( folder.getRoot(), 1024, 1024, 100 );
+
+        qm.sendMessage( "bodytest" );
+
+        List<QueueMessage> messages = qm.getMessages( 10, 100, 0, String.class );
+        assertEquals( 1, messages.size() );
+
+        //not committed, so it should come back once the timeout passes
+        messages = qm.getMessages( 10, 5000, 1000, String.class );
+        assertEquals( 1, messages.size() );
+        assertEquals( "bodytest", messages.get( 0 ).getBody() );
+
+        qm.commitMessages( messages );
+        assertEquals( 0, qm.getQueueDepth() );
+
+        qm.close();
+    }
+
+
+    @Test
+    public void uncommittedSurviveRestart() throws Exception {
+        final File dir = folder.getRoot();
+
+        // small segments so we roll several times
+        final LocalDiskQueueManagerImpl qm = new LocalDiskQueueManagerImpl( dir, 256, 1024, 100 );
+
+        final List<String> bodies = new ArrayList<>();
+        for ( int i = 0; i < 100; i++ ) {
+            bodies.add( "message" + i );
+        }
+        qm.sendMessages( bodies );
+
+        final List<QueueMessage> messages = qm.getMessages( 50, 5000, 0, String.class );
+        assertEquals( 50, messages.size() );
+        qm.commitMessages( messages );
+        qm.close();
+
+        final LocalDiskQueueManagerImpl restarted = new LocalDiskQueueManagerImpl( dir, 256, 1024, 100 );
+        assertEquals( 50, restarted.getQueueDepth() );
+
+        final List<QueueMessage> remaining = restarted.getMessages( 100, 5000, 0, String.class );
+        assertEquals( 50, remaining.size() );
+
+        for ( int i = 0; i < 50; i++ ) {
+            assertEquals( "message" + ( i + 50 ), remaining.get( i ).getBody() );
+        }
+
+        restarted.commitMessages( remaining );
+        assertEquals( 0, restarted.getQueueDepth() );
+
+        restarted.close();
+    }
+
+
+    @Test
+    public void closeStopsSyncThread() throws Exception {
+        final File dir = folder.newFolder( "closed" );
+
+        final LocalDiskQueueManagerImpl qm = new LocalDiskQueueManagerImpl( dir, 1024, 1024, 100 );
+        qm.sendMessage( "bodytest" );
+
+        assertTrue( syncThreadAlive( dir ) );
+
+        qm.close();
+
+        final long waitUntil = System.currentTimeMillis() + 5000;
+
+        while ( syncThreadAlive( dir ) && System.currentTimeMillis() < waitUntil ) {
+            Thread.sleep( 10 );
+        }
+
+        assertFalse( syncThreadAlive( dir ) );
+
+        //the unsynced message is still on disk
+        final LocalDiskQueueManagerImpl restarted = new LocalDiskQueueManagerImpl( dir, 1024, 1024, 100 );
+        assertEquals( 1, restarted.getQueueDepth() );
+        restarted.close();
+    }
+
+
+    private boolean syncThreadAlive( final File dir ) {
+        for ( final Thread thread : Thread.getAllStackTraces().keySet() ) {
+            if ( thread.isAlive() && thread.getName().equals( "queue-sync-" + dir.getName() ) ) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -144,10 +144,12 @@ public class Server implements org.springframework.context.ApplicationContextAwa
 
         java.util.Map<String, String> initParameters = new java.util.HashMap<String, String>();
         initParameters.put( "targetFilterLifecycle", "true" );
-        handler.addFilter( new org.apache.usergrid.rest.filters.ContentTypeFilter(), "contentTypeFilter", java.util.Collections.EMPTY_MAP );
+        handler.addFilter( new org.apache.usergrid.rest.filters.ContentTypeFilter(), "contentTypeFilter", java.util.Collections.<String, String>emptyMap() );
 
         handler.addFilter( new org.springframework.web.filter.DelegatingFilterProxy(), "shiroFilter", initParameters );
 
+        handler.addFilter( new org.apache.usergrid.rest.filters.CompressionFilter(), "compressionFilter", java.util.Collections.<String, String>emptyMap() );
+
         handler.addFilter( new org.apache.usergrid.rest.SwaggerServlet(), "swagger", null );
 
         // handler.addFilter(new SpringServlet(), "spring", null);
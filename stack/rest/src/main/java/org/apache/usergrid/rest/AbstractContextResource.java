@@ -38,6 +38,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.container.ResourceContext;
 import javax.ws.rs.core.*;
 import javax.xml.ws.spi.http.HttpContext;
@@ -76,6 +77,9 @@ public abstract class AbstractContextResource {
     @Context
     protected HttpServletRequest httpServletRequest;
 
+    @Context
+    protected HttpServletResponse httpServletResponse;
+
     @Context
     protected ResourceContext resourceContext;
 
@@ -25,18 +25,28 @@ import org.apache.usergrid.management.OrganizationConfig;
 import org.apache.usergrid.management.OrganizationConfigProps;
 import org.apache.usergrid.persistence.Entity;
 import org.apache.usergrid.persistence.EntityManager;
+import org.apache.usergrid.persistence.EntityRef;
 import org.apache.usergrid.persistence.Query;
 import org.apache.usergrid.persistence.QueryUtils;
+import org.apache.usergrid.persistence.Schema;
+import org.apache.usergrid.persistence.SimpleEntityRef;
+import org.apache.usergrid.persistence.entities.Application;
 import org.apache.usergrid.rest.AbstractContextResource;
 import org.apache.usergrid.rest.ApiResponse;
 import org.apache.usergrid.rest.RootResource;
 import org.apache.usergrid.rest.applications.assets.AssetsResource;
+import org.apache.usergrid.rest.applications.assets.FileRangeOutput;
+import org.apache.usergrid.rest.exceptions.NotModifiedException;
+import org.apache.usergrid.rest.filters.CompressionFilter;
+import org.apache.usergrid.rest.filters.EntityTagFilter;
 import org.apache.usergrid.rest.security.annotations.RequireApplicationAccess;
 import org.apache.usergrid.security.oauth.AccessInfo;
+import org.apache.usergrid.security.shiro.utils.SubjectUtils;
 import org.apache.usergrid.services.*;
 import org.apache.usergrid.services.assets.data.AssetUtils;
 import org.apache.usergrid.services.assets.data.AwsSdkS3BinaryStore;
 import org.apache.usergrid.services.assets.data.BinaryStore;
+import org.apache.usergrid.services.assets.data.ByteRange;
 import org.apache.usergrid.services.assets.data.LocalFileBinaryStore;
 import org.apache.usergrid.services.exceptions.AwsPropertiesNotFoundException;
 import org.apache.usergrid.utils.InflectionUtils;
@@ -53,6 +63,8 @@ import org.springframework.stereotype.Component;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.*;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
 
@@ -342,6 +354,20 @@ public class ServiceResource extends AbstractContextResource {
             logger.debug( "ServiceResource.executeGet" );
         }
 
+        // check permissions and look up the version before the entity is read, a 304 never loads the entity and a
+        // concurrent write can only make the tag older
+        EntityTag entityTag = getEntityTag( ui );
+
+        if ( entityTag != null ) {
+            Response.ResponseBuilder notModified = request.evaluatePreconditions( entityTag );
+
+            if ( notModified != null && notModified.build().getStatus() == Response.Status.NOT_MODIFIED.getStatusCode() ) {
+                throw new NotModifiedException( entityTag );
+            }
+
+            httpServletRequest.setAttribute( EntityTagFilter.ENTITY_TAG, entityTag );
+        }
+
         ApiResponse response = createApiResponse();
 
         response.setAction( "get" );
@@ -354,6 +380,64 @@ public class ServiceResource extends AbstractContextResource {
     }
 
 
+    /**
+     * Get a strong ETag for a GET of a single entity by uuid or name, built from the entity's latest version.  Only
+     * the version is read, so a matching If-None-Match is answered without loading or serializing the entity.  The
+     * caller's read permission on the entity is checked first, the same check the collection service makes, so a 304
+     * never reveals an entity the caller can't read.
+     *
+     * @return the tag, or null if the request isn't for a single entity or the entity doesn't exist
+     */
+    protected EntityTag getEntityTag( UriInfo ui ) throws Exception {
+
+        List<ServiceParameter> parameters = getServiceParameters();
+
+        if ( parameters.size() != 2 || Query.fromQueryParams( ui.getQueryParameters() ) != null ) {
+            return null;
+        }
+
+        ServiceParameter collection = parameters.get( 0 );
+        ServiceParameter item = parameters.get( 1 );
+
+        if ( !collection.isName() || !InflectionUtils.isPlural( collection.getName() ) ) {
+            return null;
+        }
+
+        String entityType =
+                Schema.getDefaultSchema().getCollectionType( Application.ENTITY_TYPE, collection.getName() );
+
+        if ( entityType == null ) {
+            return null;
+        }
+
+        EntityManager em = services.getEntityManager();
+
+        EntityRef entityRef = null;
+
+        if ( item.isId() ) {
+            entityRef = new SimpleEntityRef( entityType, item.getId() );
+        }
+        else if ( item.isName() ) {
+            entityRef = em.getAlias( entityType, item.getName() );
+        }
+
+        if ( entityRef == null ) {
+            return null;
+        }
+
+        SubjectUtils.checkPermission( SubjectUtils.getPermissionFromPath( services.getApplicationId(), "get",
+                "/" + InflectionUtils.pluralize( collection.getName() ) + "/" + entityRef.getUuid() ) );
+
+        UUID version = em.getEntityVersion( entityRef );
+
+        if ( version == null ) {
+            return null;
+        }
+
+        return new EntityTag( version.toString() );
+    }
+
+
     @SuppressWarnings({ "unchecked" })
     public ServicePayload getPayload( Object json ) {
         ServicePayload payload = null;
@@ -784,6 +868,15 @@ public class ServiceResource extends AbstractContextResource {
 
         Map<String, Object> fileMetadata = AssetUtils.getFileMetadata( entity );
 
+        // answer a matching If-None-Match before reading anything from the binary store
+        if ( fileMetadata.get( AssetUtils.E_TAG ) != null ) {
+            EntityTag entityTag = new EntityTag( ( String ) fileMetadata.get( AssetUtils.E_TAG ) );
+            Response.ResponseBuilder notModified = request.evaluatePreconditions( entityTag );
+            if ( notModified != null ) {
+                return notModified.build();
+            }
+        }
+
         // return a 302 if not modified
         Date modified = AssetUtils.fromIfModifiedSince( modifiedSince );
         if ( modified != null ) {
@@ -793,6 +886,11 @@ public class ServiceResource extends AbstractContextResource {
             }
         }
 
+        // local assets are sent straight from their file
+        if ( binaryStore instanceof LocalFileBinaryStore ) {
+            return localAssetResponse( ( LocalFileBinaryStore ) binaryStore, entity, fileMetadata, rangeHeader );
+        }
+
         boolean range = StringUtils.isNotBlank( rangeHeader );
         long start = 0, end = 0, contentLength = 0;
         InputStream inputStream;
@@ -865,4 +963,125 @@ public class ServiceResource extends AbstractContextResource {
 
         return responseBuilder.build();
     }
+
+
+    /**
+     * Send an asset of the local binary store.  The stored gzip copy is sent when the client accepts it, otherwise
+     * the file is sent straight from its channel, honoring both single and multiple byte ranges.  The gzip copy is
+     * a different representation, so it gets a weak tag, which still answers If-None-Match but never If-Range.
+     */
+    protected Response localAssetResponse( LocalFileBinaryStore store, Entity entity, Map<String, Object> fileMetadata,
+                                           String rangeHeader ) throws IOException {
+
+        String contentType = ( String ) fileMetadata.get( AssetUtils.CONTENT_TYPE );
+        Response.ResponseBuilder responseBuilder;
+
+        InputStream compressed = StringUtils.isBlank( rangeHeader ) ? readPrecompressed( store, entity ) : null;
+
+        if ( compressed != null ) {
+            responseBuilder = Response.ok( compressed ).type( contentType )
+                    .header( "Content-Encoding", CompressionFilter.GZIP );
+        }
+        else {
+            File file = store.getFile( getApplicationId(), entity );
+            if ( file == null ) {
+                return Response.status( Response.Status.NOT_FOUND ).build();
+            }
+
+            long length = file.length();
+
+            List<ByteRange> ranges = null;
+            if ( StringUtils.isNotBlank( rangeHeader ) && ifRangeMatches( fileMetadata ) ) {
+                ranges = ByteRange.parse( rangeHeader, length );
+            }
+
+            FileRangeOutput output;
+
+            if ( ranges == null ) {
+                output = new FileRangeOutput( file, Collections.singletonList( new ByteRange( 0, length - 1 ) ),
+                        contentType, length, null );
+                responseBuilder = Response.ok( output ).type( contentType );
+            }
+            else if ( ranges.isEmpty() ) {
+                return Response.status( Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE )
+                        .header( "Content-Range", "bytes */" + length ).build();
+            }
+            else if ( ranges.size() == 1 ) {
+                output = new FileRangeOutput( file, ranges, contentType, length, null );
+                responseBuilder = Response.status( Response.Status.PARTIAL_CONTENT ).entity( output ).type( contentType )
+                        .header( "Content-Range", ranges.get( 0 ).toContentRange( length ) );
+            }
+            else {
+                String boundary = UUID.randomUUID().toString().replace( "-", "" );
+                output = new FileRangeOutput( file, ranges, contentType, length, boundary );
+                responseBuilder = Response.status( Response.Status.PARTIAL_CONTENT ).entity( output )
+                        .type( "multipart/byteranges; boundary=" + boundary );
+            }
+
+            responseBuilder.header( HttpHeaders.CONTENT_LENGTH, output.getContentLength() )
+                    .header( "Accept-Ranges", "bytes" );
+        }
+
+        Long lastModified = ( Long ) fileMetadata.get( AssetUtils.LAST_MODIFIED );
+        if ( lastModified != null ) {
+            responseBuilder.lastModified( new Date( lastModified ) );
+        }
+
+        if ( fileMetadata.get( AssetUtils.E_TAG ) != null ) {
+            responseBuilder.tag( new EntityTag( ( String ) fileMetadata.get( AssetUtils.E_TAG ), compressed != null ) );
+        }
+
+        // which representation is sent depends on the header, the compression filter may have said so already
+        if ( !httpServletResponse.containsHeader( "Vary" ) ) {
+            responseBuilder.header( "Vary", HttpHeaders.ACCEPT_ENCODING );
+        }
+
+        return responseBuilder.build();
+    }
+
+
+    /**
+     * A Range request with an If-Range that no longer matches the asset gets the whole asset instead of the ranges
+     */
+    private boolean ifRangeMatches( Map<String, Object> fileMetadata ) {
+        String ifRange = httpServletRequest.getHeader( "If-Range" );
+        if ( StringUtils.isBlank( ifRange ) ) {
+            return true;
+        }
+
+        ifRange = ifRange.trim();
+
+        if ( ifRange.startsWith( "\"" ) || ifRange.startsWith( "W/" ) ) {
+            Object eTag = fileMetadata.get( AssetUtils.E_TAG );
+            return eTag != null && ifRange.equals( "\"" + eTag + "\"" );
+        }
+
+        Date date = AssetUtils.fromIfModifiedSince( ifRange );
+        Long lastModified = ( Long ) fileMetadata.get( AssetUtils.LAST_MODIFIED );
+
+        // http dates only have second precision
+        return date != null && lastModified != null && lastModified / 1000 == date.getTime() / 1000;
+    }
+
+
+    /**
+     * Read the gzip copy of a local asset if the client prefers gzip and one was stored, so the compression filter
+     * doesn't have to compress it again
+     *
+     * @return the compressed stream, or null if the asset should be read as is
+     */
+    protected InputStream readPrecompressed( BinaryStore store, Entity entity ) throws IOException {
+        if ( !( store instanceof LocalFileBinaryStore ) ) {
+            return null;
+        }
+
+        String encoding =
+                CompressionFilter.negotiateEncoding( httpServletRequest.getHeader( HttpHeaders.ACCEPT_ENCODING ) );
+
+        if ( !CompressionFilter.GZIP.equals( encoding ) ) {
+            return null;
+        }
+
+        return ( ( LocalFileBinaryStore ) store ).readPrecompressed( getApplicationId(), entity );
+    }
 }
@@ -196,6 +196,15 @@ public class AssetsResource extends ServiceResource {
         Asset asset = em.get( assetId, Asset.class );
         Map<String, Object> fileMetadata = AssetUtils.getFileMetadata( asset );
 
+        // answer a matching If-None-Match before reading anything from the binary store
+        if ( fileMetadata.get( AssetUtils.E_TAG ) != null ) {
+            EntityTag entityTag = new EntityTag( ( String ) fileMetadata.get( AssetUtils.E_TAG ) );
+            Response.ResponseBuilder notModified = request.evaluatePreconditions( entityTag );
+            if ( notModified != null ) {
+                return notModified.build();
+            }
+        }
+
         // todo: use fileMetadata
         // return a 302 if not modified
         Date moded = AssetUtils.fromIfModifiedSince( modifiedSince );
@@ -205,6 +214,11 @@ public class AssetsResource extends ServiceResource {
             }
         }
 
+        // local assets are sent straight from their file
+        if ( binaryStore instanceof LocalFileBinaryStore ) {
+            return localAssetResponse( ( LocalFileBinaryStore ) binaryStore, asset, fileMetadata, range );
+        }
+
         InputStream is;
         if ( StringUtils.isBlank( range ) ) {
             is = binaryStore.read( getApplicationId(), asset );
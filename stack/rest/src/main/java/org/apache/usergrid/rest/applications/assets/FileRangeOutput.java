@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.rest.applications.assets;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.usergrid.services.assets.data.ByteRange;
+import org.apache.usergrid.services.assets.data.LocalFileBinaryStore;
+
+
+/**
+ * Writes ranges of a local asset file straight from its channel.  A single range is written as is, several ranges
+ * are written as a multipart/byteranges body with the given boundary.  The file is only opened once the body is
+ * written, so a response that is never written, like the answer to a HEAD, holds no file open.
+ */
+public class FileRangeOutput implements StreamingOutput {
+
+    private static final String CRLF = "\r\n";
+
+    private final File file;
+    private final List<ByteRange> ranges;
+    private final String contentType;
+    private final long assetLength;
+    private final String boundary;
+
+
+    public FileRangeOutput( File file, List<ByteRange> ranges, String contentType, long assetLength,
+                            String boundary ) {
+        this.file = file;
+        this.ranges = ranges;
+        this.contentType = contentType;
+        this.assetLength = assetLength;
+        this.boundary = boundary;
+    }
+
+
+    /** The length of the body, so it can be sent as the Content-Length */
+    public long getContentLength() {
+        if ( ranges.size() == 1 ) {
+            return ranges.get( 0 ).getLength();
+        }
+
+        long length = 0;
+        for ( ByteRange range : ranges ) {
+            length += partHeader( range ).length + range.getLength() + CRLF.length();
+        }
+        return length + closeDelimiter().length;
+    }
+
+
+    @Override
+    public void write( OutputStream output ) throws IOException {
+        try ( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+            WritableByteChannel target = Channels.newChannel( output );
+
+            if ( ranges.size() == 1 ) {
+                ByteRange range = ranges.get( 0 );
+                LocalFileBinaryStore.transfer( channel, range.getStart(), range.getLength(), target );
+                return;
+            }
+
+            for ( ByteRange range : ranges ) {
+                output.write( partHeader( range ) );
+                output.flush();
+                LocalFileBinaryStore.transfer( channel, range.getStart(), range.getLength(), target );
+                output.write( CRLF.getBytes( StandardCharsets.US_ASCII ) );
+            }
+
+            output.write( closeDelimiter() );
+        }
+    }
+
+
+    private byte[] partHeader( ByteRange range ) {
+        return ( "--" + boundary + CRLF + "Content-Type: " + contentType + CRLF + "Content-Range: " + range
+                .toContentRange( assetLength ) + CRLF + CRLF ).getBytes( StandardCharsets.US_ASCII );
+    }
+
+
+    private byte[] closeDelimiter() {
+        return ( "--" + boundary + "--" + CRLF ).getBytes( StandardCharsets.US_ASCII );
+    }
+}
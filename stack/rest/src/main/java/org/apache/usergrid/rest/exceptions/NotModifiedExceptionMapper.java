@@ -14,13 +14,18 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package org.apache.usergrid.management.export;
+package org.apache.usergrid.rest.exceptions;
 
 
-import java.io.File;
-import java.util.Map;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
 
 
-public interface S3Export {
-    void copyToS3( File ephemeral,Map<String,Object> exportInfo, String filename );
+@Provider
+public class NotModifiedExceptionMapper extends AbstractExceptionMapper<NotModifiedException> {
+
+    @Override
+    public Response toResponse( NotModifiedException e ) {
+        return Response.notModified( e.getEntityTag() ).build();
+    }
 }
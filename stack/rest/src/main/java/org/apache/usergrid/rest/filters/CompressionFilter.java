@@ -0,0 +1,593 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.rest.filters;
+
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.core.HttpHeaders;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.services.assets.data.AssetUtils;
+import org.apache.usergrid.utils.StringUtils;
+
+
+/**
+ * Compresses responses with gzip or deflate when the client accepts it.  The first minSize bytes of a response are
+ * held back, and only responses that grow past them, with a compressible content type and no encoding of their own,
+ * are compressed.  Compression is streamed, so a flush from the resource still reaches the client.
+ *
+ * Init params: minSize (bytes, default 1024) and compressedContentTypes (comma separated content type prefixes to
+ * leave alone, defaults to {@link AssetUtils#COMPRESSED_CONTENT_TYPES}).
+ */
+public class CompressionFilter implements Filter {
+
+    private static final Logger logger = LoggerFactory.getLogger( CompressionFilter.class );
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    public static final int DEFAULT_MIN_SIZE = 1024;
+
+    private static final int DEFLATE_BUFFER_SIZE = 8192;
+
+    /**
+     * A request thread only compresses one response at a time, so deflaters and their buffers are kept per thread
+     * rather than allocated for every response
+     */
+    private static final ThreadLocal<DeflaterPool> DEFLATERS = new ThreadLocal<DeflaterPool>() {
+        @Override
+        protected DeflaterPool initialValue() {
+            return new DeflaterPool();
+        }
+    };
+
+    private int minSize = DEFAULT_MIN_SIZE;
+
+    private String[] compressedContentTypes = AssetUtils.COMPRESSED_CONTENT_TYPES;
+
+
+    @Override
+    public void init( FilterConfig filterConfig ) throws ServletException {
+        String minSizeParam = filterConfig.getInitParameter( "minSize" );
+        if ( StringUtils.isNumeric( minSizeParam ) && !minSizeParam.isEmpty() ) {
+            minSize = Integer.parseInt( minSizeParam );
+        }
+
+        String contentTypesParam = filterConfig.getInitParameter( "compressedContentTypes" );
+        if ( StringUtils.isNotBlank( contentTypesParam ) ) {
+            compressedContentTypes = StringUtils.stripAll( contentTypesParam.split( "," ) );
+        }
+
+        logger.info( "Starting compression filter, minimum size {} bytes", minSize );
+    }
+
+
+    @Override
+    public void doFilter( ServletRequest request, ServletResponse response, FilterChain chain )
+            throws IOException, ServletException {
+
+        if ( !( request instanceof HttpServletRequest ) || !( response instanceof HttpServletResponse ) ) {
+            chain.doFilter( request, response );
+            return;
+        }
+
+        HttpServletRequest httpRequest = ( HttpServletRequest ) request;
+        HttpServletResponse httpResponse = ( HttpServletResponse ) response;
+
+        // the response varies on the header whether or not we end up compressing it
+        httpResponse.addHeader( "Vary", HttpHeaders.ACCEPT_ENCODING );
+
+        String encoding = negotiateEncoding( httpRequest.getHeader( HttpHeaders.ACCEPT_ENCODING ) );
+
+        if ( encoding == null || HttpMethod.HEAD.equals( httpRequest.getMethod() ) ) {
+            chain.doFilter( request, response );
+            return;
+        }
+
+        CompressionResponseWrapper wrapper = new CompressionResponseWrapper( httpResponse, encoding );
+
+        try {
+            chain.doFilter( request, wrapper );
+        }
+        finally {
+            wrapper.finish();
+        }
+    }
+
+
+    @Override
+    public void destroy() {
+    }
+
+
+    /**
+     * Pick gzip or deflate from an Accept-Encoding header, honoring q values.  Gzip wins a tie.
+     *
+     * @return the encoding, or null if the client accepts neither
+     */
+    public static String negotiateEncoding( String acceptEncoding ) {
+        if ( StringUtils.isBlank( acceptEncoding ) ) {
+            return null;
+        }
+
+        float gzip = -1;
+        float deflate = -1;
+        float any = -1;
+
+        for ( String part : acceptEncoding.split( "," ) ) {
+            String[] tokens = part.trim().split( ";" );
+            String coding = tokens[0].trim().toLowerCase();
+            float q = 1;
+
+            for ( int i = 1; i < tokens.length; i++ ) {
+                String param = tokens[i].trim();
+                if ( param.startsWith( "q=" ) ) {
+                    try {
+                        q = Float.parseFloat( param.substring( 2 ) );
+                    }
+                    catch ( NumberFormatException e ) {
+                        q = 0;
+                    }
+                }
+            }
+
+            if ( GZIP.equals( coding ) || "x-gzip".equals( coding ) ) {
+                gzip = q;
+            }
+            else if ( DEFLATE.equals( coding ) ) {
+                deflate = q;
+            }
+            else if ( "*".equals( coding ) ) {
+                any = q;
+            }
+        }
+
+        // codings that weren't listed take the wildcard's value
+        if ( gzip < 0 ) {
+            gzip = any;
+        }
+        if ( deflate < 0 ) {
+            deflate = any;
+        }
+
+        if ( gzip > 0 && gzip >= deflate ) {
+            return GZIP;
+        }
+
+        if ( deflate > 0 ) {
+            return DEFLATE;
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Holds back the start of the body until we know whether to compress it, and swallows the content length when we
+     * do since it's no longer correct
+     */
+    private class CompressionResponseWrapper extends HttpServletResponseWrapper {
+
+        private final String encoding;
+
+        private CompressionOutputStream outputStream;
+        private PrintWriter writer;
+
+        private long contentLength = -1;
+
+
+        private CompressionResponseWrapper( HttpServletResponse response, String encoding ) {
+            super( response );
+            this.encoding = encoding;
+        }
+
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if ( writer != null ) {
+                throw new IllegalStateException( "getWriter() has already been called" );
+            }
+
+            return getCompressionOutputStream();
+        }
+
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if ( writer == null ) {
+                if ( outputStream != null ) {
+                    throw new IllegalStateException( "getOutputStream() has already been called" );
+                }
+
+                writer = new PrintWriter(
+                        new OutputStreamWriter( getCompressionOutputStream(), getCharacterEncoding() ) );
+            }
+
+            return writer;
+        }
+
+
+        private CompressionOutputStream getCompressionOutputStream() throws IOException {
+            if ( outputStream == null ) {
+                outputStream = new CompressionOutputStream( this );
+            }
+
+            return outputStream;
+        }
+
+
+        @Override
+        public void setContentLength( int len ) {
+            contentLength = len;
+        }
+
+
+        @Override
+        public void setHeader( String name, String value ) {
+            if ( HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase( name ) ) {
+                contentLength = Long.parseLong( value );
+                return;
+            }
+            super.setHeader( name, value );
+        }
+
+
+        @Override
+        public void addHeader( String name, String value ) {
+            if ( HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase( name ) ) {
+                contentLength = Long.parseLong( value );
+                return;
+            }
+            super.addHeader( name, value );
+        }
+
+
+        @Override
+        public void setIntHeader( String name, int value ) {
+            if ( HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase( name ) ) {
+                contentLength = value;
+                return;
+            }
+            super.setIntHeader( name, value );
+        }
+
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if ( writer != null ) {
+                writer.flush();
+            }
+            if ( outputStream != null ) {
+                outputStream.commit();
+            }
+            super.flushBuffer();
+        }
+
+
+        @Override
+        public void resetBuffer() {
+            if ( outputStream != null ) {
+                outputStream.resetBuffer();
+            }
+            super.resetBuffer();
+        }
+
+
+        @Override
+        public void reset() {
+            if ( outputStream != null ) {
+                outputStream.resetBuffer();
+            }
+            contentLength = -1;
+            super.reset();
+        }
+
+
+        /**
+         * Decide whether the body we've seen so far should be compressed.  Small declared lengths, partial content,
+         * bodies that already have an encoding and content types that are already compressed go out as is.
+         */
+        private boolean shouldCompress() {
+            HttpServletResponse response = ( HttpServletResponse ) getResponse();
+
+            if ( contentLength >= 0 && contentLength < minSize ) {
+                return false;
+            }
+
+            int status = response.getStatus();
+            if ( status == HttpServletResponse.SC_NO_CONTENT || status == HttpServletResponse.SC_NOT_MODIFIED
+                    || status == HttpServletResponse.SC_PARTIAL_CONTENT ) {
+                return false;
+            }
+
+            if ( response.containsHeader( "Content-Encoding" ) || response.containsHeader( "Content-Range" ) ) {
+                return false;
+            }
+
+            return AssetUtils.isCompressible( getContentType(), compressedContentTypes );
+        }
+
+
+        /** Write the declared content length for a body we're passing through */
+        private void restoreContentLength() {
+            if ( contentLength >= 0 ) {
+                if ( contentLength <= Integer.MAX_VALUE ) {
+                    super.setContentLength( ( int ) contentLength );
+                }
+                else {
+                    super.setHeader( HttpHeaders.CONTENT_LENGTH, Long.toString( contentLength ) );
+                }
+            }
+        }
+
+
+        private void finish() throws IOException {
+            if ( writer != null ) {
+                writer.flush();
+            }
+
+            if ( outputStream != null ) {
+                outputStream.finish();
+            }
+            else {
+                restoreContentLength();
+            }
+        }
+    }
+
+
+    /**
+     * Buffers up to minSize bytes, then either starts compressing or passes everything through to the response
+     */
+    private class CompressionOutputStream extends ServletOutputStream {
+
+        private final CompressionResponseWrapper wrapper;
+
+        private byte[] buffer;
+        private int buffered;
+
+        /** Null until we've decided, then either the compressing stream or the response's own stream */
+        private OutputStream out;
+        private DeflaterOutputStream deflaterOut;
+        private DeflaterPool pool;
+
+        private boolean finished;
+
+
+        private CompressionOutputStream( CompressionResponseWrapper wrapper ) {
+            this.wrapper = wrapper;
+        }
+
+
+        @Override
+        public void write( int b ) throws IOException {
+            write( new byte[] { ( byte ) b }, 0, 1 );
+        }
+
+
+        @Override
+        public void write( byte[] b, int off, int len ) throws IOException {
+            if ( finished ) {
+                throw new IOException( "Stream has already been closed" );
+            }
+
+            if ( out == null ) {
+                if ( buffered + len <= minSize ) {
+                    if ( buffer == null ) {
+                        buffer = new byte[minSize];
+                    }
+                    System.arraycopy( b, off, buffer, buffered, len );
+                    buffered += len;
+                    return;
+                }
+
+                start( wrapper.shouldCompress() );
+            }
+
+            out.write( b, off, len );
+        }
+
+
+        @Override
+        public void flush() throws IOException {
+            // keep holding back a small body, a flush doesn't tell us how big it will get
+            if ( out != null ) {
+                out.flush();
+            }
+        }
+
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+
+        /** Called when the response is committed, from here on the body has to go out */
+        private void commit() throws IOException {
+            if ( out == null && !finished ) {
+                start( buffered >= minSize && wrapper.shouldCompress() );
+            }
+            flush();
+        }
+
+
+        private void resetBuffer() {
+            if ( out == null ) {
+                buffered = 0;
+            }
+        }
+
+
+        private void start( boolean compress ) throws IOException {
+            OutputStream responseOut = wrapper.getResponse().getOutputStream();
+
+            if ( compress ) {
+                HttpServletResponse response = ( HttpServletResponse ) wrapper.getResponse();
+                response.setHeader( "Content-Encoding", wrapper.encoding );
+
+                pool = DEFLATERS.get();
+                deflaterOut = pool.open( responseOut, GZIP.equals( wrapper.encoding ) );
+                out = deflaterOut;
+            }
+            else {
+                wrapper.restoreContentLength();
+                out = responseOut;
+            }
+
+            if ( buffered > 0 ) {
+                out.write( buffer, 0, buffered );
+                buffered = 0;
+            }
+            buffer = null;
+        }
+
+
+        private void finish() throws IOException {
+            if ( finished ) {
+                return;
+            }
+
+            try {
+                if ( out == null ) {
+                    // the whole body fit under the threshold
+                    start( false );
+                }
+
+                if ( deflaterOut != null ) {
+                    deflaterOut.finish();
+                }
+
+                out.flush();
+            }
+            finally {
+                finished = true;
+
+                if ( pool != null ) {
+                    pool.release();
+                    pool = null;
+                }
+            }
+        }
+    }
+
+
+    /** The deflaters and buffer for one thread.  A nested use while one is out gets its own, unpooled deflater */
+    private static class DeflaterPool {
+
+        private final Deflater gzipDeflater = new Deflater( Deflater.DEFAULT_COMPRESSION, true );
+        private final Deflater zlibDeflater = new Deflater( Deflater.DEFAULT_COMPRESSION );
+
+        private boolean inUse;
+        private Deflater unpooled;
+
+
+        private DeflaterOutputStream open( OutputStream out, boolean gzip ) throws IOException {
+            Deflater deflater;
+
+            if ( inUse ) {
+                unpooled = new Deflater( Deflater.DEFAULT_COMPRESSION, gzip );
+                deflater = unpooled;
+            }
+            else {
+                inUse = true;
+                deflater = gzip ? gzipDeflater : zlibDeflater;
+            }
+
+            return gzip ? new GzipOutputStream( out, deflater ) : new DeflaterOutputStream( out, deflater,
+                    DEFLATE_BUFFER_SIZE, true );
+        }
+
+
+        private void release() {
+            if ( unpooled != null ) {
+                unpooled.end();
+                unpooled = null;
+                return;
+            }
+
+            gzipDeflater.reset();
+            zlibDeflater.reset();
+            inUse = false;
+        }
+    }
+
+
+    /**
+     * A gzip stream over a caller supplied deflater, {@link java.util.zip.GZIPOutputStream} always allocates its own
+     */
+    private static class GzipOutputStream extends DeflaterOutputStream {
+
+        private static final byte[] HEADER = { 0x1f, ( byte ) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+        private final CRC32 crc = new CRC32();
+
+
+        private GzipOutputStream( OutputStream out, Deflater deflater ) throws IOException {
+            super( out, deflater, DEFLATE_BUFFER_SIZE, true );
+            out.write( HEADER );
+        }
+
+
+        @Override
+        public void write( byte[] b, int off, int len ) throws IOException {
+            super.write( b, off, len );
+            crc.update( b, off, len );
+        }
+
+
+        @Override
+        public void finish() throws IOException {
+            if ( def.finished() ) {
+                return;
+            }
+
+            super.finish();
+
+            writeInt( ( int ) crc.getValue() );
+            writeInt( ( int ) def.getBytesRead() );
+        }
+
+
+        private void writeInt( int value ) throws IOException {
+            out.write( value & 0xff );
+            out.write( ( value >> 8 ) & 0xff );
+            out.write( ( value >> 16 ) & 0xff );
+            out.write( ( value >> 24 ) & 0xff );
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.rest.filters;
+
+
+import java.io.IOException;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+
+
+/**
+ * Adds the ETag a resource computed for the entity it returned.  Resources that return an ApiResponse can't set
+ * headers themselves, so they leave the tag in the {@link #ENTITY_TAG} request property.
+ */
+@Provider
+public class EntityTagFilter implements ContainerResponseFilter {
+
+    public static final String ENTITY_TAG = "usergrid.entityTag";
+
+
+    @Override
+    public void filter( ContainerRequestContext request, ContainerResponseContext response ) throws IOException {
+
+        Object entityTag = request.getProperty( ENTITY_TAG );
+
+        if ( !( entityTag instanceof EntityTag ) ) {
+            return;
+        }
+
+        if ( response.getStatus() != Response.Status.OK.getStatusCode() ) {
+            return;
+        }
+
+        if ( !response.getHeaders().containsKey( HttpHeaders.ETAG ) ) {
+            response.getHeaders().putSingle( HttpHeaders.ETAG, entityTag );
+        }
+    }
+}
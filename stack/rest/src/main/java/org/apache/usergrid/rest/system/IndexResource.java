@@ -42,7 +42,10 @@ import javax.ws.rs.*;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.UriInfo;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -60,6 +63,7 @@ public class IndexResource extends AbstractContextResource {
 
     private static final Logger logger = LoggerFactory.getLogger( IndexResource.class );
     private static final String UPDATED_FIELD = "updated";
+    private static final String JOB_ID_FIELD = "jobId";
 
 
 
@@ -108,6 +112,7 @@ public class IndexResource extends AbstractContextResource {
         response.setProperty( "status", status.getStatus() );
         response.setProperty( "lastUpdatedEpoch", status.getLastUpdated() );
         response.setProperty( "numberQueued", status.getNumberProcessed() );
+        response.setProperty( "partitions", getPartitions( status ) );
         response.setSuccess();
 
         return response;
@@ -126,6 +131,11 @@ public class IndexResource extends AbstractContextResource {
         logger.info( "Resuming rebuilding all applications" );
         final ReIndexRequestBuilder request = createRequest();
 
+        //resume an interrupted job from the checkpoints of its partitions
+        if ( payload != null && payload.get( JOB_ID_FIELD ) != null ) {
+            request.withCursor( payload.get( JOB_ID_FIELD ).toString() );
+        }
+
         return executeResumeAndCreateResponse( payload, request, callback );
     }
 
@@ -302,6 +312,25 @@ public class IndexResource extends AbstractContextResource {
     }
 
 
+    private List<Map<String, Object>> getPartitions( final ReIndexService.ReIndexStatus status ) {
+
+        final List<Map<String, Object>> partitions = new ArrayList<>( status.getPartitions().size() );
+
+        for ( final ReIndexService.PartitionStatus partitionStatus : status.getPartitions() ) {
+            final Map<String, Object> partition = new LinkedHashMap<>();
+            partition.put( "applicationId", partitionStatus.getApplicationId() );
+            partition.put( "collection", partitionStatus.getCollectionName() );
+            partition.put( "status", partitionStatus.getStatus() );
+            partition.put( "numberQueued", partitionStatus.getNumberProcessed() );
+            partition.put( "lastUpdatedEpoch", partitionStatus.getLastUpdated() );
+            partition.put( "perSecond", partitionStatus.getRate() );
+            partitions.add( partition );
+        }
+
+        return partitions;
+    }
+
+
     private ReIndexRequestBuilder createRequest() {
         //TODO: wire this up through spring, and in the future guice.
         return new ReIndexRequestBuilderImpl();
@@ -22,6 +22,7 @@ package org.apache.usergrid.rest.system;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.usergrid.corepersistence.asyncevents.AsyncEventService;
+import org.apache.usergrid.corepersistence.asyncevents.AsyncEventWorkerScaler;
 import org.apache.usergrid.rest.AbstractContextResource;
 import org.apache.usergrid.rest.ApiResponse;
 import org.apache.usergrid.rest.security.annotations.RequireSystemAccess;
@@ -33,6 +34,8 @@ import org.springframework.stereotype.Component;
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 
+import java.util.Map;
+
 /**
  * retrieves queue stats
  */
@@ -74,4 +77,102 @@ public class QueueSystemResource extends AbstractContextResource {
         return response;
     }
 
+
+    /**
+     * Return latency and throughput of the async events processed by this Usergrid instance in JSON format.
+     *
+     * For each event type this includes how long events waited in the queue, how long their handler took and how
+     * many failed.  It also includes the size of the batches sent to the index and the time from an event being
+     * queued until the index accepted its operations.  All times are in milliseconds.
+     */
+    @GET
+    @RequireSystemAccess
+    @Path("metrics")
+    public ApiResponse getMetrics(
+        @QueryParam("callback") @DefaultValue("callback") String callback ) {
+
+        ApiResponse response = createApiResponse();
+        response.setAction( "get queue metrics" );
+
+        AsyncEventService eventService = injector.getInstance(AsyncEventService.class);
+
+        response.setProperty( "data", eventService.getMetrics().getSnapshot() );
+
+        return response;
+    }
+
+
+    /**
+     * Return the workers consuming the queue on this Usergrid instance, the limits they're scaled between and the
+     * load they're scaled on, in JSON format.
+     */
+    @GET
+    @RequireSystemAccess
+    @Path("workers")
+    public ApiResponse getWorkers(
+        @QueryParam("callback") @DefaultValue("callback") String callback ) {
+
+        ApiResponse response = createApiResponse();
+        response.setAction( "get queue workers" );
+
+        AsyncEventService eventService = injector.getInstance(AsyncEventService.class);
+
+        response.setProperty( "data", eventService.getWorkerScaler().getStatus() );
+
+        return response;
+    }
+
+
+    /**
+     * Change the workers consuming the queue on this Usergrid instance.  The payload may contain "min" and "max" to
+     * change the limits the workers are scaled between, "scalingEnabled" to turn scaling with the load on or off,
+     * and "count" to set the number of workers.  Changes last until the instance is restarted.
+     */
+    @PUT
+    @RequireSystemAccess
+    @Path("workers")
+    public ApiResponse updateWorkers( final Map<String, Object> payload,
+        @QueryParam("callback") @DefaultValue("callback") String callback ) {
+
+        AsyncEventService eventService = injector.getInstance(AsyncEventService.class);
+        AsyncEventWorkerScaler scaler = eventService.getWorkerScaler();
+        Map<String, Object> status = scaler.getStatus();
+
+        if ( payload.containsKey( "scalingEnabled" ) ) {
+            scaler.setEnabled( Boolean.parseBoolean( payload.get( "scalingEnabled" ).toString() ) );
+        }
+
+        if ( payload.containsKey( "min" ) || payload.containsKey( "max" ) ) {
+            int min = getInt( payload, "min", ( Integer ) status.get( "min" ) );
+            int max = getInt( payload, "max", ( Integer ) status.get( "max" ) );
+            scaler.setLimits( min, max );
+        }
+
+        if ( payload.containsKey( "count" ) ) {
+            scaler.setWorkerCount( getInt( payload, "count", eventService.getWorkerCount() ) );
+        }
+
+        logger.info( "Updated queue workers with {}", payload );
+
+        ApiResponse response = createApiResponse();
+        response.setAction( "update queue workers" );
+        response.setProperty( "data", scaler.getStatus() );
+
+        return response;
+    }
+
+
+    private static int getInt( final Map<String, Object> payload, final String name, final int defaultValue ) {
+        Object value = payload.get( name );
+        if ( value == null ) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt( value.toString() );
+        }
+        catch ( NumberFormatException e ) {
+            throw new IllegalArgumentException( name + " must be a number" );
+        }
+    }
+
 }
@@ -18,8 +18,15 @@
  */
 package org.apache.usergrid.rest;
 
+import org.apache.usergrid.persistence.DynamicEntity;
+import org.apache.usergrid.persistence.Entity;
+import org.apache.usergrid.utils.UUIDUtils;
 import org.junit.Test;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -42,4 +49,28 @@ public class ApiResponseTest {
         assertNull(apiResponse.getParams().get("password"));
         assertEquals(apiResponse.getParams().size(), 1);
     }
+
+
+    @Test
+    public void testEntitiesSerializedInOrder() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+
+        List<Entity> entities = new ArrayList<Entity>();
+        for ( int i = 0; i < 101; i++ ) {
+            Entity entity = new DynamicEntity( "item", UUIDUtils.newTimeUUID() );
+            entity.setProperty( "index", i );
+            entities.add( entity );
+        }
+
+        ApiResponse apiResponse = new ApiResponse();
+        apiResponse.setEntities( entities );
+
+        JsonNode written = mapper.readTree( mapper.writeValueAsString( apiResponse ) ).get( "entities" );
+
+        assertEquals( entities.size(), written.size() );
+        for ( int i = 0; i < entities.size(); i++ ) {
+            assertEquals( entities.get( i ).getUuid().toString(), written.get( i ).get( "uuid" ).asText() );
+            assertEquals( i, written.get( i ).get( "index" ).asInt() );
+        }
+    }
 }
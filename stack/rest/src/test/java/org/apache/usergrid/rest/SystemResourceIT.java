@@ -111,4 +111,21 @@ public class SystemResourceIT extends AbstractRestIT {
 
 
     }
+
+
+    @Test
+    public void testQueueMetrics() {
+        QueryParameters queryParameters = new QueryParameters();
+        queryParameters.addParam("access_token", clientSetup.getSuperuserToken().getAccessToken());
+
+        Entity result = clientSetup.getRestClient().system().getSubResource("queue/metrics").get(Entity.class, queryParameters,false);
+
+        assertNotNull( result );
+
+        Map data = (Map) result.get("data");
+        Map eventTypes = (Map) data.get("eventTypes");
+        assertNotNull( eventTypes.get("entity_index") );
+        assertNotNull( ((Map) eventTypes.get("entity_index")).get("queueLag") );
+        assertNotNull( data.get("writeToSearchable") );
+    }
 }
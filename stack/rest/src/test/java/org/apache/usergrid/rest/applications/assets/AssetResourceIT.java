@@ -280,6 +280,40 @@ public class AssetResourceIT extends AbstractRestIT {
     }
 
 
+    @Test
+    public void identicalUploadsShareContent() throws Exception {
+
+        this.refreshIndex();
+
+        // post the same asset to two entities
+
+        byte[] data = IOUtils.toByteArray( this.getClass().getResourceAsStream( "/cassandra_eye.jpg" ) );
+        FormDataMultiPart form = new FormDataMultiPart().field( "file", data, MediaType.MULTIPART_FORM_DATA_TYPE );
+        UUID firstId = pathResource( getOrgAppPath( "foos" ) ).post( form ).getEntities().get( 0 ).getUuid();
+        UUID secondId = pathResource( getOrgAppPath( "foos" ) ).post( form ).getEntities().get( 0 ).getUuid();
+        this.refreshIndex();
+
+        // both reference the same content, and its hash is the etag
+
+        Entity first = pathResource( getOrgAppPath( "foos/" + firstId ) ).get( ApiResponse.class ).getEntities().get( 0 );
+        Entity second = pathResource( getOrgAppPath( "foos/" + secondId ) ).get( ApiResponse.class ).getEntities().get( 0 );
+        Map<String, Object> firstMetadata = (Map<String, Object>)first.get("file-metadata");
+        Map<String, Object> secondMetadata = (Map<String, Object>)second.get("file-metadata");
+
+        assertNotNull( firstMetadata.get( AssetUtils.CONTENT_HASH ) );
+        assertEquals( firstMetadata.get( AssetUtils.CONTENT_HASH ), secondMetadata.get( AssetUtils.CONTENT_HASH ) );
+        assertEquals( firstMetadata.get( AssetUtils.CONTENT_HASH ), firstMetadata.get( AssetUtils.E_TAG ) );
+
+        // deleting one leaves the content for the other
+
+        pathResource( getOrgAppPath( "foos/" + firstId ) ).delete();
+
+        InputStream is = pathResource( getOrgAppPath( "foos/" + secondId ) ).getAssetAsStream();
+        byte[] foundData = IOUtils.toByteArray( is );
+        assertEquals( 7979, foundData.length );
+    }
+
+
     @Test
     public void largeFileInS3() throws Exception {
 
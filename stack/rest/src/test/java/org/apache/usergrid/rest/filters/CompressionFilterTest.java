@@ -0,0 +1,286 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.rest.filters;
+
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.HttpHeaders;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterConfig;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+
+/**
+ * Which responses the compression filter compresses, and that what it sends decodes to the original body
+ */
+public class CompressionFilterTest {
+
+    private CompressionFilter filter;
+
+
+    @Before
+    public void setup() throws ServletException {
+        filter = new CompressionFilter();
+        filter.init( new MockFilterConfig() );
+    }
+
+
+    @Test
+    public void gzipLargeBody() throws Exception {
+        byte[] body = text( 4 * CompressionFilter.DEFAULT_MIN_SIZE );
+
+        MockHttpServletResponse response = send( "gzip, deflate", "application/json", body );
+
+        assertEquals( CompressionFilter.GZIP, response.getHeader( "Content-Encoding" ) );
+        assertEquals( HttpHeaders.ACCEPT_ENCODING, response.getHeader( "Vary" ) );
+
+        // the declared length was for the uncompressed body
+        assertNull( response.getHeader( HttpHeaders.CONTENT_LENGTH ) );
+
+        assertArrayEquals( body, IOUtils.toByteArray(
+                new GZIPInputStream( new ByteArrayInputStream( response.getContentAsByteArray() ) ) ) );
+    }
+
+
+    @Test
+    public void deflateWhenPreferred() throws Exception {
+        byte[] body = text( 4 * CompressionFilter.DEFAULT_MIN_SIZE );
+
+        MockHttpServletResponse response = send( "gzip;q=0.5, deflate", "application/json", body );
+
+        assertEquals( CompressionFilter.DEFLATE, response.getHeader( "Content-Encoding" ) );
+
+        assertArrayEquals( body, IOUtils.toByteArray(
+                new InflaterInputStream( new ByteArrayInputStream( response.getContentAsByteArray() ) ) ) );
+    }
+
+
+    @Test
+    public void pooledDeflaterReused() throws Exception {
+        // both responses run on this thread, so the second gets the deflater the first returned
+        for ( int i = 0; i < 2; i++ ) {
+            byte[] body = text( ( i + 2 ) * CompressionFilter.DEFAULT_MIN_SIZE );
+
+            MockHttpServletResponse response = send( "gzip", "application/json", body );
+
+            assertEquals( CompressionFilter.GZIP, response.getHeader( "Content-Encoding" ) );
+            assertArrayEquals( body, IOUtils.toByteArray(
+                    new GZIPInputStream( new ByteArrayInputStream( response.getContentAsByteArray() ) ) ) );
+        }
+    }
+
+
+    @Test
+    public void smallBodyUncompressed() throws Exception {
+        byte[] body = text( CompressionFilter.DEFAULT_MIN_SIZE / 2 );
+
+        MockHttpServletResponse response = send( "gzip", "application/json", body );
+
+        assertNull( response.getHeader( "Content-Encoding" ) );
+        assertEquals( HttpHeaders.ACCEPT_ENCODING, response.getHeader( "Vary" ) );
+        assertEquals( body.length, response.getContentLength() );
+        assertArrayEquals( body, response.getContentAsByteArray() );
+    }
+
+
+    @Test
+    public void compressedContentTypeUncompressed() throws Exception {
+        byte[] body = random( 4 * CompressionFilter.DEFAULT_MIN_SIZE );
+
+        MockHttpServletResponse response = send( "gzip", "image/png", body );
+
+        assertNull( response.getHeader( "Content-Encoding" ) );
+        assertEquals( body.length, response.getContentLength() );
+        assertArrayEquals( body, response.getContentAsByteArray() );
+    }
+
+
+    @Test
+    public void noAcceptEncodingUncompressed() throws Exception {
+        byte[] body = text( 4 * CompressionFilter.DEFAULT_MIN_SIZE );
+
+        MockHttpServletResponse response = send( null, "application/json", body );
+
+        assertNull( response.getHeader( "Content-Encoding" ) );
+        assertEquals( HttpHeaders.ACCEPT_ENCODING, response.getHeader( "Vary" ) );
+        assertArrayEquals( body, response.getContentAsByteArray() );
+    }
+
+
+    @Test
+    public void partialContentUncompressed() throws Exception {
+        final byte[] body = text( 4 * CompressionFilter.DEFAULT_MIN_SIZE );
+
+        MockHttpServletRequest request = request( "gzip" );
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter( request, response, ( req, rsp ) -> {
+            HttpServletResponse httpResponse = ( HttpServletResponse ) rsp;
+            httpResponse.setStatus( HttpServletResponse.SC_PARTIAL_CONTENT );
+            httpResponse.setHeader( "Content-Range", "bytes 0-" + ( body.length - 1 ) + "/" + ( body.length * 2 ) );
+            httpResponse.setContentType( "application/json" );
+            httpResponse.getOutputStream().write( body );
+        } );
+
+        assertNull( response.getHeader( "Content-Encoding" ) );
+        assertArrayEquals( body, response.getContentAsByteArray() );
+    }
+
+
+    @Test
+    public void existingEncodingUncompressed() throws Exception {
+        final byte[] body = text( 4 * CompressionFilter.DEFAULT_MIN_SIZE );
+
+        MockHttpServletRequest request = request( "gzip" );
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // a precompressed asset sets its own encoding
+        filter.doFilter( request, response, ( req, rsp ) -> {
+            HttpServletResponse httpResponse = ( HttpServletResponse ) rsp;
+            httpResponse.setHeader( "Content-Encoding", CompressionFilter.GZIP );
+            httpResponse.setContentType( "application/json" );
+            httpResponse.getOutputStream().write( body );
+        } );
+
+        assertEquals( CompressionFilter.GZIP, response.getHeader( "Content-Encoding" ) );
+        assertArrayEquals( body, response.getContentAsByteArray() );
+    }
+
+
+    @Test
+    public void headUncompressed() throws Exception {
+        MockHttpServletRequest request = request( "gzip" );
+        request.setMethod( "HEAD" );
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter( request, response, ( req, rsp ) -> {
+            rsp.setContentType( "application/json" );
+            rsp.setContentLength( 4096 );
+        } );
+
+        assertNull( response.getHeader( "Content-Encoding" ) );
+        assertEquals( 4096, response.getContentLength() );
+    }
+
+
+    @Test
+    public void writerCompressed() throws Exception {
+        final String body = new String( text( 4 * CompressionFilter.DEFAULT_MIN_SIZE ), "UTF-8" );
+
+        MockHttpServletRequest request = request( "gzip" );
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter( request, response, ( req, rsp ) -> {
+            rsp.setContentType( "application/json" );
+            rsp.setCharacterEncoding( "UTF-8" );
+            rsp.getWriter().write( body );
+        } );
+
+        assertEquals( CompressionFilter.GZIP, response.getHeader( "Content-Encoding" ) );
+        assertEquals( body, IOUtils.toString(
+                new GZIPInputStream( new ByteArrayInputStream( response.getContentAsByteArray() ) ), "UTF-8" ) );
+    }
+
+
+    @Test
+    public void negotiateEncoding() {
+        assertNull( CompressionFilter.negotiateEncoding( null ) );
+        assertNull( CompressionFilter.negotiateEncoding( "" ) );
+        assertNull( CompressionFilter.negotiateEncoding( "identity" ) );
+        assertNull( CompressionFilter.negotiateEncoding( "gzip;q=0, deflate;q=0" ) );
+        assertNull( CompressionFilter.negotiateEncoding( "*;q=0" ) );
+
+        assertEquals( CompressionFilter.GZIP, CompressionFilter.negotiateEncoding( "gzip" ) );
+        assertEquals( CompressionFilter.GZIP, CompressionFilter.negotiateEncoding( "x-gzip" ) );
+        assertEquals( CompressionFilter.GZIP, CompressionFilter.negotiateEncoding( "deflate, gzip" ) );
+        assertEquals( CompressionFilter.GZIP, CompressionFilter.negotiateEncoding( "*" ) );
+        assertEquals( CompressionFilter.GZIP, CompressionFilter.negotiateEncoding( "GZIP;q=0.8, deflate;q=0.5" ) );
+
+        assertEquals( CompressionFilter.DEFLATE, CompressionFilter.negotiateEncoding( "deflate" ) );
+        assertEquals( CompressionFilter.DEFLATE, CompressionFilter.negotiateEncoding( "gzip;q=0.1, deflate" ) );
+        assertEquals( CompressionFilter.DEFLATE, CompressionFilter.negotiateEncoding( "gzip;q=0, *" ) );
+        assertEquals( CompressionFilter.DEFLATE, CompressionFilter.negotiateEncoding( "gzip;q=bad, deflate" ) );
+    }
+
+
+    private MockHttpServletResponse send( String acceptEncoding, final String contentType, final byte[] body )
+            throws IOException, ServletException {
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        FilterChain chain = ( req, rsp ) -> {
+            rsp.setContentType( contentType );
+            rsp.setContentLength( body.length );
+
+            // written in pieces, so the filter has to decide part way through
+            for ( int offset = 0; offset < body.length; offset += 100 ) {
+                rsp.getOutputStream().write( body, offset, Math.min( 100, body.length - offset ) );
+            }
+        };
+
+        filter.doFilter( request( acceptEncoding ), response, chain );
+
+        return response;
+    }
+
+
+    private MockHttpServletRequest request( String acceptEncoding ) {
+        MockHttpServletRequest request = new MockHttpServletRequest( "GET", "/test" );
+
+        if ( acceptEncoding != null ) {
+            request.addHeader( HttpHeaders.ACCEPT_ENCODING, acceptEncoding );
+        }
+
+        return request;
+    }
+
+
+    /** A compressible body of exactly size bytes */
+    private byte[] text( int size ) throws IOException {
+        StringBuilder text = new StringBuilder();
+
+        for ( int i = 0; text.length() < size; i++ ) {
+            text.append( "{\"name\":\"entity" ).append( i ).append( "\"}," );
+        }
+
+        return Arrays.copyOf( text.toString().getBytes( "UTF-8" ), size );
+    }
+
+
+    private byte[] random( int size ) {
+        byte[] bytes = new byte[size];
+        new Random( 1 ).nextBytes( bytes );
+        return bytes;
+    }
+}
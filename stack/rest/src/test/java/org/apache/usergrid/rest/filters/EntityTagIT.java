@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.rest.filters;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.apache.usergrid.rest.test.resource.AbstractRestIT;
+import org.apache.usergrid.rest.test.resource.model.Collection;
+import org.apache.usergrid.rest.test.resource.model.QueryParameters;
+import org.apache.usergrid.rest.test.resource.model.Token;
+import org.apache.usergrid.rest.test.resource.model.User;
+import org.apache.usergrid.utils.JsonUtils;
+import org.junit.Test;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.usergrid.utils.MapUtils.hashMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+
+/**
+ * Conditional GETs of single entities
+ */
+public class EntityTagIT extends AbstractRestIT {
+
+    @Test
+    public void notModifiedUntilUpdated() throws Exception {
+        User user = new User( "etag", "etag", "etag@email.com", "aliensquirrel" );
+        this.app().collection( "users" ).post( user );
+        Token token = this.app().token().post( new Token( "etag", "aliensquirrel" ) );
+
+        DefaultHttpClient client = new DefaultHttpClient();
+
+        HttpHost host = new HttpHost( super.getBaseURI().getHost(), super.getBaseURI().getPort() );
+
+        String collectionPath = String.format( "/%s/%s/games", this.clientSetup.getOrganization().getName(),
+            this.clientSetup.getAppName() );
+
+        HttpPost post = new HttpPost( collectionPath );
+        post.setEntity( new StringEntity( JsonUtils.mapToJsonString( hashMap( "name", "etaggame" ) ) ) );
+        post.setHeader( HttpHeaders.AUTHORIZATION, "Bearer " + token.getAccessToken() );
+        post.setHeader( HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON );
+
+        HttpResponse rsp = client.execute( host, post );
+        assertEquals( 200, rsp.getStatusLine().getStatusCode() );
+
+        String entityPath = collectionPath + "/" + getFirstEntityUuid( rsp );
+
+        // a plain get returns the tag
+        rsp = get( client, host, entityPath, token, null );
+        assertEquals( 200, rsp.getStatusLine().getStatusCode() );
+        String etag = getETag( rsp );
+        assertNotNull( etag );
+
+        // the same tag is answered with a 304 and no body
+        rsp = get( client, host, entityPath, token, etag );
+        assertEquals( 304, rsp.getStatusLine().getStatusCode() );
+        assertEquals( etag, getETag( rsp ) );
+
+        // a write creates a new version, so the old tag no longer matches
+        HttpPut put = new HttpPut( entityPath );
+        put.setEntity( new StringEntity( JsonUtils.mapToJsonString( hashMap( "level", "2" ) ) ) );
+        put.setHeader( HttpHeaders.AUTHORIZATION, "Bearer " + token.getAccessToken() );
+        put.setHeader( HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON );
+        rsp = client.execute( host, put );
+        assertEquals( 200, rsp.getStatusLine().getStatusCode() );
+        EntityUtils.consume( rsp.getEntity() );
+
+        rsp = get( client, host, entityPath, token, etag );
+        assertEquals( 200, rsp.getStatusLine().getStatusCode() );
+        assertFalse( etag.equals( getETag( rsp ) ) );
+    }
+
+
+    @Test
+    public void permissionsCheckedBeforeNotModified() throws Exception {
+        User user = new User( "etagperm", "etagperm", "etagperm@email.com", "aliensquirrel" );
+        this.app().collection( "users" ).post( user );
+        Token token = this.app().token().post( new Token( "etagperm", "aliensquirrel" ) );
+
+        DefaultHttpClient client = new DefaultHttpClient();
+
+        HttpHost host = new HttpHost( super.getBaseURI().getHost(), super.getBaseURI().getPort() );
+
+        String collectionPath = String.format( "/%s/%s/games", this.clientSetup.getOrganization().getName(),
+            this.clientSetup.getAppName() );
+
+        HttpPost post = new HttpPost( collectionPath );
+        post.setEntity( new StringEntity( JsonUtils.mapToJsonString( hashMap( "name", "etagpermgame" ) ) ) );
+        post.setHeader( HttpHeaders.AUTHORIZATION, "Bearer " + token.getAccessToken() );
+        post.setHeader( HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON );
+
+        HttpResponse rsp = client.execute( host, post );
+        assertEquals( 200, rsp.getStatusLine().getStatusCode() );
+
+        String entityPath = collectionPath + "/" + getFirstEntityUuid( rsp );
+
+        rsp = get( client, host, entityPath, token, null );
+        assertEquals( 200, rsp.getStatusLine().getStatusCode() );
+        String etag = getETag( rsp );
+        assertNotNull( etag );
+
+        // a caller without access doesn't learn the entity is unchanged
+        rsp = get( client, host, entityPath, null, etag );
+        assertEquals( 401, rsp.getStatusLine().getStatusCode() );
+        assertNull( getETag( rsp ) );
+    }
+
+
+    @Test
+    public void notModifiedDoesNotLoadEntity() throws Exception {
+        User user = new User( "etagload", "etagload", "etagload@email.com", "aliensquirrel" );
+        this.app().collection( "users" ).post( user );
+        Token token = this.app().token().post( new Token( "etagload", "aliensquirrel" ) );
+
+        DefaultHttpClient client = new DefaultHttpClient();
+
+        HttpHost host = new HttpHost( super.getBaseURI().getHost(), super.getBaseURI().getPort() );
+
+        String collectionPath = String.format( "/%s/%s/games", this.clientSetup.getOrganization().getName(),
+            this.clientSetup.getAppName() );
+
+        HttpPost post = new HttpPost( collectionPath );
+        post.setEntity( new StringEntity( JsonUtils.mapToJsonString( hashMap( "name", "etagloadgame" ) ) ) );
+        post.setHeader( HttpHeaders.AUTHORIZATION, "Bearer " + token.getAccessToken() );
+        post.setHeader( HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON );
+
+        HttpResponse rsp = client.execute( host, post );
+        assertEquals( 200, rsp.getStatusLine().getStatusCode() );
+
+        String entityPath = collectionPath + "/" + getFirstEntityUuid( rsp );
+
+        rsp = get( client, host, entityPath, token, null );
+        assertEquals( 200, rsp.getStatusLine().getStatusCode() );
+        String etag = getETag( rsp );
+        assertNotNull( etag );
+
+        // every service request counts a get, including the one reading the counter
+        long before = getRequestCount();
+
+        rsp = get( client, host, entityPath, token, etag );
+        assertEquals( 304, rsp.getStatusLine().getStatusCode() );
+        EntityUtils.consume( rsp.getEntity() );
+
+        // the 304 was answered from the version alone, no service request loaded the entity
+        assertEquals( before + 1, getRequestCount() );
+
+        // a 200 does go through the service request
+        rsp = get( client, host, entityPath, token, null );
+        assertEquals( 200, rsp.getStatusLine().getStatusCode() );
+        EntityUtils.consume( rsp.getEntity() );
+
+        assertEquals( before + 3, getRequestCount() );
+    }
+
+
+    /**
+     * The application's count of service GET requests
+     */
+    @SuppressWarnings( "unchecked" )
+    private long getRequestCount() {
+        QueryParameters queryParameters = new QueryParameters();
+        queryParameters.addParam( "resolution", "all" ).addParam( "counter", "application.requests.get" );
+
+        Collection counters = this.app().collection( "counters" ).get( queryParameters, true );
+
+        List<Map<String, Object>> values = ( List<Map<String, Object>> ) ( ( List<Map<String, Object>> ) counters
+            .getResponse().getProperties().get( "counters" ) ).get( 0 ).get( "values" );
+
+        return ( ( Number ) values.get( 0 ).get( "value" ) ).longValue();
+    }
+
+
+    private HttpResponse get( DefaultHttpClient client, HttpHost host, String path, Token token, String ifNoneMatch )
+        throws IOException {
+
+        HttpGet get = new HttpGet( path );
+        if ( token != null ) {
+            get.setHeader( HttpHeaders.AUTHORIZATION, "Bearer " + token.getAccessToken() );
+        }
+        get.setHeader( HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON );
+
+        if ( ifNoneMatch != null ) {
+            get.setHeader( HttpHeaders.IF_NONE_MATCH, ifNoneMatch );
+        }
+
+        return client.execute( host, get );
+    }
+
+
+    private String getETag( HttpResponse rsp ) throws IOException {
+        Header header = rsp.getFirstHeader( HttpHeaders.ETAG );
+
+        if ( rsp.getEntity() != null ) {
+            EntityUtils.consume( rsp.getEntity() );
+        }
+
+        return header == null ? null : header.getValue();
+    }
+
+
+    @SuppressWarnings( "unchecked" )
+    private String getFirstEntityUuid( HttpResponse rsp ) throws IOException {
+        Map<String, Object> body = ( Map<String, Object> ) JsonUtils.parse( EntityUtils.toString( rsp.getEntity() ) );
+        List<Map<String, Object>> entities = ( List<Map<String, Object>> ) body.get( "entities" );
+
+        return ( String ) entities.get( 0 ).get( "uuid" );
+    }
+}
@@ -1836,8 +1836,7 @@ public class ManagementServiceImpl implements ManagementService {
     public long getCollectionSize(final UUID applicationId, final String collectionName) {
         AggregationService aggregationService = aggregationServiceFactory.getAggregationService();
         ApplicationScope applicationScope =CpNamingUtils.getApplicationScope(applicationId);
-        return aggregationService.getSize(applicationScope,
-            CpNamingUtils.createCollectionSearchEdge(applicationScope.getApplication(), collectionName));
+        return aggregationService.getCollectionSize(applicationScope, collectionName);
     }
 
 
@@ -59,9 +59,9 @@ public class ExportJob extends OnlyOnceJob {
             exportService.doExport( jobExecution );
         }
         catch ( Exception e ) {
-            logger.error( "Export Service failed to complete job" );
-            logger.error(e.getMessage());
-            return;
+            //rethrow so the scheduler retries the job, the export resumes from its last checkpoint
+            logger.error( "Export Service failed to complete job", e );
+            throw e;
         }
 
         logger.info( "executed ExportJob process completed" );
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.management.export;
+
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/**
+ * A single gzipped chunk of a collection export, buffered in a temporary file until it is handed to the {@link
+ * ExportSink}.  Each part is a complete document in the same layout as a whole application export, so parts can be
+ * read independently of each other.
+ */
+public class ExportPart implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final JsonGenerator jg;
+
+    private int count;
+    private boolean finished;
+
+
+    public ExportPart( final File directory, final String collectionName, final JsonFactory jsonFactory,
+                       final ObjectMapper mapper ) throws IOException {
+
+        if ( !directory.exists() && !directory.mkdirs() && !directory.exists() ) {
+            throw new IOException( "Unable to create temporary export directory " + directory.getAbsolutePath() );
+        }
+
+        this.file = File.createTempFile( "export", ".json.gz", directory );
+        this.file.deleteOnExit();
+
+        try {
+            this.jg = jsonFactory.createGenerator(
+                new GZIPOutputStream( new BufferedOutputStream( new FileOutputStream( file ), BUFFER_SIZE ),
+                    BUFFER_SIZE ), JsonEncoding.UTF8 );
+        }
+        catch ( IOException e ) {
+            file.delete();
+            throw e;
+        }
+
+        jg.setCodec( mapper );
+
+        jg.writeStartObject();
+        jg.writeObjectFieldStart( "collections" );
+        jg.writeArrayFieldStart( collectionName.toLowerCase() );
+    }
+
+
+    public JsonGenerator getGenerator() {
+        return jg;
+    }
+
+
+    /**
+     * Count an entity written to the generator
+     */
+    public void entityWritten() {
+        count++;
+    }
+
+
+    public int getCount() {
+        return count;
+    }
+
+
+    /**
+     * Close the document and return the compressed file
+     */
+    public File finish() throws IOException {
+        jg.writeEndArray();
+        jg.writeEndObject();
+        jg.writeEndObject();
+        jg.close();
+
+        finished = true;
+
+        return file;
+    }
+
+
+    /**
+     * Discard the temporary file, whether or not the part was finished
+     */
+    @Override
+    public void close() {
+        if ( !finished ) {
+            try {
+                jg.close();
+            }
+            catch ( IOException e ) {
+                //we're throwing the file away anyway
+            }
+        }
+
+        file.delete();
+    }
+}
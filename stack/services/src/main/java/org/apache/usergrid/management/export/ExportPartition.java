@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.management.export;
+
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+
+/**
+ * The progress of exporting a single collection of an application.  It is saved into the export entity every time a
+ * part is written, so a failed export picks up after the last part instead of starting over.
+ */
+public class ExportPartition {
+
+    private static final String APPLICATION_ID = "applicationId";
+    private static final String COLLECTION = "collection";
+    private static final String PREFIX = "prefix";
+    private static final String CURSOR = "cursor";
+    private static final String PARTS = "parts";
+    private static final String ENTITIES = "entities";
+    private static final String FINISHED = "finished";
+
+    private final UUID applicationId;
+    private final String collection;
+    private final String prefix;
+
+    private String cursor;
+    private int parts;
+    private long entities;
+    private boolean finished;
+
+
+    public ExportPartition( final UUID applicationId, final String collection, final String prefix ) {
+        this.applicationId = applicationId;
+        this.collection = collection;
+        this.prefix = prefix;
+    }
+
+
+    public UUID getApplicationId() {
+        return applicationId;
+    }
+
+
+    public String getCollection() {
+        return collection;
+    }
+
+
+    /**
+     * The name every part of this application is stored under, fixed on the first run so a resumed export keeps
+     * writing into the same place
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+
+    /**
+     * The cursor of the first page that has not been written to a part yet, or null to start from the beginning
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+
+    public int getParts() {
+        return parts;
+    }
+
+
+    public long getEntities() {
+        return entities;
+    }
+
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+
+    /**
+     * Record a part as written
+     *
+     * @param count The number of entities in the part
+     * @param nextCursor The cursor to continue from, or null if the collection has been written completely
+     */
+    public void partWritten( final int count, final String nextCursor ) {
+        this.parts++;
+        this.entities += count;
+        this.cursor = nextCursor;
+        this.finished = nextCursor == null;
+    }
+
+
+    /**
+     * Mark the collection as written without writing another part
+     */
+    public void finished() {
+        this.cursor = null;
+        this.finished = true;
+    }
+
+
+    /**
+     * @return The name of the given part
+     */
+    public String getPartName( final int part ) {
+        return String.format( "%s/%s.part-%05d.json.gz", prefix, collection.toLowerCase(), part );
+    }
+
+
+    public boolean matches( final UUID applicationId, final String collection ) {
+        return this.applicationId.equals( applicationId ) && this.collection.equals( collection );
+    }
+
+
+    public Map<String, Object> toMap() {
+        final Map<String, Object> map = new LinkedHashMap<>();
+        map.put( APPLICATION_ID, applicationId.toString() );
+        map.put( COLLECTION, collection );
+        map.put( PREFIX, prefix );
+        map.put( CURSOR, cursor );
+        map.put( PARTS, parts );
+        map.put( ENTITIES, entities );
+        map.put( FINISHED, finished );
+        return map;
+    }
+
+
+    public static ExportPartition fromMap( final Map<String, Object> map ) {
+        final ExportPartition partition =
+            new ExportPartition( UUID.fromString( map.get( APPLICATION_ID ).toString() ), ( String ) map.get( COLLECTION ),
+                ( String ) map.get( PREFIX ) );
+
+        partition.cursor = ( String ) map.get( CURSOR );
+        partition.parts = map.get( PARTS ) == null ? 0 : ( ( Number ) map.get( PARTS ) ).intValue();
+        partition.entities = map.get( ENTITIES ) == null ? 0 : ( ( Number ) map.get( ENTITIES ) ).longValue();
+        partition.finished = Boolean.TRUE.equals( map.get( FINISHED ) );
+
+        return partition;
+    }
+}
@@ -18,11 +18,19 @@ package org.apache.usergrid.management.export;
 
 
 import java.io.File;
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,7 +43,6 @@ import org.apache.usergrid.persistence.ConnectionRef;
 import org.apache.usergrid.persistence.Entity;
 import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.EntityManagerFactory;
-import org.apache.usergrid.persistence.PagingResultsIterator;
 import org.apache.usergrid.persistence.Results;
 import org.apache.usergrid.persistence.SimpleEntityRef;
 import org.apache.usergrid.persistence.entities.Export;
@@ -43,17 +50,18 @@ import org.apache.usergrid.persistence.entities.JobData;
 import org.apache.usergrid.persistence.Query;
 import org.apache.usergrid.persistence.Query.Level;
 
-import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.BiMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 
 /**
- * Need to refactor out the mutliple orgs being take , need to factor out the multiple apps it will just be the one app
- * and the one org and all of it's collections.
+ * Exports an organization, an application or a single collection.  Every collection is a partition that is paged
+ * through on its own, with a bounded number of them running at once, and written out as gzipped parts to an {@link
+ * ExportSink} as it goes.  The progress of every partition is saved into the {@link Export} entity, so when a failed
+ * export job is retried it continues after the last part that was written.
  */
 public class ExportServiceImpl implements ExportService {
 
@@ -76,8 +84,32 @@ public class ExportServiceImpl implements ExportService {
     //Amount of time that has passed before sending another heart beat in millis
     public static final int TIMESTAMP_DELTA = 5000;
 
+    public static final String EXPORT_CONCURRENCY = "usergrid.export.concurrency";
+
+    public static final String EXPORT_PART_SIZE = "usergrid.export.part.size";
+
+    public static final String EXPORT_LOCAL_DIR = "usergrid.export.local.dir";
+
+    public static final String TEMP_FILES = "usergrid.temp.files";
+
+    //Amount of collections exported at the same time
+    private static final int DEFAULT_EXPORT_CONCURRENCY = 4;
+
+    //Amount of entities written to a single part, rounded up to whole pages
+    private static final int DEFAULT_EXPORT_PART_SIZE = 10 * MAX_ENTITY_FETCH;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     private JsonFactory jsonFactory = new JsonFactory();
 
+    private int exportConcurrency = DEFAULT_EXPORT_CONCURRENCY;
+
+    private int partSize = DEFAULT_EXPORT_PART_SIZE;
+
+    private File tempDirectory = new File( System.getProperty( "java.io.tmpdir" ) );
+
+    private File localDirectory;
+
 
     @Override
     public UUID schedule( final Map<String, Object> config ) throws Exception {
@@ -189,8 +221,8 @@ public class ExportServiceImpl implements ExportService {
     @Override
     public void doExport( final JobExecution jobExecution ) throws Exception {
         Map<String, Object> config = ( Map<String, Object> ) jobExecution.getJobData().getProperty( "exportInfo" );
-        Object s3PlaceHolder = jobExecution.getJobData().getProperty( "s3Export" );
-        S3Export s3Export = null;
+        Object sinkPlaceHolder = jobExecution.getJobData().getProperty( "exportSink" );
+        ExportSink exportSink = null;
 
         if ( config == null ) {
             logger.error( "Export Information passed through is null" );
@@ -205,77 +237,77 @@ public class ExportServiceImpl implements ExportService {
         //update the entity state to show that the job has officially started.
         export.setState( Export.State.STARTED );
         em.update( export );
+
+        if ( config.get( "organizationId" ) == null ) {
+            logger.error( "No organization could be found" );
+            export.setState( Export.State.FAILED );
+            em.update( export );
+            return;
+        }
+
         try {
-            if ( s3PlaceHolder != null ) {
-                s3Export = ( S3Export ) s3PlaceHolder;
+            if ( sinkPlaceHolder != null ) {
+                exportSink = ( ExportSink ) sinkPlaceHolder;
             }
             else {
-                s3Export = new S3ExportImpl();
+                exportSink = createSink( config );
             }
         }
         catch ( Exception e ) {
-            logger.error( "S3Export doesn't exist" );
+            logger.error( "Export sink could not be created", e );
             export.setErrorMessage( e.getMessage() );
             export.setState( Export.State.FAILED );
             em.update( export );
             return;
         }
 
-        if ( config.get( "organizationId" ) == null ) {
-            logger.error( "No organization could be found" );
-            export.setState( Export.State.FAILED );
-            em.update( export );
-            return;
-        }
-        else if ( config.get( "applicationId" ) == null ) {
-            //exports All the applications from an organization
-            try {
-                exportApplicationsFromOrg( ( UUID ) config.get( "organizationId" ), config, jobExecution, s3Export );
+        final ExportCheckpoint checkpoint = new ExportCheckpoint( em, export );
+
+        try {
+            final List<ExportPartition> partitions;
+
+            if ( config.get( "applicationId" ) == null ) {
+                //exports All the applications from an organization
+                partitions = partitionApplicationsFromOrg( ( UUID ) config.get( "organizationId" ), config,
+                    checkpoint );
             }
-            catch ( Exception e ) {
-                export.setErrorMessage( e.getMessage() );
-                export.setState( Export.State.FAILED );
-                em.update( export );
-                return;
+            else {
+                //exports an Application, or a single collection of it, from a single organization
+                partitions = partitionApplication( ( UUID ) config.get( "applicationId" ), config, checkpoint );
             }
+
+            exportPartitions( partitions, config, checkpoint, exportSink, jobExecution );
         }
-        else if ( config.get( "collectionName" ) == null ) {
-            //exports an Application from a single organization
-            try {
-                exportApplicationFromOrg( ( UUID ) config.get( "organizationId" ),
-                        ( UUID ) config.get( "applicationId" ), config, jobExecution, s3Export );
-            }
-            catch ( Exception e ) {
-                export.setErrorMessage( e.getMessage() );
-                export.setState( Export.State.FAILED );
-                em.update( export );
-                return;
-            }
+        catch ( Exception e ) {
+            //leave the checkpoint in place and fail the job, so the scheduler retries it from the last part
+            logger.error( "Export {} failed", exportId, e );
+            checkpoint.failed( e.getMessage() );
+            throw e;
         }
-        else {
-            try {
-                //exports a single collection from an app org combo
-                try {
-                    exportCollectionFromOrgApp( ( UUID ) config.get( "applicationId" ), config, jobExecution,
-                            s3Export );
-                }
-                catch ( Exception e ) {
-                    export.setErrorMessage( e.getMessage() );
-                    export.setState( Export.State.FAILED );
-                    em.update( export );
-                    return;
-                }
-            }
-            catch ( Exception e ) {
-                //if for any reason the backing up fails, then update the entity with a failed state.
-                export.setErrorMessage( e.getMessage() );
-                export.setState( Export.State.FAILED );
-                em.update( export );
-                return;
+        finally {
+            exportSink.close();
+        }
+
+        checkpoint.finished();
+    }
+
+
+    /**
+     * Create the sink named by the storage_provider of the export, s3 unless it says otherwise
+     */
+    protected ExportSink createSink( final Map<String, Object> config ) {
+        Map<String, Object> properties = ( Map<String, Object> ) config.get( "properties" );
+        String storageProvider = properties == null ? null : ( String ) properties.get( "storage_provider" );
+
+        //the directory comes from the server configuration, never from the request
+        if ( "local".equalsIgnoreCase( storageProvider ) ) {
+            if ( localDirectory == null ) {
+                throw new IllegalArgumentException( "Local exports are not enabled, set " + EXPORT_LOCAL_DIR );
             }
+            return new LocalExportSink( localDirectory );
         }
-        export.setState( Export.State.FINISHED );
-        em.update( export );
+
+        return new S3ExportSink( config );
     }
 
 
@@ -310,6 +342,24 @@ public class ExportServiceImpl implements ExportService {
     }
 
 
+    public void setProperties( final Properties properties ) {
+        exportConcurrency = Integer.parseInt(
+            properties.getProperty( EXPORT_CONCURRENCY, String.valueOf( DEFAULT_EXPORT_CONCURRENCY ) ) );
+        partSize = Integer.parseInt(
+            properties.getProperty( EXPORT_PART_SIZE, String.valueOf( DEFAULT_EXPORT_PART_SIZE ) ) );
+
+        String localDir = properties.getProperty( EXPORT_LOCAL_DIR );
+        if ( localDir != null && !localDir.isEmpty() ) {
+            localDirectory = new File( localDir );
+        }
+
+        String tempFiles = properties.getProperty( TEMP_FILES );
+        if ( tempFiles != null ) {
+            tempDirectory = new File( tempFiles, "export" );
+        }
+    }
+
+
     public Export getExportEntity( final JobExecution jobExecution ) throws Exception {
 
         UUID exportId = ( UUID ) jobExecution.getJobData().getProperty( EXPORT_ID );
@@ -320,14 +370,12 @@ public class ExportServiceImpl implements ExportService {
 
 
     /**
-     * Exports All Applications from an Organization
+     * Plan the partitions of all Applications from an Organization
      */
-    private void exportApplicationsFromOrg( UUID organizationUUID, final Map<String, Object> config,
-                                            final JobExecution jobExecution, S3Export s3Export ) throws Exception {
+    private List<ExportPartition> partitionApplicationsFromOrg( UUID organizationUUID, final Map<String, Object> config,
+                                                                final ExportCheckpoint checkpoint ) throws Exception {
 
-        //retrieves export entity
-        Export export = getExportEntity( jobExecution );
-        String appFileName = null;
+        List<ExportPartition> partitions = new ArrayList<>();
 
         BiMap<UUID, String> applications = managementService.getApplicationsForOrganization( organizationUUID );
 
@@ -338,64 +386,115 @@ public class ExportServiceImpl implements ExportService {
                 continue;
             }
 
-            appFileName = prepareOutputFileName( application.getValue(), null );
-
-            File ephemeral = collectionExportAndQuery( application.getKey(), config, export, jobExecution );
-
-            fileTransfer( export, appFileName, ephemeral, config, s3Export );
+            partitions.addAll( partitionCollections( application.getKey(), application.getValue(), config,
+                checkpoint ) );
         }
+
+        return partitions;
     }
 
 
-    public void fileTransfer( Export export, String appFileName, File ephemeral, Map<String, Object> config,
-                              S3Export s3Export ) {
-        try {
-            s3Export.copyToS3( ephemeral, config, appFileName );
+    /**
+     * Plan the partitions of a specific application, or of a single collection of it when a collectionName is given
+     */
+    private List<ExportPartition> partitionApplication( UUID applicationId, final Map<String, Object> config,
+                                                        final ExportCheckpoint checkpoint ) throws Exception {
 
-        }
-        catch ( Exception e ) {
-            export.setErrorMessage( e.getMessage() );
-            export.setState( Export.State.FAILED );
-            return;
-        }
+        ApplicationInfo application = managementService.getApplicationInfo( applicationId );
+
+        return partitionCollections( applicationId, application.getName(), config, checkpoint );
     }
 
 
     /**
-     * Exports a specific applications from an organization
+     * Create a partition for every collection of the application being exported, reusing the ones a previous run of
+     * this export saved
      */
-    private void exportApplicationFromOrg( UUID organizationUUID, UUID applicationId, final Map<String, Object> config,
-                                           final JobExecution jobExecution, S3Export s3Export ) throws Exception {
+    private List<ExportPartition> partitionCollections( UUID applicationId, String applicationName,
+                                                        final Map<String, Object> config,
+                                                        final ExportCheckpoint checkpoint ) throws Exception {
 
-        //retrieves export entity
-        Export export = getExportEntity( jobExecution );
+        EntityManager em = emf.getEntityManager( applicationId );
+        Map<String, Object> metadata = em.getApplicationCollectionMetadata();
 
-        ApplicationInfo application = managementService.getApplicationInfo( applicationId );
-        String appFileName = prepareOutputFileName( application.getName(), null );
+        String prefix = checkpoint.getPrefix( applicationId );
+        if ( prefix == null ) {
+            prefix = prepareOutputPrefix( applicationName, ( String ) config.get( "collectionName" ) );
+        }
 
-        File ephemeral = collectionExportAndQuery(applicationId, config, export, jobExecution);
+        List<ExportPartition> partitions = new ArrayList<>();
 
-        fileTransfer( export, appFileName, ephemeral, config, s3Export );
+        for ( String collectionName : metadata.keySet() ) {
+
+            if ( collectionName.equals( "exports" ) ) {
+                continue;
+            }
+            //if the collection you are looping through doesn't match the name of the one you want. Don't export it.
+            if ( ( config.get( "collectionName" ) == null ) || collectionName
+                .equalsIgnoreCase( ( String ) config.get( "collectionName" ) ) ) {
+
+                partitions.add( checkpoint.getPartition( applicationId, collectionName, prefix ) );
+            }
+        }
+
+        return partitions;
     }
 
 
     /**
-     * Exports a specific collection from an org-app combo.
+     * Export every unfinished partition, running at most exportConcurrency of them at once.  The calling thread only
+     * waits and heartbeats the job while the workers write their parts.
      */
-    //might be confusing, but uses the /s/ inclusion or exclusion nomenclature.
-    private void exportCollectionFromOrgApp( UUID applicationUUID, final Map<String, Object> config,
-                                             final JobExecution jobExecution, S3Export s3Export ) throws Exception {
+    private void exportPartitions( final List<ExportPartition> partitions, final Map<String, Object> config,
+                                   final ExportCheckpoint checkpoint, final ExportSink exportSink,
+                                   final JobExecution jobExecution ) throws Exception {
 
-        //retrieves export entity
-        Export export = getExportEntity( jobExecution );
-        ApplicationInfo application = managementService.getApplicationInfo( applicationUUID );
+        ExecutorService executor = Executors.newFixedThreadPool( exportConcurrency,
+            new ThreadFactoryBuilder().setNameFormat( "ExportWorker-%d" ).setDaemon( true ).build() );
 
-        String appFileName = prepareOutputFileName( application.getName(), ( String ) config.get( "collectionName" ) );
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+
+            for ( final ExportPartition partition : partitions ) {
+                if ( partition.isFinished() ) {
+                    logger.info( "Skipping collection {} of application {}, it was exported by a previous run",
+                        partition.getCollection(), partition.getApplicationId() );
+                    continue;
+                }
 
+                futures.add( executor.submit( new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        exportPartition( partition, config, checkpoint, exportSink );
+                        return null;
+                    }
+                } ) );
+            }
 
-        File ephemeral = collectionExportAndQuery( applicationUUID, config, export, jobExecution );
+            long starting_time = System.currentTimeMillis();
 
-        fileTransfer( export, appFileName, ephemeral, config, s3Export );
+            for ( Future<Void> future : futures ) {
+                while ( true ) {
+                    try {
+                        future.get( TIMESTAMP_DELTA, TimeUnit.MILLISECONDS );
+                        break;
+                    }
+                    catch ( TimeoutException e ) {
+                        starting_time = checkTimeDelta( starting_time, jobExecution );
+                    }
+                    catch ( ExecutionException e ) {
+                        if ( e.getCause() instanceof Exception ) {
+                            throw ( Exception ) e.getCause();
+                        }
+                        throw e;
+                    }
+                }
+                starting_time = checkTimeDelta( starting_time, jobExecution );
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
     }
 
 
@@ -524,16 +623,6 @@ public class ExportServiceImpl implements ExportService {
     }
 
 
-    protected JsonGenerator getJsonGenerator( File ephermal ) throws IOException {
-        //TODO:shouldn't the below be UTF-16?
-
-        JsonGenerator jg = jsonFactory.createJsonGenerator( ephermal, JsonEncoding.UTF8 );
-        jg.setPrettyPrinter( new DefaultPrettyPrinter(  ) );
-        jg.setCodec( new ObjectMapper() );
-        return jg;
-    }
-
-
     /**
      * @return the file name concatenated with the type and the name of the collection
      */
@@ -555,79 +644,182 @@ public class ExportServiceImpl implements ExportService {
 
 
     /**
-     * handles the query and export of collections
+     * @return the name the parts of an application are stored under, the output file name without the extension
      */
-    //TODO:Needs further refactoring.
-    protected File collectionExportAndQuery( UUID applicationUUID, final Map<String, Object> config, Export export,
-                                             final JobExecution jobExecution ) throws Exception {
-
-        EntityManager em = emf.getEntityManager( applicationUUID );
-        Map<String, Object> metadata = em.getApplicationCollectionMetadata();
-        long starting_time = System.currentTimeMillis();
-        File ephemeral = new File( "tempExport" + UUID.randomUUID() );
-        ephemeral.deleteOnExit();
+    public String prepareOutputPrefix( String applicationName, String collectionName ) {
+        String outputFileName = prepareOutputFileName( applicationName, collectionName );
 
+        return outputFileName.substring( 0, outputFileName.length() - ".json".length() );
+    }
 
-        JsonGenerator jg = getJsonGenerator( ephemeral );
 
-        jg.writeStartObject();
-        jg.writeObjectFieldStart( "collections" );
+    /**
+     * Pages through a collection, starting from the partition's cursor, and writes it out in parts of partSize
+     * entities.  Parts end on page boundaries so the cursor saved with each part is exactly where the next one starts.
+     */
+    protected void exportPartition( final ExportPartition partition, final Map<String, Object> config,
+                                    final ExportCheckpoint checkpoint, final ExportSink exportSink )
+            throws Exception {
 
-        for ( String collectionName : metadata.keySet() ) {
+        EntityManager em = emf.getEntityManager( partition.getApplicationId() );
+        String collectionName = partition.getCollection();
 
-            if ( collectionName.equals( "exports" ) ) {
-                continue;
-            }
-            //if the collection you are looping through doesn't match the name of the one you want. Don't export it.
-            if ( ( config.get( "collectionName" ) == null ) || collectionName.equalsIgnoreCase((String)config.get( "collectionName" ) ) ) {
+        //Query entity manager for the entities in a collection
+        Query query;
+        if ( config.get( "query" ) == null ) {
+            query = new Query();
+        }
+        else {
+            query = Query.fromQL( ( String ) config.get( "query" ) );
+        }
+        query.setLimit( MAX_ENTITY_FETCH );
+        query.setResultsLevel( Level.ALL_PROPERTIES );
+        query.setCollection( collectionName );
 
-                //write out the collection name at the start of the file
-                jg.writeArrayFieldStart( collectionName.toLowerCase() );
+        String cursor = partition.getCursor();
+        ExportPart part = null;
 
-                //Query entity manager for the entities in a collection
-                Query query = null;
-                if ( config.get( "query" ) == null ) {
-                    query = new Query();
-                }
-                else {
-                    try {
-                        query = Query.fromQL( ( String ) config.get( "query" ) );
-                    }
-                    catch ( Exception e ) {
-                        export.setErrorMessage( e.getMessage() );
-                    }
+        try {
+            do {
+                if ( Thread.currentThread().isInterrupted() ) {
+                    throw new InterruptedException( "Export of collection " + collectionName + " was interrupted" );
                 }
-                query.setLimit( MAX_ENTITY_FETCH );
-                query.setResultsLevel( Level.ALL_PROPERTIES );
-                query.setCollection( collectionName );
 
+                query.setCursor( cursor );
                 Results entities = em.searchCollection( em.getApplicationRef(), collectionName, query );
 
-                //pages through the query and backs up all results.
-                PagingResultsIterator itr = new PagingResultsIterator( entities );
-                for ( Object e : itr ) {
-                    starting_time = checkTimeDelta( starting_time, jobExecution );
-                    Entity entity = ( Entity ) e;
+                if ( part == null ) {
+                    part = new ExportPart( tempDirectory, collectionName, jsonFactory, MAPPER );
+                }
+
+                JsonGenerator jg = part.getGenerator();
+
+                for ( Entity entity : entities.getEntities() ) {
                     jg.writeStartObject();
                     jg.writeFieldName( "Metadata" );
                     jg.writeObject( entity );
                     saveCollectionMembers( jg, em, ( String ) config.get( "collectionName" ), entity );
                     jg.writeEndObject();
-                    jg.flush();
+                    part.entityWritten();
+                }
+
+                cursor = entities.hasCursor() ? entities.getCursor() : null;
+
+                //an empty collection still gets a single empty part, so every exported collection is visible
+                boolean lastPage = cursor == null;
+                if ( part.getCount() >= partSize || ( lastPage && ( part.getCount() > 0
+                    || partition.getParts() == 0 ) ) ) {
 
+                    int count = part.getCount();
+                    exportSink.writePart( partition.getPartName( partition.getParts() ), part.finish() );
+                    part.close();
+                    part = null;
+
+                    checkpoint.partWritten( partition, count, cursor );
+                }
+                else if ( lastPage ) {
+                    //the collection ended exactly on a part boundary, there is nothing left to write
+                    checkpoint.finished( partition );
                 }
+            }
+            while ( cursor != null );
+        }
+        finally {
+            if ( part != null ) {
+                part.close();
+            }
+        }
 
+        logger.info( "Exported {} entities of collection {} in application {}", new Object[] {
+            partition.getEntities(), collectionName, partition.getApplicationId()
+        } );
+    }
 
 
-                //write out the end collection
-                jg.writeEndArray();
+    /**
+     * Tracks the partitions of an export and saves them into the export entity.  Workers report their parts from
+     * different threads, so every change to the entity goes through here.
+     */
+    protected static class ExportCheckpoint {
+
+        private final EntityManager em;
+        private final Export export;
+        private final List<ExportPartition> partitions = new ArrayList<>();
+
+
+        public ExportCheckpoint( final EntityManager em, final Export export ) {
+            this.em = em;
+            this.export = export;
+
+            if ( export.getPartitions() != null ) {
+                for ( Map<String, Object> partition : export.getPartitions() ) {
+                    partitions.add( ExportPartition.fromMap( partition ) );
+                }
             }
         }
-        jg.writeEndObject();
-        jg.writeEndObject();
-        jg.flush();
-        jg.close();
 
-        return ephemeral;
+
+        /**
+         * @return the prefix a previous run used for the application, or null if it hasn't been started yet
+         */
+        public synchronized String getPrefix( final UUID applicationId ) {
+            for ( ExportPartition partition : partitions ) {
+                if ( partition.getApplicationId().equals( applicationId ) ) {
+                    return partition.getPrefix();
+                }
+            }
+            return null;
+        }
+
+
+        public synchronized ExportPartition getPartition( final UUID applicationId, final String collection,
+                                                          final String prefix ) {
+            for ( ExportPartition partition : partitions ) {
+                if ( partition.matches( applicationId, collection ) ) {
+                    return partition;
+                }
+            }
+
+            ExportPartition partition = new ExportPartition( applicationId, collection, prefix );
+            partitions.add( partition );
+            return partition;
+        }
+
+
+        public synchronized void partWritten( final ExportPartition partition, final int count,
+                                              final String nextCursor ) throws Exception {
+            partition.partWritten( count, nextCursor );
+            save();
+        }
+
+
+        public synchronized void finished( final ExportPartition partition ) throws Exception {
+            partition.finished();
+            save();
+        }
+
+
+        public synchronized void failed( final String errorMessage ) throws Exception {
+            export.setErrorMessage( errorMessage );
+            export.setState( Export.State.FAILED );
+            save();
+        }
+
+
+        public synchronized void finished() throws Exception {
+            export.setState( Export.State.FINISHED );
+            save();
+        }
+
+
+        private void save() throws Exception {
+            List<Map<String, Object>> maps = new ArrayList<>( partitions.size() );
+            for ( ExportPartition partition : partitions ) {
+                maps.add( partition.toMap() );
+            }
+
+            export.setPartitions( maps );
+            em.update( export );
+        }
     }
 }
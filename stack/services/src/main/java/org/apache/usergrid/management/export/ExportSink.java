@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.management.export;
+
+
+import java.io.Closeable;
+import java.io.File;
+
+
+/**
+ * Destination for the parts of an export.  Parts are handed over as soon as they are written, so the sink is called
+ * concurrently by every collection being exported.
+ */
+public interface ExportSink extends Closeable {
+
+    /**
+     * Store a finished, gzipped part under the given name, replacing any part already stored with that name. The file
+     * is deleted by the caller once this returns.
+     */
+    void writePart( String name, File part ) throws Exception;
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.management.export;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Writes export parts into a directory on the local filesystem, using the part names as relative paths.
+ */
+public class LocalExportSink implements ExportSink {
+    private static final Logger logger = LoggerFactory.getLogger( LocalExportSink.class );
+
+    private final File directory;
+
+
+    public LocalExportSink( final File directory ) {
+        this.directory = directory;
+    }
+
+
+    @Override
+    public void writePart( final String name, final File part ) throws IOException {
+
+        File target = new File( directory, name );
+        File parent = target.getParentFile();
+
+        if ( !parent.exists() && !parent.mkdirs() && !parent.exists() ) {
+            throw new IOException( "Unable to create export directory " + parent.getAbsolutePath() );
+        }
+
+        // copy next to the target first so a reader never sees half a part
+        File temp = new File( parent, "." + target.getName() + ".tmp" );
+        Files.copy( part.toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        Files.move( temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE );
+
+        logger.info( "Wrote export part {}", target.getAbsolutePath() );
+    }
+
+
+    @Override
+    public void close() {
+        //nothing to release
+    }
+}
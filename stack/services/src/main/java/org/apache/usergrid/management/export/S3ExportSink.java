@@ -38,20 +38,27 @@ import java.util.Map;
 import java.util.Properties;
 
 
-public class S3ExportImpl implements S3Export {
-    Logger logger = LoggerFactory.getLogger( S3ExportImpl.class );
+/**
+ * Uploads export parts to an S3 bucket.  Setting s3_endpoint in the storage info points it at any other S3 compatible
+ * store.
+ */
+public class S3ExportSink implements ExportSink {
+    Logger logger = LoggerFactory.getLogger( S3ExportSink.class );
 
-    @Override
-    public void copyToS3( File ephemeral, final Map<String,Object> exportInfo, String filename ) {
+    private final String bucketName;
+    private final BlobStoreContext context;
+
+
+    public S3ExportSink( final Map<String,Object> exportInfo ) {
 
-        /*won't need any of the properties as I have the export info*/
         Map<String,Object> properties = ( Map<String, Object> ) exportInfo.get( "properties" );
 
         Map<String, Object> storage_info = (Map<String,Object>)properties.get( "storage_info" );
 
-        String bucketName = ( String ) storage_info.get( "bucket_location" );
+        bucketName = ( String ) storage_info.get( "bucket_location" );
         String accessId = ( String ) storage_info.get( "s3_access_id");
         String secretKey = ( String ) storage_info.get( "s3_key" );
+        String endpoint = ( String ) storage_info.get( "s3_endpoint" );
 
         Properties overrides = new Properties();
         overrides.setProperty( "s3" + ".identity", accessId );
@@ -61,47 +68,46 @@ public class S3ExportImpl implements S3Export {
                 .of( new JavaUrlHttpCommandExecutorServiceModule(), new Log4JLoggingModule(),
                         new NettyPayloadModule() );
 
-        BlobStoreContext context = ContextBuilder.newBuilder( "s3" )
+        ContextBuilder builder = ContextBuilder.newBuilder( "s3" )
             .credentials(accessId, secretKey)
             .modules(MODULES)
-            .overrides(overrides)
-            .buildView(BlobStoreContext.class);
+            .overrides(overrides);
 
-        // Create Container (the bucket in s3)
-        try {
-            BlobStore blobStore = context.getBlobStore();
-            if ( blobStore.createContainerInLocation(null, bucketName) ) {
-                logger.info( "Created bucket " + bucketName );
-            }
+        if ( endpoint != null ) {
+            builder.endpoint( endpoint );
         }
-        catch ( Exception ex ) {
-            logger.error( "Could not start binary service: {}", ex.getMessage() );
-            return;
+
+        context = builder.buildView(BlobStoreContext.class);
+
+        // Create Container (the bucket in s3)
+        BlobStore blobStore = context.getBlobStore();
+        if ( blobStore.createContainerInLocation(null, bucketName) ) {
+            logger.info( "Created bucket " + bucketName );
         }
+    }
 
-        try {
-            BlobStore blobStore = context.getBlobStore();
 
-            // need this for JClouds 1.7.x:
-//            BlobBuilder blobBuilder =
-//                blobStore.blobBuilder( filename ).payload( ephemeral ).calculateMD5().contentType( "application/json" );
+    @Override
+    public void writePart( final String name, final File part ) throws Exception {
 
-            // needed for JClouds 1.8.x:
-            BlobBuilder blobBuilder = blobStore.blobBuilder( filename )
-                .payload( ephemeral )
-                .contentMD5(Files.hash( ephemeral, Hashing.md5() ))
-                .contentType("application/json");
+        BlobStore blobStore = context.getBlobStore();
 
-            Blob blob = blobBuilder.build();
+        BlobBuilder blobBuilder = blobStore.blobBuilder( name )
+            .payload( part )
+            .contentMD5(Files.hash( part, Hashing.md5() ))
+            .contentType("application/gzip");
 
-            final String uploadedFile = blobStore.putBlob(
-                bucketName, blob, PutOptions.Builder.multipart() );
+        Blob blob = blobBuilder.build();
 
-            logger.info("Uploaded file name={} etag={}", filename, uploadedFile );
-        }
-        catch ( Exception e ) {
-            logger.error( "Error uploading to blob store", e );
-        }
+        final String uploadedFile = blobStore.putBlob(
+            bucketName, blob, PutOptions.Builder.multipart() );
+
+        logger.info("Uploaded file name={} etag={}", name, uploadedFile );
     }
 
+
+    @Override
+    public void close() {
+        context.close();
+    }
 }
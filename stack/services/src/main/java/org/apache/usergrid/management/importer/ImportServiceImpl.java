@@ -45,8 +45,13 @@ import rx.schedulers.Schedulers;
 
 import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
+import java.util.zip.GZIPInputStream;
 
 
 public class ImportServiceImpl implements ImportService {
@@ -57,6 +62,12 @@ public class ImportServiceImpl implements ImportService {
     public static final String FILE_IMPORT_JOB_NAME = "fileImportJob";
     public static final int HEARTBEAT_COUNT = 50;
 
+    public static final String IMPORT_BATCH_SIZE = "usergrid.import.batch.size";
+    private static final int DEFAULT_IMPORT_BATCH_SIZE = 100;
+
+    /** Whole files written by older exports, and the gzipped parts the export service writes now */
+    public static final List<String> IMPORT_FILE_SUFFIXES = Arrays.asList(".json", ".json.gz");
+
     public static final String APP_IMPORT_CONNECTION = "imports";
     public static final String IMPORT_FILE_INCLUDES_CONNECTION = "files";
 
@@ -72,6 +83,8 @@ public class ImportServiceImpl implements ImportService {
 
     private JsonFactory jsonFactory = new JsonFactory();
 
+    private int batchSize = DEFAULT_IMPORT_BATCH_SIZE;
+
 
     @PostConstruct
     public void init() {
@@ -515,6 +528,12 @@ public class ImportServiceImpl implements ImportService {
     }
 
 
+    public void setProperties(final Properties properties) {
+        batchSize = Integer.parseInt(
+            properties.getProperty(IMPORT_BATCH_SIZE, String.valueOf(DEFAULT_IMPORT_BATCH_SIZE)));
+    }
+
+
     /**
      * This method creates sub-jobs for each file i.e. File Import Jobs.
      *
@@ -575,7 +594,7 @@ public class ImportServiceImpl implements ImportService {
             return;
         }
 
-        // get list of all JSON files in S3 bucket
+        // get list of all JSON files and gzipped JSON parts in S3 bucket
 
         final List<String> bucketFiles;
         try {
@@ -593,7 +612,7 @@ public class ImportServiceImpl implements ImportService {
                     throw new UnsupportedOperationException("Import applications not supported");
 
                 } else {
-                    bucketFiles = s3Import.getBucketFileNames(bucketName, ".json", accessId, secretKey);
+                    bucketFiles = s3Import.getBucketFileNames(bucketName, IMPORT_FILE_SUFFIXES, accessId, secretKey);
                 }
             }
 
@@ -889,12 +908,29 @@ public class ImportServiceImpl implements ImportService {
 
 
     /**
-     * Gets the JSON parser for given file
+     * Gets the JSON parser for given file.  Downloaded files lose their names, so a gzipped export part is recognized
+     * by its header and decompressed as it's parsed.
      *
      * @param collectionFile the file for which JSON parser is required
      */
     private JsonParser getJsonParserForFile(File collectionFile) throws Exception {
-        JsonParser jp = jsonFactory.createJsonParser(collectionFile);
+        InputStream in = new BufferedInputStream(new FileInputStream(collectionFile));
+
+        try {
+            in.mark(2);
+            int magic = in.read() | (in.read() << 8);
+            in.reset();
+
+            if (magic == GZIPInputStream.GZIP_MAGIC) {
+                in = new GZIPInputStream(in);
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+
+        // the parser closes the stream when it's closed
+        JsonParser jp = jsonFactory.createJsonParser(in);
         jp.setCodec(new ObjectMapper());
         return jp;
     }
@@ -961,10 +997,23 @@ public class ImportServiceImpl implements ImportService {
         final int entityNumSkip = (int) tracker.getTotalEntityCount();
 
 
-        entityEventObservable.takeWhile(writeEvent -> !tracker.shouldStopProcessingEntities()).skip(entityNumSkip)
-            .flatMap(writeEvent -> {
+        final Observable<WriteEvent> entityWrites =
+            entityEventObservable.takeWhile(writeEvent -> !tracker.shouldStopProcessingEntities()).skip(entityNumSkip);
+
+        if (batchSize > 1) {
+
+            // write the entities in groups that are verified, written and indexed together
+            entityWrites.buffer(batchSize).flatMap(writeEvents -> {
+                writeEntityBatch(em, fileImport, tracker, writeEvents);
+                return Observable.from(writeEvents);
+            }).reduce(0, heartbeatReducer).toBlocking().last();
+
+        } else {
+
+            entityWrites.flatMap(writeEvent -> {
                 return Observable.just(writeEvent).doOnNext(doWork);
             }, 10).reduce(0, heartbeatReducer).toBlocking().last();
+        }
 
 
         jp.close();
@@ -1037,6 +1086,88 @@ public class ImportServiceImpl implements ImportService {
     }
 
 
+    /**
+     * Creates a group of parsed entities with one bulk create per entity type.  Entities without a UUID, or with a
+     * UUID that appears earlier in the group, are written one at a time.  If a bulk create fails as a whole, its
+     * entities are retried one at a time so that each failure is tracked against the right entity.
+     */
+    private void writeEntityBatch(
+        final EntityManager em,
+        final FileImport fileImport,
+        final FileImportTracker tracker,
+        final List<WriteEvent> writeEvents) {
+
+        final Map<String, Map<UUID, EntityEvent>> entityEventsByType = new LinkedHashMap<>();
+        final List<WriteEvent> singleEvents = new ArrayList<>();
+
+        for (WriteEvent writeEvent : writeEvents) {
+
+            if (!(writeEvent instanceof EntityEvent)) {
+                singleEvents.add(writeEvent);
+                continue;
+            }
+
+            final EntityEvent entityEvent = (EntityEvent) writeEvent;
+
+            Map<UUID, EntityEvent> entityEvents = entityEventsByType.get(entityEvent.entityType);
+            if (entityEvents == null) {
+                entityEvents = new LinkedHashMap<>();
+                entityEventsByType.put(entityEvent.entityType, entityEvents);
+            }
+
+            if (entityEvent.entityUuid == null || entityEvents.containsKey(entityEvent.entityUuid)) {
+                singleEvents.add(writeEvent);
+                continue;
+            }
+
+            entityEvents.put(entityEvent.entityUuid, entityEvent);
+        }
+
+        for (Map.Entry<String, Map<UUID, EntityEvent>> entry : entityEventsByType.entrySet()) {
+
+            final Map<UUID, Map<String, Object>> entities = new LinkedHashMap<>(entry.getValue().size());
+            for (EntityEvent entityEvent : entry.getValue().values()) {
+                entities.put(entityEvent.entityUuid, entityEvent.properties);
+            }
+
+            final Map<UUID, Exception> failures;
+            try {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Writing {} imported entities of type {} into app {}",
+                        new Object[]{entities.size(), entry.getKey(), em.getApplication().getUuid()});
+                }
+
+                failures = em.createBatch(entry.getKey(), entities);
+
+            } catch (Exception e) {
+                logger.error("Error writing entity batch, writing entities one at a time. From file:"
+                    + fileImport.getFileName(), e);
+
+                for (EntityEvent entityEvent : entry.getValue().values()) {
+                    entityEvent.doWrite(em, fileImport, tracker);
+                }
+                continue;
+            }
+
+            for (UUID entityUuid : entities.keySet()) {
+                final Exception failure = failures.get(entityUuid);
+
+                if (failure == null) {
+                    tracker.entityWritten();
+                } else {
+                    logger.error("Error writing entity. From file:" + fileImport.getFileName(), failure);
+
+                    tracker.entityFailed(failure.getMessage() + " From file: " + fileImport.getFileName());
+                }
+            }
+        }
+
+        for (WriteEvent writeEvent : singleEvents) {
+            writeEvent.doWrite(em, fileImport, tracker);
+        }
+    }
+
+
     private interface WriteEvent {
         public void doWrite(EntityManager em, FileImport fileImport, FileImportTracker tracker);
     }
@@ -20,6 +20,7 @@ package org.apache.usergrid.management.importer;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -29,8 +30,11 @@ import java.util.Map;
  */
 public interface S3Import {
 
+    /**
+     * @return the names of the files in the bucket ending with any of the given suffixes
+     */
     List<String> getBucketFileNames(
-        String bucketName, String endsWith, String accessId, String secretKey ) throws Exception;
+        String bucketName, Collection<String> endsWith, String accessId, String secretKey ) throws Exception;
 
     public File copyFileFromBucket(
         String blobFileName, String bucketName, String accessId, String secretKey ) throws Exception;
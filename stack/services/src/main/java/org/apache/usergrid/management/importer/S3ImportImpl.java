@@ -93,7 +93,7 @@ public class S3ImportImpl implements S3Import {
 
     @Override
     public List<String> getBucketFileNames(
-        String bucketName, String endsWith, String accessId, String secretKey ) {
+        String bucketName, Collection<String> endsWith, String accessId, String secretKey ) {
 
         // get setup to use JCloud BlobStore interface to AWS S3
 
@@ -125,8 +125,11 @@ public class S3ImportImpl implements S3Import {
         List<String> blobFileNames = new ArrayList<>();
         for ( Object pageSet : pageSets ) {
             String blobFileName = ((MutableBlobMetadata)pageSet).getName();
-            if ( blobFileName.endsWith( endsWith )) {
-                blobFileNames.add(blobFileName);
+            for ( String suffix : endsWith ) {
+                if ( blobFileName.endsWith( suffix )) {
+                    blobFileNames.add(blobFileName);
+                    break;
+                }
             }
         }
 
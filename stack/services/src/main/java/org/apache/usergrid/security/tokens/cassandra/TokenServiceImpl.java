@@ -19,6 +19,13 @@ package org.apache.usergrid.security.tokens.cassandra;
 
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.usergrid.utils.ConversionUtils;
 import org.slf4j.Logger;
@@ -40,6 +47,11 @@ import org.apache.usergrid.security.tokens.exceptions.InvalidTokenException;
 import org.apache.usergrid.utils.JsonUtils;
 import org.apache.usergrid.utils.UUIDUtils;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 import me.prettyprint.hector.api.Keyspace;
 import me.prettyprint.hector.api.beans.HColumn;
 import me.prettyprint.hector.api.mutation.Mutator;
@@ -78,6 +90,10 @@ public class TokenServiceImpl implements TokenService {
     public static final String PROPERTIES_AUTH_TOKEN_EXPIRES_FROM_LAST_USE =
             "usergrid.auth.token_expires_from_last_use";
     public static final String PROPERTIES_AUTH_TOKEN_REFRESH_REUSES_ID = "usergrid.auth.token_refresh_reuses_id";
+    public static final String PROPERTIES_AUTH_TOKEN_CACHE_TTL = "usergrid.auth.token.cache.ttl";
+    public static final String PROPERTIES_AUTH_TOKEN_CACHE_SIZE = "usergrid.auth.token.cache.size";
+    public static final String PROPERTIES_AUTH_TOKEN_ACCESS_FLUSH_INTERVAL =
+            "usergrid.auth.token.access.flush.interval";
 
     private static final String TOKEN_UUID = "uuid";
     private static final String TOKEN_TYPE = "type";
@@ -149,6 +165,30 @@ public class TokenServiceImpl implements TokenService {
     long maxEmailTokenAge = LONG_TOKEN_AGE;
     long maxOfflineTokenAge = LONG_TOKEN_AGE;
 
+    // How long a validated token may be served from memory before it's re-read from cassandra
+    public static final long TOKEN_CACHE_TTL = 10 * 1000;
+
+    public static final long TOKEN_CACHE_SIZE = 10000;
+
+    // How often access time updates are written back to cassandra
+    public static final long TOKEN_ACCESS_FLUSH_INTERVAL = 5 * 1000;
+
+    // The maximum number of token rows written in a single access time mutation
+    private static final int TOKEN_ACCESS_FLUSH_BATCH = 500;
+
+    long tokenCacheTtl = TOKEN_CACHE_TTL;
+    long tokenCacheSize = TOKEN_CACHE_SIZE;
+    long tokenAccessFlushInterval = TOKEN_ACCESS_FLUSH_INTERVAL;
+
+    private volatile Cache<UUID, CachedToken> tokenCache;
+
+    private final ConcurrentMap<UUID, AccessUpdate> pendingAccess = new ConcurrentHashMap<UUID, AccessUpdate>();
+
+    private final ScheduledExecutorService accessFlusher = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat( "TokenAccessFlusher-%d" ).setDaemon( true ).build() );
+
+    private ScheduledFuture<?> accessFlushTask;
+
     protected CassandraService cassandra;
 
     protected Properties properties;
@@ -157,7 +197,7 @@ public class TokenServiceImpl implements TokenService {
 
 
     public TokenServiceImpl() {
-
+        configureTokenCache();
     }
 
 
@@ -201,6 +241,53 @@ public class TokenServiceImpl implements TokenService {
             setExpirationFromProperties( "offline" );
 
             tokenSecretSalt = properties.getProperty( PROPERTIES_AUTH_TOKEN_SECRET_SALT, TOKEN_SECRET_SALT );
+
+            tokenCacheTtl = Long.parseLong(
+                    properties.getProperty( PROPERTIES_AUTH_TOKEN_CACHE_TTL, "" + TOKEN_CACHE_TTL ) );
+            tokenCacheSize = Long.parseLong(
+                    properties.getProperty( PROPERTIES_AUTH_TOKEN_CACHE_SIZE, "" + TOKEN_CACHE_SIZE ) );
+            tokenAccessFlushInterval = Long.parseLong( properties
+                    .getProperty( PROPERTIES_AUTH_TOKEN_ACCESS_FLUSH_INTERVAL, "" + TOKEN_ACCESS_FLUSH_INTERVAL ) );
+
+            configureTokenCache();
+        }
+    }
+
+
+    /**
+     * Build the token cache and schedule the access time flush from the current settings.  A cache ttl of 0 reads
+     * every token from cassandra, and a flush interval of 0 writes access times on the request thread.
+     */
+    private synchronized void configureTokenCache() {
+        if ( tokenCacheTtl > 0 ) {
+            tokenCache = CacheBuilder.newBuilder().maximumSize( tokenCacheSize )
+                                     .expireAfterWrite( tokenCacheTtl, TimeUnit.MILLISECONDS ).build();
+        }
+        else {
+            tokenCache = null;
+        }
+
+        if ( accessFlushTask != null ) {
+            accessFlushTask.cancel( false );
+            accessFlushTask = null;
+        }
+
+        if ( tokenAccessFlushInterval > 0 ) {
+            accessFlushTask = accessFlusher.scheduleWithFixedDelay( new Runnable() {
+                @Override
+                public void run() {
+                    //an exception would cancel the schedule, so log it and try again next time
+                    try {
+                        flushTokenAccess();
+                    }
+                    catch ( Throwable t ) {
+                        logger.error( "Unable to flush token access times", t );
+                    }
+                }
+            }, tokenAccessFlushInterval, tokenAccessFlushInterval, TimeUnit.MILLISECONDS );
+        }
+        else {
+            flushTokenAccess();
         }
     }
 
@@ -314,35 +401,184 @@ public class TokenServiceImpl implements TokenService {
             return null;
         }
 
+        //update the token
+        long now = currentTimeMillis();
+
+        CachedToken cachedToken = getCachedToken( uuid, TokenCategory.getFromBase64String( token ), now );
+
+        TokenInfo tokenInfo;
+        long inactive;
+
+        synchronized ( cachedToken ) {
+            tokenInfo = cachedToken.copyTokenInfo();
+
+            inactive = now - tokenInfo.getAccessed();
+            if ( inactive > tokenInfo.getInactive() ) {
+                tokenInfo.setInactive( inactive );
+                cachedToken.tokenInfo.setInactive( inactive );
+            }
+            else {
+                inactive = -1;
+            }
+
+            cachedToken.tokenInfo.setAccessed( now );
+        }
+
+        int ttl = calcTokenTime( tokenInfo.getExpiration( cachedToken.maxTokenTtl ) );
+
+        updateTokenAccess( uuid, new AccessUpdate( now, inactive, ttl ) );
+
+        return tokenInfo;
+    }
+
+
+    /**
+     * Get the token from the cache, loading it from cassandra on a miss.  Entries that have been idle longer than
+     * their expiration are reloaded, since their columns may have expired in cassandra.
+     */
+    private CachedToken getCachedToken( final UUID uuid, final TokenCategory tokenCategory, final long now )
+            throws Exception {
+
+        final Cache<UUID, CachedToken> cache = tokenCache;
+
+        if ( cache == null ) {
+            return loadCachedToken( uuid, tokenCategory );
+        }
+
+        CachedToken cachedToken = cache.getIfPresent( uuid );
+
+        //only drop the entry we saw, a revoke may have replaced it since
+        if ( cachedToken != null && cachedToken != REVOKED && cachedToken.isIdleExpired( now ) ) {
+            cache.asMap().remove( uuid, cachedToken );
+            cachedToken = null;
+        }
+
+        if ( cachedToken == null ) {
+            try {
+                cachedToken = cache.get( uuid, () -> loadCachedToken( uuid, tokenCategory ) );
+            }
+            catch ( ExecutionException | UncheckedExecutionException e ) {
+                if ( e.getCause() instanceof Exception ) {
+                    throw ( Exception ) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        if ( cachedToken == REVOKED ) {
+            throw new InvalidTokenException( "Token not found in database" );
+        }
+
+        return cachedToken;
+    }
+
+
+    private CachedToken loadCachedToken( UUID uuid, TokenCategory tokenCategory ) throws Exception {
         TokenInfo tokenInfo = getTokenInfo( uuid );
 
-        if ( tokenInfo == null ) {
-            return null;
+        return new CachedToken( tokenInfo, getMaxTtl( tokenCategory, tokenInfo.getPrincipal() ) );
+    }
+
+
+    /** Remove the token from the cache and drop any access time we haven't written yet */
+    private void invalidateToken( UUID uuid ) {
+        final Cache<UUID, CachedToken> cache = tokenCache;
+
+        if ( cache != null ) {
+            cache.invalidate( uuid );
         }
 
-        //update the token
-        long now = currentTimeMillis();
+        pendingAccess.remove( uuid );
+    }
 
-        long maxTokenTtl = getMaxTtl( TokenCategory.getFromBase64String( token ), tokenInfo.getPrincipal() );
 
+    /**
+     * Replace the cached token with a revoked marker and drop any access time we haven't written yet.  A load that
+     * read the token before it was deleted finds its entry replaced and doesn't cache it, which it would if we only
+     * invalidated.  The marker expires with the cache ttl, by then the token is gone from cassandra.
+     */
+    private void revokeCachedToken( UUID uuid ) {
+        final Cache<UUID, CachedToken> cache = tokenCache;
+
+        if ( cache != null ) {
+            cache.put( uuid, REVOKED );
+        }
+
+        pendingAccess.remove( uuid );
+    }
+
+
+    /** Record an access, either writing it immediately or merging it into the next flush */
+    private void updateTokenAccess( UUID uuid, AccessUpdate update ) throws Exception {
+        if ( tokenAccessFlushInterval <= 0 ) {
+            Mutator<UUID> batch = createMutator( cassandra.getUsergridApplicationKeyspace(), ue );
+            update.addInsertions( batch, uuid );
+            batch.execute();
+            return;
+        }
+
+        pendingAccess.merge( uuid, update, AccessUpdate::merge );
+    }
+
+
+    /**
+     * Write all pending access time updates to cassandra.  Only the latest access and the longest inactive period
+     * of each token are written, regardless of how many requests used it since the last flush.
+     */
+    public void flushTokenAccess() {
+        if ( pendingAccess.isEmpty() || cassandra == null ) {
+            return;
+        }
+
+        Map<UUID, AccessUpdate> batchUpdates = new HashMap<UUID, AccessUpdate>();
+
+        for ( UUID uuid : pendingAccess.keySet() ) {
+            AccessUpdate update = pendingAccess.remove( uuid );
+
+            if ( update == null ) {
+                continue;
+            }
+
+            batchUpdates.put( uuid, update );
+
+            if ( batchUpdates.size() >= TOKEN_ACCESS_FLUSH_BATCH ) {
+                writeTokenAccess( batchUpdates );
+                batchUpdates = new HashMap<UUID, AccessUpdate>();
+            }
+        }
+
+        if ( !batchUpdates.isEmpty() ) {
+            writeTokenAccess( batchUpdates );
+        }
+    }
+
+
+    private void writeTokenAccess( Map<UUID, AccessUpdate> updates ) {
         Mutator<UUID> batch = createMutator( cassandra.getUsergridApplicationKeyspace(), ue );
 
-        HColumn<String, Long> col =
-                createColumn( TOKEN_ACCESSED, now, calcTokenTime( tokenInfo.getExpiration( maxTokenTtl ) ),
-                        se, le );
-        batch.addInsertion( uuid, TOKENS_CF, col );
+        for ( Map.Entry<UUID, AccessUpdate> entry : updates.entrySet() ) {
+            entry.getValue().addInsertions( batch, entry.getKey() );
+        }
+
+        try {
+            batch.execute();
+        }
+        catch ( Exception e ) {
+            logger.error( "Unable to write access times for {} tokens, retrying on the next flush", updates.size(),
+                    e );
 
-        long inactive = now - tokenInfo.getAccessed();
-        if ( inactive > tokenInfo.getInactive() ) {
-            col = createColumn( TOKEN_INACTIVE, inactive, calcTokenTime( tokenInfo.getExpiration( maxTokenTtl ) ),
-                    se, le );
-            batch.addInsertion( uuid, TOKENS_CF, col );
-            tokenInfo.setInactive( inactive );
+            //put them back, newer accesses that arrived in the meantime are merged in
+            for ( Map.Entry<UUID, AccessUpdate> entry : updates.entrySet() ) {
+                pendingAccess.merge( entry.getKey(), entry.getValue(), AccessUpdate::merge );
+            }
         }
+    }
 
-        batch.execute();
 
-        return tokenInfo;
+    /** Write pending access times and stop the flush thread */
+    public void shutdown() {
+        accessFlusher.shutdown();
+        flushTokenAccess();
     }
 
 
@@ -399,6 +635,10 @@ public class TokenServiceImpl implements TokenService {
         batch.addDeletion( principalKey( principal ), PRINCIPAL_TOKEN_CF );
 
         batch.execute();
+
+        for ( UUID tokenId : tokenIds ) {
+            revokeCachedToken( tokenId );
+        }
     }
 
 
@@ -436,6 +676,8 @@ public class TokenServiceImpl implements TokenService {
         batch.addDeletion( bytebuffer( tokenId ), TOKENS_CF );
 
         batch.execute();
+
+        revokeCachedToken( tokenId );
     }
 
 
@@ -539,6 +781,8 @@ public class TokenServiceImpl implements TokenService {
         }
 
         m.execute();
+
+        invalidateToken( tokenInfo.getUuid() );
     }
 
 
@@ -707,4 +951,69 @@ public class TokenServiceImpl implements TokenService {
 
 
     private static final int MAX_TTL = 20 * 365 * 24 * 60 * 60;
+
+
+    /** Cached in place of a revoked token until the cache entry expires */
+    private static final CachedToken REVOKED = new CachedToken( null, 0 );
+
+
+    /** A validated token along with the max ttl of its application, as of when it was read */
+    private static final class CachedToken {
+
+        private final TokenInfo tokenInfo;
+        private final long maxTokenTtl;
+
+
+        private CachedToken( TokenInfo tokenInfo, long maxTokenTtl ) {
+            this.tokenInfo = tokenInfo;
+            this.maxTokenTtl = maxTokenTtl;
+        }
+
+
+        /** True if the token hasn't been used within its expiration, so its columns have timed out */
+        private synchronized boolean isIdleExpired( long now ) {
+            long expiration = tokenInfo.getExpiration( maxTokenTtl );
+
+            return expiration != Long.MAX_VALUE && now - tokenInfo.getAccessed() >= expiration;
+        }
+
+
+        private TokenInfo copyTokenInfo() {
+            return new TokenInfo( tokenInfo.getUuid(), tokenInfo.getType(), tokenInfo.getCreated(),
+                    tokenInfo.getAccessed(), tokenInfo.getInactive(), tokenInfo.getDuration(),
+                    tokenInfo.getPrincipal(), tokenInfo.getState(), tokenInfo.getWorkflowOrgId() );
+        }
+    }
+
+
+    /** The access time columns to write for a token.  An inactive value of -1 leaves the stored value as is */
+    private static final class AccessUpdate {
+
+        private final long accessed;
+        private final long inactive;
+        private final int ttl;
+
+
+        private AccessUpdate( long accessed, long inactive, int ttl ) {
+            this.accessed = accessed;
+            this.inactive = inactive;
+            this.ttl = ttl;
+        }
+
+
+        private AccessUpdate merge( AccessUpdate other ) {
+            AccessUpdate latest = accessed >= other.accessed ? this : other;
+
+            return new AccessUpdate( latest.accessed, Math.max( inactive, other.inactive ), latest.ttl );
+        }
+
+
+        private void addInsertions( Mutator<UUID> batch, UUID uuid ) {
+            batch.addInsertion( uuid, TOKENS_CF, createColumn( TOKEN_ACCESSED, accessed, ttl, se, le ) );
+
+            if ( inactive >= 0 ) {
+                batch.addInsertion( uuid, TOKENS_CF, createColumn( TOKEN_INACTIVE, inactive, ttl, se, le ) );
+            }
+        }
+    }
 }
@@ -17,6 +17,8 @@
 package org.apache.usergrid.services.assets.data;
 
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.HashMap;
@@ -44,6 +46,18 @@ public class AssetUtils {
     public static final String CHECKSUM = "checksum";
     public static final String LAST_MODIFIED = "last-modified";
 
+    /** The SHA-256 of the asset's content, which is also the key of the blob holding it */
+    public static final String CONTENT_HASH = "content-hash";
+
+    private static final String CONTENT_HASH_ALGORITHM = "SHA-256";
+
+    /** Content type prefixes that are already compressed, compressing them again only costs cpu */
+    public static final String[] COMPRESSED_CONTENT_TYPES = {
+            "image/", "video/", "audio/", "application/zip", "application/gzip", "application/x-gzip",
+            "application/x-compress", "application/x-bzip2", "application/x-7z-compressed",
+            "application/x-rar-compressed", "application/pdf"
+    };
+
 
     /** Returns the key for the bucket in the following form: [appId]/[{@link org.apache.usergrid.persistence.entities
      * .Asset#getPath()} */
@@ -54,6 +68,85 @@ public class AssetUtils {
     }
 
 
+    /**
+     * Returns the key of the content addressed blob in the following form: [appId]/blobs/[contentHash].  Every asset
+     * of the application with the same content shares the blob.
+     */
+    public static String buildBlobKey( UUID appId, String contentHash ) {
+        Preconditions.checkArgument( appId != null, "The appId provided to buildBlobKey was null" );
+        Preconditions.checkArgument( contentHash != null, "The contentHash provided to buildBlobKey was null" );
+        return appId.toString().concat( "/blobs/" ).concat( contentHash );
+    }
+
+
+    /**
+     * Returns the prefix under which the references to a blob are kept, one empty marker per asset using it:
+     * [appId]/blobs/[contentHash].refs/
+     */
+    public static String buildBlobReferencePrefix( UUID appId, String contentHash ) {
+        return buildBlobKey( appId, contentHash ).concat( ".refs/" );
+    }
+
+
+    /** Returns the prefix of the records of blobs that lost their last reference */
+    public static String buildOrphanPrefix( UUID appId ) {
+        Preconditions.checkArgument( appId != null, "The appId provided to buildOrphanPrefix was null" );
+        return appId.toString().concat( "/orphans/" );
+    }
+
+
+    /** Returns the key of the record that the blob lost its last reference, and can be deleted if none appear */
+    public static String buildOrphanKey( UUID appId, String contentHash ) {
+        Preconditions.checkArgument( contentHash != null, "The contentHash provided to buildOrphanKey was null" );
+        return buildOrphanPrefix( appId ).concat( contentHash );
+    }
+
+
+    /** Returns the key of the marker recording that the asset references the blob */
+    public static String buildBlobReferenceKey( UUID appId, String contentHash, Entity entity ) {
+        Preconditions.checkArgument( entity.getUuid() != null,
+                "The asset provided to buildBlobReferenceKey had a null UUID" );
+        return buildBlobReferencePrefix( appId, contentHash ).concat( entity.getUuid().toString() );
+    }
+
+
+    /**
+     * Returns the key holding the content hash the asset currently references: [appId]/refs/[entityUuid].  The store
+     * keeps this itself rather than trusting the entity, since updates may replace the entity's file-metadata.
+     */
+    public static String buildAssetReferenceKey( UUID appId, Entity entity ) {
+        Preconditions.checkArgument( entity.getUuid() != null,
+                "The asset provided to buildAssetReferenceKey had a null UUID" );
+        Preconditions.checkArgument( appId != null, "The appId provided to buildAssetReferenceKey was null" );
+        return appId.toString().concat( "/refs/" ).concat( entity.getUuid().toString() );
+    }
+
+
+    /**
+     * The content hash of the asset, or null if it was stored before assets were content addressed and lives under
+     * {@link #buildAssetKey(UUID, Entity)}.  Unlike {@link #getFileMetadata(Entity)} this doesn't modify the entity.
+     */
+    public static String getContentHash( Entity entity ) {
+        Map<String, Object> metadata = ( Map<String, Object> ) entity.getProperty( AssetUtils.FILE_METADATA );
+        if ( metadata == null ) {
+            return null;
+        }
+        Object hash = metadata.get( CONTENT_HASH );
+        return hash == null ? null : hash.toString();
+    }
+
+
+    /** A new digest for computing the content hash of an upload as it streams in */
+    public static MessageDigest newContentDigest() {
+        try {
+            return MessageDigest.getInstance( CONTENT_HASH_ALGORITHM );
+        }
+        catch ( NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( CONTENT_HASH_ALGORITHM + " is not available", e );
+        }
+    }
+
+
     /** Attempt to parse the Date from a Date-based header, primarily If-Modified-Since */
     public static Date fromIfModifiedSince( String headerValue ) {
         Date moded = null;
@@ -69,6 +162,28 @@ public class AssetUtils {
     }
 
 
+    /** True if the content type is worth compressing. Svg is the one image type that's plain text */
+    public static boolean isCompressible( String contentType, String[] compressedContentTypes ) {
+        if ( StringUtils.isEmpty( contentType ) ) {
+            return false;
+        }
+
+        String type = contentType.toLowerCase();
+
+        if ( type.startsWith( "image/svg" ) ) {
+            return true;
+        }
+
+        for ( String compressed : compressedContentTypes ) {
+            if ( type.startsWith( compressed ) ) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
     /** side-effect: sets file-metadata on the entity if not present */
     public static Map<String, Object> getFileMetadata( Entity entity ) {
         Map<String, Object> metadata = ( Map<String, Object> ) entity.getProperty( AssetUtils.FILE_METADATA );
@@ -18,12 +18,15 @@ package org.apache.usergrid.services.assets.data;
 
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Iterator;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
@@ -50,33 +53,44 @@ import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
 import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
-import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
 import com.amazonaws.services.s3.model.DeleteObjectRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
-import com.amazonaws.services.s3.model.ListMultipartUploadsRequest;
-import com.amazonaws.services.s3.model.MultipartUpload;
-import com.amazonaws.services.s3.model.MultipartUploadListing;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PartETag;
-import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.amazonaws.services.s3.model.UploadPartRequest;
-import com.google.common.primitives.Ints;
-import java.io.ByteArrayInputStream;
-import java.io.FileInputStream;
-import java.io.PushbackInputStream;
-import java.util.ArrayList;
-import java.util.List;
-import org.apache.commons.codec.binary.Base64;
-
 
 public class  AwsSdkS3BinaryStore implements BinaryStore {
 
     private static final Logger logger = LoggerFactory.getLogger(AwsSdkS3BinaryStore.class );
     private static final long FIVE_MB = ( FileUtils.ONE_MB * 5 );
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // enough of the start of an upload to detect its mime type
+    private static final int MIME_DETECT_SIZE = 8 * 1024;
+
+    private static final String REFERENCE_ENCODING = "US-ASCII";
+
+    private static final int NOT_FOUND = 404;
+
+    /**
+     * How long a blob without references is kept before it's deleted.  S3 has no locks, so a blob is never deleted
+     * as its last reference goes, a write of the same content may have just found it.
+     */
+    public static final String PROPERTIES_ORPHAN_GRACE_MINUTES = "usergrid.binary.orphan-grace-minutes";
+
+    // orphaned blobs looked at by each sweep
+    private static final int ORPHAN_SWEEP_SIZE = 100;
+
     private AmazonS3 s3Client;
     private String accessId;
     private String secretKey;
@@ -118,200 +132,312 @@ public class  AwsSdkS3BinaryStore implements BinaryStore {
     @Override
     public void write( final UUID appId, final Entity entity, InputStream inputStream ) throws Exception {
 
-        String uploadFileName = AssetUtils.buildAssetKey( appId, entity );
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        long written = IOUtils.copyLarge( inputStream, baos, 0, FIVE_MB );
+        // determine max size file allowed, default to 50mb
+        long maxSizeBytes = 50 * FileUtils.ONE_MB;
+        String maxSizeMbString = properties.getProperty( "usergrid.binary.max-size-mb", "50" );
+        if ( StringUtils.isNumeric( maxSizeMbString )) {
+            maxSizeBytes = Long.parseLong( maxSizeMbString ) * FileUtils.ONE_MB;
+        }
 
-        byte[] data = baos.toByteArray();
+        // always allow files up to 5mb
+        if (maxSizeBytes < 5 * FileUtils.ONE_MB ) {
+            maxSizeBytes = 5 * FileUtils.ONE_MB;
+        }
 
-        InputStream awsInputStream = new ByteArrayInputStream(data);
+        // spool the upload to a temporary file, hashing as we go.  the content hash is the key of the blob, so we
+        // only know where it goes, and whether it's already there, once the whole upload has arrived
+        File tempFile = File.createTempFile( entity.getUuid().toString().concat( "-upload" ), "tmp" );
+
+        MessageDigest contentDigest = AssetUtils.newContentDigest();
+        MessageDigest md5Digest = MessageDigest.getInstance( "MD5" );
+        ByteArrayOutputStream head = new ByteArrayOutputStream( MIME_DETECT_SIZE );
+        long written = 0;
+
+        try {
+            try ( OutputStream os = new BufferedOutputStream( new FileOutputStream( tempFile ) ) ) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ( ( read = inputStream.read( buffer ) ) != -1 ) {
+                    written += read;
+                    if ( written > maxSizeBytes ) {
+                        break;
+                    }
 
-        final Map<String, Object> fileMetadata = AssetUtils.getFileMetadata( entity );
-        fileMetadata.put( AssetUtils.LAST_MODIFIED, System.currentTimeMillis() );
+                    contentDigest.update( buffer, 0, read );
+                    md5Digest.update( buffer, 0, read );
+                    if ( head.size() < MIME_DETECT_SIZE ) {
+                        head.write( buffer, 0, Math.min( read, MIME_DETECT_SIZE - head.size() ) );
+                    }
+                    os.write( buffer, 0, read );
+                }
+            }
 
-        String mimeType = AssetMimeHandler.get().getMimeType( entity, data );
+            final Map<String, Object> fileMetadata = AssetUtils.getFileMetadata( entity );
+            fileMetadata.put( AssetUtils.LAST_MODIFIED, System.currentTimeMillis() );
 
-        Boolean overSizeLimit = false;
+            EntityManager em = emf.getEntityManager( appId );
+
+            if ( written > maxSizeBytes ) {
+                // nothing has been sent to s3 yet, so there's nothing to abort
+                logger.error( "Asset {} is larger than max size of {}", entity.getUuid(), maxSizeBytes );
+                try {
+                    fileMetadata.put( "error", "Asset size is larger than max size of " + maxSizeBytes );
+                    em.update( entity );
+                }
+                catch ( Exception e ) {
+                    logger.error( "Error updating entity with error message", e );
+                }
+                return;
+            }
 
-        EntityManager em = emf.getEntityManager( appId );
+            String contentHash = Hex.encodeHexString( contentDigest.digest() );
+            String mimeType = AssetMimeHandler.get().getMimeType( entity, head.toByteArray() );
 
+            // reference the blob before looking for it, so a sweep that starts after this keeps the blob
+            putEmptyObject( AssetUtils.buildBlobReferenceKey( appId, contentHash, entity ) );
 
-        if ( written < FIVE_MB ) { // total smaller than 5mb
+            String blobKey = AssetUtils.buildBlobKey( appId, contentHash );
+            if ( !objectExists( blobKey ) ) {
+                upload( blobKey, tempFile, written, mimeType );
+            }
+            else if ( logger.isDebugEnabled() ) {
+                logger.debug( "Asset {} has the same content as blob {}, not uploading it", entity.getUuid(),
+                        blobKey );
+            }
 
-            ObjectMetadata om = new ObjectMetadata();
-            om.setContentLength(written);
-            om.setContentType( mimeType );
-            PutObjectResult result = null;
-            result = getS3Client().putObject( bucketName, uploadFileName, awsInputStream, om );
+            String previousHash = readAssetReference( appId, entity );
+            writeAssetReference( appId, entity, contentHash );
+            if ( previousHash != null && !previousHash.equals( contentHash ) ) {
+                releaseReference( appId, previousHash, entity );
+            }
 
-            String md5sum = Hex.encodeHexString( Base64.decodeBase64(result.getContentMd5()) );
-            String eTag = result.getETag();
+            // the asset may have been stored under its own key before it was content addressed
+            getS3Client().deleteObject( bucketName, AssetUtils.buildAssetKey( appId, entity ) );
 
             fileMetadata.put( AssetUtils.CONTENT_LENGTH, written );
-
-            if(md5sum != null)
-                fileMetadata.put( AssetUtils.CHECKSUM, md5sum );
-            fileMetadata.put( AssetUtils.E_TAG, eTag );
+            fileMetadata.put( AssetUtils.CHECKSUM, Hex.encodeHexString( md5Digest.digest() ) );
+            fileMetadata.put( AssetUtils.E_TAG, contentHash );
+            fileMetadata.put( AssetUtils.CONTENT_HASH, contentHash );
+            fileMetadata.put( AssetUtils.CONTENT_TYPE, mimeType );
 
             em.update( entity );
 
+            // a sweep that listed the references just before ours was written may have deleted the blob since we
+            // looked, we still have the content to put it back
+            if ( !objectExists( blobKey ) ) {
+                logger.warn( "Blob {} was swept while asset {} was written, uploading it again", blobKey,
+                        entity.getUuid() );
+                upload( blobKey, tempFile, written, mimeType );
+            }
         }
-        else { // bigger than 5mb... dump 5 mb tmp files and upload from them
-            written = 0; //reset written to 0, we still haven't wrote anything in fact
-            int partNumber = 1;
-            int firstByte = 0;
-            Boolean isFirstChunck = true;
-            List<PartETag> partETags = new ArrayList<PartETag>();
+        finally {
+            FileUtils.deleteQuietly( tempFile );
+        }
+    }
+
 
+    /** Upload the file as the object, in five megabyte parts if it's bigger than that */
+    private void upload( String key, File file, long length, String mimeType ) throws Exception {
 
-            //get the s3 client in order to initialize the multipart request
-            getS3Client();
-            InitiateMultipartUploadRequest initRequest = new InitiateMultipartUploadRequest( bucketName, uploadFileName );
-            InitiateMultipartUploadResult initResponse = getS3Client().initiateMultipartUpload( initRequest );
+        ObjectMetadata om = new ObjectMetadata();
+        om.setContentLength( length );
+        om.setContentType( mimeType );
 
+        if ( length < FIVE_MB ) {
+            getS3Client().putObject( new PutObjectRequest( bucketName, key, file ).withMetadata( om ) );
+            return;
+        }
 
-            InputStream firstChunck = new ByteArrayInputStream(data);
-            PushbackInputStream chunckableInputStream = new PushbackInputStream(inputStream, 1);
+        AmazonS3 client = getS3Client();
 
-            // determine max size file allowed, default to 50mb
-            long maxSizeBytes = 50 * FileUtils.ONE_MB;
-            String maxSizeMbString = properties.getProperty( "usergrid.binary.max-size-mb", "50" );
-            if ( StringUtils.isNumeric( maxSizeMbString )) {
-                maxSizeBytes = Long.parseLong( maxSizeMbString ) * FileUtils.ONE_MB;
-            }
+        InitiateMultipartUploadRequest initRequest =
+            new InitiateMultipartUploadRequest( bucketName, key ).withObjectMetadata( om );
+        InitiateMultipartUploadResult initResponse = client.initiateMultipartUpload( initRequest );
 
-            // always allow files up to 5mb
-            if (maxSizeBytes < 5 * FileUtils.ONE_MB ) {
-                maxSizeBytes = 5 * FileUtils.ONE_MB;
+        try {
+            List<PartETag> partETags = new ArrayList<PartETag>();
+            int partNumber = 1;
+
+            for ( long offset = 0; offset < length; offset += FIVE_MB ) {
+                long partSize = Math.min( FIVE_MB, length - offset );
+
+                UploadPartRequest uploadRequest = new UploadPartRequest().withUploadId( initResponse.getUploadId() )
+                                                                         .withBucketName( bucketName )
+                                                                         .withKey( key )
+                                                                         .withFile( file )
+                                                                         .withFileOffset( offset )
+                                                                         .withPartNumber( partNumber )
+                                                                         .withPartSize( partSize )
+                                                                         .withLastPart( offset + partSize >= length );
+                partETags.add( getS3Client().uploadPart( uploadRequest ).getPartETag() );
+                partNumber++;
             }
 
-            while (-1 != (firstByte = chunckableInputStream.read())) {
-                long partSize = 0;
-                chunckableInputStream.unread(firstByte);
-                File tempFile = File.createTempFile( entity.getUuid().toString().concat("-part").concat(String.valueOf(partNumber)), "tmp" );
+            getS3Client().completeMultipartUpload(
+                new CompleteMultipartUploadRequest( bucketName, key, initResponse.getUploadId(), partETags ) );
+        }
+        catch ( Exception e ) {
+            logger.error( "Unable to upload {}, aborting the multipart upload", key, e );
+            getS3Client().abortMultipartUpload(
+                new AbortMultipartUploadRequest( bucketName, key, initResponse.getUploadId() ) );
+            throw e;
+        }
+    }
 
-                tempFile.deleteOnExit();
-                OutputStream os = null;
-                try {
-                    os = new BufferedOutputStream( new FileOutputStream( tempFile.getAbsolutePath() ) );
 
-                    if(isFirstChunck == true) {
-                        partSize = IOUtils.copyLarge( firstChunck, os, 0, ( FIVE_MB ) );
-                        isFirstChunck = false;
-                    }
-                    else {
-                        partSize = IOUtils.copyLarge( chunckableInputStream, os, 0, ( FIVE_MB ) );
-                    }
-                    written += partSize;
+    /**
+     * Remove the asset's reference to the blob.  A blob left without references is recorded as an orphan, and only
+     * deleted by a later sweep once the grace period has passed.
+     */
+    private void releaseReference( UUID appId, String contentHash, Entity entity ) throws Exception {
+        getS3Client().deleteObject( bucketName, AssetUtils.buildBlobReferenceKey( appId, contentHash, entity ) );
 
-                    if(written> maxSizeBytes){
-                        overSizeLimit = true;
-                        logger.error( "OVERSIZED FILE. STARTING ABORT" );
-                        break;
-                        //set flag here and break out of loop to run abort
-                    }
-                }
-                finally {
-                    IOUtils.closeQuietly( os );
-                }
+        if ( !hasReferences( appId, contentHash ) ) {
+            putEmptyObject( AssetUtils.buildOrphanKey( appId, contentHash ) );
+        }
 
-                FileInputStream chunk = new FileInputStream(tempFile);
+        // the sweep is housekeeping for earlier releases, it must not fail the write or delete that triggered it
+        try {
+            sweepOrphans( appId );
+        }
+        catch ( Exception e ) {
+            logger.warn( "Unable to sweep orphaned blobs of application {}", appId, e );
+        }
+    }
 
-                Boolean isLastPart = -1 == (firstByte = chunckableInputStream.read());
-                if(!isLastPart)
-                    chunckableInputStream.unread(firstByte);
 
-                UploadPartRequest uploadRequest = new UploadPartRequest().withUploadId(initResponse.getUploadId())
-                                                                         .withBucketName(bucketName)
-                                                                         .withKey(uploadFileName)
-                                                                         .withInputStream(chunk)
-                                                                         .withPartNumber(partNumber)
-                                                                         .withPartSize(partSize)
-                                                                         .withLastPart(isLastPart);
-                partETags.add( getS3Client().uploadPart(uploadRequest).getPartETag() );
-                partNumber++;
+    /**
+     * Delete the orphaned blobs of the application that have been without references for the whole grace period.
+     * The orphan record is removed before the references are listed, so a blob released again during the sweep is
+     * recorded again rather than forgotten.
+     */
+    private void sweepOrphans( UUID appId ) throws Exception {
+        long graceMinutes = Long.parseLong( properties.getProperty( PROPERTIES_ORPHAN_GRACE_MINUTES, "60" ) );
+        long cutoff = System.currentTimeMillis() - graceMinutes * 60 * 1000;
+
+        String prefix = AssetUtils.buildOrphanPrefix( appId );
+
+        ObjectListing orphans = getS3Client().listObjects(
+            new ListObjectsRequest().withBucketName( bucketName ).withPrefix( prefix )
+                                    .withMaxKeys( ORPHAN_SWEEP_SIZE ) );
+
+        for ( S3ObjectSummary orphan : orphans.getObjectSummaries() ) {
+            if ( orphan.getLastModified().getTime() > cutoff ) {
+                continue;
             }
 
-            //check for flag here then abort.
-            if(overSizeLimit) {
+            String contentHash = orphan.getKey().substring( prefix.length() );
 
-                AbortMultipartUploadRequest abortRequest =
-                    new AbortMultipartUploadRequest( bucketName, uploadFileName, initResponse.getUploadId() );
+            getS3Client().deleteObject( bucketName, orphan.getKey() );
 
-                ListMultipartUploadsRequest listRequest = new ListMultipartUploadsRequest( bucketName );
+            if ( !hasReferences( appId, contentHash ) ) {
+                getS3Client().deleteObject( bucketName, AssetUtils.buildBlobKey( appId, contentHash ) );
+            }
+        }
+    }
 
-                MultipartUploadListing listResult = getS3Client().listMultipartUploads( listRequest );
 
-                //upadte the entity with the error.
-                try {
-                    logger.error("starting update of entity due to oversized asset");
-                    fileMetadata.put( "error", "Asset size is larger than max size of " + maxSizeBytes );
-                    em.update( entity );
-                }
-                catch ( Exception e ) {
-                    logger.error( "Error updating entity with error message", e );
-                }
+    private boolean hasReferences( UUID appId, String contentHash ) throws Exception {
+        ObjectListing references = getS3Client().listObjects(
+            new ListObjectsRequest().withBucketName( bucketName )
+                                    .withPrefix( AssetUtils.buildBlobReferencePrefix( appId, contentHash ) )
+                                    .withMaxKeys( 1 ) );
 
-                int timesIterated = 20;
-                //loop and abort all the multipart uploads
-                while ( listResult.getMultipartUploads().size()!=0  && timesIterated > 0) {
+        return !references.getObjectSummaries().isEmpty();
+    }
 
-                    getS3Client().abortMultipartUpload( abortRequest );
-                    Thread.sleep( 1000 );
-                    timesIterated--;
-                    listResult = getS3Client().listMultipartUploads( listRequest );
-                    if (logger.isDebugEnabled()) {
-                        logger.debug("Files that haven't been aborted are: ", listResult.getMultipartUploads().listIterator().toString());
-                    }
 
-                }
-                if ( timesIterated == 0 ){
-                    logger.error( "Files parts that couldn't be aborted in 20 seconds are:" );
-                    Iterator<MultipartUpload> multipartUploadIterator = listResult.getMultipartUploads().iterator();
-                    while(multipartUploadIterator.hasNext()){
-                        logger.error( multipartUploadIterator.next().getKey() );
-                    }
-                }
-            }
-            else {
-                CompleteMultipartUploadRequest request =
-                    new CompleteMultipartUploadRequest( bucketName, uploadFileName, initResponse.getUploadId(),
-                        partETags );
-                CompleteMultipartUploadResult amazonResult = getS3Client().completeMultipartUpload( request );
-                fileMetadata.put( AssetUtils.CONTENT_LENGTH, written );
-                fileMetadata.put( AssetUtils.E_TAG, amazonResult.getETag() );
-                em.update( entity );
+    /** The content hash the asset references, or null if it doesn't reference a blob */
+    private String readAssetReference( UUID appId, Entity entity ) throws Exception {
+        S3Object reference;
+        try {
+            reference = getS3Client().getObject( bucketName, AssetUtils.buildAssetReferenceKey( appId, entity ) );
+        }
+        catch ( AmazonS3Exception e ) {
+            if ( e.getStatusCode() == NOT_FOUND ) {
+                return null;
             }
+            throw e;
+        }
+
+        try ( InputStream content = reference.getObjectContent() ) {
+            return IOUtils.toString( content, REFERENCE_ENCODING ).trim();
         }
     }
 
 
-    @Override
-    public InputStream read( UUID appId, Entity entity, long offset, long length ) throws Exception {
+    private void writeAssetReference( UUID appId, Entity entity, String contentHash ) throws Exception {
+        byte[] content = contentHash.getBytes( REFERENCE_ENCODING );
 
-        S3Object object = getS3Client().getObject( bucketName, AssetUtils.buildAssetKey( appId, entity ) );
+        ObjectMetadata om = new ObjectMetadata();
+        om.setContentLength( content.length );
+        om.setContentType( "text/plain" );
 
-        byte data[] = null;
+        getS3Client().putObject( bucketName, AssetUtils.buildAssetReferenceKey( appId, entity ),
+            new ByteArrayInputStream( content ), om );
+    }
 
-        if ( offset == 0 && length == FIVE_MB ) {
-            return object.getObjectContent();
+
+    private void putEmptyObject( String key ) throws Exception {
+        ObjectMetadata om = new ObjectMetadata();
+        om.setContentLength( 0 );
+
+        getS3Client().putObject( bucketName, key, new ByteArrayInputStream( new byte[0] ), om );
+    }
+
+
+    private boolean objectExists( String key ) throws Exception {
+        try {
+            getS3Client().getObjectMetadata( bucketName, key );
+            return true;
+        }
+        catch ( AmazonS3Exception e ) {
+            if ( e.getStatusCode() == NOT_FOUND ) {
+                return false;
+            }
+            throw e;
         }
-        else {
-            object.getObjectContent().read(data, Ints.checkedCast(offset), Ints.checkedCast(length));
+    }
+
+
+    /** The key holding the asset's content, its blob unless it was stored before assets were content addressed */
+    private String objectKey( UUID appId, Entity entity ) {
+        String contentHash = AssetUtils.getContentHash( entity );
+        if ( contentHash == null ) {
+            return AssetUtils.buildAssetKey( appId, entity );
         }
+        return AssetUtils.buildBlobKey( appId, contentHash );
+    }
+
 
-        return new ByteArrayInputStream(data);
+    @Override
+    public InputStream read( UUID appId, Entity entity, long offset, long length ) throws Exception {
+
+        // the client sets the bucket name, so it has to exist before the request is built
+        AmazonS3 client = getS3Client();
+
+        GetObjectRequest request = new GetObjectRequest( bucketName, objectKey( appId, entity ) )
+            .withRange( offset, offset + length - 1 );
+
+        return client.getObject( request ).getObjectContent();
     }
 
 
     @Override
     public InputStream read( UUID appId, Entity entity ) throws Exception {
-        return read( appId, entity, 0, FIVE_MB );
+        return getS3Client().getObject( bucketName, objectKey( appId, entity ) ).getObjectContent();
     }
 
 
+    /** Removes the asset's reference to its blob, the blob is swept later if no other asset has the same content */
     @Override
     public void delete( UUID appId, Entity entity ) throws Exception {
-        getS3Client().deleteObject(new DeleteObjectRequest(bucketName, AssetUtils.buildAssetKey( appId, entity )));
+        String contentHash = readAssetReference( appId, entity );
+        if ( contentHash != null ) {
+            releaseReference( appId, contentHash, entity );
+            getS3Client().deleteObject( bucketName, AssetUtils.buildAssetReferenceKey( appId, entity ) );
+        }
+
+        getS3Client().deleteObject( new DeleteObjectRequest( bucketName, AssetUtils.buildAssetKey( appId, entity ) ) );
     }
 }
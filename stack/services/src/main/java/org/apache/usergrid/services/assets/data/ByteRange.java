@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.services.assets.data;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/** A single range of bytes of an asset, as requested with an HTTP Range header */
+public class ByteRange {
+
+    private static final String BYTES_UNIT = "bytes=";
+
+    // more ranges than this is a client trying to make us seek around the file
+    private static final int MAX_RANGES = 16;
+
+    private final long start;
+    private final long end;
+
+
+    public ByteRange( long start, long end ) {
+        this.start = start;
+        this.end = end;
+    }
+
+
+    /** The first byte of the range */
+    public long getStart() {
+        return start;
+    }
+
+
+    /** The last byte of the range, inclusive */
+    public long getEnd() {
+        return end;
+    }
+
+
+    public long getLength() {
+        return end - start + 1;
+    }
+
+
+    /** The value of a Content-Range header for this range of an asset with the given length */
+    public String toContentRange( long assetLength ) {
+        return "bytes " + start + "-" + end + "/" + assetLength;
+    }
+
+
+    /**
+     * Parse a Range header against an asset of the given length.  Ranges that overlap or are next to each other are
+     * merged.
+     *
+     * @return the satisfiable ranges in order, an empty list if none of them can be satisfied, or null if the header
+     *         isn't a byte range request and the whole asset should be sent
+     */
+    public static List<ByteRange> parse( String header, long assetLength ) {
+        if ( header == null ) {
+            return null;
+        }
+
+        String value = header.trim();
+        if ( !value.regionMatches( true, 0, BYTES_UNIT, 0, BYTES_UNIT.length() ) ) {
+            return null;
+        }
+
+        String[] specs = value.substring( BYTES_UNIT.length() ).split( "," );
+        if ( specs.length > MAX_RANGES ) {
+            return null;
+        }
+
+        List<ByteRange> ranges = new ArrayList<ByteRange>( specs.length );
+
+        for ( String spec : specs ) {
+            spec = spec.trim();
+
+            int dash = spec.indexOf( '-' );
+            if ( dash < 0 ) {
+                return null;
+            }
+
+            long start;
+            long end;
+
+            try {
+                if ( dash == 0 ) {
+                    // suffix range, the last n bytes
+                    long suffix = Long.parseLong( spec.substring( 1 ) );
+                    if ( suffix <= 0 || assetLength == 0 ) {
+                        continue;
+                    }
+                    start = Math.max( 0, assetLength - suffix );
+                    end = assetLength - 1;
+                }
+                else {
+                    start = Long.parseLong( spec.substring( 0, dash ) );
+                    end = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong( spec.substring( dash + 1 ) );
+                }
+            }
+            catch ( NumberFormatException e ) {
+                return null;
+            }
+
+            if ( start < 0 || end < start ) {
+                return null;
+            }
+
+            // starts past the end of the asset, can't be satisfied
+            if ( start >= assetLength ) {
+                continue;
+            }
+
+            ranges.add( new ByteRange( start, Math.min( end, assetLength - 1 ) ) );
+        }
+
+        return merge( ranges );
+    }
+
+
+    private static List<ByteRange> merge( List<ByteRange> ranges ) {
+        if ( ranges.size() < 2 ) {
+            return ranges;
+        }
+
+        List<ByteRange> sorted = new ArrayList<ByteRange>( ranges );
+        Collections.sort( sorted, ( a, b ) -> Long.compare( a.start, b.start ) );
+
+        List<ByteRange> merged = new ArrayList<ByteRange>( sorted.size() );
+        ByteRange current = sorted.get( 0 );
+
+        for ( ByteRange next : sorted.subList( 1, sorted.size() ) ) {
+            if ( next.start <= current.end + 1 ) {
+                current = new ByteRange( current.start, Math.max( current.end, next.end ) );
+            }
+            else {
+                merged.add( current );
+                current = next;
+            }
+        }
+
+        merged.add( current );
+
+        return merged;
+    }
+}
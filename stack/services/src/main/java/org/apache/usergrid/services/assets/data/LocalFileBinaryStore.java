@@ -17,8 +17,9 @@
 package org.apache.usergrid.services.assets.data;
 
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang.RandomStringUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.usergrid.persistence.Entity;
 import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.EntityManagerFactory;
@@ -27,13 +28,31 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import com.google.common.util.concurrent.Striped;
+
 import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.locks.Lock;
 
 
 /** A binary store implementation using the local file system */
@@ -43,7 +62,20 @@ public class LocalFileBinaryStore implements BinaryStore {
 
     private String reposLocation = FileUtils.getTempDirectoryPath();
 
-    private static final long FIVE_MB = ( FileUtils.ONE_MB * 5 );
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // enough of the start of an upload to detect its mime type
+    private static final int MIME_DETECT_SIZE = 8 * 1024;
+
+    /** Store a gzip copy of compressible assets next to the original, so they can be served without compressing */
+    public static final String PROPERTIES_PRECOMPRESS = "usergrid.binary.local.precompress";
+
+    private static final String PRECOMPRESSED_SUFFIX = ".gz";
+
+    private static final String REFERENCE_ENCODING = "US-ASCII";
+
+    // smaller files aren't worth a second copy
+    private static final long PRECOMPRESS_MIN_SIZE = 1024;
 
     @Autowired
     private Properties properties;
@@ -51,6 +83,9 @@ public class LocalFileBinaryStore implements BinaryStore {
     @Autowired
     private EntityManagerFactory emf;
 
+    // adding and releasing references to the same blob must not interleave, or a blob could be deleted as it's reused
+    private final Striped<Lock> blobLocks = Striped.lock( 64 );
+
     /** Control where to store the file repository. In the system's temp dir by default. */
     public void setReposLocation( String reposLocation ) {
         this.reposLocation = reposLocation;
@@ -62,23 +97,40 @@ public class LocalFileBinaryStore implements BinaryStore {
     }
 
 
+    /**
+     * The file holding the asset's content.  The content addressed blob if the asset has a content hash, otherwise
+     * the file the asset was stored in before assets were content addressed.
+     */
+    private File path( UUID appId, Entity entity ) {
+        String contentHash = AssetUtils.getContentHash( entity );
+        if ( contentHash == null ) {
+            return legacyPath( appId, entity );
+        }
+        return blobPath( appId, contentHash );
+    }
+
+
     /**
      * Common method of contructing the file object based on the configured repos and {@link
      * org.apache.usergrid.persistence.entities.Asset#getPath()}
      */
-    private File path( UUID appId, Entity entity ) {
+    private File legacyPath( UUID appId, Entity entity ) {
         return new File( reposLocation, AssetUtils.buildAssetKey( appId, entity ) );
     }
 
 
-    @Override
-    public void write( UUID appId, Entity entity, InputStream inputStream ) throws IOException {
+    private File blobPath( UUID appId, String contentHash ) {
+        return new File( reposLocation, AssetUtils.buildBlobKey( appId, contentHash ) );
+    }
 
-        File file = path( appId, entity );
 
-        FileUtils.copyInputStreamToFile( inputStream, file );
+    private File precompressedPath( File file ) {
+        return new File( file.getPath() + PRECOMPRESSED_SUFFIX );
+    }
+
 
-        long size = FileUtils.sizeOf( file );
+    @Override
+    public void write( UUID appId, Entity entity, InputStream inputStream ) throws IOException {
 
         // determine max size file allowed, default to 50mb
         long maxSizeBytes = 50 * FileUtils.ONE_MB;
@@ -92,59 +144,321 @@ public class LocalFileBinaryStore implements BinaryStore {
             maxSizeBytes = 5 * FileUtils.ONE_MB;
         }
 
-        EntityManager em = emf.getEntityManager( appId );
-        Map<String, Object> fileMetadata = AssetUtils.getFileMetadata( entity );
+        File parent = new File( reposLocation, appId.toString() );
+        mkdirs( parent );
+
+        // stream into a temporary file, hashing as we go.  only once the whole upload has arrived do we know which
+        // blob it is, and whether we already have it
+        File temp = File.createTempFile( ".upload", ".tmp", parent );
+
+        MessageDigest contentDigest = AssetUtils.newContentDigest();
+        MessageDigest md5Digest = md5();
+        ByteArrayOutputStream head = new ByteArrayOutputStream( MIME_DETECT_SIZE );
+        long size = 0;
+
+        try {
+            try ( OutputStream out = new FileOutputStream( temp ) ) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ( ( read = inputStream.read( buffer ) ) != -1 ) {
+                    size += read;
+                    if ( size > maxSizeBytes ) {
+                        break;
+                    }
+
+                    contentDigest.update( buffer, 0, read );
+                    md5Digest.update( buffer, 0, read );
+                    if ( head.size() < MIME_DETECT_SIZE ) {
+                        head.write( buffer, 0, Math.min( read, MIME_DETECT_SIZE - head.size() ) );
+                    }
+                    out.write( buffer, 0, read );
+                }
+            }
+
+            EntityManager em = emf.getEntityManager( appId );
+            Map<String, Object> fileMetadata = AssetUtils.getFileMetadata( entity );
+
+            if ( size > maxSizeBytes ) {
+                try {
+                    fileMetadata.put( "error", "Asset size is larger than max size of " + maxSizeBytes );
+                    em.update( entity );
+
+                } catch ( Exception e ) {
+                    LOG.error( "Error updating entity with error message", e);
+                }
+                return;
+            }
+
+            String contentHash = Hex.encodeHexString( contentDigest.digest() );
+            String contentType = AssetMimeHandler.get().getMimeType( entity, head.toByteArray() );
+
+            boolean stored = addReference( appId, contentHash, entity, temp );
+
+            String previousHash = readAssetReference( appId, entity );
+            writeAssetReference( appId, entity, contentHash );
+            if ( previousHash != null && !previousHash.equals( contentHash ) ) {
+                releaseReference( appId, previousHash, entity );
+            }
+
+            // the asset may have been stored under its own path before it was content addressed
+            deleteLegacy( appId, entity );
+
+            fileMetadata.put( AssetUtils.CONTENT_LENGTH, size );
+            fileMetadata.put( AssetUtils.LAST_MODIFIED, System.currentTimeMillis() );
+            fileMetadata.put( AssetUtils.CHECKSUM, Hex.encodeHexString( md5Digest.digest() ) );
+            fileMetadata.put( AssetUtils.E_TAG, contentHash );
+            fileMetadata.put( AssetUtils.CONTENT_HASH, contentHash );
+            fileMetadata.put( AssetUtils.CONTENT_TYPE, contentType );
 
-        if ( size > maxSizeBytes ) {
             try {
-                fileMetadata.put( "error", "Asset size " + size
-                        + " is larger than max size of " + maxSizeBytes );
                 em.update( entity );
+            } catch (Exception e) {
+                throw new IOException("Unable to update entity filedata", e);
+            }
 
-            } catch ( Exception e ) {
-                LOG.error( "Error updating entity with error message", e);
+            // a blob we already had was compressed when it was first stored
+            if ( stored && Boolean.parseBoolean( properties.getProperty( PROPERTIES_PRECOMPRESS, "false" ) ) ) {
+                File blob = blobPath( appId, contentHash );
+                precompress( blob, precompressedPath( blob ), contentType );
             }
-            return;
         }
+        finally {
+            FileUtils.deleteQuietly( temp );
+        }
+    }
 
-        fileMetadata.put( AssetUtils.CONTENT_LENGTH, size );
-        fileMetadata.put( AssetUtils.LAST_MODIFIED, System.currentTimeMillis() );
-        fileMetadata.put( AssetUtils.E_TAG, RandomStringUtils.randomAlphanumeric( 10 ) );
 
-        // if we were successful, write the mime type
-        if ( file.exists() ) {
-            fileMetadata.put( AssetUtils.CONTENT_TYPE , AssetMimeHandler.get().getMimeType( entity, file ));
+    /**
+     * Record that the asset references the blob with the given content.  If there's no such blob yet the upload is
+     * moved in as the blob, otherwise the upload is a duplicate and is left to be deleted.
+     *
+     * @return true if the upload became the blob
+     */
+    private boolean addReference( UUID appId, String contentHash, Entity entity, File upload ) throws IOException {
+        File blob = blobPath( appId, contentHash );
+        File marker = new File( reposLocation, AssetUtils.buildBlobReferenceKey( appId, contentHash, entity ) );
+
+        Lock lock = blobLocks.get( contentHash );
+        lock.lock();
+        try {
+            mkdirs( marker.getParentFile() );
+            if ( !marker.isFile() && !marker.createNewFile() && !marker.isFile() ) {
+                throw new IOException( "Unable to create blob reference " + marker.getAbsolutePath() );
+            }
+
+            if ( blob.isFile() ) {
+                return false;
+            }
+
+            Files.move( upload.toPath(), blob.toPath(), StandardCopyOption.ATOMIC_MOVE );
+            return true;
         }
+        finally {
+            lock.unlock();
+        }
+    }
 
+
+    /** Remove the asset's reference to the blob, deleting the blob once nothing references it */
+    private void releaseReference( UUID appId, String contentHash, Entity entity ) {
+        File blob = blobPath( appId, contentHash );
+        File marker = new File( reposLocation, AssetUtils.buildBlobReferenceKey( appId, contentHash, entity ) );
+
+        Lock lock = blobLocks.get( contentHash );
+        lock.lock();
         try {
-            em.update( entity );
-        } catch (Exception e) {
-            throw new IOException("Unable to update entity filedata", e);
+            FileUtils.deleteQuietly( marker );
+
+            File references = marker.getParentFile();
+            String[] remaining = references.list();
+            if ( remaining != null && remaining.length > 0 ) {
+                return;
+            }
+
+            FileUtils.deleteQuietly( references );
+            FileUtils.deleteQuietly( blob );
+            FileUtils.deleteQuietly( precompressedPath( blob ) );
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+
+    /** The content hash the asset references, or null if it doesn't reference a blob */
+    private String readAssetReference( UUID appId, Entity entity ) throws IOException {
+        File reference = new File( reposLocation, AssetUtils.buildAssetReferenceKey( appId, entity ) );
+        if ( !reference.isFile() ) {
+            return null;
+        }
+        return FileUtils.readFileToString( reference, REFERENCE_ENCODING ).trim();
+    }
+
+
+    private void writeAssetReference( UUID appId, Entity entity, String contentHash ) throws IOException {
+        File reference = new File( reposLocation, AssetUtils.buildAssetReferenceKey( appId, entity ) );
+        FileUtils.writeStringToFile( reference, contentHash, REFERENCE_ENCODING );
+    }
+
+
+    /** Delete the file the asset was stored in before assets were content addressed, if there is one */
+    private void deleteLegacy( UUID appId, Entity entity ) {
+        File file = legacyPath( appId, entity );
+        if ( file.exists() && !file.isDirectory() ) {
+            FileUtils.deleteQuietly( file );
+            FileUtils.deleteQuietly( precompressedPath( file ) );
+        }
+    }
+
+
+    private static void mkdirs( File dir ) throws IOException {
+        if ( !dir.exists() && !dir.mkdirs() && !dir.exists() ) {
+            throw new IOException( "Unable to create asset directory " + dir.getAbsolutePath() );
+        }
+    }
+
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance( "MD5" );
+        }
+        catch ( NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( "MD5 is not available", e );
+        }
+    }
+
+
+    /**
+     * Write a gzip copy of the file, keeping it only if it's smaller than the original.  The copy is written to a
+     * temporary file and moved into place, so a concurrent read never sees a partial copy.
+     */
+    private void precompress( File file, File compressedFile, String contentType ) {
+        if ( file.length() < PRECOMPRESS_MIN_SIZE
+                || !AssetUtils.isCompressible( contentType, AssetUtils.COMPRESSED_CONTENT_TYPES ) ) {
+            return;
+        }
+
+        File temp = null;
+        try {
+            temp = File.createTempFile( ".precompress", ".tmp", compressedFile.getParentFile() );
+
+            try ( OutputStream out = new GZIPOutputStream( new FileOutputStream( temp ) ) ) {
+                FileUtils.copyFile( file, out );
+            }
+
+            if ( temp.length() < file.length() ) {
+                Files.move( temp.toPath(), compressedFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING );
+            }
+        }
+        catch ( IOException e ) {
+            // the asset itself was stored, it just won't be served precompressed
+            LOG.warn( "Unable to precompress asset {}", file, e );
+        }
+        finally {
+            FileUtils.deleteQuietly( temp );
         }
     }
 
 
     @Override
     public InputStream read( UUID appId, Entity entity ) throws IOException {
-        return read( appId, entity, 0, FileUtils.ONE_MB * 5 );
+        return new BufferedInputStream( FileUtils.openInputStream( path( appId, entity ) ) );
     }
 
 
     @Override
     public InputStream read( UUID appId, Entity entity, long offset, long length ) throws IOException {
-        return new BufferedInputStream( FileUtils.openInputStream( path( appId, entity ) ) );
+        FileChannel channel = openChannel( appId, entity );
+        if ( channel == null ) {
+            throw new FileNotFoundException( "File '" + path( appId, entity ) + "' does not exist" );
+        }
+
+        channel.position( offset );
+
+        return new BufferedInputStream( new BoundedInputStream( Channels.newInputStream( channel ), length ) );
     }
 
 
     /**
-     * Deletes the asset if it is a file. Does nothing if {@link org.apache.usergrid.persistence.entities.Asset#getPath()}
-     * represents a directory.
+     * The asset's file, so it can be sent with {@link #transfer(FileChannel, long, long, WritableByteChannel)}
+     * instead of being copied through the heap
+     *
+     * @return the file, or null if the asset has no file
      */
-    @Override
-    public void delete( UUID appId, Entity entity ) {
+    public File getFile( UUID appId, Entity entity ) {
         File file = path( appId, entity );
-        if ( file.exists() && !file.isDirectory() ) {
-            FileUtils.deleteQuietly( file );
+
+        return file.isFile() ? file : null;
+    }
+
+
+    /**
+     * Open the asset's file for reading
+     *
+     * @return the channel, or null if the asset has no file
+     */
+    public FileChannel openChannel( UUID appId, Entity entity ) throws IOException {
+        File file = getFile( appId, entity );
+
+        if ( file == null ) {
+            return null;
+        }
+
+        return FileChannel.open( file.toPath(), StandardOpenOption.READ );
+    }
+
+
+    /**
+     * Send count bytes of the file starting at position to the target.  The copy is left to the operating system
+     * where the target allows it.
+     */
+    public static void transfer( FileChannel channel, long position, long count, WritableByteChannel target )
+            throws IOException {
+        long sent = 0;
+        while ( sent < count ) {
+            long transferred = channel.transferTo( position + sent, count - sent, target );
+            if ( transferred <= 0 ) {
+                // the file got shorter underneath us
+                throw new EOFException( "Asset ended after " + ( position + sent ) + " bytes" );
+            }
+            sent += transferred;
         }
     }
+
+
+    /**
+     * Read the gzip copy of the asset stored by {@link #PROPERTIES_PRECOMPRESS}.  The caller must send it with a gzip
+     * Content-Encoding.
+     *
+     * @return the compressed stream, or null if there's no compressed copy
+     */
+    public InputStream readPrecompressed( UUID appId, Entity entity ) throws IOException {
+        File compressedFile = precompressedPath( path( appId, entity ) );
+
+        // the copy only appears once it's complete, but it can be removed between a check and the open
+        try {
+            return new BufferedInputStream( Files.newInputStream( compressedFile.toPath() ) );
+        }
+        catch ( NoSuchFileException e ) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Removes the asset's reference to its blob, deleting the blob if no other asset has the same content.  An asset
+     * stored before assets were content addressed is deleted if it is a file, nothing is done if {@link
+     * org.apache.usergrid.persistence.entities.Asset#getPath()} represents a directory.
+     */
+    @Override
+    public void delete( UUID appId, Entity entity ) throws IOException {
+        String contentHash = readAssetReference( appId, entity );
+        if ( contentHash != null ) {
+            releaseReference( appId, contentHash, entity );
+            FileUtils.deleteQuietly( new File( reposLocation, AssetUtils.buildAssetReferenceKey( appId, entity ) ) );
+        }
+
+        deleteLegacy( appId, entity );
+    }
 }
@@ -166,7 +166,7 @@ public class ExportServiceIT {
         }
         f.deleteOnExit();
 
-        S3Export s3Export = new MockS3ExportImpl("testFileConnections.json" );
+        MockExportSink exportSink = new MockExportSink( "testFileConnections.json" );
 
         ExportService exportService = setup.getExportService();
 
@@ -247,7 +247,7 @@ public class ExportServiceIT {
 
         String fileName = "testConnectionsOnApplicationEndpoint.json";
 
-        S3Export s3Export = new MockS3ExportImpl( "testConnectionsOnApplicationEndpoint.json" );
+        MockExportSink exportSink = new MockExportSink( "testConnectionsOnApplicationEndpoint.json" );
 
         ExportService exportService = setup.getExportService();
 
@@ -283,7 +283,7 @@ public class ExportServiceIT {
         UUID exportUUID = exportService.schedule( payload );
 
         //create and initialize jobData returned in JobExecution.
-        JobData jobData = jobDataCreator(payload,exportUUID,s3Export);
+        JobData jobData = jobDataCreator( payload, exportUUID, exportSink );
 
         JobExecution jobExecution = mock( JobExecution.class );
         when( jobExecution.getJobData() ).thenReturn( jobData );
@@ -344,8 +344,7 @@ public class ExportServiceIT {
             newUUIDString()+"ugExport@usergrid.com",
             "123456789" );
 
-        S3Export s3Export = new MockS3ExportImpl("exportOneOrg.json");
-      //  s3Export.setFilename( "exportOneOrg.json" );
+        MockExportSink exportSink = new MockExportSink( "exportOneOrg.json" );
         ExportService exportService = setup.getExportService();
 
         String appName = newOrgAppAdminRule.getApplicationInfo().getName();
@@ -357,7 +356,7 @@ public class ExportServiceIT {
 
         UUID exportUUID = exportService.schedule( payload );
 
-        JobData jobData = jobDataCreator(payload,exportUUID,s3Export);
+        JobData jobData = jobDataCreator( payload, exportUUID, exportSink );
 
 
         JobExecution jobExecution = mock( JobExecution.class );
@@ -424,8 +423,7 @@ public class ExportServiceIT {
             entity[i] = em.create( "user", userProperties );
         }
 
-        S3Export s3Export = new MockS3ExportImpl("exportOneApp.json");
-        //s3Export.setFilename( "exportOneApp.json" );
+        MockExportSink exportSink = new MockExportSink( "exportOneApp.json" );
         ExportService exportService = setup.getExportService();
 
         HashMap<String, Object> payload = payloadBuilder(appName);
@@ -435,7 +433,7 @@ public class ExportServiceIT {
 
         UUID exportUUID = exportService.schedule( payload );
 
-        JobData jobData = jobDataCreator(payload,exportUUID,s3Export);
+        JobData jobData = jobDataCreator( payload, exportUUID, exportSink );
 
         JobExecution jobExecution = mock( JobExecution.class );
         when( jobExecution.getJobData() ).thenReturn( jobData );
@@ -489,7 +487,7 @@ public class ExportServiceIT {
             entity[i] = em.create( "users", userProperties );
         }
 
-        S3Export s3Export = new MockS3ExportImpl("exportOneAppWQuery.json" );
+        MockExportSink exportSink = new MockExportSink( "exportOneAppWQuery.json" );
         ExportService exportService = setup.getExportService();
 
         String appName = newOrgAppAdminRule.getApplicationInfo().getName();
@@ -501,7 +499,7 @@ public class ExportServiceIT {
 
         UUID exportUUID = exportService.schedule( payload );
 
-        JobData jobData = jobDataCreator(payload,exportUUID,s3Export);
+        JobData jobData = jobDataCreator( payload, exportUUID, exportSink );
 
         JobExecution jobExecution = mock( JobExecution.class );
         when( jobExecution.getJobData() ).thenReturn( jobData );
@@ -560,7 +558,7 @@ public class ExportServiceIT {
             entity[i] = em.create( "qtsMagics", userProperties );
         }
 
-        S3Export s3Export = new MockS3ExportImpl("exportOneCollection.json" );
+        MockExportSink exportSink = new MockExportSink( "exportOneCollection.json" );
         ExportService exportService = setup.getExportService();
 
         String appName = newOrgAppAdminRule.getApplicationInfo().getName();
@@ -572,7 +570,7 @@ public class ExportServiceIT {
 
         UUID exportUUID = exportService.schedule( payload );
 
-        JobData jobData = jobDataCreator(payload,exportUUID,s3Export);
+        JobData jobData = jobDataCreator( payload, exportUUID, exportSink );
 
         JobExecution jobExecution = mock( JobExecution.class );
         when( jobExecution.getJobData() ).thenReturn( jobData );
@@ -627,7 +625,7 @@ public class ExportServiceIT {
             entity[i] = em.create( "baconators", userProperties );
         }
 
-        S3Export s3Export = new MockS3ExportImpl("exportOneCollectionWQuery.json");
+        MockExportSink exportSink = new MockExportSink( "exportOneCollectionWQuery.json" );
         ExportService exportService = setup.getExportService();
 
         String appName = newOrgAppAdminRule.getApplicationInfo().getName();
@@ -640,7 +638,7 @@ public class ExportServiceIT {
 
         UUID exportUUID = exportService.schedule( payload );
 
-        JobData jobData = jobDataCreator( payload, exportUUID, s3Export );
+        JobData jobData = jobDataCreator( payload, exportUUID, exportSink );
 
         JobExecution jobExecution = mock( JobExecution.class );
         when( jobExecution.getJobData() ).thenReturn( jobData );
@@ -663,6 +661,47 @@ public class ExportServiceIT {
     }
 
 
+    @Test
+    public void testExportResumesFromCheckpoint() throws Exception {
+
+        new File( "exportResume.json" ).deleteOnExit();
+        new File( "exportResumeRetry.json" ).deleteOnExit();
+
+        ExportService exportService = setup.getExportService();
+
+        String appName = newOrgAppAdminRule.getApplicationInfo().getName();
+        HashMap<String, Object> payload = payloadBuilder( appName );
+
+        payload.put( "organizationId", organization.getUuid() );
+        payload.put( "applicationId", applicationId );
+        payload.put( "collectionName", "roles" );
+
+        UUID exportUUID = exportService.schedule( payload );
+
+        MockExportSink exportSink = new MockExportSink( "exportResume.json" );
+
+        JobExecution jobExecution = mock( JobExecution.class );
+        when( jobExecution.getJobData() ).thenReturn( jobDataCreator( payload, exportUUID, exportSink ) );
+
+        exportService.doExport( jobExecution );
+
+        assertEquals( "FINISHED", exportService.getState( exportUUID ) );
+        assertEquals( 1, exportSink.getPartNames().size() );
+        assertTrue( exportSink.getPartNames().get( 0 ).endsWith( "roles.part-00000.json.gz" ) );
+
+        //running the same export again finds the collection already written and skips it
+        MockExportSink retrySink = new MockExportSink( "exportResumeRetry.json" );
+
+        jobExecution = mock( JobExecution.class );
+        when( jobExecution.getJobData() ).thenReturn( jobDataCreator( payload, exportUUID, retrySink ) );
+
+        exportService.doExport( jobExecution );
+
+        assertEquals( "FINISHED", exportService.getState( exportUUID ) );
+        assertTrue( retrySink.getPartNames().isEmpty() );
+    }
+
+
     @Test
     public void testExportDoJob() throws Exception {
 
@@ -709,8 +748,6 @@ public class ExportServiceIT {
         when( jobExecution.getJobId() ).thenReturn( UUID.randomUUID() );
 
         ExportJob job = new ExportJob();
-        S3Export s3Export = mock( S3Export.class );
-        //setup.getExportService().setS3Export( s3Export );
         job.setExportService( setup.getExportService() );
         try {
             job.doJob( jobExecution );
@@ -733,8 +770,6 @@ public class ExportServiceIT {
         when( jobExecution.getJobId() ).thenReturn( UUID.randomUUID() );
 
         ExportJob job = new ExportJob();
-        S3Export s3Export = mock( S3Export.class );
-       // setup.getExportService().setS3Export( s3Export );
         job.setExportService( setup.getExportService() );
         try {
             job.doJob( jobExecution );
@@ -841,7 +876,6 @@ public class ExportServiceIT {
     @Ignore("Pending merge of export-feature branch")
     public void testIntegration100EntitiesForAllApps() throws Exception {
 
-        S3Export s3Export = new S3ExportImpl();
         ExportService exportService = setup.getExportService();
 
         String appName = newOrgAppAdminRule.getApplicationInfo().getName();
@@ -924,7 +958,6 @@ public class ExportServiceIT {
     @Ignore("Pending merge of export-feature branch")
     public void testIntegration100EntitiesOnOneOrg() throws Exception {
 
-        S3Export s3Export = new S3ExportImpl();
         ExportService exportService = setup.getExportService();
 
         String appName = newOrgAppAdminRule.getApplicationInfo().getName();
@@ -1015,13 +1048,13 @@ public class ExportServiceIT {
         blobStore.deleteContainer( bucketName );
     }
 
-    public JobData jobDataCreator(HashMap<String, Object> payload,UUID exportUUID, S3Export s3Export) {
+    public JobData jobDataCreator(HashMap<String, Object> payload,UUID exportUUID, ExportSink exportSink) {
         JobData jobData = new JobData();
 
         jobData.setProperty( "jobName", "exportJob" );
         jobData.setProperty( "exportInfo", payload );
         jobData.setProperty( "exportId", exportUUID );
-        jobData.setProperty( "s3Export", s3Export );
+        jobData.setProperty( "exportSink", exportSink );
 
         return jobData;
     }
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.management.export;
+
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/**
+ * Merges the parts written by the export service into a single uncompressed file with the given name
+ */
+public class MockExportSink implements ExportSink {
+    private static final Logger logger = LoggerFactory.getLogger( MockExportSink.class );
+
+    private final String filename;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, List<Object>> collections = new LinkedHashMap<>();
+    private final List<String> partNames = new ArrayList<>();
+
+
+    public MockExportSink( String filename ) {
+        this.filename = filename;
+    }
+
+
+    @Override
+    public synchronized void writePart( final String name, final File part ) throws IOException {
+
+        Map<String, Map<String, List<Object>>> document;
+        try ( InputStream in = new GZIPInputStream( new FileInputStream( part ) ) ) {
+            document = mapper.readValue( in, new TypeReference<Map<String, Map<String, List<Object>>>>() {} );
+        }
+
+        for ( Map.Entry<String, List<Object>> collection : document.get( "collections" ).entrySet() ) {
+            List<Object> entities = collections.get( collection.getKey() );
+            if ( entities == null ) {
+                entities = new ArrayList<>();
+                collections.put( collection.getKey(), entities );
+            }
+            entities.addAll( collection.getValue() );
+        }
+
+        partNames.add( name );
+
+        Map<String, Object> merged = new LinkedHashMap<>();
+        merged.put( "collections", collections );
+
+        File verifiedData = new File( filename );
+        mapper.writeValue( verifiedData, merged );
+        logger.info( "Merged part {} into {}", name, verifiedData );
+    }
+
+
+    /**
+     * @return the names of the parts written so far
+     */
+    public synchronized List<String> getPartNames() {
+        return new ArrayList<>( partNames );
+    }
+
+
+    @Override
+    public void close() {
+        //nothing to release
+    }
+}
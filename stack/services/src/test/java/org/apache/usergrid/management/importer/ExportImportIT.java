@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.management.importer;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.RandomStringUtils;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.apache.usergrid.NewOrgAppAdminRule;
+import org.apache.usergrid.ServiceITSetup;
+import org.apache.usergrid.ServiceITSetupImpl;
+import org.apache.usergrid.batch.JobExecution;
+import org.apache.usergrid.cassandra.ClearShiroSubject;
+import org.apache.usergrid.management.export.ExportService;
+import org.apache.usergrid.management.export.LocalExportSink;
+import org.apache.usergrid.persistence.Entity;
+import org.apache.usergrid.persistence.EntityManager;
+import org.apache.usergrid.persistence.SimpleEntityRef;
+import org.apache.usergrid.persistence.entities.FileImport;
+import org.apache.usergrid.persistence.entities.Import;
+import org.apache.usergrid.persistence.entities.JobData;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * Exports a collection into gzipped parts in a local directory and imports the parts into another application
+ */
+public class ExportImportIT {
+
+    @ClassRule
+    public static final ServiceITSetup setup = new ServiceITSetupImpl();
+
+    @Rule
+    public ClearShiroSubject clearShiroSubject = new ClearShiroSubject();
+
+    @Rule
+    public NewOrgAppAdminRule newOrgAppAdminRule = new NewOrgAppAdminRule( setup );
+
+
+    @Test
+    public void importExportedParts() throws Exception {
+
+        UUID sourceAppId = newOrgAppAdminRule.getApplicationInfo().getId();
+        EntityManager sourceEm = setup.getEmf().getEntityManager( sourceAppId );
+
+        List<Entity> things = new ArrayList<>();
+        for ( int i = 0; i < 5; i++ ) {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put( "name", "thing" + i );
+            properties.put( "color", "color" + i );
+            things.add( sourceEm.create( "thing", properties ) );
+        }
+
+        setup.refreshIndex( sourceAppId );
+
+        File directory = Files.createTempDirectory( "exportimport" ).toFile();
+
+        try {
+
+            // export the collection into gzipped parts
+
+            HashMap<String, Object> payload = payloadBuilder( directory );
+            payload.put( "organizationId", newOrgAppAdminRule.getOrganizationInfo().getUuid() );
+            payload.put( "applicationId", sourceAppId );
+            payload.put( "collectionName", "things" );
+
+            ExportService exportService = setup.getExportService();
+            UUID exportUUID = exportService.schedule( payload );
+
+            JobData exportJobData = new JobData();
+            exportJobData.setProperty( "jobName", "exportJob" );
+            exportJobData.setProperty( "exportInfo", payload );
+            exportJobData.setProperty( "exportId", exportUUID );
+            exportJobData.setProperty( "exportSink", new LocalExportSink( directory ) );
+
+            JobExecution exportExecution = mock( JobExecution.class );
+            when( exportExecution.getJobData() ).thenReturn( exportJobData );
+
+            exportService.doExport( exportExecution );
+            assertEquals( "FINISHED", exportService.getState( exportUUID ) );
+
+            // the import finds the parts the same way it lists a bucket
+
+            S3Import s3Import = new DirectoryS3Import();
+
+            List<String> parts =
+                s3Import.getBucketFileNames( directory.getPath(), ImportServiceImpl.IMPORT_FILE_SUFFIXES, null, null );
+
+            assertFalse( parts.isEmpty() );
+            for ( String part : parts ) {
+                assertTrue( part.endsWith( ".json.gz" ) );
+            }
+
+            // import each part into a new application
+
+            UUID targetAppId = setup.getMgmtSvc().createApplication( newOrgAppAdminRule.getOrganizationInfo().getUuid(),
+                "importtarget" + RandomStringUtils.randomAlphanumeric( 10 ).toLowerCase() ).getId();
+
+            EntityManager rootEm = setup.getEmf().getEntityManager( setup.getEmf().getManagementAppId() );
+
+            Import importEntity = new Import();
+            importEntity.setState( Import.State.STARTED );
+            importEntity = rootEm.create( importEntity );
+
+            ImportService importService = setup.getImportService();
+
+            for ( String part : parts ) {
+                FileImport fileImport = rootEm.create( new FileImport( part, targetAppId ) );
+                rootEm.createConnection( importEntity, ImportServiceImpl.IMPORT_FILE_INCLUDES_CONNECTION, fileImport );
+
+                JobData fileJobData = new JobData();
+                fileJobData.setProperty( "File", part );
+                fileJobData.setProperty( ImportServiceImpl.FILE_IMPORT_ID, fileImport.getUuid() );
+                fileJobData.setProperty( "applicationId", targetAppId );
+                fileJobData.setProperty( "properties", payload.get( "properties" ) );
+                fileJobData.setProperty( "s3Import", s3Import );
+
+                JobExecution fileExecution = mock( JobExecution.class );
+                when( fileExecution.getJobData() ).thenReturn( fileJobData );
+
+                importService.downloadAndImportFile( fileExecution );
+
+                assertEquals( FileImport.State.FINISHED,
+                    rootEm.get( fileImport.getUuid(), FileImport.class ).getState() );
+            }
+
+            // every exported entity arrives with its uuid and properties
+
+            EntityManager targetEm = setup.getEmf().getEntityManager( targetAppId );
+
+            for ( Entity thing : things ) {
+                Entity imported = targetEm.get( new SimpleEntityRef( "thing", thing.getUuid() ) );
+
+                assertNotNull( imported );
+                assertEquals( thing.getName(), imported.getName() );
+                assertEquals( thing.getProperty( "color" ), imported.getProperty( "color" ) );
+            }
+        }
+        finally {
+            FileUtils.deleteDirectory( directory );
+        }
+    }
+
+
+    private HashMap<String, Object> payloadBuilder( File directory ) {
+        Map<String, Object> storageInfo = new HashMap<>();
+        storageInfo.put( "bucket_location", directory.getPath() );
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put( "storage_provider", "local" );
+        properties.put( "storage_info", storageInfo );
+
+        HashMap<String, Object> payload = new HashMap<>();
+        payload.put( "path", newOrgAppAdminRule.getApplicationInfo().getName() );
+        payload.put( "properties", properties );
+        return payload;
+    }
+
+
+    /**
+     * Treats a local directory as the bucket.  Downloads are copied to temporary files without the part's name, as
+     * they are from S3.
+     */
+    private static class DirectoryS3Import implements S3Import {
+
+        @Override
+        public List<String> getBucketFileNames( String bucketName, Collection<String> endsWith, String accessId,
+                                                String secretKey ) throws IOException {
+
+            Path bucket = new File( bucketName ).toPath();
+
+            try ( Stream<Path> files = Files.walk( bucket ) ) {
+                return files.filter( Files::isRegularFile )
+                            .map( file -> bucket.relativize( file ).toString().replace( File.separatorChar, '/' ) )
+                            .filter( name -> endsWith.stream().anyMatch( name::endsWith ) )
+                            .collect( Collectors.toList() );
+            }
+        }
+
+
+        @Override
+        public File copyFileFromBucket( String blobFileName, String bucketName, String accessId, String secretKey )
+            throws IOException {
+
+            File downloaded = File.createTempFile( "import", null );
+            downloaded.deleteOnExit();
+
+            Files.copy( new File( bucketName, blobFileName ).toPath(), downloaded.toPath(),
+                StandardCopyOption.REPLACE_EXISTING );
+
+            return downloaded;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 
@@ -30,7 +31,7 @@ public class MockS3ImportImpl implements S3Import{
     private static final Logger logger = LoggerFactory.getLogger(MockS3ImportImpl.class);
 
     @Override
-    public List<String> getBucketFileNames(String bucketName, String endsWith, String accessId, String secretKey) {
+    public List<String> getBucketFileNames(String bucketName, Collection<String> endsWith, String accessId, String secretKey) {
         return new ArrayList<>();
     }
 
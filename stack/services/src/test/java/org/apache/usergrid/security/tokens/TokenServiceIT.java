@@ -172,6 +172,35 @@ public class TokenServiceIT {
     }
 
 
+    @Test
+    public void revokedTokenNotRestoredByAccessFlush() throws Exception {
+
+        AuthPrincipalInfo adminPrincipal =
+                new AuthPrincipalInfo( AuthPrincipalType.ADMIN_USER, UUIDUtils.newTimeUUID(), UUIDUtils.newTimeUUID() );
+
+        String token = setup.getTokenSvc().createToken( TokenCategory.ACCESS, null, adminPrincipal, null, 0 );
+
+        // access it so it's cached with an access time waiting to be written
+        assertNotNull( setup.getTokenSvc().getTokenInfo( token ) );
+        assertNotNull( setup.getTokenSvc().getTokenInfo( token ) );
+
+        setup.getTokenSvc().revokeToken( token );
+
+        ( ( TokenServiceImpl ) setup.getTokenSvc() ).flushTokenAccess();
+
+        boolean invalidTokenException = false;
+
+        try {
+            setup.getTokenSvc().getTokenInfo( token );
+        }
+        catch ( InvalidTokenException ite ) {
+            invalidTokenException = true;
+        }
+
+        assertTrue( invalidTokenException );
+    }
+
+
     @Test
     public void userPrincipalTokenRevoke() throws Exception {
         AuthPrincipalInfo adminPrincipal =
@@ -23,6 +23,7 @@ import org.junit.Test;
 import org.apache.usergrid.persistence.entities.Asset;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
 
 
 /** @author zznate */
@@ -57,4 +58,29 @@ public class AssetUtilsTest {
         asset.setUuid( UUID.randomUUID() );
         AssetUtils.buildAssetKey( null, asset );
     }
+
+
+    @Test
+    public void buildBlobKeysOk() {
+        Asset asset = new Asset();
+        asset.setUuid( UUID.randomUUID() );
+
+        String blobKey = AssetUtils.buildBlobKey( appId, "abc123" );
+
+        assertEquals( appId.toString() + "/blobs/abc123", blobKey );
+        assertEquals( blobKey + ".refs/" + asset.getUuid(), AssetUtils.buildBlobReferenceKey( appId, "abc123", asset ) );
+        assertEquals( appId.toString() + "/refs/" + asset.getUuid(), AssetUtils.buildAssetReferenceKey( appId, asset ) );
+        assertEquals( appId.toString() + "/orphans/abc123", AssetUtils.buildOrphanKey( appId, "abc123" ) );
+        assertEquals( AssetUtils.buildOrphanPrefix( appId ) + "abc123", AssetUtils.buildOrphanKey( appId, "abc123" ) );
+    }
+
+
+    @Test
+    public void contentHashIsNullForLegacyAssets() {
+        Asset asset = new Asset();
+        asset.setUuid( UUID.randomUUID() );
+
+        assertNull( AssetUtils.getContentHash( asset ) );
+        assertNull( asset.getProperty( AssetUtils.FILE_METADATA ) );
+    }
 }
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.services.assets.data;
+
+
+import java.util.List;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+
+public class ByteRangeTest {
+
+    @Test
+    public void singleRange() {
+        List<ByteRange> ranges = ByteRange.parse( "bytes=10-19", 100 );
+
+        assertEquals( 1, ranges.size() );
+        assertEquals( 10, ranges.get( 0 ).getStart() );
+        assertEquals( 19, ranges.get( 0 ).getEnd() );
+        assertEquals( 10, ranges.get( 0 ).getLength() );
+        assertEquals( "bytes 10-19/100", ranges.get( 0 ).toContentRange( 100 ) );
+    }
+
+
+    @Test
+    public void openAndSuffixRanges() {
+        List<ByteRange> open = ByteRange.parse( "bytes=90-", 100 );
+        assertEquals( 90, open.get( 0 ).getStart() );
+        assertEquals( 99, open.get( 0 ).getEnd() );
+
+        List<ByteRange> suffix = ByteRange.parse( "bytes=-10", 100 );
+        assertEquals( 90, suffix.get( 0 ).getStart() );
+        assertEquals( 99, suffix.get( 0 ).getEnd() );
+
+        // a suffix longer than the asset is the whole asset
+        List<ByteRange> whole = ByteRange.parse( "bytes=-500", 100 );
+        assertEquals( 0, whole.get( 0 ).getStart() );
+        assertEquals( 99, whole.get( 0 ).getEnd() );
+    }
+
+
+    @Test
+    public void multipleRangesAreSortedAndMerged() {
+        List<ByteRange> ranges = ByteRange.parse( "bytes=50-59, 0-9, 5-14, 15-19", 100 );
+
+        assertEquals( 2, ranges.size() );
+        assertEquals( 0, ranges.get( 0 ).getStart() );
+        assertEquals( 19, ranges.get( 0 ).getEnd() );
+        assertEquals( 50, ranges.get( 1 ).getStart() );
+        assertEquals( 59, ranges.get( 1 ).getEnd() );
+    }
+
+
+    @Test
+    public void endIsClampedToAsset() {
+        List<ByteRange> ranges = ByteRange.parse( "bytes=90-500", 100 );
+
+        assertEquals( 99, ranges.get( 0 ).getEnd() );
+    }
+
+
+    @Test
+    public void unsatisfiable() {
+        assertTrue( ByteRange.parse( "bytes=100-200", 100 ).isEmpty() );
+        assertTrue( ByteRange.parse( "bytes=0-", 0 ).isEmpty() );
+    }
+
+
+    @Test
+    public void invalidHeadersAreIgnored() {
+        assertNull( ByteRange.parse( null, 100 ) );
+        assertNull( ByteRange.parse( "items=0-10", 100 ) );
+        assertNull( ByteRange.parse( "bytes=10-5", 100 ) );
+        assertNull( ByteRange.parse( "bytes=a-b", 100 ) );
+        assertNull( ByteRange.parse( "bytes=10", 100 ) );
+    }
+}